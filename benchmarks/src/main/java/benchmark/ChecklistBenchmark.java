@@ -0,0 +1,75 @@
+package benchmark;
+
+import model.Attivita;
+import model.Checklist;
+import model.StatoAttivita;
+import model.ToDo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura {@link Checklist#isCompletata()} e {@link ToDo#aggiornaStatoDaChecklist()} su checklist grandi.
+ * <p>
+ * Con {@code ultimaDaCompletare = true} solo l'ultima attività è da completare: è il caso peggiore,
+ * in cui la verifica deve scorrere tutta la lista.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecklistBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int numeroAttivita;
+
+    @Param({"false", "true"})
+    private boolean ultimaDaCompletare;
+
+    private Checklist checklist;
+    private ToDo todo;
+
+    @Setup
+    public void prepara() {
+        List<Attivita> attivita = new ArrayList<>(numeroAttivita);
+        for (int i = 0; i < numeroAttivita; i++) {
+            boolean completata = !(ultimaDaCompletare && i == numeroAttivita - 1);
+            attivita.add(new Attivita(i + 1, 1, "attività " + i,
+                    completata ? StatoAttivita.COMPLETATO : StatoAttivita.NON_COMPLETATO));
+        }
+        checklist = new Checklist();
+        checklist.setAttivita(attivita);
+        todo = new ToDo(1, "ToDo", "", LocalDate.of(2025, 1, 1), null, null, "#FFFFFF", 1024, null);
+        todo.setChecklist(checklist);
+    }
+
+    @Benchmark
+    public boolean isCompletata() {
+        return checklist.isCompletata();
+    }
+
+    @Benchmark
+    public ToDo aggiornaStatoDaChecklist() {
+        todo.aggiornaStatoDaChecklist();
+        return todo;
+    }
+}
@@ -0,0 +1,156 @@
+package benchmark;
+
+import model.Attivita;
+import model.Bacheca;
+import model.Checklist;
+import model.Condivisione;
+import model.StatoAttivita;
+import model.StatoToDo;
+import model.TitoloBacheca;
+import model.ToDo;
+import model.Utente;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Insieme di dati deterministico (generato da un seme fisso) usato dai benchmark in memoria.
+ * <p>
+ * Contiene gli utenti, i ToDo "superficiali" (come li legge la query sulla tabella {@code todo})
+ * e, separatamente, le attività e le condivisioni di ogni ToDo, così da poter ricostruire il grafo
+ * come fa il DAO oppure ottenere direttamente i ToDo completi.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public final class DatiBenchmark {
+
+    /** Seme del generatore: a parità di parametri i dati sono sempre gli stessi. */
+    public static final long SEME = 20250101L;
+
+    private static final String[] PAROLE = {
+            "esame", "relazione", "progetto", "riunione", "settimanale", "spesa", "palestra", "lettura",
+            "consegna", "bozza", "revisione", "cliente", "fattura", "viaggio", "biglietti", "libro",
+            "laboratorio", "appunti", "presentazione", "colloquio", "budget", "manutenzione", "corso", "rete"
+    };
+
+    private final List<Utente> utenti = new ArrayList<>();
+    private final List<Bacheca> bacheche = new ArrayList<>();
+    private final List<ToDo> todos = new ArrayList<>();
+    private final Map<Integer, List<Attivita>> attivitaPerToDo = new HashMap<>();
+    private final Map<Integer, List<Condivisione>> condivisioniPerToDo = new HashMap<>();
+
+    private DatiBenchmark() {
+    }
+
+    /**
+     * Genera un insieme di dati.
+     *
+     * @param numeroToDo       Il numero di ToDo.
+     * @param attivitaPerToDo  Il numero medio di attività per ToDo.
+     * @param numeroUtenti     Il numero di utenti (autori e destinatari delle condivisioni).
+     * @return I dati generati.
+     */
+    public static DatiBenchmark genera(int numeroToDo, int attivitaPerToDo, int numeroUtenti) {
+        SplittableRandom random = new SplittableRandom(SEME);
+        DatiBenchmark dati = new DatiBenchmark();
+        for (int u = 1; u <= numeroUtenti; u++) {
+            dati.utenti.add(new Utente(u, "Nome" + u, "Cognome" + u, "utente" + u, "password"));
+            for (TitoloBacheca titolo : TitoloBacheca.values()) {
+                dati.bacheche.add(new Bacheca(dati.bacheche.size() + 1, titolo, "", u));
+            }
+        }
+
+        LocalDate oggi = LocalDate.of(2025, 1, 1);
+        int idAttivita = 1;
+        for (int id = 1; id <= numeroToDo; id++) {
+            int idAutore = 1 + random.nextInt(numeroUtenti);
+            ToDo todo = new ToDo(id, frase(random, 2 + random.nextInt(4)), frase(random, 8 + random.nextInt(20)),
+                    oggi.plusDays(random.nextInt(365)), null, "https://example.org/" + id, "#FFFFFF",
+                    id * 1024, null);
+            todo.setIdAutore(idAutore);
+            todo.setIdBacheca((idAutore - 1) * TitoloBacheca.values().length + 1 + random.nextInt(TitoloBacheca.values().length));
+            todo.segnaSalvato();
+            dati.todos.add(todo);
+
+            int numeroAttivita = attivitaPerToDo == 0 ? 0 : random.nextInt(2 * attivitaPerToDo + 1);
+            List<Attivita> attivita = new ArrayList<>(numeroAttivita);
+            for (int a = 0; a < numeroAttivita; a++) {
+                StatoAttivita stato = random.nextBoolean() ? StatoAttivita.COMPLETATO : StatoAttivita.NON_COMPLETATO;
+                attivita.add(new Attivita(idAttivita++, id, frase(random, 3), stato));
+            }
+            dati.attivitaPerToDo.put(id, attivita);
+
+            int numeroCondivisioni = random.nextInt(4);
+            List<Condivisione> condivisioni = new ArrayList<>(numeroCondivisioni);
+            for (int c = 0; c < numeroCondivisioni; c++) {
+                condivisioni.add(new Condivisione(1 + random.nextInt(numeroUtenti), id));
+            }
+            dati.condivisioniPerToDo.put(id, condivisioni);
+        }
+        return dati;
+    }
+
+    /** @return Gli utenti generati (ID da 1 a {@code numeroUtenti}). */
+    public List<Utente> getUtenti() {
+        return utenti;
+    }
+
+    /** @return Le bacheche generate (tre per utente). */
+    public List<Bacheca> getBacheche() {
+        return bacheche;
+    }
+
+    /** @return I ToDo con i soli campi della tabella {@code todo}: il grafo va ricostruito a parte. */
+    public List<ToDo> getToDoSuperficiali() {
+        return todos;
+    }
+
+    /** @return Le attività di ogni ToDo, indicizzate per ID del ToDo. */
+    public Map<Integer, List<Attivita>> getAttivitaPerToDo() {
+        return attivitaPerToDo;
+    }
+
+    /** @return Le condivisioni (con il solo ID del destinatario) di ogni ToDo, indicizzate per ID del ToDo. */
+    public Map<Integer, List<Condivisione>> getCondivisioniPerToDo() {
+        return condivisioniPerToDo;
+    }
+
+    /**
+     * Restituisce i ToDo con autore, checklist e condivisioni già collegati.
+     *
+     * @return I ToDo completi, nello stesso ordine di {@link #getToDoSuperficiali()}.
+     */
+    public List<ToDo> getToDoCompleti() {
+        for (ToDo todo : todos) {
+            todo.setAutore(utenti.get(todo.getIdAutore() - 1));
+            Checklist checklist = new Checklist();
+            checklist.setAttivita(attivitaPerToDo.get(todo.getId()));
+            todo.setChecklist(checklist);
+            for (Condivisione c : condivisioniPerToDo.get(todo.getId())) {
+                c.setUtente(utenti.get(c.getIdUtente() - 1));
+                c.setToDo(todo);
+            }
+            todo.setCondivisioni(condivisioniPerToDo.get(todo.getId()));
+            todo.setStato(StatoToDo.NON_COMPLETATO);
+            todo.segnaSalvato();
+        }
+        return todos;
+    }
+
+    private static String frase(SplittableRandom random, int parole) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parole; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(PAROLE[random.nextInt(PAROLE.length)]);
+        }
+        return sb.toString();
+    }
+}
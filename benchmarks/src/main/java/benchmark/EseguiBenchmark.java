@@ -0,0 +1,44 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto di ingresso di {@code benchmarks.jar}: esegue i benchmark JMH con il profiler GC,
+ * così che oltre a throughput e percentili di latenza venga riportato il tasso di allocazione
+ * ({@code gc.alloc.rate.norm}, byte allocati per operazione).
+ * <p>
+ * Uso: {@code java [-Dbenchmark.db.url=jdbc:postgresql://localhost:5432/todo_manager_db
+ * -Dbenchmark.db.user=... -Dbenchmark.db.password=... -Dbenchmark.utente=1 -Dbenchmark.bacheca=1]
+ * -jar benchmarks.jar [regexp]}.
+ * Senza {@code benchmark.db.url} vengono eseguiti solo i benchmark sui dati deterministici in memoria.
+ * Per opzioni più avanzate si può usare direttamente {@code org.openjdk.jmh.Main}.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public final class EseguiBenchmark {
+
+    private EseguiBenchmark() {
+    }
+
+    /**
+     * Avvia i benchmark.
+     *
+     * @param args Facoltativo: un'espressione regolare per scegliere i benchmark da eseguire.
+     * @throws RunnerException Se JMH non riesce a eseguire i benchmark.
+     */
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder opzioni = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : ".*Benchmark.*")
+                .addProfiler(GCProfiler.class);
+        if (System.getProperty("benchmark.db.url") == null) {
+            opzioni.exclude("PostgresToDoBenchmark");
+        }
+        new Runner(opzioni.build()).run();
+    }
+}
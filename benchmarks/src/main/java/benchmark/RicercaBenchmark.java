@@ -0,0 +1,73 @@
+package benchmark;
+
+import controller.IndiceRicerca;
+import dao.QueryRicerca;
+import model.ToDo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura la ricerca sui dati già caricati con {@link IndiceRicerca}: costruzione dell'indice
+ * e interrogazioni tipiche della ricerca istantanea (parola, prefisso, frase).
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RicercaBenchmark {
+
+    /** Numero massimo di risultati, come nella ricerca istantanea. */
+    private static final int LIMITE = 50;
+
+    @Param({"1000", "20000"})
+    private int numeroToDo;
+
+    @Param({"relazione", "rev*", "\"riunione settimanale\"", "progetto cons*"})
+    private String testo;
+
+    private List<ToDo> todos;
+    private IndiceRicerca indice;
+    private QueryRicerca query;
+
+    @Setup
+    public void prepara() {
+        todos = DatiBenchmark.genera(numeroToDo, 3, 50).getToDoCompleti();
+        indice = new IndiceRicerca();
+        indice.ricostruisci(todos);
+        query = QueryRicerca.analizza(testo);
+    }
+
+    @Benchmark
+    public List<ToDo> cerca() {
+        return indice.cerca(query, LIMITE);
+    }
+
+    @Benchmark
+    public QueryRicerca analizzaQuery() {
+        return QueryRicerca.analizza(testo);
+    }
+
+    @Benchmark
+    public int ricostruisciIndice() {
+        IndiceRicerca nuovo = new IndiceRicerca();
+        nuovo.ricostruisci(todos);
+        return nuovo.size();
+    }
+}
@@ -0,0 +1,94 @@
+package controller;
+
+import benchmark.DatiBenchmark;
+import model.ToDo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura lo spostamento di un ToDo in un punto qualsiasi della bacheca, come in
+ * {@code ToDoController#spostaToDoInPosizione}.
+ * <p>
+ * {@link #ranghiSparsi()} usa {@link OrdinamentoToDo} (rango medio tra i vicini, ribilanciamento
+ * solo quando lo spazio finisce); {@link #rinumerazioneCompleta()} è il riferimento in cui ogni
+ * spostamento rinumera l'intera bacheca. Entrambi restituiscono il numero di righe da scrivere nel database.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrdinamentoBenchmark {
+
+    @Param({"50", "1000", "10000"})
+    private int numeroToDo;
+
+    private List<ToDo> bacheca;
+    private SplittableRandom random;
+
+    @Setup(Level.Iteration)
+    public void prepara() {
+        bacheca = new ArrayList<>(DatiBenchmark.genera(numeroToDo, 0, 1).getToDoSuperficiali());
+        OrdinamentoToDo.ribilancia(bacheca);
+        random = new SplittableRandom(DatiBenchmark.SEME);
+    }
+
+    @Benchmark
+    public int ranghiSparsi() {
+        ToDo todo = bacheca.get(random.nextInt(bacheca.size()));
+        int indice = random.nextInt(bacheca.size());
+
+        bacheca.sort(Comparator.comparingInt(ToDo::getPosizione));
+        List<ToDo> altri = new ArrayList<>(bacheca);
+        altri.remove(todo);
+        ToDo prima = indice > 0 ? altri.get(indice - 1) : null;
+        ToDo dopo = indice < altri.size() ? altri.get(indice) : null;
+        OptionalInt rango = OrdinamentoToDo.rangoTra(prima, dopo);
+        if (rango.isPresent()) {
+            todo.setPosizione(rango.getAsInt());
+            return 1;
+        }
+        altri.add(indice, todo);
+        return OrdinamentoToDo.ribilancia(altri).size();
+    }
+
+    @Benchmark
+    public int rinumerazioneCompleta() {
+        ToDo todo = bacheca.get(random.nextInt(bacheca.size()));
+        int indice = random.nextInt(bacheca.size());
+
+        bacheca.sort(Comparator.comparingInt(ToDo::getPosizione));
+        bacheca.remove(todo);
+        bacheca.add(indice, todo);
+        int modificati = 0;
+        for (int i = 0; i < bacheca.size(); i++) {
+            if (bacheca.get(i).getPosizione() != i) {
+                bacheca.get(i).setPosizione(i);
+                modificati++;
+            }
+        }
+        return modificati;
+    }
+}
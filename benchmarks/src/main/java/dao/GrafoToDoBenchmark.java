@@ -0,0 +1,114 @@
+package dao;
+
+import benchmark.DatiBenchmark;
+import model.Attivita;
+import model.Condivisione;
+import model.ToDo;
+import model.Utente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura la ricostruzione del grafo (autore, checklist, condivisioni) di una pagina di ToDo
+ * con {@link ToDoGraphLoader}, il passo che {@link dao.postgresimpl.PostgresToDoDAO} esegue dopo ogni query.
+ * <p>
+ * I DAO collegati rispondono dai dati deterministici di {@link DatiBenchmark}, quindi il benchmark
+ * misura il solo lavoro in memoria (raccolta degli ID, ricucitura delle relazioni), senza rete.
+ * Il costo delle query vere si misura con {@link dao.postgresimpl.PostgresToDoBenchmark}.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrafoToDoBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int numeroToDo;
+
+    private List<ToDo> todos;
+    private ToDoGraphLoader loader;
+
+    @Setup
+    public void prepara() {
+        DatiBenchmark dati = DatiBenchmark.genera(numeroToDo, 5, 200);
+        todos = dati.getToDoSuperficiali();
+        loader = new ToDoGraphLoader(utenteDAO(dati), attivitaDAO(dati), condivisioneDAO(dati));
+    }
+
+    @Benchmark
+    public List<ToDo> caricaGrafo() {
+        loader.carica(todos);
+        loader.caricaRelazioni(todos);
+        return todos;
+    }
+
+    /** Solo la parte letta per le bacheche: checklist subito, autore e condivisioni differiti. */
+    @Benchmark
+    public List<ToDo> caricaPerBacheca() {
+        loader.carica(todos);
+        return todos;
+    }
+
+    private static UtenteDAO utenteDAO(DatiBenchmark dati) {
+        return stub(UtenteDAO.class, "getUtentiByIds", ids -> {
+            Map<Integer, Utente> utenti = new HashMap<>();
+            for (Integer id : ids) {
+                utenti.put(id, dati.getUtenti().get(id - 1));
+            }
+            return utenti;
+        });
+    }
+
+    private static AttivitaDAO attivitaDAO(DatiBenchmark dati) {
+        return stub(AttivitaDAO.class, "getAttivitaByToDoIds", ids -> {
+            Map<Integer, List<Attivita>> attivita = new HashMap<>();
+            for (Integer id : ids) {
+                attivita.put(id, dati.getAttivitaPerToDo().get(id));
+            }
+            return attivita;
+        });
+    }
+
+    private static CondivisioneDAO condivisioneDAO(DatiBenchmark dati) {
+        return stub(CondivisioneDAO.class, "getCondivisioniByToDoIds", ids -> {
+            Map<Integer, List<Condivisione>> condivisioni = new HashMap<>();
+            for (Integer id : ids) {
+                condivisioni.put(id, dati.getCondivisioniPerToDo().get(id));
+            }
+            return condivisioni;
+        });
+    }
+
+    /** Crea un DAO che implementa solo il metodo "batch" usato dal loader. */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> tipo, String metodo, java.util.function.Function<Collection<Integer>, Object> risposta) {
+        return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, (proxy, method, args) -> {
+            if (method.getName().equals(metodo)) {
+                return risposta.apply((Collection<Integer>) args[0]);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package dao.postgresimpl;
+
+import database.ConnectionPool;
+import model.ToDo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Misura il caricamento dei ToDo (query e ricostruzione del grafo) con {@link PostgresToDoDAO}
+ * su un database PostgreSQL locale già popolato.
+ * <p>
+ * Richiede le proprietà di sistema {@code benchmark.db.url}, {@code benchmark.db.user},
+ * {@code benchmark.db.password}, {@code benchmark.utente} e {@code benchmark.bacheca};
+ * {@link benchmark.EseguiBenchmark} lo esclude se {@code benchmark.db.url} non è impostata.
+ * Il parametro {@code cacheStatement} confronta le latenze con e senza la cache degli statement del pool.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PostgresToDoBenchmark {
+
+    @Param({"0", "64"})
+    private int cacheStatement;
+
+    private ConnectionPool pool;
+    private PostgresToDoDAO toDoDAO;
+    private int idUtente;
+    private int idBacheca;
+
+    @Setup
+    public void prepara() {
+        String url = System.getProperty("benchmark.db.url");
+        if (url == null) {
+            throw new IllegalStateException("Impostare -Dbenchmark.db.url per eseguire i benchmark su PostgreSQL");
+        }
+        pool = new ConnectionPool(url, System.getProperty("benchmark.db.user", "postgres"),
+                System.getProperty("benchmark.db.password", ""), 4, 5_000, 30_000, cacheStatement);
+        PostgresUtenteDAO utenteDAO = new PostgresUtenteDAO(pool);
+        toDoDAO = new PostgresToDoDAO(pool, utenteDAO, new PostgresAttivitaDAO(pool), new PostgresCondivisioneDAO(pool));
+        idUtente = Integer.getInteger("benchmark.utente", 1);
+        idBacheca = Integer.getInteger("benchmark.bacheca", 1);
+    }
+
+    @TearDown
+    public void chiudi() {
+        pool.close();
+    }
+
+    @Benchmark
+    public List<ToDo> todoDellaBacheca() {
+        return toDoDAO.getToDosForBachecaAndUtente(idBacheca, idUtente);
+    }
+
+    @Benchmark
+    public long todoVisibiliInStreaming() {
+        try (Stream<ToDo> todos = toDoDAO.streamToDosVisibili(idUtente)) {
+            return todos.count();
+        }
+    }
+}
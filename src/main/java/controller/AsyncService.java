@@ -0,0 +1,334 @@
+package controller;
+
+import dao.MetricheDAO;
+
+import javax.swing.SwingUtilities;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Facciata per eseguire le operazioni sul database fuori dall'Event Dispatch Thread (EDT).
+ * <p>
+ * Ogni operazione viene eseguita su un thread virtuale; il {@link CompletableFuture} restituito
+ * viene completato sull'EDT tramite {@link SwingUtilities#invokeLater(Runnable)}, quindi le
+ * azioni concatenate con {@code thenAccept}/{@code exceptionally} possono aggiornare
+ * direttamente l'interfaccia grafica.
+ * </p>
+ * <p>
+ * Il servizio tiene il conto delle operazioni in corso per pilotare un indicatore di attività
+ * e permette di "coalescere" scritture ripetute sulla stessa entità (es. click rapidi
+ * sulla checkbox dello stesso ToDo): finché una scrittura è in attesa, le richieste successive
+ * con la stessa chiave la sostituiscono invece di accodarsi. I salvataggi espliciti sulla stessa
+ * entità usano {@link #eseguiInCoda(Object, Runnable)}, che li serializza con quelle scritture senza unirli.
+ * </p>
+ * <p>
+ * Ogni operazione eredita l'azione dell'interfaccia in corso al momento dell'invio (vedi
+ * {@link MetricheDAO#iniziaAzione(String)}), anche nelle azioni concatenate sull'EDT: così le query di
+ * un click vengono attribuite al click anche se eseguite da un altro thread. Una scrittura unita a una
+ * già in attesa resta attribuita all'azione che l'ha accodata per prima.
+ * </p>
+ * <p>
+ * Dall'interno di un'operazione, {@link #perOgniInParallelo(Collection, Consumer)} suddivide il lavoro
+ * in sotto-operazioni parallele con un ciclo di vita "strutturato": terminano tutte prima che il metodo ritorni.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class AsyncService {
+    private static final Logger LOGGER = Logger.getLogger(AsyncService.class.getName());
+
+    /** Finestra (ms) entro cui scritture ripetute con la stessa chiave vengono unite in una sola. */
+    private static final long RITARDO_COALESCENZA_MILLIS = 150;
+
+    /** Esecutore con un thread virtuale per ogni operazione. */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Numero di operazioni avviate e non ancora terminate. */
+    private final AtomicInteger inCorso = new AtomicInteger();
+
+    /** Scritture in attesa di esecuzione, indicizzate per chiave. Protetta da {@code this}. */
+    private final Map<Object, Pendente> pendenti = new HashMap<>();
+
+    /** Ultima scrittura avviata per ciascuna chiave, usata per serializzare quelle successive. Protetta da {@code this}. */
+    private final Map<Object, CompletableFuture<Void>> ultimaPerChiave = new HashMap<>();
+
+    /** Callback (invocata sull'EDT) che mostra o nasconde l'indicatore di attività. */
+    private volatile Consumer<Boolean> indicatoreOccupato = occupato -> { };
+
+    /** Metriche a cui attribuire le operazioni, per azione dell'interfaccia. */
+    private final MetricheDAO metriche;
+
+    /**
+     * Crea il servizio.
+     *
+     * @param metriche Le metriche DAO che tengono traccia dell'azione dell'interfaccia in corso.
+     */
+    public AsyncService(MetricheDAO metriche) {
+        this.metriche = metriche;
+    }
+
+    /**
+     * Registra il componente grafico che segnala all'utente le operazioni in corso.
+     *
+     * @param indicatoreOccupato Callback invocata sull'EDT con {@code true} quando inizia
+     *                           la prima operazione e con {@code false} quando termina l'ultima.
+     */
+    public void setIndicatoreOccupato(Consumer<Boolean> indicatoreOccupato) {
+        this.indicatoreOccupato = indicatoreOccupato;
+    }
+
+    /**
+     * Esegue un'operazione che restituisce un risultato su un thread virtuale.
+     *
+     * @param operazione L'operazione da eseguire (tipicamente una o più chiamate DAO).
+     * @param <T>        Il tipo del risultato.
+     * @return Un future completato sull'EDT con il risultato o con l'eccezione sollevata
+     *         (anche un {@link Error}, es. {@link OutOfMemoryError}: il future non resta mai in sospeso).
+     */
+    public <T> CompletableFuture<T> esegui(Supplier<T> operazione) {
+        CompletableFuture<T> risultato = new CompletableFuture<>();
+        MetricheDAO.Azione azione = metriche.agganciaAzioneCorrente();
+        iniziaOperazione();
+        executor.execute(() -> {
+            try {
+                T valore = metriche.eseguiInAzione(azione, operazione);
+                SwingUtilities.invokeLater(() -> {
+                    terminaOperazione();
+                    metriche.eseguiInAzione(azione, () -> risultato.complete(valore));
+                    metriche.rilascia(azione);
+                });
+            } catch (Throwable e) {
+                LOGGER.log(Level.SEVERE, "Errore durante un'operazione asincrona", e);
+                SwingUtilities.invokeLater(() -> {
+                    terminaOperazione();
+                    metriche.eseguiInAzione(azione, () -> risultato.completeExceptionally(e));
+                    metriche.rilascia(azione);
+                });
+            }
+        });
+        return risultato;
+    }
+
+    /**
+     * Esegue un'operazione senza risultato su un thread virtuale.
+     *
+     * @param operazione L'operazione da eseguire.
+     * @return Un future completato sull'EDT al termine dell'operazione.
+     */
+    public CompletableFuture<Void> esegui(Runnable operazione) {
+        return esegui(() -> {
+            operazione.run();
+            return null;
+        });
+    }
+
+    /**
+     * Esegue un'operazione per ogni elemento, ciascuna su un proprio thread virtuale, e attende che
+     * terminino tutte (concorrenza strutturata: nessuna sotto-operazione sopravvive alla chiamata).
+     * <p>
+     * Al primo errore le sotto-operazioni ancora in corso vengono interrotte e l'eccezione viene
+     * rilanciata al chiamante. Le chiamate DAO delle sotto-operazioni sono attribuite all'azione
+     * dell'interfaccia del chiamante. Va invocato fuori dall'EDT, tipicamente dentro {@link #esegui(Runnable)}.
+     * </p>
+     *
+     * @param elementi   Gli elementi da elaborare (es. le bacheche dell'utente).
+     * @param operazione L'operazione da eseguire per ciascun elemento; deve toccare solo lo stato di quell'elemento.
+     * @param <E>        Il tipo degli elementi.
+     */
+    public <E> void perOgniInParallelo(Collection<E> elementi, Consumer<E> operazione) {
+        MetricheDAO.Azione azione = metriche.agganciaAzioneCorrente();
+        try (ExecutorService ambito = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Void> completate = new ExecutorCompletionService<>(ambito);
+            List<Future<Void>> figlie = elementi.stream()
+                    .map(elemento -> completate.submit(() -> metriche.eseguiInAzione(azione, () -> operazione.accept(elemento)), null))
+                    .toList();
+            try {
+                for (int i = 0; i < figlie.size(); i++) {
+                    completate.take().get();
+                }
+            } catch (ExecutionException e) {
+                figlie.forEach(f -> f.cancel(true));
+                throw e.getCause() instanceof RuntimeException re ? re : new CompletionException(e.getCause());
+            } catch (InterruptedException e) {
+                figlie.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Operazioni parallele interrotte");
+            }
+        } finally {
+            metriche.rilascia(azione);
+        }
+    }
+
+    /**
+     * Accoda una scrittura identificata da una chiave, unendola alle richieste ravvicinate.
+     * <p>
+     * Se per la stessa chiave esiste già una scrittura non ancora avviata, questa viene
+     * sostituita da {@code operazione} e il future restituito è lo stesso. Le scritture con la stessa
+     * chiave vengono comunque eseguite nell'ordine di invio, mai in parallelo.
+     * </p>
+     *
+     * @param chiave     La chiave dell'entità modificata (es. l'ID del ToDo).
+     * @param operazione La scrittura da eseguire; deve leggere lo stato più recente del modello.
+     * @return Un future completato sull'EDT quando la scrittura (eventualmente unita) è terminata.
+     */
+    public synchronized CompletableFuture<Void> eseguiCoalescendo(Object chiave, Runnable operazione) {
+        Pendente esistente = pendenti.get(chiave);
+        if (esistente != null) {
+            esistente.operazione = operazione;
+            return esistente.risultato;
+        }
+
+        Pendente nuovo = new Pendente(operazione, metriche.agganciaAzioneCorrente());
+        pendenti.put(chiave, nuovo);
+        CompletableFuture<Void> precedente = ultimaPerChiave.getOrDefault(chiave, CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> esecuzione = precedente
+                .exceptionally(e -> null)
+                .thenRunAsync(() -> eseguiPendente(chiave, nuovo), executor);
+        ultimaPerChiave.put(chiave, esecuzione);
+        esecuzione.whenComplete((r, e) -> rimuoviSeUltima(chiave, esecuzione));
+
+        completaSuEdt(esecuzione, nuovo.azione, nuovo.risultato);
+        return nuovo.risultato;
+    }
+
+    /**
+     * Accoda una scrittura dopo quelle già inviate con la stessa chiave, senza unirla ad esse.
+     * <p>
+     * A differenza di {@link #eseguiCoalescendo(Object, Runnable)}, l'operazione viene sempre eseguita
+     * (non può essere sostituita da una richiesta successiva) e dopo tutte le scritture con la stessa chiave
+     * inviate in precedenza, comprese quelle ancora in attesa. Le scritture coalescibili inviate dopo
+     * vengono eseguite dopo di essa. Adatta ai salvataggi espliciti (es. il dialogo di modifica) che
+     * non devono essere scavalcati dai salvataggi in background dello stesso ToDo.
+     * </p>
+     *
+     * @param chiave     La chiave dell'entità modificata (la stessa usata con {@code eseguiCoalescendo}).
+     * @param operazione La scrittura da eseguire.
+     * @return Un future completato sull'EDT quando la scrittura è terminata, o con la sua eccezione.
+     */
+    public synchronized CompletableFuture<Void> eseguiInCoda(Object chiave, Runnable operazione) {
+        // Le richieste coalescibili successive non devono unirsi a una scrittura accodata prima di questa.
+        pendenti.remove(chiave);
+        MetricheDAO.Azione azione = metriche.agganciaAzioneCorrente();
+        CompletableFuture<Void> precedente = ultimaPerChiave.getOrDefault(chiave, CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> esecuzione = precedente
+                .exceptionally(e -> null)
+                .thenRunAsync(() -> {
+                    try {
+                        metriche.eseguiInAzione(azione, operazione);
+                    } catch (RuntimeException | Error e) {
+                        LOGGER.log(Level.SEVERE, "Errore durante una scrittura asincrona", e);
+                        throw e;
+                    }
+                }, executor);
+        ultimaPerChiave.put(chiave, esecuzione);
+        esecuzione.whenComplete((r, e) -> rimuoviSeUltima(chiave, esecuzione));
+
+        CompletableFuture<Void> risultato = new CompletableFuture<>();
+        completaSuEdt(esecuzione, azione, risultato);
+        return risultato;
+    }
+
+    /**
+     * Al termine di {@code esecuzione} completa {@code risultato} sull'EDT, nell'azione indicata,
+     * con l'eccezione originale dell'operazione, e rilascia l'azione.
+     */
+    private void completaSuEdt(CompletableFuture<Void> esecuzione, MetricheDAO.Azione azione, CompletableFuture<Void> risultato) {
+        iniziaOperazione();
+        esecuzione.whenComplete((r, e) -> SwingUtilities.invokeLater(() -> {
+            terminaOperazione();
+            metriche.eseguiInAzione(azione, () -> {
+                if (e == null) {
+                    risultato.complete(null);
+                } else {
+                    risultato.completeExceptionally(e instanceof CompletionException ce && ce.getCause() != null ? ce.getCause() : e);
+                }
+            });
+            metriche.rilascia(azione);
+        }));
+    }
+
+    private void eseguiPendente(Object chiave, Pendente pendente) {
+        try {
+            Thread.sleep(RITARDO_COALESCENZA_MILLIS);
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+        }
+        Runnable daEseguire;
+        synchronized (this) {
+            pendenti.remove(chiave, pendente);
+            daEseguire = pendente.operazione;
+        }
+        try {
+            metriche.eseguiInAzione(pendente.azione, daEseguire);
+        } catch (RuntimeException | Error e) {
+            LOGGER.log(Level.SEVERE, "Errore durante una scrittura asincrona", e);
+            throw e;
+        }
+    }
+
+    private synchronized void rimuoviSeUltima(Object chiave, CompletableFuture<Void> esecuzione) {
+        ultimaPerChiave.remove(chiave, esecuzione);
+    }
+
+    private void iniziaOperazione() {
+        if (inCorso.getAndIncrement() == 0) {
+            SwingUtilities.invokeLater(() -> {
+                if (inCorso.get() > 0) {
+                    indicatoreOccupato.accept(true);
+                }
+            });
+        }
+    }
+
+    /** Da invocare sull'EDT al termine di ogni operazione. */
+    private void terminaOperazione() {
+        if (inCorso.decrementAndGet() == 0) {
+            indicatoreOccupato.accept(false);
+        }
+    }
+
+    /**
+     * Indica se ci sono operazioni sul database ancora in corso.
+     *
+     * @return {@code true} se almeno un'operazione non è terminata.
+     */
+    public boolean isOccupato() {
+        return inCorso.get() > 0;
+    }
+
+    /**
+     * Arresta l'esecutore, lasciando terminare le operazioni già avviate.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /** Scrittura coalescibile in attesa di esecuzione. */
+    private static final class Pendente {
+        private volatile Runnable operazione;
+        private final MetricheDAO.Azione azione;
+        private final CompletableFuture<Void> risultato = new CompletableFuture<>();
+
+        Pendente(Runnable operazione, MetricheDAO.Azione azione) {
+            this.operazione = operazione;
+            this.azione = azione;
+        }
+    }
+}
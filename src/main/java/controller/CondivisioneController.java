@@ -5,6 +5,7 @@ import model.Condivisione;
 import model.ToDo;
 import model.Utente;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.JOptionPane;
 import java.util.logging.Logger;
 
@@ -42,10 +43,22 @@ public class CondivisioneController {
      * @param toDoToShare Il ToDo che si intende condividere.
      */
     public void openShareToDoDialog(ToDo toDoToShare) {
-        List<Utente> otherUsers = mainController.getUtentiRegistrati().stream()
-                .filter(u -> u.getId() != mainController.getUtenteCorrente().getId())
-                .toList();
+        mainController.getAsyncService().esegui(() -> {
+                    mainController.getToDoDAO().precaricaRelazioni(List.of(toDoToShare));
+                    return mainController.getUtentiRegistrati();
+                })
+                .thenAccept(utenti -> mostraShareDialog(toDoToShare, utenti.stream()
+                        .filter(u -> u.getId() != mainController.getUtenteCorrente().getId())
+                        .toList()));
+    }
 
+    /**
+     * Mostra la {@link ShareDialog} con gli utenti già caricati dal database.
+     *
+     * @param toDoToShare Il ToDo che si intende condividere.
+     * @param otherUsers  Gli utenti selezionabili (escluso l'utente corrente).
+     */
+    private void mostraShareDialog(ToDo toDoToShare, List<Utente> otherUsers) {
         ShareDialog shareDialog = new ShareDialog(null, "Condividi ToDo: " + toDoToShare.getTitolo(), true, otherUsers);
         shareDialog.getBtnCondividi().addActionListener(e -> {
             List<Utente> selectedUsers = shareDialog.getSelectedUsers();
@@ -53,11 +66,15 @@ public class CondivisioneController {
                 JOptionPane.showMessageDialog(shareDialog, "Seleziona almeno un utente con cui condividere.", "Nessuna Selezione", JOptionPane.WARNING_MESSAGE);
                 return;
             }
-            for (Utente u : selectedUsers) {
-                shareToDoWithUser(toDoToShare, u);
-            }
+            mainController.misuraAzione("Condivisione ToDo", () -> CompletableFuture.allOf(selectedUsers.stream()
+                            .map(u -> shareToDoWithUser(toDoToShare, u))
+                            .toArray(CompletableFuture[]::new))
+                    .thenRun(() -> JOptionPane.showMessageDialog(null, "ToDo condiviso con successo!"))
+                    .exceptionally(ex -> {
+                        JOptionPane.showMessageDialog(null, "Errore durante la condivisione del ToDo.", "Errore DB", JOptionPane.ERROR_MESSAGE);
+                        return null;
+                    }));
             shareDialog.dispose();
-            JOptionPane.showMessageDialog(shareDialog, "ToDo condiviso con successo!");
         });
         shareDialog.setVisible(true);
     }
@@ -65,25 +82,43 @@ public class CondivisioneController {
     /**
      * Metodo interno per effettuare la condivisione effettiva con un singolo utente.
      * Controlla se il ToDo è già condiviso per evitare duplicati, aggiorna il database
-     * e il modello locale.
+     * e, solo a salvataggio riuscito, il modello locale.
      *
      * @param toDoToShare Il ToDo da condividere.
      * @param targetUser  L'utente destinatario della condivisione.
+     * @return Un future completato sull'EDT dopo l'aggiornamento del modello, o con l'errore del salvataggio.
      */
-    private void shareToDoWithUser(ToDo toDoToShare, Utente targetUser) {
+    private CompletableFuture<Void> shareToDoWithUser(ToDo toDoToShare, Utente targetUser) {
         if(toDoToShare.getCondivisioni() != null) {
             boolean alreadyShared = toDoToShare.getCondivisioni().stream()
                     .anyMatch(c -> c.getUtente() != null && c.getUtente().getId() == targetUser.getId());
             if (alreadyShared) {
-                return;
+                return CompletableFuture.completedFuture(null);
             }
         }
         Condivisione condivisione = new Condivisione(targetUser.getId(), toDoToShare.getId());
-        mainController.getCondivisioneDAO().addCondivisione(condivisione);
-        condivisione.setUtente(targetUser);
-        condivisione.setToDo(toDoToShare);
-        toDoToShare.aggiungiCondivisione(condivisione);
+        return mainController.getAsyncService().esegui(() -> mainController.getCondivisioneDAO().addCondivisione(condivisione))
+                .thenRun(() -> {
+                    condivisione.setUtente(targetUser);
+                    condivisione.setToDo(toDoToShare);
+                    toDoToShare.aggiungiCondivisione(condivisione);
+                });
+    }
 
+    /**
+     * Esegue un'azione che usa autore e condivisioni del ToDo, caricandole prima in background
+     * se non sono ancora in memoria (le bacheche le lasciano differite).
+     *
+     * @param toDo   Il ToDo di cui servono le relazioni.
+     * @param azione L'azione da eseguire sull'EDT.
+     */
+    private void conRelazioniCaricate(ToDo toDo, Runnable azione) {
+        if (toDo.isRelazioniCaricate()) {
+            azione.run();
+            return;
+        }
+        mainController.getAsyncService().esegui(() -> mainController.getToDoDAO().precaricaRelazioni(List.of(toDo)))
+                .thenRun(azione);
     }
 
     /**
@@ -92,6 +127,10 @@ public class CondivisioneController {
      * @param toDo Il ToDo di cui visualizzare le condivisioni.
      */
     public void showSharedUsers(ToDo toDo) {
+        conRelazioniCaricate(toDo, () -> mostraCondivisioni(toDo));
+    }
+
+    private void mostraCondivisioni(ToDo toDo) {
         StringBuilder sb = new StringBuilder();
         if(toDo.getAutore() != null) {
             sb.append("Autore: ").append(toDo.getAutore().getNome())
@@ -132,13 +171,15 @@ public class CondivisioneController {
             return;
         }
 
-        mainController.getCondivisioneDAO().deleteCondivisione(condivisioneDaRimuovere);
-        toDo.rimuoviCondivisione(condivisioneDaRimuovere);
+        Condivisione daEliminare = condivisioneDaRimuovere;
+        toDo.rimuoviCondivisione(daEliminare);
 
-        if (mainController.getUtenteCorrente().getId() == userToRemove.getId()) {
-            mainController.caricaDatiUtente(mainController.getUtenteCorrente());
-            mainController.refreshMainFrameToDos();
-        }
+        mainController.getAsyncService().esegui(() -> mainController.getCondivisioneDAO().deleteCondivisione(daEliminare))
+                .thenRun(() -> {
+                    if (mainController.getUtenteCorrente().getId() == userToRemove.getId()) {
+                        mainController.rimuoviToDoLocale(toDo);
+                    }
+                });
     }
 
     /**
@@ -149,6 +190,10 @@ public class CondivisioneController {
      * @param todo Il ToDo di cui gestire le condivisioni.
      */
     public void openManageSharingDialog(ToDo todo) {
+        conRelazioniCaricate(todo, () -> mostraGestioneCondivisioni(todo));
+    }
+
+    private void mostraGestioneCondivisioni(ToDo todo) {
         if (todo.getCondivisioni() == null || todo.getCondivisioni().isEmpty()) {
             JOptionPane.showMessageDialog(null, "Questo ToDo non è condiviso con nessuno.", "Gestione Condivisioni", JOptionPane.INFORMATION_MESSAGE);
             return;
@@ -185,7 +230,7 @@ public class CondivisioneController {
             );
 
             if (confirm == JOptionPane.YES_OPTION) {
-                removeSharing(todo, utenteSelezionato);
+                mainController.misuraAzione("Rimozione condivisione", () -> removeSharing(todo, utenteSelezionato));
                 JOptionPane.showMessageDialog(null, "Condivisione con " + utenteSelezionato.getNome() + " rimossa.");
             }
         }
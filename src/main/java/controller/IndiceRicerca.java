@@ -0,0 +1,272 @@
+package controller;
+
+import dao.QueryRicerca;
+import model.Attivita;
+import model.ToDo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Indice invertito in memoria sui ToDo già caricati dell'utente corrente.
+ * <p>
+ * Per ogni ToDo vengono indicizzate le parole di titolo, descrizione, nomi delle attività,
+ * URL e data di scadenza (in formato {@code YYYY-MM-DD}), ridotte a lettere e cifre in minuscolo
+ * come fa {@link QueryRicerca}. Le parole sono tenute ordinate, quindi anche la ricerca per
+ * prefisso ({@code pref*}) è una semplice visita di un intervallo di chiavi, senza accessi al database.
+ * </p>
+ * <p>
+ * L'indice va ricostruito con {@link #ricostruisci(Collection)} dopo ogni caricamento completo
+ * dei dati e aggiornato con {@link #indicizza(ToDo)} / {@link #rimuovi(int)} ad ogni modifica
+ * di un singolo ToDo. I metodi sono sincronizzati perché il caricamento iniziale avviene
+ * fuori dall'EDT, mentre ricerche e aggiornamenti avvengono sull'EDT.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class IndiceRicerca {
+
+    /** Separatore tra i campi nel testo normalizzato: impedisce che una frase "attraversi" due campi. */
+    private static final String SEPARATORE_CAMPI = "| ";
+
+    /**
+     * Dati indicizzati di un singolo ToDo.
+     *
+     * @param toDo          Il ToDo indicizzato.
+     * @param parole        Tutte le parole del ToDo (chiavi sotto cui compare nell'indice).
+     * @param paroleTitolo  Le parole del solo titolo, usate per ordinare i risultati.
+     * @param testo         Il testo normalizzato (parole separate da spazi), usato per verificare le frasi.
+     * @param titolo        Il titolo in minuscolo, usato come secondo criterio di ordinamento.
+     */
+    private record Voce(ToDo toDo, Set<String> parole, Set<String> paroleTitolo, String testo, String titolo) {
+    }
+
+    /** Un candidato della ricerca con il suo punteggio, calcolato una sola volta. */
+    private record Risultato(Voce voce, int punteggio) {
+    }
+
+    /** Parola -> ID dei ToDo che la contengono. */
+    private final TreeMap<String, Set<Integer>> indice = new TreeMap<>();
+
+    /** ID del ToDo -> dati indicizzati. */
+    private final Map<Integer, Voce> voci = new HashMap<>();
+
+    /**
+     * Svuota l'indice e vi inserisce i ToDo indicati.
+     *
+     * @param todos I ToDo attualmente caricati.
+     */
+    public synchronized void ricostruisci(Collection<ToDo> todos) {
+        indice.clear();
+        voci.clear();
+        for (ToDo toDo : todos) {
+            indicizza(toDo);
+        }
+    }
+
+    /**
+     * Inserisce un ToDo nell'indice, sostituendo le informazioni eventualmente già presenti per lo stesso ID.
+     *
+     * @param toDo Il ToDo nuovo o modificato.
+     */
+    public synchronized void indicizza(ToDo toDo) {
+        rimuovi(toDo.getId());
+
+        List<String> paroleTitolo = new ArrayList<>();
+        StringBuilder testo = new StringBuilder(" ");
+        aggiungiCampo(testo, paroleTitolo, toDo.getTitolo());
+
+        List<String> parole = new ArrayList<>(paroleTitolo);
+        aggiungiCampo(testo, parole, toDo.getDescrizione());
+        if (toDo.getChecklist() != null) {
+            for (Attivita a : toDo.getChecklist().getAttivita()) {
+                aggiungiCampo(testo, parole, a.getNome());
+            }
+        }
+        aggiungiCampo(testo, parole, toDo.getURL());
+        if (toDo.getScadenza() != null) {
+            aggiungiCampo(testo, parole, toDo.getScadenza().toString());
+        }
+
+        String titolo = toDo.getTitolo() == null ? "" : toDo.getTitolo().toLowerCase();
+        Voce voce = new Voce(toDo, new HashSet<>(parole), new HashSet<>(paroleTitolo), testo.toString(), titolo);
+        voci.put(toDo.getId(), voce);
+        for (String parola : voce.parole()) {
+            indice.computeIfAbsent(parola, _ -> new HashSet<>()).add(toDo.getId());
+        }
+    }
+
+    /**
+     * Rimuove un ToDo dall'indice. Non fa nulla se il ToDo non è indicizzato.
+     *
+     * @param idToDo L'ID del ToDo eliminato.
+     */
+    public synchronized void rimuovi(int idToDo) {
+        Voce voce = voci.remove(idToDo);
+        if (voce == null) {
+            return;
+        }
+        for (String parola : voce.parole()) {
+            Set<Integer> ids = indice.get(parola);
+            if (ids != null) {
+                ids.remove(idToDo);
+                if (ids.isEmpty()) {
+                    indice.remove(parola);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cerca i ToDo che soddisfano tutti i termini della query.
+     * <p>
+     * I risultati sono ordinati mettendo prima i ToDo con più termini trovati nel titolo,
+     * poi per titolo.
+     * </p>
+     *
+     * @param query  La query analizzata.
+     * @param limite Il numero massimo di risultati da restituire.
+     * @return I ToDo trovati (lista vuota se la query è vuota).
+     */
+    public synchronized List<ToDo> cerca(QueryRicerca query, int limite) {
+        if (query.isVuota() || limite <= 0) {
+            return List.of();
+        }
+
+        // Una "lista di posting" per ogni parola (o prefisso) della query, partendo dalla più selettiva:
+        // solo la prima viene copiata, le altre servono per scartare i candidati.
+        List<List<Set<Integer>>> posting = new ArrayList<>();
+        for (QueryRicerca.Termine termine : query.getTermini()) {
+            List<String> parole = termine.parole();
+            for (int i = 0; i < parole.size(); i++) {
+                boolean prefisso = termine.prefisso() && i == parole.size() - 1;
+                List<Set<Integer>> perParola = postingPerParola(parole.get(i), prefisso);
+                if (perParola.isEmpty()) {
+                    return List.of();
+                }
+                posting.add(perParola);
+            }
+        }
+        posting.sort(Comparator.comparingInt(IndiceRicerca::dimensione));
+
+        Set<Integer> candidati = new HashSet<>();
+        for (Set<Integer> ids : posting.get(0)) {
+            candidati.addAll(ids);
+        }
+        for (List<Set<Integer>> perParola : posting.subList(1, posting.size())) {
+            candidati.removeIf(id -> !contiene(perParola, id));
+        }
+        for (QueryRicerca.Termine termine : query.getTermini()) {
+            if (termine.isFrase()) {
+                String frase = " " + String.join(" ", termine.parole()) + (termine.prefisso() ? "" : " ");
+                candidati.removeIf(id -> !voci.get(id).testo().contains(frase));
+            }
+        }
+
+        // Selezione dei primi "limite" risultati senza ordinare tutti i candidati.
+        Comparator<Risultato> ordine = Comparator.comparingInt(Risultato::punteggio).reversed()
+                .thenComparing(r -> r.voce().titolo());
+        PriorityQueue<Risultato> migliori = new PriorityQueue<>(ordine.reversed());
+        for (Integer id : candidati) {
+            Voce voce = voci.get(id);
+            Risultato risultato = new Risultato(voce, punteggioTitolo(voce, query));
+            if (migliori.size() < limite) {
+                migliori.add(risultato);
+            } else if (ordine.compare(risultato, migliori.peek()) < 0) {
+                migliori.poll();
+                migliori.add(risultato);
+            }
+        }
+        List<Risultato> risultati = new ArrayList<>(migliori);
+        risultati.sort(ordine);
+
+        List<ToDo> todos = new ArrayList<>(risultati.size());
+        for (Risultato risultato : risultati) {
+            todos.add(risultato.voce().toDo());
+        }
+        return todos;
+    }
+
+    /** @return Il numero di ToDo indicizzati. */
+    public synchronized int size() {
+        return voci.size();
+    }
+
+    /**
+     * Restituisce gli insiemi di ID sotto cui compare una parola: uno solo per la parola esatta,
+     * uno per ogni parola che inizia con il prefisso indicato altrimenti.
+     */
+    private List<Set<Integer>> postingPerParola(String parola, boolean prefisso) {
+        if (prefisso) {
+            SortedMap<String, Set<Integer>> intervallo = indice.subMap(parola, parola + Character.MAX_VALUE);
+            return new ArrayList<>(intervallo.values());
+        }
+        Set<Integer> ids = indice.get(parola);
+        return ids == null ? List.of() : List.of(ids);
+    }
+
+    private static int dimensione(List<Set<Integer>> posting) {
+        int totale = 0;
+        for (Set<Integer> ids : posting) {
+            totale += ids.size();
+        }
+        return totale;
+    }
+
+    private static boolean contiene(List<Set<Integer>> posting, Integer id) {
+        for (Set<Integer> ids : posting) {
+            if (ids.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Conta quanti termini (considerando la prima parola di ciascuno) compaiono nel titolo. */
+    private static int punteggioTitolo(Voce voce, QueryRicerca query) {
+        int punteggio = 0;
+        for (QueryRicerca.Termine termine : query.getTermini()) {
+            String prima = termine.parole().get(0);
+            boolean prefisso = termine.prefisso() && !termine.isFrase();
+            for (String parola : voce.paroleTitolo()) {
+                if (prefisso ? parola.startsWith(prima) : parola.equals(prima)) {
+                    punteggio++;
+                    break;
+                }
+            }
+        }
+        return punteggio;
+    }
+
+    /**
+     * Aggiunge al testo normalizzato e all'elenco le parole di un campo,
+     * ridotte a lettere e cifre in minuscolo come in {@link QueryRicerca}.
+     */
+    private static void aggiungiCampo(StringBuilder testo, List<String> parole, String campo) {
+        if (campo == null || campo.isBlank()) {
+            return;
+        }
+        StringBuilder parola = new StringBuilder();
+        for (int i = 0; i <= campo.length(); i++) {
+            char c = i < campo.length() ? campo.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                parola.append(Character.toLowerCase(c));
+            } else if (!parola.isEmpty()) {
+                parole.add(parola.toString());
+                testo.append(parola).append(' ');
+                parola.setLength(0);
+            }
+        }
+        testo.append(SEPARATORE_CAMPI);
+    }
+}
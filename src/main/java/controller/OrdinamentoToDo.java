@@ -0,0 +1,88 @@
+package controller;
+
+import model.ToDo;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Calcolo dei ranghi ({@code posizione}) che determinano l'ordine dei ToDo in una bacheca.
+ * <p>
+ * I ranghi sono interi "sparsi": i ToDo vengono numerati a intervalli di {@value #INTERVALLO},
+ * così che spostare un ToDo tra due vicini richieda solo di assegnargli il punto medio dei loro ranghi,
+ * senza rinumerare gli altri. Solo quando tra due vicini non resta spazio (dopo molti spostamenti
+ * nello stesso punto) la bacheca va ribilanciata con {@link #ribilancia(List)}.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+final class OrdinamentoToDo {
+
+    /** Distanza tra i ranghi di due ToDo consecutivi dopo un ribilanciamento o un inserimento in coda. */
+    static final int INTERVALLO = 1024;
+
+    private OrdinamentoToDo() {
+    }
+
+    /**
+     * Calcola il rango per un ToDo da aggiungere in fondo alla bacheca.
+     *
+     * @param ordinati I ToDo della bacheca, ordinati per rango.
+     * @return Il rango da assegnare, oppure vuoto se non c'è più spazio e la bacheca va ribilanciata.
+     */
+    static OptionalInt rangoInCoda(List<ToDo> ordinati) {
+        return rangoTra(ordinati.isEmpty() ? null : ordinati.get(ordinati.size() - 1), null);
+    }
+
+    /**
+     * Calcola il rango per un ToDo da inserire tra due vicini.
+     *
+     * @param prima Il ToDo che lo precede, oppure {@code null} se va inserito in testa.
+     * @param dopo  Il ToDo che lo segue, oppure {@code null} se va inserito in coda.
+     * @return Il rango (il punto medio tra i vicini), oppure vuoto se tra i due non c'è spazio.
+     */
+    static OptionalInt rangoTra(ToDo prima, ToDo dopo) {
+        long inferiore;
+        long superiore;
+        if (prima == null && dopo == null) {
+            return OptionalInt.of(INTERVALLO);
+        } else if (prima == null) {
+            superiore = dopo.getPosizione();
+            inferiore = superiore - 2L * INTERVALLO;
+        } else if (dopo == null) {
+            inferiore = prima.getPosizione();
+            superiore = inferiore + 2L * INTERVALLO;
+        } else {
+            inferiore = prima.getPosizione();
+            superiore = dopo.getPosizione();
+        }
+        long medio = (inferiore + superiore) / 2;
+        if (medio <= inferiore || medio >= superiore || medio < Integer.MIN_VALUE || medio > Integer.MAX_VALUE) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of((int) medio);
+    }
+
+    /**
+     * Rinumera i ToDo a intervalli regolari di {@value #INTERVALLO}, nell'ordine dato,
+     * aggiornandone il rango in memoria.
+     *
+     * @param ordinati I ToDo della bacheca nell'ordine desiderato.
+     * @return Gli ID dei soli ToDo il cui rango è cambiato, associati al nuovo rango.
+     */
+    static Map<Integer, Integer> ribilancia(List<ToDo> ordinati) {
+        Map<Integer, Integer> modificati = new LinkedHashMap<>();
+        for (int i = 0; i < ordinati.size(); i++) {
+            ToDo todo = ordinati.get(i);
+            int rango = (i + 1) * INTERVALLO;
+            if (todo.getPosizione() != rango) {
+                todo.setPosizione(rango);
+                modificati.put(todo.getId(), rango);
+            }
+        }
+        return modificati;
+    }
+}
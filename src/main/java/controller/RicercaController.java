@@ -1,14 +1,21 @@
 package controller;
 
+import dao.PaginaRicerca;
+import dao.QueryRicerca;
 import gui.SearchDialog;
 import model.Bacheca;
 import model.ToDo;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.Dimension;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 /**
  * Gestisce le funzionalità di ricerca dei ToDo all'interno dell'applicazione.
@@ -17,6 +24,10 @@ import java.awt.Dimension;
  * e il livello dati (DAO), permettendo all'utente di cercare attività
  * per titolo, descrizione, data di scadenza o visualizzare le scadenze odierne/passate.
  * </p>
+ * <p>
+ * Mentre l'utente digita, i risultati vengono cercati nell'{@link IndiceRicerca} in memoria
+ * (senza accessi al database); il pulsante "Cerca" esegue invece la ricerca completa sul database.
+ * </p>
  *
  * @author Utente
  * @version 1.1
@@ -29,6 +40,17 @@ public class RicercaController {
     /** La finestra di dialogo utilizzata per l'inserimento dei parametri di ricerca. */
     private SearchDialog searchDialog;
 
+    /** Numero di risultati mostrati per ogni pagina della ricerca testuale. */
+    private static final int RISULTATI_PER_PAGINA = 20;
+
+    private static final String TITOLO_RISULTATI = "Risultati Ricerca";
+
+    /** Attesa (in millisecondi) dopo l'ultimo tasto prima di aggiornare i risultati istantanei. */
+    private static final int RITARDO_RICERCA_ISTANTANEA_MS = 150;
+
+    /** Numero massimo di risultati istantanei mostrati sotto al campo di ricerca. */
+    private static final int MAX_RISULTATI_ISTANTANEI = 50;
+
     /**
      * Costruttore del controller di ricerca.
      *
@@ -55,16 +77,83 @@ public class RicercaController {
         searchDialog.getBtnCerca().addActionListener(e -> performSearch());
         searchDialog.getBtnScadenzaOdierna().addActionListener(e -> showTodayExpiringToDos());
         searchDialog.getBtnGiaScaduti().addActionListener(e -> showExpiredToDos());
+        configuraRicercaIstantanea();
 
         searchDialog.setVisible(true);
     }
 
+    /**
+     * Collega al campo di ricerca la ricerca istantanea: ogni modifica del testo (ri)avvia un
+     * {@link Timer}, e solo quando l'utente smette di scrivere per {@value #RITARDO_RICERCA_ISTANTANEA_MS} ms
+     * i risultati vengono cercati nell'indice in memoria. Il doppio click su un risultato ne mostra i dettagli.
+     */
+    private void configuraRicercaIstantanea() {
+        Timer timer = new Timer(RITARDO_RICERCA_ISTANTANEA_MS, e -> aggiornaRisultatiIstantanei());
+        timer.setRepeats(false);
+        searchDialog.getTxtSearchTerm().getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                timer.restart();
+            }
+        });
+
+        JList<ToDo> lista = searchDialog.getListaRisultatiIstantanei();
+        lista.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && lista.getSelectedValue() != null) {
+                    mainController.showToDoInfo(lista.getSelectedValue());
+                }
+            }
+        });
+    }
+
+    /**
+     * Cerca nell'indice in memoria il testo attualmente digitato e aggiorna l'elenco dei risultati istantanei.
+     * <p>
+     * Se il testo non termina con uno spazio, l'ultima parola è trattata come prefisso
+     * (l'utente la sta ancora scrivendo).
+     * </p>
+     */
+    private void aggiornaRisultatiIstantanei() {
+        String testo = searchDialog.getTxtSearchTerm().getText();
+        boolean parolaInCorso = !testo.isEmpty()
+                && !Character.isWhitespace(testo.charAt(testo.length() - 1))
+                && testo.charAt(testo.length() - 1) != '"';
+        QueryRicerca query = QueryRicerca.analizza(parolaInCorso ? testo + "*" : testo);
+        if (query.isVuota()) {
+            searchDialog.mostraRisultatiIstantanei(List.of());
+            searchDialog.setModalitaRicerca(" ");
+            return;
+        }
+
+        long inizio = System.nanoTime();
+        List<ToDo> risultati = mainController.getIndiceRicerca().cerca(query, MAX_RISULTATI_ISTANTANEI);
+        double millisecondi = (System.nanoTime() - inizio) / 1_000_000.0;
+
+        searchDialog.mostraRisultatiIstantanei(risultati);
+        searchDialog.setModalitaRicerca(String.format("Ricerca istantanea: %d risultati in %.2f ms (premi Cerca per la ricerca completa)",
+                risultati.size(), millisecondi));
+    }
+
     /**
      * Esegue la ricerca recuperando i criteri inseriti dall'utente nella dialog.
      * <p>
      * La logica segue questa priorità:
      * 1. Se il campo data è compilato, esegue una ricerca per scadenza (formato YYYY-MM-DD).
-     * 2. Se il campo data è vuoto ma c'è del testo, esegue una ricerca per titolo o descrizione.
+     * 2. Se il campo data è vuoto ma c'è del testo, esegue una ricerca testuale ordinata per
+     *    rilevanza su titolo, descrizione e attività (con prefissi {@code parola*} e frasi tra virgolette),
+     *    mostrando i risultati una pagina alla volta.
      * </p>
      * Gestisce l'eccezione {@link DateTimeParseException} se il formato della data non è valido.
      */
@@ -73,24 +162,102 @@ public class RicercaController {
         String scadenzaText = searchDialog.getTxtScadenzaSearch().getText();
 
         int currentUserId = mainController.getUtenteCorrente().getId();
-        List<ToDo> results = new ArrayList<>();
+        Supplier<List<ToDo>> ricerca;
 
         try {
             if (!scadenzaText.isEmpty()) {
                 LocalDate scadenzaCerca = LocalDate.parse(scadenzaText);
-                results = mainController.getToDoDAO().findToDosByScadenza(scadenzaCerca, currentUserId);
+                ricerca = () -> mainController.getToDoDAO().findToDosByScadenza(scadenzaCerca, currentUserId);
             } else if (!searchTerm.isEmpty()) {
-                results = mainController.getToDoDAO().findToDosByTerm(searchTerm, currentUserId);
+                QueryRicerca query = QueryRicerca.analizza(searchTerm);
+                if (query.isVuota()) {
+                    JOptionPane.showMessageDialog(searchDialog, "Il termine di ricerca non contiene parole valide.", "Info", JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                cercaPagina(query, 0);
+                return;
             } else {
                 JOptionPane.showMessageDialog(searchDialog, "Inserisci un termine o una data.", "Info", JOptionPane.INFORMATION_MESSAGE);
                 return;
             }
-            showSearchResults(results);
         } catch (DateTimeParseException _) {
             JOptionPane.showMessageDialog(searchDialog, "Formato data non valido. Usa YYYY-MM-DD.", "Errore", JOptionPane.ERROR_MESSAGE);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(searchDialog, "Errore durante la ricerca.", "Errore DB", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
+            return;
+        }
+        cercaInBackground(ricerca);
+    }
+
+    /**
+     * Esegue una ricerca sul database fuori dall'EDT e ne mostra i risultati al termine.
+     *
+     * @param ricerca La query da eseguire tramite il DAO.
+     */
+    private void cercaInBackground(Supplier<List<ToDo>> ricerca) {
+        mainController.getAsyncService().esegui(ricerca)
+                .thenAccept(this::showSearchResults)
+                .exceptionally(e -> {
+                    JOptionPane.showMessageDialog(searchDialog, "Errore durante la ricerca.", "Errore DB", JOptionPane.ERROR_MESSAGE);
+                    return null;
+                });
+    }
+
+    /**
+     * Esegue fuori dall'EDT la ricerca testuale di una pagina di risultati e la mostra.
+     *
+     * @param query  La query analizzata.
+     * @param pagina L'indice della pagina da mostrare (a partire da 0).
+     */
+    private void cercaPagina(QueryRicerca query, int pagina) {
+        int currentUserId = mainController.getUtenteCorrente().getId();
+        mainController.getAsyncService()
+                .esegui(() -> mainController.getToDoDAO().searchToDos(query, currentUserId, pagina, RISULTATI_PER_PAGINA))
+                .thenAccept(risultato -> mostraPaginaRicerca(query, risultato))
+                .exceptionally(e -> {
+                    JOptionPane.showMessageDialog(searchDialog, "Errore durante la ricerca.", "Errore DB", JOptionPane.ERROR_MESSAGE);
+                    return null;
+                });
+    }
+
+    /**
+     * Mostra una pagina di risultati della ricerca testuale, con i pulsanti per spostarsi
+     * alla pagina precedente o successiva quando disponibili.
+     *
+     * @param query     La query eseguita.
+     * @param risultato La pagina di risultati restituita dal DAO.
+     */
+    private void mostraPaginaRicerca(QueryRicerca query, PaginaRicerca risultato) {
+        searchDialog.setModalitaRicerca(risultato.fullText()
+                ? "Ricerca full-text (ordinata per rilevanza)"
+                : "Ricerca semplice: indice full-text non disponibile");
+
+        if (risultato.risultati().isEmpty() && risultato.pagina() == 0) {
+            JOptionPane.showMessageDialog(searchDialog, "Nessun ToDo trovato.", TITOLO_RISULTATI, JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        int primo = risultato.pagina() * risultato.dimensione() + 1;
+        String intestazione = "ToDo Trovati (" + primo + "-" + (primo + risultato.risultati().size() - 1) + "):\n";
+        JScrollPane scrollPane = creaElencoRisultati(intestazione, risultato.risultati());
+
+        List<String> opzioni = new ArrayList<>();
+        if (risultato.pagina() > 0) {
+            opzioni.add("< Precedenti");
+        }
+        if (risultato.altriRisultati()) {
+            opzioni.add("Successivi >");
+        }
+        opzioni.add("Chiudi");
+
+        int scelta = JOptionPane.showOptionDialog(searchDialog, scrollPane, TITOLO_RISULTATI, JOptionPane.DEFAULT_OPTION,
+                JOptionPane.INFORMATION_MESSAGE, null, opzioni.toArray(), opzioni.get(opzioni.size() - 1));
+        if (scelta < 0) {
+            return;
+        }
+        String opzione = opzioni.get(scelta);
+        if (opzione.startsWith("<")) {
+            cercaPagina(query, risultato.pagina() - 1);
+        } else if (opzione.endsWith(">")) {
+            cercaPagina(query, risultato.pagina() + 1);
         }
     }
 
@@ -100,8 +267,7 @@ public class RicercaController {
      */
     private void showTodayExpiringToDos() {
         int currentUserId = mainController.getUtenteCorrente().getId();
-        List<ToDo> expiringToday = mainController.getToDoDAO().findToDosScadenzaOggi(currentUserId);
-        showSearchResults(expiringToday);
+        cercaInBackground(() -> mainController.getToDoDAO().findToDosScadenzaOggi(currentUserId));
     }
 
     /**
@@ -114,8 +280,7 @@ public class RicercaController {
      */
     private void showExpiredToDos() {
         int currentUserId = mainController.getUtenteCorrente().getId();
-        List<ToDo> expired = mainController.getToDoDAO().findToDosScaduti(currentUserId);
-        showSearchResults(expired);
+        cercaInBackground(() -> mainController.getToDoDAO().findToDosScaduti(currentUserId));
     }
 
     /**
@@ -129,28 +294,41 @@ public class RicercaController {
      */
     private void showSearchResults(List<ToDo> results) {
         if (results.isEmpty()) {
-            JOptionPane.showMessageDialog(searchDialog, "Nessun ToDo trovato.", "Risultati Ricerca", JOptionPane.INFORMATION_MESSAGE);
+            JOptionPane.showMessageDialog(searchDialog, "Nessun ToDo trovato.", TITOLO_RISULTATI, JOptionPane.INFORMATION_MESSAGE);
         } else {
-            StringBuilder sb = new StringBuilder("ToDo Trovati:\n");
-            for (ToDo todo : results) {
-                sb.append("- ").append(todo.getTitolo());
-                if (todo.getScadenza() != null) {
-                    sb.append(" (Scadenza: ").append(todo.getScadenza()).append(")");
-                }
-                Bacheca bachecaTrovata = mainController.getUtenteCorrente().getBacheche().stream()
-                        .filter(b -> b.getId() == todo.getIdBacheca())
-                        .findFirst().orElse(null);
+            JScrollPane scrollPane = creaElencoRisultati("ToDo Trovati:\n", results);
+            JOptionPane.showMessageDialog(searchDialog, scrollPane, TITOLO_RISULTATI, JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
 
-                if (bachecaTrovata != null) {
-                    sb.append(" [Bacheca: ").append(bachecaTrovata.getTitolo()).append("]");
-                }
-                sb.append("\n");
+    /**
+     * Costruisce l'elenco testuale (scrollabile) dei ToDo trovati.
+     * Per ogni ToDo mostra il titolo, la scadenza (se presente) e la bacheca di appartenenza.
+     *
+     * @param intestazione La riga di intestazione dell'elenco.
+     * @param results      I ToDo da elencare.
+     * @return Il pannello scrollabile con l'elenco.
+     */
+    private JScrollPane creaElencoRisultati(String intestazione, List<ToDo> results) {
+        StringBuilder sb = new StringBuilder(intestazione);
+        for (ToDo todo : results) {
+            sb.append("- ").append(todo.getTitolo());
+            if (todo.getScadenza() != null) {
+                sb.append(" (Scadenza: ").append(todo.getScadenza()).append(")");
+            }
+            Bacheca bachecaTrovata = mainController.getUtenteCorrente().getBacheche().stream()
+                    .filter(b -> b.getId() == todo.getIdBacheca())
+                    .findFirst().orElse(null);
+
+            if (bachecaTrovata != null) {
+                sb.append(" [Bacheca: ").append(bachecaTrovata.getTitolo()).append("]");
             }
-            JTextArea textArea = new JTextArea(sb.toString());
-            textArea.setEditable(false);
-            JScrollPane scrollPane = new JScrollPane(textArea);
-            scrollPane.setPreferredSize(new Dimension(400, 250));
-            JOptionPane.showMessageDialog(searchDialog, scrollPane, "Risultati Ricerca", JOptionPane.INFORMATION_MESSAGE);
+            sb.append("\n");
         }
+        JTextArea textArea = new JTextArea(sb.toString());
+        textArea.setEditable(false);
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        scrollPane.setPreferredSize(new Dimension(400, 250));
+        return scrollPane;
     }
 }
\ No newline at end of file
@@ -0,0 +1,233 @@
+package controller;
+
+import model.Attivita;
+import model.Bacheca;
+import model.Checklist;
+import model.StatoAttivita;
+import model.StatoToDo;
+import model.TitoloBacheca;
+import model.ToDo;
+import model.Utente;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Istantanea su disco delle bacheche di un utente, con i rispettivi ToDo e checklist,
+ * usata per mostrare i dati subito dopo il login, prima che il database risponda.
+ * <p>
+ * Il formato è binario e compatto: un'intestazione (numero magico, versione, ID utente, istante
+ * di salvataggio) seguita dalle bacheche, ciascuna con i propri ToDo e ciascun ToDo con le proprie
+ * attività. Interi e date (in giorni dall'epoca) sono a lunghezza fissa, le stringhe sono in UTF-8
+ * precedute dalla lunghezza ({@code -1} per {@code null}), gli stati sono ordinali delle enum:
+ * cambiandone una va incrementata {@link #VERSIONE}.
+ * </p>
+ * <p>
+ * La lettura avviene tramite un file mappato in memoria, senza copie intermedie; la scrittura
+ * passa da un file temporaneo rinominato atomicamente, così che un'interruzione non lasci
+ * un'istantanea a metà. I ToDo letti sono segnati come "da confermare" finché non vengono
+ * sostituiti dai dati del database.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+final class SnapshotUtente {
+
+    /** Numero magico ("TDSN") all'inizio di ogni file. */
+    private static final int MAGIA = 0x5444534E;
+
+    /** Versione del formato. */
+    private static final short VERSIONE = 1;
+
+    /** Valore usato per una data di scadenza assente. */
+    private static final long NESSUNA_DATA = Long.MIN_VALUE;
+
+    private SnapshotUtente() {
+    }
+
+    /**
+     * Restituisce il file dell'istantanea di un utente.
+     *
+     * @param cartella La cartella delle istantanee.
+     * @param idUtente L'ID dell'utente.
+     * @return Il percorso del file (che può non esistere).
+     */
+    static Path percorso(Path cartella, int idUtente) {
+        return cartella.resolve("snapshot-" + idUtente + ".bin");
+    }
+
+    /**
+     * Codifica le bacheche dell'utente. Va invocato sul thread che possiede il modello (l'EDT).
+     *
+     * @param utente L'utente, con le bacheche caricate.
+     * @return Il contenuto del file.
+     */
+    static byte[] codifica(Utente utente) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(MAGIA);
+            out.writeShort(VERSIONE);
+            out.writeInt(utente.getId());
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(utente.getBacheche().size());
+            for (Bacheca b : utente.getBacheche()) {
+                out.writeInt(b.getId());
+                out.writeByte(b.getTitolo().ordinal());
+                scriviStringa(out, b.getDescrizione());
+                out.writeInt(b.getToDoList().size());
+                for (ToDo t : b.getToDoList()) {
+                    scriviToDo(out, t);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void scriviToDo(DataOutputStream out, ToDo t) throws IOException {
+        out.writeInt(t.getId());
+        scriviStringa(out, t.getTitolo());
+        scriviStringa(out, t.getDescrizione());
+        out.writeLong(t.getScadenza() != null ? t.getScadenza().toEpochDay() : NESSUNA_DATA);
+        scriviStringa(out, t.getImagePath());
+        scriviStringa(out, t.getURL());
+        scriviStringa(out, t.getColoreSfondo());
+        out.writeByte(t.getStato().ordinal());
+        out.writeInt(t.getPosizione());
+        out.writeInt(t.getIdAutore());
+        out.writeInt(t.getIdBacheca());
+        List<Attivita> attivita = t.getChecklist() != null ? t.getChecklist().getAttivita() : List.of();
+        out.writeInt(attivita.size());
+        for (Attivita a : attivita) {
+            out.writeInt(a.getId());
+            scriviStringa(out, a.getNome());
+            out.writeByte(a.getStato().ordinal());
+        }
+    }
+
+    private static void scriviStringa(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Scrive l'istantanea, sostituendo atomicamente quella precedente.
+     *
+     * @param file Il file di destinazione.
+     * @param dati Il contenuto prodotto da {@link #codifica(Utente)}.
+     * @throws IOException Se il file non può essere scritto.
+     */
+    static void scrivi(Path file, byte[] dati) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporaneo = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporaneo, dati);
+            Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaneo);
+        }
+    }
+
+    /**
+     * Legge l'istantanea di un utente. Bacheche e ToDo vengono collegati all'utente e
+     * i ToDo segnati come da confermare.
+     *
+     * @param file   Il file dell'istantanea.
+     * @param utente L'utente che ha effettuato l'accesso.
+     * @return Le bacheche lette.
+     * @throws IOException Se il file non è leggibile, è di un'altra versione o di un altro utente.
+     */
+    static List<Bacheca> leggi(Path file, Utente utente) throws IOException {
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+            if (in.getInt() != MAGIA || in.getShort() != VERSIONE) {
+                throw new IOException("Formato dell'istantanea non riconosciuto: " + file);
+            }
+            if (in.getInt() != utente.getId()) {
+                throw new IOException("L'istantanea appartiene a un altro utente: " + file);
+            }
+            in.getLong();
+            int numeroBacheche = in.getInt();
+            List<Bacheca> bacheche = new ArrayList<>();
+            for (int i = 0; i < numeroBacheche; i++) {
+                Bacheca b = new Bacheca(in.getInt(), TitoloBacheca.values()[in.get()], leggiStringa(in), utente.getId());
+                b.setProprietario(utente);
+                int numeroToDo = in.getInt();
+                List<ToDo> todos = new ArrayList<>();
+                for (int j = 0; j < numeroToDo; j++) {
+                    ToDo t = leggiToDo(in);
+                    t.setBacheca(b);
+                    t.segnaSalvato();
+                    todos.add(t);
+                }
+                b.setToDoList(todos);
+                bacheche.add(b);
+            }
+            return bacheche;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Istantanea danneggiata: " + file, e);
+        }
+    }
+
+    private static ToDo leggiToDo(ByteBuffer in) {
+        int id = in.getInt();
+        String titolo = leggiStringa(in);
+        String descrizione = leggiStringa(in);
+        long giorno = in.getLong();
+        String imagePath = leggiStringa(in);
+        String url = leggiStringa(in);
+        String coloreSfondo = leggiStringa(in);
+        StatoToDo stato = StatoToDo.values()[in.get()];
+        int posizione = in.getInt();
+
+        ToDo t = new ToDo(id, titolo, descrizione, giorno == NESSUNA_DATA ? null : LocalDate.ofEpochDay(giorno),
+                imagePath, url, coloreSfondo, posizione, null);
+        t.setStato(stato);
+        t.setIdAutore(in.getInt());
+        t.setIdBacheca(in.getInt());
+
+        int numeroAttivita = in.getInt();
+        List<Attivita> attivita = new ArrayList<>();
+        for (int k = 0; k < numeroAttivita; k++) {
+            attivita.add(new Attivita(in.getInt(), id, leggiStringa(in), StatoAttivita.values()[in.get()]));
+        }
+        Checklist checklist = new Checklist();
+        checklist.setAttivita(attivita);
+        t.setChecklist(checklist);
+        t.setDaConfermare(true);
+        return t;
+    }
+
+    private static String leggiStringa(ByteBuffer in) {
+        int lunghezza = in.getInt();
+        if (lunghezza < 0) {
+            return null;
+        }
+        if (lunghezza > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] utf8 = new byte[lunghezza];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
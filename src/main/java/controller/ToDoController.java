@@ -2,17 +2,33 @@ package controller;
 
 import gui.*;
 import model.*;
+import database.ConnectionPool;
+import database.AscoltatoreModifiche;
 import database.DatabaseConnection;
+import database.SchemaMigrator;
 import dao.*;
 import dao.postgresimpl.*;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import javax.sql.DataSource;
 
 import gui.RegistrazioneDialog;
 import model.TitoloBacheca;
@@ -40,8 +56,21 @@ public class ToDoController {
     private static final String TITOLO_ERRORE = "Errore";
     private static final String TITOLO_SUCCESSO = "Successo";
 
+    /** Numero di ToDo per pagina nel caricamento progressivo delle bacheche dopo il login. */
+    private static final int DIMENSIONE_PAGINA_CARICAMENTO = 200;
+
+    /** Cartella delle istantanee locali dei dati utente (proprietà di sistema {@code todo.snapshot.dir}). */
+    private static final Path CARTELLA_SNAPSHOT = Path.of(System.getProperty("todo.snapshot.dir",
+            System.getProperty("user.home") + "/.todo-manager"));
+
     private static final Logger LOGGER = Logger.getLogger(ToDoController.class.getName());
 
+    /** Intervallo della sincronizzazione periodica delle modifiche, in secondi (0 per disattivarla). */
+    private static final int INTERVALLO_SINCRONIZZAZIONE_SECONDI = Integer.getInteger("todo.sync.intervalloSecondi", 60);
+
+    /** Tentativi di salvataggio in background, con unione automatica, di un ToDo modificato anche da altri. */
+    private static final int TENTATIVI_SALVATAGGIO = 3;
+
     /** La finestra di login iniziale dell'applicazione. */
     private LoginFrame loginFrame;
 
@@ -60,12 +89,15 @@ public class ToDoController {
     /** Controller delegato alla gestione della condivisione dei ToDo con altri utenti. */
     private CondivisioneController condivisioneController;
 
-    /** Connessione attiva al database PostgreSQL. */
-    private Connection connection;
+    /** Pool di connessioni al database PostgreSQL condiviso da tutti i DAO. */
+    private DataSource dataSource;
 
     /** Data Access Object per le operazioni sulla tabella 'utente'. */
     private UtenteDAO utenteDAO;
 
+    /** Cache degli utenti dietro {@link #utenteDAO}, tenuta per registrarne le statistiche. */
+    private CacheUtenteDAO cacheUtenti;
+
     /** Data Access Object per le operazioni sulla tabella 'bacheca'. */
     private BachecaDAO bachecaDAO;
 
@@ -78,23 +110,67 @@ public class ToDoController {
     /** Data Access Object per le operazioni sulla tabella 'condivisione'. */
     private CondivisioneDAO condivisioneDAO;
 
+    /** Pannelli delle bacheche visualizzati nel MainFrame, indicizzati per ID della bacheca. */
+    private final Map<Integer, BachecaPanel> bachechePanels = new HashMap<>();
+
+    /** Latenze e numero di query di ogni metodo DAO, anche per azione dell'interfaccia (pubblicate via JMX). */
+    private final MetricheDAO metricheDAO = new MetricheDAO();
+
+    /** Esegue le chiamate ai DAO fuori dall'Event Dispatch Thread. */
+    private final AsyncService asyncService = new AsyncService(metricheDAO);
+
+    /** Indice in memoria dei ToDo caricati, usato dalla ricerca istantanea. */
+    private final IndiceRicerca indiceRicerca = new IndiceRicerca();
+
+    /**
+     * Indica se il modello contiene tutti i dati dell'utente confermati dal database,
+     * quindi se può essere salvato nell'istantanea locale (vedi {@link SnapshotUtente}).
+     */
+    private boolean datiCompleti = false;
+
+    /** Riceve dal database gli ID dei ToDo modificati da altri utenti, per applicarli senza ricaricare tutto. */
+    private AscoltatoreModifiche ascoltatoreModifiche;
+
+    /**
+     * Watermark dell'ultima lettura dal database (vedi {@link ToDoDAO#getModificheDal(long, int)}),
+     * oppure 0 se non è disponibile e la sincronizzazione deve ricaricare tutto. Usato solo sull'EDT.
+     */
+    private long watermarkModifiche = 0;
+
+    /** Sincronizzazione periodica, di riserva rispetto alle notifiche (vedi {@link #sincronizzaModifiche()}). */
+    private Timer timerSincronizzazione;
+
     /**
      * Costruttore del controller.
-     * Inizializza la connessione al database, istanzia i DAO e i sotto-controller,
-     * e avvia la procedura di login.
+     * Inizializza il pool di connessioni al database (verificando che il database sia raggiungibile),
+     * applica le eventuali migrazioni dello schema (terminando l'applicazione se non riescono), istanzia i DAO e i sotto-controller, e avvia la procedura di login.
      */
     public ToDoController(){
         try {
-            this.connection = DatabaseConnection.getConnection();
-            if (this.connection == null) {
-                throw new SQLException("Connessione fallita!");
+            ConnectionPool pool = DatabaseConnection.getDataSource();
+            pool.setOsservatoreIstruzioni(metricheDAO::istruzioneSqlEseguita);
+            this.dataSource = pool;
+            try (Connection verifica = this.dataSource.getConnection()) {
+                if (!verifica.isValid(2)) {
+                    throw new SQLException("Connessione fallita!");
+                }
+            }
+            if (!new SchemaMigrator(this.dataSource).migra()) {
+                LOGGER.severe("Schema del database non aggiornato: avvio interrotto");
+                JOptionPane.showMessageDialog(null, "Impossibile aggiornare lo schema del database.\n"
+                        + "È richiesto PostgreSQL " + SchemaMigrator.getVersioneMinimaPostgres() + " o successivo; "
+                        + "i dettagli dell'errore sono nel log.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
+                System.exit(1);
             }
 
-            this.utenteDAO = new PostgresUtenteDAO(this.connection);
-            this.bachecaDAO = new PostgresBachecaDAO(this.connection);
-            this.attivitaDAO = new PostgresAttivitaDAO(this.connection);
-            this.condivisioneDAO = new PostgresCondivisioneDAO(this.connection);
-            this.toDoDAO = new PostgresToDoDAO(this.connection, this.utenteDAO, this.attivitaDAO, this.condivisioneDAO);
+            this.cacheUtenti = new CacheUtenteDAO(new PostgresUtenteDAO(this.dataSource));
+            this.utenteDAO = metricheDAO.strumenta(UtenteDAO.class, cacheUtenti);
+            this.bachecaDAO = metricheDAO.strumenta(BachecaDAO.class, new PostgresBachecaDAO(this.dataSource));
+            this.attivitaDAO = metricheDAO.strumenta(AttivitaDAO.class, new PostgresAttivitaDAO(this.dataSource));
+            this.condivisioneDAO = metricheDAO.strumenta(CondivisioneDAO.class, new PostgresCondivisioneDAO(this.dataSource));
+            this.toDoDAO = metricheDAO.strumenta(ToDoDAO.class,
+                    new PostgresToDoDAO(this.dataSource, this.utenteDAO, this.attivitaDAO, this.condivisioneDAO));
+            metricheDAO.pubblicaJmx();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Errore fatale di connessione al Database", e);
             JOptionPane.showMessageDialog(null, "Errore fatale di connessione al Database.\n" + e.getMessage(), TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
@@ -113,19 +189,41 @@ public class ToDoController {
     private void initLogin(){
         loginFrame = new LoginFrame();
 
-        loginFrame.getLoginButton().addActionListener(e -> {
+        loginFrame.getLoginButton().addActionListener(e -> misuraAzione("Login", () -> {
             String username = loginFrame.getUserField().getText();
             String password = new String(loginFrame.getPassField().getPassword());
-            Utente utente = utenteDAO.getUtenteByLogin(username);
-            if(utente != null && utente.getPassword().equals(password)) {
-                utenteCorrente = utente;
-                caricaDatiUtente(utenteCorrente);
-                apriMainFrame(utente);
-                loginFrame.dispose();
-            } else {
-                JOptionPane.showMessageDialog(loginFrame, "Credenziali errate", "Errore login", JOptionPane.ERROR_MESSAGE);
-            }
-        });
+            loginFrame.getLoginButton().setEnabled(false);
+            asyncService.esegui(() -> {
+                Utente utente = utenteDAO.getUtenteByLogin(username);
+                if (utente == null || !utente.getPassword().equals(password)) {
+                    return null;
+                }
+                List<Bacheca> daSnapshot = leggiSnapshot(utente);
+                utente.getBacheche().clear();
+                utente.getBacheche().addAll(daSnapshot != null ? daSnapshot : leggiSoloBacheche(utente));
+                return new Accesso(utente, daSnapshot != null);
+            }).thenAccept(accesso -> {
+                if (accesso != null) {
+                    Utente utente = accesso.utente();
+                    utenteCorrente = utente;
+                    apriMainFrame(utente);
+                    loginFrame.dispose();
+                    avviaAscoltoModifiche(utente);
+                    if (accesso.daSnapshot()) {
+                        riconciliaSnapshot(utente);
+                    } else {
+                        caricaToDoProgressivamente(utente);
+                    }
+                } else {
+                    loginFrame.getLoginButton().setEnabled(true);
+                    JOptionPane.showMessageDialog(loginFrame, "Credenziali errate", "Errore login", JOptionPane.ERROR_MESSAGE);
+                }
+            }).exceptionally(ex -> {
+                loginFrame.getLoginButton().setEnabled(true);
+                JOptionPane.showMessageDialog(loginFrame, "Errore di connessione al database.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
+                return null;
+            });
+        }));
         loginFrame.getRegisterButton().addActionListener(e ->
             openRegistrazioneDialog()
         );
@@ -157,12 +255,11 @@ public class ToDoController {
                 return;
             }
 
-            if (utenteDAO.getUtenteByLogin(login) != null) {
-                JOptionPane.showMessageDialog(dialog, "Questo login è già in uso. Scegline un altro.", TITOLO_ERRORE, JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            try {
+            dialog.getBtnConferma().setEnabled(false);
+            asyncService.esegui(() -> {
+                if (utenteDAO.getUtenteByLogin(login) != null) {
+                    return false;
+                }
                 Utente nuovoUtente = new Utente(nome, cognome, login, pass);
                 utenteDAO.addUtente(nuovoUtente);
                 Bacheca uni = new Bacheca(0, TitoloBacheca.UNIVERSITA, "Attività universitarie", nuovoUtente.getId());
@@ -171,12 +268,20 @@ public class ToDoController {
                 bachecaDAO.addBacheca(uni);
                 bachecaDAO.addBacheca(lavoro);
                 bachecaDAO.addBacheca(tempo);
-                JOptionPane.showMessageDialog(dialog, "Registrazione completata! Ora puoi effettuare il login.", TITOLO_SUCCESSO, JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-            } catch (Exception ex) {
+                return true;
+            }).thenAccept(registrato -> {
+                dialog.getBtnConferma().setEnabled(true);
+                if (Boolean.TRUE.equals(registrato)) {
+                    JOptionPane.showMessageDialog(dialog, "Registrazione completata! Ora puoi effettuare il login.", TITOLO_SUCCESSO, JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                } else {
+                    JOptionPane.showMessageDialog(dialog, "Questo login è già in uso. Scegline un altro.", TITOLO_ERRORE, JOptionPane.ERROR_MESSAGE);
+                }
+            }).exceptionally(ex -> {
+                dialog.getBtnConferma().setEnabled(true);
                 JOptionPane.showMessageDialog(dialog, "Errore durante il salvataggio nel database.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace();
-            }
+                return null;
+            });
         });
         dialog.setVisible(true);
     }
@@ -186,21 +291,448 @@ public class ToDoController {
      * Questo metodo recupera:
      * 1. Le bacheche di proprietà dell'utente.
      * 2. I ToDo all'interno di ciascuna bacheca (inclusi quelli condivisi da altri utenti).
+     * <p>
+     * Esegue query sul database: va invocato fuori dall'EDT (ad esempio tramite {@link AsyncService})
+     * e solo su un utente non ancora mostrato nell'interfaccia. Per ricaricare i dati
+     * dell'utente corrente usare {@link #ricaricaDatiUtente()}.
+     * </p>
      *
      * @param utente L'utente di cui caricare i dati.
      */
     public void caricaDatiUtente(Utente utente) {
-        List<Bacheca> bacheche = bachecaDAO.getBachecaByUserId(utente.getId());
-        for (Bacheca b : bacheche) {
-            b.setProprietario(utente);
+        List<Bacheca> bacheche = leggiBachecheUtente(utente);
+        utente.getBacheche().clear();
+        utente.getBacheche().addAll(bacheche);
+        ricostruisciIndiceRicerca(utente);
+        if (cacheUtenti != null) {
+            cacheUtenti.logStatistiche();
+        }
+    }
+
+    /**
+     * Ricostruisce l'indice di ricerca in memoria a partire da tutti i ToDo delle bacheche dell'utente.
+     *
+     * @param utente L'utente i cui dati sono appena stati caricati.
+     */
+    private void ricostruisciIndiceRicerca(Utente utente) {
+        List<ToDo> todos = new ArrayList<>();
+        for (Bacheca b : utente.getBacheche()) {
+            todos.addAll(b.getToDoList());
+        }
+        indiceRicerca.ricostruisci(todos);
+    }
+
+    /**
+     * Legge dal database le bacheche dell'utente, complete dei rispettivi ToDo,
+     * senza modificare il modello già visualizzato. I ToDo delle diverse bacheche
+     * vengono letti in parallelo (vedi {@link AsyncService#perOgniInParallelo}).
+     *
+     * @param utente L'utente di cui leggere i dati.
+     * @return Le bacheche lette.
+     */
+    private List<Bacheca> leggiBachecheUtente(Utente utente) {
+        List<Bacheca> bacheche = leggiSoloBacheche(utente);
+        asyncService.perOgniInParallelo(bacheche, b -> {
             List<ToDo> todos = toDoDAO.getToDosForBachecaAndUtente(b.getId(), utente.getId());
             b.setToDoList(todos);
             for (ToDo t : todos) {
                 t.setBacheca(b);
             }
+        });
+        return bacheche;
+    }
+
+    /**
+     * Come {@link #leggiBachecheUtente(Utente)}, ma legge prima il watermark delle modifiche,
+     * così che la sincronizzazione successiva includa tutto ciò che cambia durante la lettura.
+     */
+    private BachecheLette leggiBachecheConWatermark(Utente utente) {
+        long watermark = leggiWatermark();
+        return new BachecheLette(leggiBachecheUtente(utente), watermark);
+    }
+
+    /**
+     * Legge il watermark delle modifiche; se non è disponibile (es. migrazione V5 non applicata)
+     * restituisce 0, e le sincronizzazioni successive ricaricheranno tutto.
+     */
+    private long leggiWatermark() {
+        try {
+            return toDoDAO.getWatermarkModifiche();
+        } catch (IllegalStateException e) {
+            LOGGER.log(Level.WARNING, "Watermark delle modifiche non disponibile", e);
+            return 0;
         }
-        utente.getBacheche().clear();
-        utente.getBacheche().addAll(bacheche);
+    }
+
+    /**
+     * Legge dal database le sole bacheche dell'utente, con la lista dei ToDo ancora vuota.
+     *
+     * @param utente L'utente proprietario.
+     * @return Le bacheche lette.
+     */
+    private List<Bacheca> leggiSoloBacheche(Utente utente) {
+        List<Bacheca> bacheche = bachecaDAO.getBachecaByUserId(utente.getId());
+        for (Bacheca b : bacheche) {
+            b.setProprietario(utente);
+            b.setToDoList(new ArrayList<>());
+        }
+        return bacheche;
+    }
+
+    /**
+     * Carica i ToDo delle bacheche dell'utente appena mostrato nel MainFrame.
+     * <p>
+     * Le bacheche vengono lette in parallelo, ciascuna su un thread virtuale, e a pagine di
+     * {@value #DIMENSIONE_PAGINA_CARICAMENTO} ToDo: ogni pagina viene mostrata nel relativo
+     * {@link BachecaPanel} appena arriva, quindi la finestra è utilizzabile subito, qualunque sia
+     * il numero di ToDo. Al termine viene ricostruito l'indice di ricerca.
+     * </p>
+     *
+     * @param utente L'utente corrente, con le bacheche già lette (vedi {@link #leggiSoloBacheche(Utente)}).
+     */
+    private void caricaToDoProgressivamente(Utente utente) {
+        List<Bacheca> bacheche = List.copyOf(utente.getBacheche());
+        for (Bacheca b : bacheche) {
+            BachecaPanel bachecaPanel = bachechePanels.get(b.getId());
+            if (bachecaPanel != null) {
+                bachecaPanel.setInCaricamento(true);
+            }
+        }
+        asyncService.esegui(() -> {
+            long watermark = leggiWatermark();
+            asyncService.perOgniInParallelo(bacheche, b -> {
+                CursoreToDo cursore = null;
+                PaginaToDo pagina;
+                do {
+                    pagina = toDoDAO.getToDosForBachecaAndUtente(b.getId(), utente.getId(), cursore, DIMENSIONE_PAGINA_CARICAMENTO);
+                    PaginaToDo arrivata = pagina;
+                    SwingUtilities.invokeLater(() -> mostraPaginaCaricata(b, arrivata));
+                    cursore = pagina.successivo();
+                } while (pagina.haSuccessiva());
+            });
+            return watermark;
+        }).thenAccept(watermark -> {
+            watermarkModifiche = watermark;
+            ricostruisciIndiceRicerca(utente);
+            datiCompleti = true;
+            salvaSnapshot(true);
+            if (cacheUtenti != null) {
+                cacheUtenti.logStatistiche();
+            }
+        }).exceptionally(ex -> {
+            bachechePanels.values().forEach(bachecaPanel -> bachecaPanel.setInCaricamento(false));
+            JOptionPane.showMessageDialog(mainFrame, "Errore durante il caricamento dei ToDo.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
+            return null;
+        });
+    }
+
+    /**
+     * Legge l'istantanea locale dei dati dell'utente, se presente e valida.
+     *
+     * @param utente L'utente che ha effettuato l'accesso.
+     * @return Le bacheche dell'istantanea (con i ToDo da confermare), oppure {@code null}.
+     */
+    private List<Bacheca> leggiSnapshot(Utente utente) {
+        Path file = SnapshotUtente.percorso(CARTELLA_SNAPSHOT, utente.getId());
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return SnapshotUtente.leggi(file, utente);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Istantanea locale non utilizzabile, verrà ricreata", e);
+            return null;
+        }
+    }
+
+    /**
+     * Salva l'istantanea locale dei dati dell'utente corrente, se il modello è completo
+     * e confermato dal database. Va invocato sull'EDT, che codifica il modello; la scrittura
+     * del file avviene su un thread virtuale, oppure subito se l'applicazione sta per chiudersi.
+     *
+     * @param inBackground {@code false} per attendere la fine della scrittura.
+     */
+    private void salvaSnapshot(boolean inBackground) {
+        if (!datiCompleti || utenteCorrente == null) {
+            return;
+        }
+        Path file = SnapshotUtente.percorso(CARTELLA_SNAPSHOT, utenteCorrente.getId());
+        byte[] dati = SnapshotUtente.codifica(utenteCorrente);
+        Runnable scrittura = () -> {
+            try {
+                SnapshotUtente.scrivi(file, dati);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Impossibile salvare l'istantanea locale", e);
+            }
+        };
+        if (inBackground) {
+            Thread.ofVirtual().start(scrittura);
+        } else {
+            scrittura.run();
+        }
+    }
+
+    /**
+     * Confronta con il database i dati mostrati dall'istantanea locale.
+     * <p>
+     * I ToDo dell'istantanea restano in grigio e non modificabili finché la rilettura completa
+     * (in parallelo per bacheca) non termina; a quel punto il modello viene sostituito e i pannelli
+     * aggiornano solo le righe cambiate. I ToDo creati nel frattempo vengono mantenuti.
+     * </p>
+     *
+     * @param utente L'utente corrente, con le bacheche lette dall'istantanea.
+     */
+    private void riconciliaSnapshot(Utente utente) {
+        ricostruisciIndiceRicerca(utente);
+        bachechePanels.values().forEach(bachecaPanel -> bachecaPanel.setInCaricamento(true));
+        asyncService.esegui(() -> leggiBachecheConWatermark(utente)).thenAccept(lette -> {
+            List<Bacheca> bacheche = lette.bacheche();
+            conservaToDoNuovi(utente.getBacheche(), bacheche);
+            utente.getBacheche().clear();
+            utente.getBacheche().addAll(bacheche);
+            watermarkModifiche = lette.watermark();
+            ricostruisciIndiceRicerca(utente);
+            refreshMainFrameToDos();
+            bachechePanels.values().forEach(bachecaPanel -> bachecaPanel.setInCaricamento(false));
+            datiCompleti = true;
+            salvaSnapshot(true);
+        }).exceptionally(ex -> {
+            bachechePanels.values().forEach(bachecaPanel -> bachecaPanel.setInCaricamento(false));
+            JOptionPane.showMessageDialog(mainFrame, "Impossibile aggiornare i dati dal database:\n"
+                    + "i ToDo in grigio potrebbero non essere aggiornati.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
+            return null;
+        });
+    }
+
+    /**
+     * Riporta nelle bacheche appena lette i ToDo già confermati che non vi compaiono
+     * (es. creati dall'utente mentre la lettura era in corso).
+     */
+    private static void conservaToDoNuovi(List<Bacheca> precedenti, List<Bacheca> lette) {
+        Map<Integer, Bacheca> lettePerId = new HashMap<>();
+        for (Bacheca b : lette) {
+            lettePerId.put(b.getId(), b);
+        }
+        for (Bacheca precedente : precedenti) {
+            Bacheca letta = lettePerId.get(precedente.getId());
+            if (letta == null) {
+                continue;
+            }
+            Set<Integer> presenti = new HashSet<>();
+            for (ToDo t : letta.getToDoList()) {
+                presenti.add(t.getId());
+            }
+            for (ToDo t : precedente.getToDoList()) {
+                if (!t.isDaConfermare() && presenti.add(t.getId())) {
+                    t.setBacheca(letta);
+                    letta.getToDoList().add(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggiunge al modello e al pannello di una bacheca una pagina di ToDo appena letta.
+     * I ToDo già presenti (es. creati dall'utente durante il caricamento) vengono mantenuti.
+     *
+     * @param bacheca La bacheca a cui appartiene la pagina.
+     * @param pagina  La pagina letta.
+     */
+    private void mostraPaginaCaricata(Bacheca bacheca, PaginaToDo pagina) {
+        Set<Integer> presenti = new HashSet<>();
+        for (ToDo t : bacheca.getToDoList()) {
+            presenti.add(t.getId());
+        }
+        for (ToDo t : pagina.todos()) {
+            if (presenti.add(t.getId())) {
+                t.setBacheca(bacheca);
+                bacheca.getToDoList().add(t);
+            }
+        }
+        BachecaPanel bachecaPanel = bachechePanels.get(bacheca.getId());
+        if (bachecaPanel != null) {
+            if (bachecaPanel.getBacheca() == bacheca) {
+                bacheca.getToDoList().sort(Comparator.comparingInt(ToDo::getPosizione));
+                bachecaPanel.sincronizzaToDo(bacheca.getToDoList());
+            }
+            if (!pagina.haSuccessiva()) {
+                bachecaPanel.setInCaricamento(false);
+            }
+        }
+    }
+
+    /**
+     * Ricarica in background le bacheche dell'utente corrente e, una volta lette,
+     * le sostituisce nel modello e aggiorna il MainFrame sull'EDT.
+     *
+     * @return Un future completato sull'EDT a ricaricamento avvenuto.
+     */
+    public CompletableFuture<Void> ricaricaDatiUtente() {
+        Utente utente = utenteCorrente;
+        return asyncService.esegui(() -> leggiBachecheConWatermark(utente)).thenAccept(lette -> {
+            utente.getBacheche().clear();
+            utente.getBacheche().addAll(lette.bacheche());
+            watermarkModifiche = lette.watermark();
+            ricostruisciIndiceRicerca(utente);
+            refreshMainFrameToDos();
+            salvaSnapshot(true);
+        });
+    }
+
+    /**
+     * Avvia l'ascolto delle modifiche fatte da altri client ai ToDo (vedi {@link AscoltatoreModifiche}).
+     * <p>
+     * Gli ID notificati vengono riletti sul thread dell'ascoltatore e applicati sull'EDT con
+     * {@link #applicaModificheRemote(Set, Map)}; dopo una riconnessione, quando alcune notifiche
+     * possono essere andate perse, i dati vengono invece ricaricati per intero.
+     * </p>
+     *
+     * @param utente L'utente corrente.
+     */
+    private void avviaAscoltoModifiche(Utente utente) {
+        ascoltatoreModifiche = new AscoltatoreModifiche(ids -> {
+            try {
+                Map<Integer, List<ToDo>> perBacheca = toDoDAO.getToDosVisibiliByIds(ids, utente.getId());
+                SwingUtilities.invokeLater(() -> applicaModificheRemote(ids, perBacheca));
+            } catch (IllegalStateException e) {
+                LOGGER.log(Level.WARNING, "Modifiche remote non applicate, verranno lette dal watermark", e);
+                SwingUtilities.invokeLater(this::sincronizzaModifiche);
+            }
+        }, () -> SwingUtilities.invokeLater(this::sincronizzaModifiche));
+        ascoltatoreModifiche.avvia();
+        if (INTERVALLO_SINCRONIZZAZIONE_SECONDI > 0) {
+            timerSincronizzazione = new Timer(INTERVALLO_SINCRONIZZAZIONE_SECONDI * 1000, e -> sincronizzaModifiche());
+            timerSincronizzazione.start();
+        }
+    }
+
+    /**
+     * Applica le modifiche avvenute dall'ultima lettura, leggendo solo le righe cambiate
+     * (vedi {@link ToDoDAO#getModificheDal(long, int)}). Viene eseguita periodicamente e dopo
+     * una riconnessione dell'ascoltatore, quando alcune notifiche possono essere andate perse.
+     * Se il watermark non è disponibile, o la lettura non riesce, ripiega su {@link #ricaricaDatiUtente()}.
+     */
+    private void sincronizzaModifiche() {
+        Utente utente = utenteCorrente;
+        long watermark = watermarkModifiche;
+        if (utente == null || !datiCompleti) {
+            return;
+        }
+        if (watermark == 0) {
+            ricaricaDatiUtente();
+            return;
+        }
+        asyncService.esegui(() -> toDoDAO.getModificheDal(watermark, utente.getId())).thenAccept(modifiche -> {
+            if (!modifiche.isVuota()) {
+                Set<Integer> ids = new HashSet<>(modifiche.eliminati());
+                for (List<ToDo> todos : modifiche.perBacheca().values()) {
+                    for (ToDo t : todos) {
+                        ids.add(t.getId());
+                    }
+                }
+                applicaModificheRemote(ids, modifiche.perBacheca());
+            }
+            watermarkModifiche = Math.max(watermarkModifiche, modifiche.watermark());
+        }).exceptionally(ex -> {
+            LOGGER.log(Level.WARNING, "Sincronizzazione incrementale non riuscita, ricarico tutti i dati", ex);
+            ricaricaDatiUtente();
+            return null;
+        });
+    }
+
+    /**
+     * Applica al modello e ai pannelli i ToDo modificati da altri client.
+     * <p>
+     * I ToDo notificati vengono sostituiti (o spostati) con la versione appena letta, aggiunti se
+     * sono nuovi per l'utente e rimossi se non sono più visibili; sono aggiornate solo le bacheche
+     * coinvolte. I ToDo con modifiche locali non ancora salvate non vengono toccati.
+     * </p>
+     *
+     * @param ids        Gli ID notificati.
+     * @param perBacheca I ToDo ancora visibili, per ID della bacheca dell'utente (vedi {@link ToDoDAO#getToDosVisibiliByIds}).
+     */
+    private void applicaModificheRemote(Set<Integer> ids, Map<Integer, List<ToDo>> perBacheca) {
+        if (utenteCorrente == null) {
+            return;
+        }
+        Map<Integer, Bacheca> bachechePerId = new HashMap<>();
+        Set<Integer> daConservare = new HashSet<>();
+        Set<Bacheca> toccate = new HashSet<>();
+        for (Bacheca b : utenteCorrente.getBacheche()) {
+            bachechePerId.put(b.getId(), b);
+            Iterator<ToDo> it = b.getToDoList().iterator();
+            while (it.hasNext()) {
+                ToDo t = it.next();
+                if (!ids.contains(t.getId())) {
+                    continue;
+                }
+                if (haModificheLocali(t) || toDoDialogController.isInModifica(t)) {
+                    daConservare.add(t.getId());
+                } else {
+                    it.remove();
+                    indiceRicerca.rimuovi(t.getId());
+                    toccate.add(b);
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<ToDo>> entry : perBacheca.entrySet()) {
+            Bacheca destinazione = bachechePerId.get(entry.getKey());
+            if (destinazione == null) {
+                continue;
+            }
+            for (ToDo t : entry.getValue()) {
+                if (daConservare.contains(t.getId())) {
+                    continue;
+                }
+                t.setBacheca(destinazione);
+                t.segnaSalvato();
+                destinazione.getToDoList().add(t);
+                indiceRicerca.indicizza(t);
+                toccate.add(destinazione);
+            }
+        }
+        for (Bacheca b : toccate) {
+            BachecaPanel bachecaPanel = bachechePanels.get(b.getId());
+            if (bachecaPanel != null && bachecaPanel.getBacheca() == b) {
+                b.getToDoList().sort(Comparator.comparingInt(ToDo::getPosizione));
+                bachecaPanel.sincronizzaToDo(b.getToDoList());
+            }
+        }
+        if (!toccate.isEmpty()) {
+            salvaSnapshot(true);
+        }
+    }
+
+    /**
+     * Indica se un ToDo ha modifiche locali non ancora salvate, che una versione letta dal database
+     * sovrascriverebbe. La sola collocazione nella bacheca in cui è mostrato non conta: i ToDo condivisi
+     * vengono collegati alla bacheca dell'utente corrente al caricamento.
+     */
+    private static boolean haModificheLocali(ToDo t) {
+        Set<CampoToDo> campi = t.getCampiModificati();
+        if (t.getBacheca() != null && t.getIdBacheca() == t.getBacheca().getId()) {
+            campi.remove(CampoToDo.BACHECA);
+        }
+        return !campi.isEmpty();
+    }
+
+    /**
+     * Rimuove dal modello e dalla bacheca in cui è mostrato un ToDo che non è più visibile
+     * all'utente corrente (es. una condivisione revocata), senza rileggere gli altri dati.
+     *
+     * @param todo Il ToDo da rimuovere.
+     */
+    public void rimuoviToDoLocale(ToDo todo) {
+        for (Bacheca b : utenteCorrente.getBacheche()) {
+            if (b.getToDoList().removeIf(t -> t.getId() == todo.getId())) {
+                BachecaPanel bachecaPanel = bachechePanels.get(b.getId());
+                if (bachecaPanel != null && bachecaPanel.getBacheca() == b) {
+                    bachecaPanel.sincronizzaToDo(b.getToDoList());
+                }
+            }
+        }
+        indiceRicerca.rimuovi(todo.getId());
+        salvaSnapshot(true);
     }
 
     /**
@@ -211,73 +743,139 @@ public class ToDoController {
      */
     private void apriMainFrame(Utente utente) {
         mainFrame = new MainFrame(utente.getNome());
+        asyncService.setIndicatoreOccupato(mainFrame::setOccupato);
         mainFrame.getAddToDoButton().addActionListener(e -> toDoDialogController.openAddToDoDialog());
         mainFrame.getSearchButton().addActionListener(e -> ricercaController.openSearchDialog());
 
         mainFrame.getAddBachecaButton().addActionListener(e -> openCreaBachecaDialog());
         mainFrame.getDeleteBachecaButton().addActionListener(e -> openEliminaBachecaDialog());
+        mainFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (ascoltatoreModifiche != null) {
+                    ascoltatoreModifiche.close();
+                }
+                if (timerSincronizzazione != null) {
+                    timerSincronizzazione.stop();
+                }
+                salvaSnapshot(false);
+            }
+        });
         refreshMainFrameToDos();
         mainFrame.setVisible(true);
     }
 
     /**
      * Aggiorna la visualizzazione grafica delle bacheche e dei ToDo nel MainFrame.
-     * Questo metodo ricostruisce l'interfaccia utente basandosi sullo stato attuale
-     * del modello dati (`utenteCorrente.getBacheche()`). Ordina i ToDo per posizione,
-     * crea i pannelli grafici e riassegna tutti i listener per l'interazione (click, menu, checkbox).
+     * <p>
+     * Invece di ricostruire l'intera interfaccia, riconcilia i pannelli esistenti con lo stato
+     * attuale del modello dati (`utenteCorrente.getBacheche()`): i {@link BachecaPanel} sono
+     * indicizzati per ID della bacheca e le righe dei ToDo per ID del ToDo, quindi vengono
+     * creati, rimossi, aggiornati o riordinati solo gli elementi il cui modello è effettivamente cambiato.
+     * </p>
      */
     public void refreshMainFrameToDos() {
         JPanel bachechePanel = mainFrame.getBachechePanel();
-        bachechePanel.removeAll();
+        List<Bacheca> bacheche = utenteCorrente.getBacheche();
+        boolean layoutModificato = false;
+
+        Set<Integer> idBachecheVisibili = new HashSet<>();
+        for (int i = 0; i < bacheche.size(); i++) {
+            Bacheca b = bacheche.get(i);
+            idBachecheVisibili.add(b.getId());
+            BachecaPanel bachecaPanel = bachechePanels.get(b.getId());
+            if (bachecaPanel == null) {
+                bachecaPanel = creaBachecaPanel(b);
+                bachechePanels.put(b.getId(), bachecaPanel);
+            } else if (bachecaPanel.getBacheca() != b) {
+                bachecaPanel.setBacheca(b);
+            }
+            if (i >= bachechePanel.getComponentCount() || bachechePanel.getComponent(i) != bachecaPanel) {
+                bachechePanel.add(bachecaPanel, i);
+                layoutModificato = true;
+            }
+            b.getToDoList().sort(Comparator.comparingInt(ToDo::getPosizione));
+            bachecaPanel.sincronizzaToDo(b.getToDoList());
+        }
 
-        int numBacheche = utenteCorrente.getBacheche().size();
-        if(numBacheche > 0) {
-            bachechePanel.setLayout(new GridLayout(1, numBacheche, 10, 10));
+        Iterator<Map.Entry<Integer, BachecaPanel>> it = bachechePanels.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, BachecaPanel> entry = it.next();
+            if (!idBachecheVisibili.contains(entry.getKey())) {
+                bachechePanel.remove(entry.getValue());
+                it.remove();
+                layoutModificato = true;
+            }
         }
-        for(Bacheca b : utenteCorrente.getBacheche()) {
-            BachecaPanel bachecaPanel = new BachecaPanel(b);
-            bachecaPanel.getModifyDescButton().addActionListener(e ->
-                    openModificaDescrizioneDialog(b, bachecaPanel));
-            b.getToDoList().sort((t1, t2) -> Integer.compare(t1.getPosizione(), t2.getPosizione()));
-            for(ToDo toDo : b.getToDoList()) {
-                ToDoPanel toDoPanel = new ToDoPanel(toDo);
-                toDoPanel.addMouseListener(new MouseAdapter() {
-                    @Override
-                    public void mousePressed(MouseEvent e) {
-                        if(e.isPopupTrigger()) {
-                            showToDoContextMenu(e, toDo);
-                        }
-                    }
-                    @Override
-                    public void mouseReleased(MouseEvent e) {
-                        if(e.isPopupTrigger()) {
-                            showToDoContextMenu(e, toDo);
-                        }
-                    }
-                });
-                toDoPanel.getCompletatoCheckbox().addActionListener(e ->
-                        handleToDoCompletionChange(toDo, toDoPanel.getCompletatoCheckbox().isSelected()));
-
-                toDoPanel.getMenuButton().addActionListener(actionEvent -> {
-                    JPopupMenu popupMenu = createToDoContextMenu(toDo);
-                    JButton menuButton = (JButton) actionEvent.getSource();
-                    popupMenu.show(menuButton, 0, menuButton.getHeight());
-                });
-
-                for (JCheckBox subTaskCb : toDoPanel.getSubTaskCheckboxes()) {
-                    Attivita attivita = (Attivita) subTaskCb.getClientProperty("ATTIVITA_OBJ");
-
-                    subTaskCb.addActionListener(e ->
-                            handleSubTaskCompletionChange(toDo, attivita, subTaskCb.isSelected())
-                    );
-                }
 
-                bachecaPanel.aggiungiToDo(toDoPanel);
+        if (layoutModificato) {
+            if (!bacheche.isEmpty()) {
+                bachechePanel.setLayout(new GridLayout(1, bacheche.size(), 10, 10));
             }
-            bachechePanel.add(bachecaPanel);
+            bachechePanel.revalidate();
+            bachechePanel.repaint();
+        }
+    }
+
+    /**
+     * Ridisegna la riga di un singolo ToDo dopo una modifica che non ne cambia
+     * la posizione (es. completamento). Se il ToDo non è visualizzato,
+     * ripiega su {@link #refreshMainFrameToDos()}.
+     *
+     * @param todo Il ToDo modificato.
+     */
+    private void aggiornaToDoVisualizzato(ToDo todo) {
+        BachecaPanel bachecaPanel = todo.getBacheca() != null ? bachechePanels.get(todo.getBacheca().getId()) : null;
+        if (bachecaPanel == null || !bachecaPanel.aggiornaToDo(todo)) {
+            refreshMainFrameToDos();
         }
-        bachechePanel.revalidate();
-        bachechePanel.repaint();
+    }
+
+    /**
+     * Crea il pannello grafico di una bacheca e collega il pulsante di modifica della descrizione
+     * e le azioni sulle righe dei ToDo (checkbox, sotto-attività, menu contestuale).
+     *
+     * @param bacheca La bacheca da visualizzare.
+     * @return Il nuovo {@link BachecaPanel}.
+     */
+    private BachecaPanel creaBachecaPanel(Bacheca bacheca) {
+        BachecaPanel bachecaPanel = new BachecaPanel(bacheca);
+        bachecaPanel.getModifyDescButton().addActionListener(e ->
+                openModificaDescrizioneDialog(bachecaPanel.getBacheca(), bachecaPanel));
+        bachecaPanel.setAzioniToDo(new AzioniToDo() {
+            @Override
+            public void completamentoCambiato(ToDo toDo, boolean completato) {
+                if (toDo.isDaConfermare()) {
+                    return;
+                }
+                misuraAzione("Completamento ToDo", () -> handleToDoCompletionChange(toDo, completato));
+            }
+
+            @Override
+            public void sottoAttivitaCambiata(ToDo toDo, Attivita attivita, boolean completata) {
+                if (toDo.isDaConfermare()) {
+                    return;
+                }
+                misuraAzione("Completamento attività", () -> handleSubTaskCompletionChange(toDo, attivita, completata));
+            }
+
+            @Override
+            public void menuRichiesto(ToDo toDo, Component invoker, int x, int y) {
+                if (toDo.isDaConfermare()) {
+                    return;
+                }
+                createToDoContextMenu(toDo).show(invoker, x, y);
+            }
+
+            @Override
+            public void spostamentoRichiesto(ToDo toDo, int nuovoIndice) {
+                if (toDo.isDaConfermare()) {
+                    return;
+                }
+                misuraAzione("Trascinamento ToDo", () -> spostaToDoInPosizione(toDo, nuovoIndice));
+            }
+        });
+        return bachecaPanel;
     }
 
     /**
@@ -310,19 +908,16 @@ public class ToDoController {
 
         // --- Collegamento Azioni ---
         editItem.addActionListener(actionEvent -> toDoDialogController.openEditToDoDialog(todo));
-        deleteItem.addActionListener(actionEvent -> deleteToDo(todo));
+        deleteItem.addActionListener(actionEvent -> misuraAzione("Eliminazione ToDo", () -> deleteToDo(todo)));
         moveItem.addActionListener(actionEvent -> openMoveToDoDialog(todo));
         shareItem.addActionListener(actionEvent -> condivisioneController.openShareToDoDialog(todo));
         viewSharedUsersitem.addActionListener(actionEvent -> condivisioneController.showSharedUsers(todo));
         manageShareItem.addActionListener(actionEvent -> condivisioneController.openManageSharingDialog(todo));
-        moveUpItem.addActionListener(actionEvent -> spostaToDo(todo, -1));
-        moveDownItem.addActionListener(actionEvent -> spostaToDo(todo, 1));
+        moveUpItem.addActionListener(actionEvent -> misuraAzione("Sposta su", () -> spostaToDo(todo, -1)));
+        moveDownItem.addActionListener(actionEvent -> misuraAzione("Sposta giù", () -> spostaToDo(todo, 1)));
 
         // --- Logica Abilitazione Pulsanti (Req. [14]) ---
-        boolean isAutore = false;
-        if (todo.getAutore() != null) {
-            isAutore = (todo.getAutore().getId() == utenteCorrente.getId());
-        }
+        boolean isAutore = todo.getIdAutore() == utenteCorrente.getId();
 
         editItem.setEnabled(isAutore);
         deleteItem.setEnabled(isAutore);
@@ -333,10 +928,11 @@ public class ToDoController {
         moveUpItem.setEnabled(true);
         moveDownItem.setEnabled(true);
 
-        if (todo.getPosizione() == 0) {
+        int indice = indiceInBacheca(todo);
+        if (indice <= 0) {
             moveUpItem.setEnabled(false);
         }
-        if (todo.getBacheca() != null && todo.getPosizione() == todo.getBacheca().getToDoList().size() - 1) {
+        if (todo.getBacheca() == null || indice == todo.getBacheca().getToDoList().size() - 1) {
             moveDownItem.setEnabled(false);
         }
 
@@ -356,67 +952,125 @@ public class ToDoController {
     }
 
     /**
-     * Mostra il menu contestuale (popup) per un ToDo in risposta a un evento del mouse.
-     * Questo metodo fa da ponte tra l'evento di input (click destro) e la logica di creazione del menu.
-     * Utilizza {@link #createToDoContextMenu(ToDo)} per generare il menu e lo posiziona
-     * esattamente alle coordinate (x, y) dove l'utente ha cliccato.
-     *
-     * @param e    L'evento del mouse che ha scatenato la richiesta (contiene le coordinate).
-     * @param todo Il ToDo su cui è stato effettuato il click.
-     */
-    private void showToDoContextMenu(MouseEvent e, ToDo todo) {
-        JPopupMenu popupMenu = createToDoContextMenu(todo);
-        popupMenu.show(e.getComponent(), e.getX(), e.getY());
-    }
-
-    /**
-     * Sposta un ToDo su o giù all'interno della sua bacheca.
-     * Il metodo scambia la posizione (`posizione`) del ToDo selezionato con quella del ToDo adiacente.
-     * Aggiorna entrambi i record nel database e ridisegna l'interfaccia.
+     * Sposta un ToDo su o giù di una posizione all'interno della sua bacheca.
      *
      * @param todo      Il ToDo da spostare.
-     * @param direzione -1 per spostare su (decrementa posizione), +1 per spostare giù (incrementa posizione).
+     * @param direzione -1 per spostare su, +1 per spostare giù.
      */
     private void spostaToDo(ToDo todo, int direzione) {
         Bacheca bacheca = todo.getBacheca();
         if(bacheca == null) return;
 
-        bacheca.getToDoList().sort((t1, t2) -> Integer.compare(t1.getPosizione(), t2.getPosizione()));
-        List<ToDo> todoList = bacheca.getToDoList();
-        int currentIndex = -1;
-        for (int i = 0; i < todoList.size(); i++) {
-            if (todoList.get(i).getId() == todo.getId()) {
-                currentIndex = i;
-                break;
-            }
-        }
+        int currentIndex = indiceInBacheca(todo);
         if (currentIndex == -1) {
             LOGGER.log(Level.WARNING, "Errore: ToDo con ID {0} non trovato nella lista.", todo.getId());
             return;
         }
         int newIndex = currentIndex + direzione;
-        if (newIndex < 0 || newIndex >= todoList.size()) {
+        if (newIndex < 0 || newIndex >= bacheca.getToDoList().size()) {
             LOGGER.log(Level.WARNING, "Tentativo di spostamento ToDo fuori dai limiti (direzione: {0})", direzione);
             return;
         }
+        spostaToDoInPosizione(todo, newIndex);
+    }
 
-        ToDo otherTodo = todoList.get(newIndex);
-
-        int oldPos = todo.getPosizione();
-        int otherPos = otherTodo.getPosizione();
+    /**
+     * Sposta un ToDo in un punto qualsiasi della sua bacheca (es. trascinandolo con il mouse).
+     * <p>
+     * Al ToDo viene assegnato il rango medio tra quelli dei nuovi vicini (vedi {@link OrdinamentoToDo}),
+     * quindi nel database viene aggiornata una sola riga e nell'interfaccia viene riordinata solo
+     * la bacheca interessata. Se tra i vicini non c'è più spazio, i ranghi dell'intera bacheca vengono
+     * ridistribuiti e salvati in background con un unico batch.
+     * </p>
+     *
+     * @param todo        Il ToDo da spostare.
+     * @param nuovoIndice L'indice che il ToDo deve occupare nella lista della bacheca.
+     */
+    public void spostaToDoInPosizione(ToDo todo, int nuovoIndice) {
+        Bacheca bacheca = todo.getBacheca();
+        if (bacheca == null || indiceInBacheca(todo) == -1) {
+            return;
+        }
+        List<ToDo> altri = new ArrayList<>(bacheca.getToDoList());
+        altri.remove(todo);
+        int indice = Math.clamp(nuovoIndice, 0, altri.size());
+        ToDo prima = indice > 0 ? altri.get(indice - 1) : null;
+        ToDo dopo = indice < altri.size() ? altri.get(indice) : null;
+
+        OptionalInt rango = OrdinamentoToDo.rangoTra(prima, dopo);
+        if (rango.isPresent()) {
+            todo.setPosizione(rango.getAsInt());
+            salvaPosizioneInBackground(todo);
+        } else {
+            altri.add(indice, todo);
+            ribilanciaBacheca(altri);
+        }
+        aggiornaOrdineBacheca(bacheca);
+    }
 
-        if (oldPos == otherPos) {
-            oldPos = currentIndex;
-            otherPos = newIndex;
+    /**
+     * Restituisce l'indice del ToDo nella lista (ordinata per rango) della sua bacheca, oppure -1.
+     */
+    private int indiceInBacheca(ToDo todo) {
+        if (todo.getBacheca() == null) {
+            return -1;
+        }
+        List<ToDo> todoList = todo.getBacheca().getToDoList();
+        todoList.sort(Comparator.comparingInt(ToDo::getPosizione));
+        for (int i = 0; i < todoList.size(); i++) {
+            if (todoList.get(i).getId() == todo.getId()) {
+                return i;
+            }
         }
+        return -1;
+    }
 
-        todo.setPosizione(otherPos);
-        otherTodo.setPosizione(oldPos);
+    /**
+     * Assegna al ToDo il rango per la coda della bacheca di destinazione, ribilanciando
+     * la bacheca se i ranghi sono esauriti.
+     *
+     * @param todo    Il ToDo da mettere in coda.
+     * @param bacheca La bacheca di destinazione (il ToDo non deve esservi ancora contenuto).
+     */
+    private void assegnaRangoInCoda(ToDo todo, Bacheca bacheca) {
+        List<ToDo> ordinati = new ArrayList<>(bacheca.getToDoList());
+        ordinati.remove(todo);
+        ordinati.sort(Comparator.comparingInt(ToDo::getPosizione));
+        OptionalInt rango = OrdinamentoToDo.rangoInCoda(ordinati);
+        if (rango.isEmpty()) {
+            ribilanciaBacheca(ordinati);
+            rango = OrdinamentoToDo.rangoInCoda(ordinati);
+        }
+        todo.setPosizione(rango.orElse(OrdinamentoToDo.INTERVALLO * (ordinati.size() + 1)));
+    }
 
-        toDoDAO.updateToDo(todo);
-        toDoDAO.updateToDo(otherTodo);
+    /**
+     * Ridistribuisce i ranghi dei ToDo indicati (nell'ordine dato) e salva in background
+     * solo quelli cambiati, in un'unica transazione. A salvataggio riuscito il rango dei ToDo
+     * non è più segnato come modificato, così che le versioni remote possano di nuovo sostituirli
+     * (vedi {@link #applicaModificheRemote}).
+     */
+    private void ribilanciaBacheca(List<ToDo> ordinati) {
+        Map<Integer, Integer> modificati = OrdinamentoToDo.ribilancia(ordinati);
+        LOGGER.log(Level.FINE, "Ribilanciamento dei ranghi: {0} ToDo aggiornati", modificati.size());
+        if (!modificati.isEmpty()) {
+            List<ToDo> ribilanciati = ordinati.stream().filter(t -> modificati.containsKey(t.getId())).toList();
+            asyncService.esegui(() -> toDoDAO.updatePosizioni(modificati))
+                    .thenRun(() -> ribilanciati.forEach(t -> t.segnaPosizioneSalvata(modificati.get(t.getId()))));
+        }
+    }
 
-        refreshMainFrameToDos();
+    /**
+     * Riordina per rango i ToDo di una bacheca e aggiorna solo il relativo pannello.
+     */
+    private void aggiornaOrdineBacheca(Bacheca bacheca) {
+        bacheca.getToDoList().sort(Comparator.comparingInt(ToDo::getPosizione));
+        BachecaPanel bachecaPanel = bachechePanels.get(bacheca.getId());
+        if (bachecaPanel != null) {
+            bachecaPanel.sincronizzaToDo(bacheca.getToDoList());
+        } else {
+            refreshMainFrameToDos();
+        }
     }
 
     /**
@@ -431,8 +1085,85 @@ public class ToDoController {
         } else {
             todo.setStato(StatoToDo.NON_COMPLETATO);
         }
-        toDoDAO.updateToDo(todo);
-        refreshMainFrameToDos();
+        salvaToDoInBackground(todo);
+        aggiornaToDoVisualizzato(todo);
+    }
+
+    /**
+     * Accoda il salvataggio di un ToDo già aggiornato nel modello.
+     * Click ripetuti sullo stesso ToDo vengono uniti in un'unica scrittura, che aggiorna
+     * solo le colonne modificate nel frattempo.
+     *
+     * @param todo Il ToDo da salvare.
+     */
+    private void salvaToDoInBackground(ToDo todo) {
+        asyncService.eseguiCoalescendo("todo:" + todo.getId(), () -> salvaConUnione(todo))
+                .exceptionally(this::segnalaErroreAggiornamento);
+    }
+
+    /**
+     * Segnala all'utente un salvataggio in background non riuscito; da usare come ramo
+     * {@code exceptionally} dei future restituiti da {@link AsyncService} (già completati sull'EDT).
+     * Le modifiche restano nel modello e vengono riscritte al salvataggio successivo.
+     *
+     * @param e L'errore del salvataggio.
+     * @return Sempre {@code null}.
+     */
+    private Void segnalaErroreAggiornamento(Throwable e) {
+        LOGGER.log(Level.WARNING, "Salvataggio del ToDo non riuscito", e);
+        JOptionPane.showMessageDialog(mainFrame, "Errore aggiornamento ToDo.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
+        return null;
+    }
+
+    /**
+     * Salva un ToDo (da un thread in background) unendo automaticamente le modifiche concorrenti.
+     * Se un altro utente ha salvato il ToDo nel frattempo, i campi modificati in locale mantengono
+     * il valore locale (è l'azione più recente dell'utente), gli altri prendono quello del database,
+     * e il salvataggio viene ritentato; al termine il ToDo viene ridisegnato con i valori uniti.
+     * Se il ToDo è stato eliminato, viene rimosso anche dal modello locale.
+     *
+     * @param todo Il ToDo da salvare.
+     * @return {@code false} se il ToDo non esiste più.
+     * @throws ConflittoVersioneException Se il ToDo continua a cambiare dopo {@value #TENTATIVI_SALVATAGGIO} tentativi.
+     */
+    private boolean salvaConUnione(ToDo todo) {
+        for (int tentativo = 1; ; tentativo++) {
+            try {
+                toDoDAO.updateToDo(todo);
+                if (tentativo > 1) {
+                    SwingUtilities.invokeLater(() -> {
+                        indiceRicerca.indicizza(todo);
+                        aggiornaToDoVisualizzato(todo);
+                    });
+                }
+                return true;
+            } catch (ConflittoVersioneException e) {
+                if (e.getAttuale() == null) {
+                    LOGGER.log(Level.INFO, "ToDo {0} eliminato da un altro utente", todo.getId());
+                    SwingUtilities.invokeLater(() -> rimuoviToDoLocale(todo));
+                    return false;
+                }
+                if (tentativo == TENTATIVI_SALVATAGGIO) {
+                    throw e;
+                }
+                UnioneToDo.unisci(todo, e.getCampi(), null, e.getAttuale());
+            }
+        }
+    }
+
+    /**
+     * Accoda il salvataggio del solo rango di un ToDo spostato nella bacheca ({@link ToDoDAO#updatePosizione}).
+     * Spostamenti ravvicinati dello stesso ToDo vengono uniti; a salvataggio riuscito il rango
+     * non è più segnato come modificato.
+     *
+     * @param todo Il ToDo spostato.
+     */
+    private void salvaPosizioneInBackground(ToDo todo) {
+        asyncService.eseguiCoalescendo("posizione:" + todo.getId(), () -> {
+            int posizione = todo.getPosizione();
+            toDoDAO.updatePosizione(todo.getId(), posizione);
+            SwingUtilities.invokeLater(() -> todo.segnaPosizioneSalvata(posizione));
+        });
     }
 
     /**
@@ -451,17 +1182,18 @@ public class ToDoController {
             }
         }
         if (targetBacheca != null) {
-            targetBacheca.aggiungiToDo(todo);
-            todo.setBacheca(targetBacheca);
-            toDoDAO.addToDo(todo);
-            refreshMainFrameToDos();
-            if (todo.getChecklist() != null) {
-                for (Attivita a : todo.getChecklist().getAttivita()) {
-                    a.setIdTodo(todo.getId());
-                    attivitaDAO.addAttivita(a);
-                }
-            }
-            JOptionPane.showMessageDialog(mainFrame, "ToDo aggiunto con successo!");
+            Bacheca destinazione = targetBacheca;
+            todo.setBacheca(destinazione);
+            assegnaRangoInCoda(todo, destinazione);
+            asyncService.esegui(() -> {
+                toDoDAO.addToDo(todo);
+                attivitaDAO.sincronizzaChecklist(todo.getId(), null, todo.getChecklist());
+            }).thenRun(() -> {
+                destinazione.aggiungiToDo(todo);
+                indiceRicerca.indicizza(todo);
+                refreshMainFrameToDos();
+                JOptionPane.showMessageDialog(mainFrame, "ToDo aggiunto con successo!");
+            });
         } else {
             JOptionPane.showMessageDialog(mainFrame, "Bacheca non trovata per il titolo: " + bachecaTitle, TITOLO_ERRORE, JOptionPane.ERROR_MESSAGE);
         }
@@ -469,21 +1201,23 @@ public class ToDoController {
 
     /**
      * Aggiorna un ToDo esistente con nuove informazioni.
-     * Ricrea le attività della checklist (eliminando le vecchie e inserendo le nuove) per semplicità.
+     * La checklist salvata viene riletta dal database e allineata a quella nuova
+     * tramite {@link AttivitaDAO#sincronizzaChecklist}.
      *
      * @param updatedToDo Il ToDo con i dati aggiornati.
      */
     public void updateToDoInBacheca(ToDo updatedToDo) {
-        toDoDAO.updateToDo(updatedToDo);
+        indiceRicerca.indicizza(updatedToDo);
         refreshMainFrameToDos();
-        attivitaDAO.deleteAttivitaByToDoId(updatedToDo.getId());
-        if (updatedToDo.getChecklist() != null) {
-            for (Attivita a : updatedToDo.getChecklist().getAttivita()) {
-                a.setIdTodo(updatedToDo.getId());
-                attivitaDAO.addAttivita(a);
+        asyncService.eseguiInCoda("todo:" + updatedToDo.getId(), () -> {
+            if (!salvaConUnione(updatedToDo)) {
+                return;
             }
-        }
-        JOptionPane.showMessageDialog(mainFrame, "ToDo modificato con successo!");
+            Checklist salvata = new Checklist();
+            salvata.setAttivita(attivitaDAO.getAttivitaByToDoId(updatedToDo.getId()));
+            attivitaDAO.sincronizzaChecklist(updatedToDo.getId(), salvata, updatedToDo.getChecklist());
+        }).thenRun(() -> JOptionPane.showMessageDialog(mainFrame, "ToDo modificato con successo!"))
+                .exceptionally(this::segnalaErroreAggiornamento);
     }
 
     /**
@@ -495,20 +1229,22 @@ public class ToDoController {
     public void deleteToDo(ToDo todo) {
         int confirm = JOptionPane.showConfirmDialog(mainFrame, "Sei sicuro di voler eliminare questo ToDo?", "Conferma Eliminazione", JOptionPane.YES_NO_OPTION);
         if(confirm == JOptionPane.YES_OPTION) {
-            toDoDAO.deleteToDo(todo.getId());
-            boolean removed = false;
-            for(Bacheca b : utenteCorrente.getBacheche()) {
-                if(b.getToDoList().remove(todo)) {
-                    removed = true;
-                    break;
+            asyncService.esegui(() -> toDoDAO.deleteToDo(todo.getId())).thenRun(() -> {
+                boolean removed = false;
+                for(Bacheca b : utenteCorrente.getBacheche()) {
+                    if(b.getToDoList().remove(todo)) {
+                        removed = true;
+                        break;
+                    }
                 }
-            }
-            if(removed) {
-                refreshMainFrameToDos();
-                JOptionPane.showMessageDialog(mainFrame, "ToDo eliminato con successo.");
-            } else {
-                JOptionPane.showMessageDialog(mainFrame, "Errore nella cancellazione del ToDo.", TITOLO_ERRORE, JOptionPane.ERROR_MESSAGE);
-            }
+                if(removed) {
+                    indiceRicerca.rimuovi(todo.getId());
+                    refreshMainFrameToDos();
+                    JOptionPane.showMessageDialog(mainFrame, "ToDo eliminato con successo.");
+                } else {
+                    JOptionPane.showMessageDialog(mainFrame, "Errore nella cancellazione del ToDo.", TITOLO_ERRORE, JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 
@@ -551,11 +1287,14 @@ public class ToDoController {
         }
 
         if (targetBacheca != null) {
+            assegnaRangoInCoda(todo, targetBacheca);
             targetBacheca.aggiungiToDo(todo);
             todo.setBacheca(targetBacheca);
-            toDoDAO.updateToDo(todo);
+            indiceRicerca.indicizza(todo);
             refreshMainFrameToDos();
-            JOptionPane.showMessageDialog(mainFrame, "ToDo spostato con successo.");
+            asyncService.eseguiCoalescendo("todo:" + todo.getId(), () -> salvaConUnione(todo))
+                    .thenRun(() -> JOptionPane.showMessageDialog(mainFrame, "ToDo spostato con successo."))
+                    .exceptionally(this::segnalaErroreAggiornamento);
         } else {
             JOptionPane.showMessageDialog(mainFrame, "Errore: Bacheca di destinazione non trovata.", TITOLO_ERRORE, JOptionPane.ERROR_MESSAGE);
             if (sourceBacheca != null) {
@@ -581,6 +1320,49 @@ public class ToDoController {
         return utenteDAO.getAllUtenti();
     }
 
+    /**
+     * Restituisce il servizio che esegue le operazioni sul database fuori dall'EDT.
+     * Utilizzato dai sotto-controller per non bloccare l'interfaccia durante le chiamate ai DAO.
+     *
+     * @return L'istanza condivisa di {@link AsyncService}.
+     */
+    public AsyncService getAsyncService() {
+        return asyncService;
+    }
+
+    /**
+     * Esegue un'azione dell'interfaccia attribuendole tutte le chiamate DAO che provoca, anche quelle
+     * eseguite in background: al termine, {@link MetricheDAO} ne registra il resoconto
+     * (numero di query e tempo speso nei DAO).
+     *
+     * @param nome   Il nome dell'azione (es. "Completamento ToDo").
+     * @param azione Il codice dell'azione, eseguito subito sul thread corrente.
+     */
+    public void misuraAzione(String nome, Runnable azione) {
+        try (var _ = metricheDAO.iniziaAzione(nome)) {
+            azione.run();
+        }
+    }
+
+    /**
+     * Restituisce le metriche delle chiamate DAO.
+     *
+     * @return Le metriche condivise da tutti i DAO del controller.
+     */
+    public MetricheDAO getMetricheDAO() {
+        return metricheDAO;
+    }
+
+    /**
+     * Restituisce l'indice in memoria dei ToDo caricati.
+     * Utilizzato dal controller di ricerca per la ricerca istantanea, senza accessi al database.
+     *
+     * @return L'indice di ricerca dell'utente corrente.
+     */
+    public IndiceRicerca getIndiceRicerca() {
+        return indiceRicerca;
+    }
+
     /**
      * Gestisce la creazione di una nuova bacheca, se l'utente non ha ancora raggiunto il limite.
      */
@@ -607,10 +1389,10 @@ public class ToDoController {
             String desc = JOptionPane.showInputDialog(mainFrame, "Inserisci una descrizione per la bacheca " + titoloScelto.name() + ":");
 
             Bacheca nuovaBacheca = new Bacheca(newId, titoloScelto, (desc != null ? desc : ""), utenteCorrente.getId());
-            bachecaDAO.addBacheca(nuovaBacheca);
-            utenteCorrente.aggiungiBacheca(nuovaBacheca);
-
-            refreshMainFrameToDos();
+            asyncService.esegui(() -> bachecaDAO.addBacheca(nuovaBacheca)).thenRun(() -> {
+                utenteCorrente.aggiungiBacheca(nuovaBacheca);
+                refreshMainFrameToDos();
+            });
         }
     }
 
@@ -646,15 +1428,17 @@ public class ToDoController {
                         .findFirst()
                         .orElse(null);
                 if (bachecaDaEliminare != null) {
-                    try {
-                        bachecaDAO.deleteBacheca(bachecaDaEliminare.getId());
+                    asyncService.esegui(() -> bachecaDAO.deleteBacheca(bachecaDaEliminare.getId())).thenRun(() -> {
                         utenteCorrente.getBacheche().remove(bachecaDaEliminare);
+                        for (ToDo t : bachecaDaEliminare.getToDoList()) {
+                            indiceRicerca.rimuovi(t.getId());
+                        }
                         refreshMainFrameToDos();
                         JOptionPane.showMessageDialog(mainFrame, "Bacheca eliminata con successo.");
-                    } catch (Exception e) {
+                    }).exceptionally(e -> {
                         JOptionPane.showMessageDialog(mainFrame, "Errore durante l'eliminazione dal database.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
-                        e.printStackTrace();
-                    }
+                        return null;
+                    });
                 }
             }
         }
@@ -674,30 +1458,28 @@ public class ToDoController {
         );
         if(newDesc != null) {
             bacheca.setDescrizione(newDesc);
-            bachecaDAO.updateBacheca(bacheca);
             panelView.updateDescrizioneLabel();
-            JOptionPane.showMessageDialog(mainFrame, "Descrizione aggiornata con successo.");
+            asyncService.esegui(() -> bachecaDAO.updateBacheca(bacheca))
+                    .thenRun(() -> JOptionPane.showMessageDialog(mainFrame, "Descrizione aggiornata con successo."));
         }
     }
 
     /**
      * Mostra un pannello informativo dettagliato (di sola lettura) per un ToDo.
      * Mostra titolo, descrizione, bacheca, scadenza, URL, immagine e checklist.
+     * Utilizzato anche dalla ricerca istantanea per aprire un risultato.
+     *
+     * @param todo Il ToDo da mostrare.
      */
-    private void showToDoInfo(ToDo todo) {
+    public void showToDoInfo(ToDo todo) {
         JPanel infoPanel = new JPanel(new BorderLayout(10, 10));
         infoPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         if(todo.getImagePath() != null && !todo.getImagePath().isEmpty()) {
-            try {
-                ImageIcon icon = new ImageIcon(todo.getImagePath());
-                Image image = icon.getImage().getScaledInstance(150, 150, Image.SCALE_SMOOTH);
-                JLabel imageLabel = new JLabel(new ImageIcon(image));
-                imageLabel.setBorder(BorderFactory.createEtchedBorder());
-                infoPanel.add(imageLabel, BorderLayout.WEST);
-            } catch (Exception _) {
-                infoPanel.add(new JLabel("Immagine non trovata."), BorderLayout.WEST);
-            }
+            JLabel imageLabel = new JLabel();
+            imageLabel.setBorder(BorderFactory.createEtchedBorder());
+            ThumbnailService.getInstance().caricaIn(imageLabel, todo.getImagePath(), 150, 150);
+            infoPanel.add(imageLabel, BorderLayout.WEST);
         }
 
         JTextArea infoArea = new JTextArea();
@@ -749,52 +1531,60 @@ public class ToDoController {
      */
     private void handleSubTaskCompletionChange(ToDo parentToDo, Attivita subTask, boolean isCompleted) {
         subTask.setStato(isCompleted ? StatoAttivita.COMPLETATO : StatoAttivita.NON_COMPLETATO);
-        attivitaDAO.updateAttivita(subTask);
+        asyncService.eseguiCoalescendo("attivita:" + subTask.getId(), () -> attivitaDAO.updateAttivita(subTask));
         parentToDo.aggiornaStatoDaChecklist();
 
         if (parentToDo.getStato() == StatoToDo.COMPLETATO && isCompleted) {
-            toDoDAO.updateToDo(parentToDo);
+            salvaToDoInBackground(parentToDo);
         }
-        refreshMainFrameToDos();
+        aggiornaToDoVisualizzato(parentToDo);
     }
 
     /**
      * Metodo di supporto per gestire l'aggiornamento di un ToDo che potrebbe essere stato spostato di bacheca.
-     * @param todo               Il ToDo da aggiornare.
-     * @param oldBachecaTitolo   Il titolo della vecchia bacheca (per gestire lo spostamento).
-     * @param newBachecaTitolo   Il titolo della nuova bacheca.
+     * La checklist viene salvata confrontandola con quella precedente, quindi solo le attività
+     * effettivamente cambiate vengono scritte nel database.
+     *
+     * @param todo                Il ToDo da aggiornare.
+     * @param checklistPrecedente La checklist del ToDo prima della modifica.
+     * @param oldBachecaTitolo    Il titolo della vecchia bacheca (per gestire lo spostamento).
+     * @param newBachecaTitolo    Il titolo della nuova bacheca.
+     * @param base                I valori del ToDo all'apertura del dialogo, usati per riconoscere i conflitti
+     *                            se nel frattempo un altro utente lo ha salvato (vedi {@link ToDoDialogController#risolviConflitto}).
      */
-    public void aggiornaToDoEsistente(ToDo todo, TitoloBacheca oldBachecaTitolo, TitoloBacheca newBachecaTitolo) {
-        try {
-            if (oldBachecaTitolo != newBachecaTitolo) {
-                utenteCorrente.getBacheche().stream()
-                        .filter(b -> b.getTitolo() == oldBachecaTitolo)
-                        .findFirst().ifPresent(b -> b.getToDoList().remove(todo));
-
-                Bacheca targetBacheca = utenteCorrente.getBacheche().stream()
-                        .filter(b -> b.getTitolo() == newBachecaTitolo)
-                        .findFirst().orElse(null);
-
-                if (targetBacheca != null) {
-                    targetBacheca.aggiungiToDo(todo);
-                    todo.setBacheca(targetBacheca);
-                }
+    public void aggiornaToDoEsistente(ToDo todo, Checklist checklistPrecedente, TitoloBacheca oldBachecaTitolo,
+                                      TitoloBacheca newBachecaTitolo, Map<CampoToDo, Object> base) {
+        if (oldBachecaTitolo != newBachecaTitolo) {
+            utenteCorrente.getBacheche().stream()
+                    .filter(b -> b.getTitolo() == oldBachecaTitolo)
+                    .findFirst().ifPresent(b -> b.getToDoList().remove(todo));
+
+            Bacheca targetBacheca = utenteCorrente.getBacheche().stream()
+                    .filter(b -> b.getTitolo() == newBachecaTitolo)
+                    .findFirst().orElse(null);
+
+            if (targetBacheca != null) {
+                assegnaRangoInCoda(todo, targetBacheca);
+                targetBacheca.aggiungiToDo(todo);
+                todo.setBacheca(targetBacheca);
             }
+        }
+        indiceRicerca.indicizza(todo);
+        asyncService.eseguiInCoda("todo:" + todo.getId(), () -> {
             toDoDAO.updateToDo(todo);
-            attivitaDAO.deleteAttivitaByToDoId(todo.getId());
-            if (todo.getChecklist() != null) {
-                for (Attivita a : todo.getChecklist().getAttivita()) {
-                    a.setIdTodo(todo.getId());
-                    attivitaDAO.addAttivita(a);
-                }
-            }
+            attivitaDAO.sincronizzaChecklist(todo.getId(), checklistPrecedente, todo.getChecklist());
+        }).thenRun(() -> {
             refreshMainFrameToDos();
             JOptionPane.showMessageDialog(mainFrame, "ToDo modificato con successo!");
-
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(mainFrame, "Errore aggiornamento ToDo.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-        }
+        }).exceptionally(e -> {
+            Throwable causa = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (causa instanceof ConflittoVersioneException conflitto) {
+                toDoDialogController.risolviConflitto(todo, base, conflitto, checklistPrecedente);
+            } else {
+                JOptionPane.showMessageDialog(mainFrame, "Errore aggiornamento ToDo.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
+            }
+            return null;
+        });
     }
 
     /**
@@ -807,26 +1597,20 @@ public class ToDoController {
                 .filter(b -> b.getTitolo() == bachecaTitle)
                 .findFirst().orElse(null);
         if (targetBacheca != null) {
-            try {
-                todo.setBacheca(targetBacheca);
-                int maxPos = targetBacheca.getToDoList().stream()
-                        .mapToInt(ToDo::getPosizione)
-                        .max().orElse(-1);
-                todo.setPosizione(maxPos + 1);
+            todo.setBacheca(targetBacheca);
+            assegnaRangoInCoda(todo, targetBacheca);
+            asyncService.esegui(() -> {
                 toDoDAO.addToDo(todo);
-                if (todo.getChecklist() != null) {
-                    for (Attivita a : todo.getChecklist().getAttivita()) {
-                        a.setIdTodo(todo.getId());
-                        attivitaDAO.addAttivita(a);
-                    }
-                }
+                attivitaDAO.sincronizzaChecklist(todo.getId(), null, todo.getChecklist());
+            }).thenRun(() -> {
                 targetBacheca.aggiungiToDo(todo);
+                indiceRicerca.indicizza(todo);
                 refreshMainFrameToDos();
                 JOptionPane.showMessageDialog(mainFrame, "ToDo aggiunto con successo!");
-            } catch (Exception e) {
+            }).exceptionally(e -> {
                 JOptionPane.showMessageDialog(mainFrame, "Errore salvataggio nuovo ToDo.", TITOLO_ERRORE_DB, JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
+                return null;
+            });
         } else {
             JOptionPane.showMessageDialog(mainFrame, "Bacheca di destinazione non trovata.", TITOLO_ERRORE, JOptionPane.ERROR_MESSAGE);
         }
@@ -881,7 +1665,22 @@ public class ToDoController {
     public BachecaDAO getBachecaDAO() {
         return bachecaDAO;
     }
-}
-
 
+    /**
+     * Bacheche lette dal database, con il watermark letto subito prima.
+     *
+     * @param bacheche  Le bacheche, complete dei ToDo.
+     * @param watermark Il watermark da cui sincronizzare le modifiche successive (0 se non disponibile).
+     */
+    private record BachecheLette(List<Bacheca> bacheche, long watermark) {
+    }
 
+    /**
+     * Esito di un login riuscito.
+     *
+     * @param utente     L'utente autenticato, con le bacheche già lette.
+     * @param daSnapshot {@code true} se le bacheche provengono dall'istantanea locale e vanno riconciliate.
+     */
+    private record Accesso(Utente utente, boolean daSnapshot) {
+    }
+}
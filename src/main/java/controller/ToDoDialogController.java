@@ -1,5 +1,6 @@
 package controller;
 
+import dao.ConflittoVersioneException;
 import gui.ToDoDialog;
 import model.*;
 
@@ -7,6 +8,9 @@ import javax.swing.JOptionPane;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.awt.event.ActionListener;
 
 /**
@@ -34,6 +38,9 @@ public class ToDoDialogController {
      */
     private ToDo toDoToEdit;
 
+    /** I valori del ToDo in modifica all'apertura del dialogo, base per l'unione in caso di conflitto. */
+    private Map<CampoToDo, Object> baseModifica;
+
     /**
      * Costruttore del controller della dialog.
      *
@@ -57,7 +64,7 @@ public class ToDoDialogController {
             toDoDialog.getBtnSalva().removeActionListener(al);
         }
 
-        toDoDialog.getBtnSalva().addActionListener(e -> handleSave());
+        toDoDialog.getBtnSalva().addActionListener(e -> mainController.misuraAzione("Salvataggio ToDo", this::handleSave));
 
         toDoDialog.setVisible(true);
     }
@@ -71,6 +78,7 @@ public class ToDoDialogController {
      */
     public void openEditToDoDialog(ToDo toDoToEdit) { //
         this.toDoToEdit = toDoToEdit;
+        this.baseModifica = UnioneToDo.fotografa(toDoToEdit);
         toDoDialog = new ToDoDialog(null, "Modifica ToDo", true);
 
         toDoDialog.setTxtTitolo(toDoToEdit.getTitolo());
@@ -89,7 +97,7 @@ public class ToDoDialogController {
 
         if (toDoToEdit.getChecklist() != null) {
             for (Attivita attivita : toDoToEdit.getChecklist().getAttivita()) {
-                toDoDialog.addChecklistActivityField(attivita.getNome(), attivita.getStato() == StatoAttivita.COMPLETATO);
+                toDoDialog.addChecklistActivityField(attivita.getId(), attivita.getNome(), attivita.getStato() == StatoAttivita.COMPLETATO);
             }
         }
 
@@ -97,7 +105,7 @@ public class ToDoDialogController {
             toDoDialog.getBtnSalva().removeActionListener(al);
         }
 
-        toDoDialog.getBtnSalva().addActionListener(e -> handleSave());
+        toDoDialog.getBtnSalva().addActionListener(e -> mainController.misuraAzione("Salvataggio ToDo", this::handleSave));
 
         toDoDialog.setVisible(true);
     }
@@ -150,11 +158,13 @@ public class ToDoDialogController {
             Checklist checklist = new Checklist();
             List<String> activityNames = toDoDialog.getChecklistActivityNames();
             List<Boolean> activityStates = toDoDialog.getChecklistActivityCompletionStates();
+            List<Integer> activityIds = toDoDialog.getChecklistActivityIds();
 
             for (int i = 0; i < activityNames.size(); i++) {
                 String nomeAttivita = activityNames.get(i);
                 if (nomeAttivita != null && !nomeAttivita.trim().isEmpty()) {
                     Attivita nuovaAttivita = new Attivita(nomeAttivita);
+                    nuovaAttivita.setId(activityIds.get(i));
                     boolean isCompleted = Boolean.TRUE.equals(activityStates.get(i));
                     nuovaAttivita.setStato(isCompleted ? StatoAttivita.COMPLETATO : StatoAttivita.NON_COMPLETATO);
                     checklist.aggiungiAttivita(nuovaAttivita);
@@ -170,6 +180,7 @@ public class ToDoDialogController {
 
             } else {
                 TitoloBacheca oldBacheca = toDoToEdit.getBacheca().getTitolo();
+                Checklist checklistPrecedente = toDoToEdit.getChecklist();
 
                 toDoToEdit.setTitolo(titolo); //
                 toDoToEdit.setDescrizione(descrizione);
@@ -180,7 +191,7 @@ public class ToDoDialogController {
                 toDoToEdit.setChecklist(checklist);
                 toDoToEdit.aggiornaStatoDaChecklist();
 
-                mainController.aggiornaToDoEsistente(toDoToEdit, oldBacheca, selectedBacheca);
+                mainController.aggiornaToDoEsistente(toDoToEdit, checklistPrecedente, oldBacheca, selectedBacheca, baseModifica);
             }
 
             toDoDialog.dispose();
@@ -190,4 +201,57 @@ public class ToDoDialogController {
             ex.printStackTrace();
         }
     }
+
+    /**
+     * Indica se un ToDo è aperto nel dialogo di modifica: le versioni arrivate dal database
+     * non devono sostituirlo finché l'utente non ha salvato (l'eventuale conflitto viene risolto al salvataggio).
+     *
+     * @param todo Il ToDo.
+     * @return {@code true} se il dialogo di modifica di quel ToDo è aperto.
+     */
+    public boolean isInModifica(ToDo todo) {
+        return toDoDialog != null && toDoDialog.isDisplayable() && toDoToEdit != null && toDoToEdit.getId() == todo.getId();
+    }
+
+    /**
+     * Gestisce il salvataggio di un ToDo che un altro utente ha modificato dopo l'apertura del dialogo.
+     * <p>
+     * Le modifiche vengono unite campo per campo (vedi {@link UnioneToDo}): i campi cambiati da una sola
+     * delle due parti vengono uniti automaticamente; se restano campi cambiati da entrambe, l'utente sceglie
+     * se mantenere i propri valori o adottare quelli dell'altro utente. Il salvataggio viene quindi ripetuto
+     * sulla versione attuale. Se il ToDo è stato eliminato, viene rimosso anche localmente.
+     * </p>
+     *
+     * @param todo                Il ToDo locale, con le modifiche non salvate.
+     * @param base                I valori del ToDo all'apertura del dialogo.
+     * @param conflitto           Il conflitto segnalato dal DAO.
+     * @param checklistPrecedente La checklist salvata prima della modifica.
+     */
+    public void risolviConflitto(ToDo todo, Map<CampoToDo, Object> base, ConflittoVersioneException conflitto,
+                                 Checklist checklistPrecedente) {
+        ToDo attuale = conflitto.getAttuale();
+        if (attuale == null) {
+            JOptionPane.showMessageDialog(null, "Il ToDo \"" + todo.getTitolo() + "\" è stato eliminato da un altro utente: "
+                    + "le modifiche non sono state salvate.", TITOLO_ERRORE, JOptionPane.WARNING_MESSAGE);
+            mainController.rimuoviToDoLocale(todo);
+            return;
+        }
+        Set<CampoToDo> conflitti = UnioneToDo.unisci(todo, conflitto.getCampi(), base, attuale);
+        if (!conflitti.isEmpty()) {
+            StringBuilder messaggio = new StringBuilder("Un altro utente ha modificato questo ToDo mentre lo stavi modificando.\n");
+            for (CampoToDo campo : conflitti) {
+                messaggio.append("\n").append(campo.name().toLowerCase(Locale.ROOT).replace('_', ' '))
+                        .append(":\n   tuo: ").append(UnioneToDo.descrivi(todo, campo))
+                        .append("\n   suo: ").append(UnioneToDo.descrivi(attuale, campo));
+            }
+            String[] opzioni = {"Mantieni le mie modifiche", "Usa le sue modifiche"};
+            int scelta = JOptionPane.showOptionDialog(null, messaggio.toString(), "Conflitto di modifica",
+                    JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE, null, opzioni, opzioni[0]);
+            if (scelta == 1) {
+                UnioneToDo.adotta(todo, conflitti, attuale);
+            }
+        }
+        TitoloBacheca bacheca = todo.getBacheca() != null ? todo.getBacheca().getTitolo() : null;
+        mainController.aggiornaToDoEsistente(todo, checklistPrecedente, bacheca, bacheca, UnioneToDo.fotografa(attuale));
+    }
 }
@@ -0,0 +1,143 @@
+package controller;
+
+import model.CampoToDo;
+import model.ToDo;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Unione campo per campo delle modifiche locali di un ToDo con la versione salvata nel frattempo
+ * da un altro utente (vedi {@link dao.ConflittoVersioneException}).
+ * <p>
+ * È un'unione a tre vie: per ogni campo modificato in locale si confronta il valore attuale nel
+ * database con quello di partenza (la "base" su cui l'utente ha lavorato). Se l'altro utente non
+ * ha toccato il campo, o gli ha dato lo stesso valore, vale la modifica locale; se l'ha cambiato
+ * in modo diverso il campo è in conflitto. I campi non modificati in locale prendono il valore attuale.
+ * Senza base (salvataggi in background di una singola azione, come una spunta) vale sempre
+ * la modifica locale, che è l'azione più recente dell'utente.
+ * </p>
+ * <p>
+ * La bacheca non viene mai presa dal database né considerata in conflitto: per i ToDo condivisi
+ * la bacheca locale è quella dell'utente corrente, diversa da quella dell'autore. Anche la posizione
+ * non è mai in conflitto: è un rango tecnico, che i ribilanciamenti riscrivono senza controllo di versione.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+final class UnioneToDo {
+
+    private UnioneToDo() {
+    }
+
+    /**
+     * Memorizza i valori correnti dei campi del ToDo, da usare come base di un'unione successiva.
+     *
+     * @param todo Il ToDo.
+     * @return Campo → valore.
+     */
+    static Map<CampoToDo, Object> fotografa(ToDo todo) {
+        Map<CampoToDo, Object> valori = new EnumMap<>(CampoToDo.class);
+        for (CampoToDo campo : CampoToDo.values()) {
+            valori.put(campo, valore(todo, campo));
+        }
+        return valori;
+    }
+
+    /**
+     * Unisce al ToDo locale la versione attuale e ne adotta la versione, così che il salvataggio
+     * successivo possa riuscire. I campi in conflitto mantengono il valore locale e restano da salvare.
+     *
+     * @param locale      Il ToDo locale, con i campi ancora segnati come modificati.
+     * @param campiLocali I campi modificati in locale (vedi {@link dao.ConflittoVersioneException#getCampi()}).
+     * @param base        I valori su cui si basano le modifiche locali, oppure {@code null} se non disponibili.
+     * @param attuale     La versione attuale della riga.
+     * @return I campi in conflitto (vuoto se l'unione è automatica).
+     */
+    static Set<CampoToDo> unisci(ToDo locale, Set<CampoToDo> campiLocali, Map<CampoToDo, Object> base, ToDo attuale) {
+        Set<CampoToDo> daSalvare = EnumSet.noneOf(CampoToDo.class);
+        Set<CampoToDo> conflitti = EnumSet.noneOf(CampoToDo.class);
+        for (CampoToDo campo : CampoToDo.values()) {
+            if (campo == CampoToDo.BACHECA) {
+                if (campiLocali.contains(campo)) {
+                    daSalvare.add(campo);
+                }
+                continue;
+            }
+            Object remoto = valore(attuale, campo);
+            if (!campiLocali.contains(campo)) {
+                copia(attuale, locale, campo);
+            } else if (!Objects.equals(remoto, valore(locale, campo))) {
+                daSalvare.add(campo);
+                if (base != null && campo != CampoToDo.POSIZIONE && !Objects.equals(remoto, base.get(campo))) {
+                    conflitti.add(campo);
+                }
+            }
+        }
+        locale.prendiCampiModificati();
+        locale.ripristinaCampiModificati(daSalvare);
+        locale.setVersione(attuale.getVersione());
+        return conflitti;
+    }
+
+    /**
+     * Scarta le modifiche locali dei campi indicati, adottando i valori della versione attuale.
+     *
+     * @param locale  Il ToDo locale, già unito con {@link #unisci}.
+     * @param campi   I campi di cui adottare il valore attuale.
+     * @param attuale La versione attuale della riga.
+     */
+    static void adotta(ToDo locale, Set<CampoToDo> campi, ToDo attuale) {
+        Set<CampoToDo> daSalvare = locale.prendiCampiModificati();
+        for (CampoToDo campo : campi) {
+            copia(attuale, locale, campo);
+            daSalvare.remove(campo);
+        }
+        locale.prendiCampiModificati();
+        locale.ripristinaCampiModificati(daSalvare);
+    }
+
+    /**
+     * Restituisce il valore di un campo in forma leggibile, per il messaggio di conflitto.
+     *
+     * @param todo  Il ToDo.
+     * @param campo Il campo.
+     * @return Il valore, oppure "(vuoto)".
+     */
+    static String descrivi(ToDo todo, CampoToDo campo) {
+        Object valore = valore(todo, campo);
+        return valore == null || valore.toString().isBlank() ? "(vuoto)" : valore.toString();
+    }
+
+    private static Object valore(ToDo todo, CampoToDo campo) {
+        return switch (campo) {
+            case TITOLO -> todo.getTitolo();
+            case DESCRIZIONE -> todo.getDescrizione();
+            case SCADENZA -> todo.getScadenza();
+            case IMAGE_PATH -> todo.getImagePath();
+            case URL -> todo.getURL();
+            case COLORE_SFONDO -> todo.getColoreSfondo();
+            case STATO -> todo.getStato();
+            case POSIZIONE -> todo.getPosizione();
+            case BACHECA -> todo.getIdBacheca();
+        };
+    }
+
+    private static void copia(ToDo da, ToDo a, CampoToDo campo) {
+        switch (campo) {
+            case TITOLO -> a.setTitolo(da.getTitolo());
+            case DESCRIZIONE -> a.setDescrizione(da.getDescrizione());
+            case SCADENZA -> a.setScadenza(da.getScadenza());
+            case IMAGE_PATH -> a.setImagePath(da.getImagePath());
+            case URL -> a.setURL(da.getURL());
+            case COLORE_SFONDO -> a.setColoreSfondo(da.getColoreSfondo());
+            case STATO -> a.setStato(da.getStato());
+            case POSIZIONE -> a.setPosizione(da.getPosizione());
+            case BACHECA -> a.setIdBacheca(da.getIdBacheca());
+        }
+    }
+}
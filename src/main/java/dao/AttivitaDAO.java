@@ -1,7 +1,10 @@
 package dao;
 
 import model.Attivita;
+import model.Checklist;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interfaccia che definisce le operazioni di accesso ai dati (CRUD) per l'entità {@link Attivita}.
@@ -30,6 +33,17 @@ public interface AttivitaDAO {
      */
     List<Attivita> getAttivitaByToDoId(int todoId);
 
+    /**
+     * Recupera in un'unica interrogazione le attività di più ToDo.
+     * Utilizzato per ricostruire le Checklist di un'intera pagina di ToDo
+     * senza eseguire una query per ciascun ToDo.
+     *
+     * @param todoIds Gli identificativi dei ToDo genitori.
+     * @return Una mappa che associa l'ID di ogni ToDo alla lista delle sue {@link Attivita}
+     *         (i ToDo senza attività non compaiono come chiave).
+     */
+    Map<Integer, List<Attivita>> getAttivitaByToDoIds(Collection<Integer> todoIds);
+
     /**
      * Aggiorna i dati di un'attività esistente (es. cambio stato Completato/Non Completato).
      *
@@ -51,4 +65,22 @@ public interface AttivitaDAO {
      * @param todoId L'identificativo del ToDo genitore.
      */
     void deleteAttivitaByToDoId(int todoId);
+
+    /**
+     * Allinea nel database le attività di un ToDo alla nuova checklist, confrontandola con quella precedente.
+     * <p>
+     * Le attività sono confrontate per ID: quelle senza ID vengono inserite, quelle presenti in entrambe
+     * le checklist sono aggiornate solo se nome o stato sono cambiati, e quelle della vecchia checklist
+     * assenti dalla nuova vengono eliminate.
+     * Tutte le modifiche sono applicate in un'unica transazione; se le due checklist coincidono
+     * il database non viene interrogato affatto. Al termine le attività della nuova checklist
+     * hanno ID e ID del ToDo valorizzati.
+     * </p>
+     *
+     * @param todoId   L'identificativo del ToDo genitore.
+     * @param vecchia  La checklist attualmente salvata (può essere {@code null} per un ToDo nuovo).
+     * @param nuova    La checklist da salvare (può essere {@code null} per eliminare tutte le attività).
+     * @throws IllegalStateException Se il salvataggio non riesce; in tal caso nessuna attività viene modificata.
+     */
+    void sincronizzaChecklist(int todoId, Checklist vecchia, Checklist nuova);
 }
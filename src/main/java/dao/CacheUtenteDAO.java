@@ -0,0 +1,253 @@
+package dao;
+
+import model.Utente;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decoratore di un {@link UtenteDAO} che fa da "identity map" per gli utenti.
+ * <p>
+ * Ogni utente letto viene tenuto in una cache LRU di dimensione limitata, quindi autori e
+ * destinatari delle condivisioni dei ToDo puntano tutti alla stessa istanza di {@link Utente}
+ * invece di crearne una copia per ogni ToDo, e le letture ripetute non tornano al database.
+ * {@link #getUtentiByIds(Collection)} interroga il DAO sottostante solo per gli ID mancanti.
+ * </p>
+ * <p>
+ * {@link #getUtenteByLogin(String)} legge sempre dal database (serve all'autenticazione) e
+ * registra l'istanza letta come quella di riferimento per il suo ID; {@link #updateUtente(Utente)}
+ * e {@link #deleteUtenteById(int)} invalidano la voce interessata. La cache vede solo le
+ * modifiche fatte attraverso questo DAO.
+ * </p>
+ * <p>
+ * I metodi possono essere invocati da più thread: l'accesso alla mappa è sincronizzato,
+ * mentre le interrogazioni al DAO sottostante avvengono fuori dal lock.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class CacheUtenteDAO implements UtenteDAO {
+    private static final Logger LOGGER = Logger.getLogger(CacheUtenteDAO.class.getName());
+
+    /** Numero di utenti tenuti in cache se non specificato diversamente. */
+    public static final int CAPACITA_PREDEFINITA = 1024;
+
+    private final UtenteDAO delegato;
+
+    /** ID → utente, in ordine di accesso: la voce meno usata di recente viene scartata per prima. */
+    private final LinkedHashMap<Integer, Utente> cache;
+
+    private final LongAdder hit = new LongAdder();
+    private final LongAdder miss = new LongAdder();
+    private final LongAdder rimozioni = new LongAdder();
+
+    /**
+     * Costruisce la cache con la capacità predefinita.
+     *
+     * @param delegato Il DAO che accede al database.
+     */
+    public CacheUtenteDAO(UtenteDAO delegato) {
+        this(delegato, CAPACITA_PREDEFINITA);
+    }
+
+    /**
+     * Costruisce la cache.
+     *
+     * @param delegato Il DAO che accede al database.
+     * @param capacita Il numero massimo di utenti da tenere in memoria.
+     */
+    public CacheUtenteDAO(UtenteDAO delegato, int capacita) {
+        if (capacita <= 0) {
+            throw new IllegalArgumentException("La capacità della cache deve essere positiva: " + capacita);
+        }
+        this.delegato = delegato;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Utente> eldest) {
+                if (size() > capacita) {
+                    rimozioni.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void addUtente(Utente utente) {
+        delegato.addUtente(utente);
+        if (utente.getId() > 0) {
+            synchronized (cache) {
+                cache.put(utente.getId(), utente);
+            }
+        }
+    }
+
+    @Override
+    public Utente getUtenteById(int id) {
+        synchronized (cache) {
+            Utente utente = cache.get(id);
+            if (utente != null) {
+                hit.increment();
+                return utente;
+            }
+        }
+        miss.increment();
+        Utente letto = delegato.getUtenteById(id);
+        return letto == null ? null : registra(letto);
+    }
+
+    /**
+     * Restituisce gli utenti richiesti prendendo dalla cache quelli già presenti
+     * e caricando tutti gli altri con una sola chiamata al DAO sottostante.
+     *
+     * @param ids Gli ID degli utenti da cercare.
+     * @return Una mappa ID → Utente contenente solo gli utenti trovati.
+     */
+    @Override
+    public Map<Integer, Utente> getUtentiByIds(Collection<Integer> ids) {
+        Map<Integer, Utente> utenti = new HashMap<>();
+        Set<Integer> mancanti = new HashSet<>();
+        synchronized (cache) {
+            for (Integer id : new HashSet<>(ids)) {
+                Utente utente = cache.get(id);
+                if (utente != null) {
+                    utenti.put(id, utente);
+                } else {
+                    mancanti.add(id);
+                }
+            }
+        }
+        hit.add(utenti.size());
+        miss.add(mancanti.size());
+        if (!mancanti.isEmpty()) {
+            for (Utente letto : delegato.getUtentiByIds(mancanti).values()) {
+                Utente utente = registra(letto);
+                utenti.put(utente.getId(), utente);
+            }
+        }
+        return utenti;
+    }
+
+    /**
+     * Legge sempre l'utente dal database e ne registra l'istanza in cache,
+     * sostituendo quella eventualmente presente per lo stesso ID.
+     *
+     * @param login Il nome utente da cercare.
+     * @return L'utente trovato, oppure {@code null}.
+     */
+    @Override
+    public Utente getUtenteByLogin(String login) {
+        Utente utente = delegato.getUtenteByLogin(login);
+        if (utente != null) {
+            synchronized (cache) {
+                cache.put(utente.getId(), utente);
+            }
+        }
+        return utente;
+    }
+
+    /**
+     * Legge sempre l'elenco dal database, ma restituisce le istanze già in cache
+     * per gli utenti che vi sono presenti.
+     *
+     * @return La lista di tutti gli utenti.
+     */
+    @Override
+    public List<Utente> getAllUtenti() {
+        List<Utente> utenti = new ArrayList<>();
+        for (Utente letto : delegato.getAllUtenti()) {
+            utenti.add(registra(letto));
+        }
+        return utenti;
+    }
+
+    @Override
+    public void updateUtente(Utente utente) {
+        delegato.updateUtente(utente);
+        invalida(utente.getId());
+    }
+
+    @Override
+    public void deleteUtenteById(int id) {
+        delegato.deleteUtenteById(id);
+        invalida(id);
+    }
+
+    /**
+     * Rimuove un utente dalla cache: la lettura successiva lo ricaricherà dal database.
+     *
+     * @param id L'ID dell'utente.
+     */
+    public void invalida(int id) {
+        synchronized (cache) {
+            cache.remove(id);
+        }
+    }
+
+    /** Svuota la cache (le statistiche non vengono azzerate). */
+    public void svuota() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /** @return Il numero di letture soddisfatte dalla cache. */
+    public long getHit() {
+        return hit.sum();
+    }
+
+    /** @return Il numero di letture che hanno richiesto il database. */
+    public long getMiss() {
+        return miss.sum();
+    }
+
+    /** @return Il numero di utenti scartati perché la cache era piena. */
+    public long getRimozioni() {
+        return rimozioni.sum();
+    }
+
+    /** @return La frazione di letture soddisfatte dalla cache (0 se non ci sono state letture). */
+    public double getHitRate() {
+        long h = hit.sum();
+        long totale = h + miss.sum();
+        return totale == 0 ? 0 : (double) h / totale;
+    }
+
+    /** @return Il numero di utenti attualmente in cache. */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** Scrive nel log (livello FINE) le statistiche della cache. */
+    public void logStatistiche() {
+        if (!LOGGER.isLoggable(Level.FINE)) {
+            return;
+        }
+        LOGGER.log(Level.FINE, "Cache utenti: {0} voci, {1} hit, {2} miss ({3}% hit), {4} rimozioni",
+                new Object[]{size(), getHit(), getMiss(), Math.round(getHitRate() * 100), getRimozioni()});
+    }
+
+    /**
+     * Inserisce in cache un utente appena letto, a meno che un altro thread non abbia già
+     * registrato un'istanza per lo stesso ID: in quel caso restituisce quella.
+     */
+    private Utente registra(Utente letto) {
+        synchronized (cache) {
+            Utente esistente = cache.putIfAbsent(letto.getId(), letto);
+            return esistente != null ? esistente : letto;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package dao;
 import model.Condivisione;
 import model.ToDo;
 import model.Utente;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interfaccia che definisce le operazioni di accesso ai dati (CRUD) per l'entità {@link Condivisione}.
@@ -19,6 +21,7 @@ public interface CondivisioneDAO {
      * Crea un record che collega un utente specifico a un ToDo specifico.
      *
      * @param condivisione L'oggetto Condivisione da salvare.
+     * @throws IllegalStateException Se il salvataggio non riesce (una condivisione già esistente non è un errore).
      */
     void addCondivisione(Condivisione condivisione);
 
@@ -39,6 +42,16 @@ public interface CondivisioneDAO {
      */
     List<Condivisione> getCondivisioniByToDoId(int todoId);
 
+    /**
+     * Recupera in un'unica interrogazione le condivisioni di più ToDo.
+     * Utilizzato durante il caricamento di una pagina di ToDo per evitare una query per riga.
+     *
+     * @param todoIds Gli identificativi dei ToDo.
+     * @return Una mappa che associa l'ID di ogni ToDo alla lista delle sue {@link Condivisione}
+     *         (i ToDo non condivisi non compaiono come chiave).
+     */
+    Map<Integer, List<Condivisione>> getCondivisioniByToDoIds(Collection<Integer> todoIds);
+
     /**
      * Recupera tutte le condivisioni associate a uno specifico utente.
      * Restituisce, in sostanza, i link ai ToDo che altri hanno condiviso con questo utente.
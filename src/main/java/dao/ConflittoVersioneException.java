@@ -0,0 +1,46 @@
+package dao;
+
+import model.CampoToDo;
+import model.ToDo;
+
+import java.util.Set;
+
+/**
+ * Segnala che un ToDo non è stato salvato perché, dopo la lettura su cui si basavano le modifiche
+ * locali, un altro utente ha modificato la stessa riga (vedi {@link ToDoDAO#updateToDo(ToDo)}).
+ * <p>
+ * Le modifiche locali restano segnate sul ToDo: il chiamante le unisce alla versione attuale,
+ * campo per campo, e riprova il salvataggio.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class ConflittoVersioneException extends RuntimeException {
+
+    private final transient ToDo attuale;
+    private final transient Set<CampoToDo> campi;
+
+    /**
+     * Crea l'eccezione.
+     *
+     * @param idToDo  L'ID del ToDo.
+     * @param attuale La versione attuale della riga, oppure {@code null} se il ToDo è stato eliminato.
+     * @param campi   I campi che si stava tentando di salvare.
+     */
+    public ConflittoVersioneException(int idToDo, ToDo attuale, Set<CampoToDo> campi) {
+        super("Il ToDo " + idToDo + " è stato modificato da un altro utente");
+        this.attuale = attuale;
+        this.campi = campi;
+    }
+
+    /** @return La versione attuale della riga (ne contano solo i campi di {@link CampoToDo}), oppure {@code null} se il ToDo è stato eliminato. */
+    public ToDo getAttuale() {
+        return attuale;
+    }
+
+    /** @return I campi che si stava tentando di salvare. */
+    public Set<CampoToDo> getCampi() {
+        return campi;
+    }
+}
@@ -0,0 +1,34 @@
+package dao;
+
+import model.ToDo;
+
+import java.time.LocalDate;
+
+/**
+ * Cursore per la paginazione "keyset" dei ToDo.
+ * <p>
+ * Invece di saltare le prime N righe con {@code OFFSET}, la pagina successiva viene letta
+ * a partire dai valori della chiave di ordinamento dell'ultimo ToDo già restituito:
+ * {@code (posizione, id)} per i metodi ordinati per posizione, {@code (scadenza, id)} per quelli
+ * ordinati per scadenza. L'ID rende la chiave univoca anche a parità di posizione o scadenza,
+ * quindi nessun ToDo viene saltato o ripetuto tra una pagina e l'altra.
+ * </p>
+ *
+ * @param scadenza  La scadenza dell'ultimo ToDo letto.
+ * @param posizione La posizione dell'ultimo ToDo letto.
+ * @param id        L'ID dell'ultimo ToDo letto.
+ * @author marrenza
+ * @version 1.0
+ */
+public record CursoreToDo(LocalDate scadenza, int posizione, int id) {
+
+    /**
+     * Crea il cursore che punta subito dopo il ToDo indicato.
+     *
+     * @param ultimo L'ultimo ToDo della pagina corrente.
+     * @return Il cursore da passare per leggere la pagina successiva.
+     */
+    public static CursoreToDo dopo(ToDo ultimo) {
+        return new CursoreToDo(ultimo.getScadenza(), ultimo.getPosizione(), ultimo.getId());
+    }
+}
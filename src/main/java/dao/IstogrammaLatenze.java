@@ -0,0 +1,108 @@
+package dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Istogramma delle latenze (in microsecondi) a intervalli log-lineari, aggiornabile da più
+ * thread senza lock.
+ * <p>
+ * I valori fino a 16 µs hanno un intervallo ciascuno; oltre, ogni potenza di due è divisa in
+ * 16 intervalli, quindi i percentili hanno un errore relativo massimo di circa il 6%
+ * con una memoria fissa di poche centinaia di contatori, indipendentemente dal numero di campioni.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+final class IstogrammaLatenze {
+    private static final int BIT_SOTTO_INTERVALLI = 4;
+    private static final int SOTTO_INTERVALLI = 1 << BIT_SOTTO_INTERVALLI;
+
+    /** Valore massimo registrabile (circa 12 giorni): i valori più grandi finiscono nell'ultimo intervallo. */
+    private static final long MASSIMO = (1L << 40) - 1;
+
+    private final AtomicLongArray conteggi = new AtomicLongArray(indice(MASSIMO) + 1);
+    private final AtomicLong campioni = new AtomicLong();
+    private final AtomicLong totale = new AtomicLong();
+    private final AtomicLong massimo = new AtomicLong();
+
+    /**
+     * Registra un campione.
+     *
+     * @param micros La latenza in microsecondi.
+     */
+    void registra(long micros) {
+        long valore = Math.clamp(micros, 0, MASSIMO);
+        conteggi.incrementAndGet(indice(valore));
+        campioni.incrementAndGet();
+        totale.addAndGet(valore);
+        massimo.accumulateAndGet(valore, Math::max);
+    }
+
+    /**
+     * Restituisce il percentile richiesto, approssimato per eccesso al limite superiore del suo intervallo.
+     *
+     * @param percentile Il percentile, tra 0 e 100 (es. 99 per il p99).
+     * @return La latenza in microsecondi, oppure 0 se non ci sono campioni.
+     */
+    long percentile(double percentile) {
+        long n = campioni.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rango = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long cumulato = 0;
+        for (int i = 0; i < conteggi.length(); i++) {
+            cumulato += conteggi.get(i);
+            if (cumulato >= rango) {
+                return Math.min(limiteInferiore(i + 1) - 1, massimo.get());
+            }
+        }
+        return massimo.get();
+    }
+
+    /** @return Il numero di campioni registrati. */
+    long getCampioni() {
+        return campioni.get();
+    }
+
+    /** @return La latenza media in microsecondi, oppure 0 se non ci sono campioni. */
+    long getMedia() {
+        long n = campioni.get();
+        return n == 0 ? 0 : totale.get() / n;
+    }
+
+    /** @return La latenza massima registrata, in microsecondi. */
+    long getMassimo() {
+        return massimo.get();
+    }
+
+    /** Azzera l'istogramma. */
+    void azzera() {
+        for (int i = 0; i < conteggi.length(); i++) {
+            conteggi.set(i, 0);
+        }
+        campioni.set(0);
+        totale.set(0);
+        massimo.set(0);
+    }
+
+    private static int indice(long valore) {
+        if (valore < SOTTO_INTERVALLI) {
+            return (int) valore;
+        }
+        int esponente = 63 - Long.numberOfLeadingZeros(valore);
+        int sotto = (int) (valore >>> (esponente - BIT_SOTTO_INTERVALLI)) & (SOTTO_INTERVALLI - 1);
+        return (esponente - BIT_SOTTO_INTERVALLI + 1) * SOTTO_INTERVALLI + sotto;
+    }
+
+    private static long limiteInferiore(int indice) {
+        if (indice < SOTTO_INTERVALLI) {
+            return indice;
+        }
+        int esponente = indice / SOTTO_INTERVALLI + BIT_SOTTO_INTERVALLI - 1;
+        long sotto = indice % SOTTO_INTERVALLI;
+        return (SOTTO_INTERVALLI + sotto) << (esponente - BIT_SOTTO_INTERVALLI);
+    }
+}
@@ -0,0 +1,49 @@
+package dao;
+
+/**
+ * Interfaccia JMX con le metriche di un singolo metodo di un'interfaccia DAO, pubblicata da
+ * {@link MetricheDAO} con nome {@code todo.dao:type=<interfaccia>,name=<firma del metodo>}.
+ * <p>
+ * Le latenze sono in microsecondi e includono le chiamate DAO annidate (es. il caricamento di
+ * autori, checklist e condivisioni eseguito da un metodo di {@link ToDoDAO}); lo stesso vale per
+ * il numero di istruzioni SQL.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public interface MetodoDAOMXBean {
+
+    /** @return Il numero di chiamate registrate. */
+    long getChiamate();
+
+    /** @return Il numero di chiamate terminate con un'eccezione. */
+    long getErrori();
+
+    /** @return Il numero totale di righe restituite (elementi di liste, mappe, pagine e stream). */
+    long getRighe();
+
+    /** @return Il numero totale di istruzioni SQL preparate durante le chiamate. */
+    long getIstruzioniSql();
+
+    /** @return Il numero medio di istruzioni SQL per chiamata. */
+    double getIstruzioniSqlPerChiamata();
+
+    /** @return La latenza media, in microsecondi. */
+    long getLatenzaMediaMicros();
+
+    /** @return La mediana della latenza, in microsecondi. */
+    long getLatenzaP50Micros();
+
+    /** @return Il 95° percentile della latenza, in microsecondi. */
+    long getLatenzaP95Micros();
+
+    /** @return Il 99° percentile della latenza, in microsecondi. */
+    long getLatenzaP99Micros();
+
+    /** @return La latenza massima, in microsecondi. */
+    long getLatenzaMassimaMicros();
+
+    /** Azzera le metriche del metodo. */
+    void azzera();
+}
@@ -0,0 +1,508 @@
+package dao;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Strumentazione delle chiamate DAO: numero di chiamate, istogrammi di latenza (p50/p95/p99),
+ * righe restituite e istruzioni SQL eseguite per ogni metodo di ogni interfaccia DAO.
+ * <p>
+ * {@link #strumenta(Class, Object)} avvolge un DAO in un proxy dinamico che misura ogni chiamata,
+ * senza modificare le implementazioni. Le istruzioni SQL vengono contate tramite
+ * {@link #istruzioneSqlEseguita()}, da collegare al pool di connessioni: il conteggio è per thread,
+ * quindi ogni chiamata riceve solo le istruzioni eseguite da lei (comprese le chiamate DAO annidate).
+ * Con {@link #pubblicaJmx()} le metriche diventano visibili da JConsole o VisualVM
+ * (vedi {@link MetodoDAOMXBean} e {@link MetricheDAOMXBean}).
+ * </p>
+ * <p>
+ * Le chiamate possono inoltre essere attribuite a un'azione dell'interfaccia grafica
+ * (vedi {@link #iniziaAzione(String)}): quando l'azione e tutte le operazioni asincrone che ha
+ * avviato sono terminate, viene registrato un resoconto del tipo
+ * "Completamento ToDo: 1 istruzioni SQL, 1 chiamate DAO [ToDoDAO.updateToDo], 3,1 ms nei DAO, 160 ms totali".
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public final class MetricheDAO implements MetricheDAOMXBean {
+    private static final Logger LOGGER = Logger.getLogger(MetricheDAO.class.getName());
+
+    /** Dominio JMX degli MXBean pubblicati. */
+    private static final String DOMINIO_JMX = "todo.dao";
+
+    /** Numero di resoconti delle azioni conservati per {@link #getUltimeAzioni()}. */
+    private static final int AZIONI_CONSERVATE = 50;
+
+    /** Metriche di ogni metodo, indicizzate per "Interfaccia.firma". */
+    private final Map<String, StatisticheMetodo> statistiche = new ConcurrentHashMap<>();
+
+    private final LongAdder chiamate = new LongAdder();
+    private final LongAdder istruzioniSql = new LongAdder();
+
+    /** Istruzioni SQL eseguite finora dal thread corrente, per calcolare quelle di ogni chiamata. */
+    private final ThreadLocal<long[]> istruzioniThread = ThreadLocal.withInitial(() -> new long[1]);
+
+    /** Profondità delle chiamate DAO in corso sul thread corrente (maggiore di 1 per quelle annidate). */
+    private final ThreadLocal<int[]> profondita = ThreadLocal.withInitial(() -> new int[1]);
+
+    /** Azione dell'interfaccia a cui attribuire le chiamate del thread corrente. */
+    private final ThreadLocal<Azione> azioneCorrente = new ThreadLocal<>();
+
+    /** Ultimi resoconti, dal più recente. Protetta da {@code this}. */
+    private final Deque<String> ultimeAzioni = new ArrayDeque<>();
+
+    private volatile boolean jmx = false;
+
+    /**
+     * Avvolge un DAO in un proxy che ne misura tutti i metodi dell'interfaccia.
+     *
+     * @param interfaccia L'interfaccia DAO (es. {@code ToDoDAO.class}).
+     * @param dao         L'implementazione da misurare.
+     * @param <T>         Il tipo dell'interfaccia.
+     * @return Il DAO strumentato, da usare al posto di {@code dao}.
+     */
+    public <T> T strumenta(Class<T> interfaccia, T dao) {
+        return interfaccia.cast(Proxy.newProxyInstance(interfaccia.getClassLoader(), new Class<?>[]{interfaccia},
+                new ChiamataMisurata(interfaccia, dao)));
+    }
+
+    /**
+     * Registra l'esecuzione di un'istruzione SQL sul thread corrente.
+     * Va collegato al pool di connessioni (vedi {@code ConnectionPool#setOsservatoreIstruzioni}).
+     */
+    public void istruzioneSqlEseguita() {
+        istruzioniSql.increment();
+        istruzioniThread.get()[0]++;
+        Azione azione = azioneCorrente.get();
+        if (azione != null) {
+            azione.istruzioniSql.increment();
+        }
+    }
+
+    /**
+     * Pubblica via JMX il riepilogo e le metriche di ogni metodo, compresi quelli misurati in seguito.
+     * Se la registrazione non riesce l'errore viene solo registrato nel log.
+     */
+    public void pubblicaJmx() {
+        jmx = true;
+        registra(nomeJmx(DOMINIO_JMX + ":type=MetricheDAO"), this);
+        statistiche.values().forEach(StatisticheMetodo::registraJmx);
+    }
+
+    // --- azioni dell'interfaccia ---
+
+    /**
+     * Inizia un'azione dell'interfaccia grafica (es. il click su una checkbox) sul thread corrente.
+     * Le chiamate DAO eseguite da questo thread fino a {@link Azione#close()}, e quelle delle operazioni
+     * asincrone avviate nel frattempo (vedi {@link #agganciaAzioneCorrente()}), vengono attribuite all'azione.
+     *
+     * @param nome Il nome dell'azione, usato nel resoconto.
+     * @return L'azione, da chiudere con try-with-resources.
+     */
+    public Azione iniziaAzione(String nome) {
+        Azione azione = new Azione(nome, azioneCorrente.get());
+        azioneCorrente.set(azione);
+        return azione;
+    }
+
+    /**
+     * Segnala che sta per essere avviata un'operazione asincrona per conto dell'azione corrente:
+     * il resoconto dell'azione attenderà anche la sua conclusione.
+     *
+     * @return L'azione corrente, da passare a {@link #eseguiInAzione} e {@link #rilascia}; {@code null} se non c'è.
+     */
+    public Azione agganciaAzioneCorrente() {
+        Azione azione = azioneCorrente.get();
+        if (azione != null) {
+            azione.inSospeso.incrementAndGet();
+        }
+        return azione;
+    }
+
+    /**
+     * Esegue un'operazione attribuendone le chiamate DAO all'azione indicata.
+     *
+     * @param azione     L'azione ottenuta da {@link #agganciaAzioneCorrente()} (può essere {@code null}).
+     * @param operazione L'operazione da eseguire.
+     * @param <T>        Il tipo del risultato.
+     * @return Il risultato dell'operazione.
+     */
+    public <T> T eseguiInAzione(Azione azione, Supplier<T> operazione) {
+        if (azione == null) {
+            return operazione.get();
+        }
+        Azione precedente = azioneCorrente.get();
+        azioneCorrente.set(azione);
+        try {
+            return operazione.get();
+        } finally {
+            ripristina(precedente);
+        }
+    }
+
+    /**
+     * Variante di {@link #eseguiInAzione(Azione, Supplier)} per operazioni senza risultato.
+     *
+     * @param azione     L'azione (può essere {@code null}).
+     * @param operazione L'operazione da eseguire.
+     */
+    public void eseguiInAzione(Azione azione, Runnable operazione) {
+        eseguiInAzione(azione, () -> {
+            operazione.run();
+            return null;
+        });
+    }
+
+    /**
+     * Segnala la fine di un'operazione asincrona agganciata con {@link #agganciaAzioneCorrente()}.
+     *
+     * @param azione L'azione (può essere {@code null}).
+     */
+    public void rilascia(Azione azione) {
+        if (azione != null) {
+            azione.termina();
+        }
+    }
+
+    private void ripristina(Azione precedente) {
+        if (precedente == null) {
+            azioneCorrente.remove();
+        } else {
+            azioneCorrente.set(precedente);
+        }
+    }
+
+    // --- riepilogo ---
+
+    @Override
+    public long getChiamate() {
+        return chiamate.sum();
+    }
+
+    @Override
+    public long getIstruzioniSql() {
+        return istruzioniSql.sum();
+    }
+
+    @Override
+    public synchronized List<String> getUltimeAzioni() {
+        return new ArrayList<>(ultimeAzioni);
+    }
+
+    @Override
+    public void azzera() {
+        chiamate.reset();
+        istruzioniSql.reset();
+        statistiche.values().forEach(StatisticheMetodo::azzera);
+        synchronized (this) {
+            ultimeAzioni.clear();
+        }
+    }
+
+    /**
+     * Restituisce le metriche di un metodo, se è già stato chiamato almeno una volta.
+     *
+     * @param interfaccia L'interfaccia DAO.
+     * @param metodo      Il nome del metodo (per i metodi sovraccarichi, la firma: es. {@code "getAllToDo(CursoreToDo, int)"}).
+     * @return Le metriche, oppure {@code null}.
+     */
+    public MetodoDAOMXBean getStatistiche(Class<?> interfaccia, String metodo) {
+        return statistiche.get(interfaccia.getSimpleName() + "." + metodo);
+    }
+
+    /**
+     * Registra nel log (livello INFO) una riga per ogni metodo chiamato, in ordine alfabetico.
+     */
+    public void logRiepilogo() {
+        for (Map.Entry<String, StatisticheMetodo> voce : new TreeMap<>(statistiche).entrySet()) {
+            StatisticheMetodo s = voce.getValue();
+            if (s.getChiamate() > 0) {
+                LOGGER.log(Level.INFO, "{0}: {1} chiamate, p50 {2} µs, p95 {3} µs, p99 {4} µs, {5} righe, {6} istruzioni SQL/chiamata",
+                        new Object[]{voce.getKey(), s.getChiamate(), s.getLatenzaP50Micros(), s.getLatenzaP95Micros(),
+                                s.getLatenzaP99Micros(), s.getRighe(), String.format("%.1f", s.getIstruzioniSqlPerChiamata())});
+            }
+        }
+    }
+
+    private synchronized void conservaResoconto(String resoconto) {
+        ultimeAzioni.addFirst(resoconto);
+        while (ultimeAzioni.size() > AZIONI_CONSERVATE) {
+            ultimeAzioni.removeLast();
+        }
+    }
+
+    private static void registra(ObjectName nome, Object mxBean) {
+        if (nome == null) {
+            return;
+        }
+        try {
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(nome)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(mxBean, nome);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Impossibile pubblicare via JMX " + nome, e);
+        }
+    }
+
+    /** @return Il nome JMX, oppure {@code null} (con un avviso nel log) se non è valido. */
+    private static ObjectName nomeJmx(String nome) {
+        try {
+            return new ObjectName(nome);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Nome JMX non valido: " + nome, e);
+            return null;
+        }
+    }
+
+    /**
+     * Conta le righe di un risultato: elementi di collezioni, mappe e pagine, 1 per un singolo oggetto.
+     * Gli stream vengono restituiti avvolti, così che le righe siano contate man mano che vengono lette.
+     */
+    private static Object contaRighe(Object risultato, StatisticheMetodo s) {
+        switch (risultato) {
+            case null -> { }
+            case Collection<?> c -> s.righe.add(c.size());
+            case Map<?, ?> m -> s.righe.add(m.size());
+            case PaginaToDo p -> s.righe.add(p.todos().size());
+            case PaginaRicerca p -> s.righe.add(p.risultati().size());
+            case Stream<?> stream -> {
+                return stream.peek(elemento -> s.righe.increment());
+            }
+            case Boolean _, Number _ -> { }
+            default -> s.righe.increment();
+        }
+        return risultato;
+    }
+
+    /**
+     * Azione dell'interfaccia grafica a cui vengono attribuite le chiamate DAO.
+     * Il resoconto viene registrato quando l'azione è chiusa e tutte le operazioni asincrone
+     * agganciate sono terminate.
+     */
+    public final class Azione implements AutoCloseable {
+        private final String nome;
+        private final Azione precedente;
+        private final long inizio = System.nanoTime();
+
+        /** L'azione stessa più le operazioni asincrone agganciate e non ancora terminate. */
+        private final AtomicInteger inSospeso = new AtomicInteger(1);
+
+        private final LongAdder istruzioniSql = new LongAdder();
+        private final LongAdder nanosDao = new LongAdder();
+        private final Map<String, LongAdder> chiamate = new ConcurrentHashMap<>();
+
+        private Azione(String nome, Azione precedente) {
+            this.nome = nome;
+            this.precedente = precedente;
+        }
+
+        private void registraChiamata(String metodo, long nanos) {
+            chiamate.computeIfAbsent(metodo, k -> new LongAdder()).increment();
+            nanosDao.add(nanos);
+        }
+
+        /** Chiude l'azione sul thread che l'ha iniziata. */
+        @Override
+        public void close() {
+            if (azioneCorrente.get() == this) {
+                ripristina(precedente);
+            }
+            termina();
+        }
+
+        private void termina() {
+            if (inSospeso.decrementAndGet() == 0) {
+                String resoconto = resoconto();
+                conservaResoconto(resoconto);
+                LOGGER.fine(resoconto);
+            }
+        }
+
+        private String resoconto() {
+            StringJoiner metodi = new StringJoiner(", ", "[", "]");
+            long numeroChiamate = 0;
+            for (Map.Entry<String, LongAdder> voce : new TreeMap<>(chiamate).entrySet()) {
+                long n = voce.getValue().sum();
+                numeroChiamate += n;
+                metodi.add(n == 1 ? voce.getKey() : voce.getKey() + " x" + n);
+            }
+            return String.format("%s: %d istruzioni SQL, %d chiamate DAO %s, %.1f ms nei DAO, %d ms totali",
+                    nome, istruzioniSql.sum(), numeroChiamate, metodi,
+                    nanosDao.sum() / 1_000_000.0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inizio));
+        }
+    }
+
+    /** Metriche di un metodo DAO, pubblicabili come MXBean. */
+    private static final class StatisticheMetodo implements MetodoDAOMXBean {
+        private final ObjectName nomeJmx;
+        private final LongAdder errori = new LongAdder();
+        private final LongAdder righe = new LongAdder();
+        private final LongAdder istruzioni = new LongAdder();
+        private final IstogrammaLatenze latenze = new IstogrammaLatenze();
+
+        StatisticheMetodo(String interfaccia, String firma) {
+            this.nomeJmx = nomeJmx(DOMINIO_JMX + ":type=" + interfaccia + ",name=" + ObjectName.quote(firma));
+        }
+
+        void registraJmx() {
+            registra(nomeJmx, this);
+        }
+
+        @Override
+        public long getChiamate() {
+            return latenze.getCampioni();
+        }
+
+        @Override
+        public long getErrori() {
+            return errori.sum();
+        }
+
+        @Override
+        public long getRighe() {
+            return righe.sum();
+        }
+
+        @Override
+        public long getIstruzioniSql() {
+            return istruzioni.sum();
+        }
+
+        @Override
+        public double getIstruzioniSqlPerChiamata() {
+            long n = getChiamate();
+            return n == 0 ? 0 : (double) istruzioni.sum() / n;
+        }
+
+        @Override
+        public long getLatenzaMediaMicros() {
+            return latenze.getMedia();
+        }
+
+        @Override
+        public long getLatenzaP50Micros() {
+            return latenze.percentile(50);
+        }
+
+        @Override
+        public long getLatenzaP95Micros() {
+            return latenze.percentile(95);
+        }
+
+        @Override
+        public long getLatenzaP99Micros() {
+            return latenze.percentile(99);
+        }
+
+        @Override
+        public long getLatenzaMassimaMicros() {
+            return latenze.getMassimo();
+        }
+
+        @Override
+        public void azzera() {
+            errori.reset();
+            righe.reset();
+            istruzioni.reset();
+            latenze.azzera();
+        }
+    }
+
+    /** Gestore del proxy di {@link #strumenta(Class, Object)}: misura ogni chiamata e la inoltra al DAO. */
+    private final class ChiamataMisurata implements InvocationHandler {
+        private final Class<?> interfaccia;
+        private final Object dao;
+
+        /** Metriche dei metodi di questo DAO, per evitare di ricalcolare la firma a ogni chiamata. */
+        private final Map<Method, StatisticheMetodo> perMetodo = new ConcurrentHashMap<>();
+
+        ChiamataMisurata(Class<?> interfaccia, Object dao) {
+            this.interfaccia = interfaccia;
+            this.dao = dao;
+        }
+
+        private StatisticheMetodo statistiche(Method method) {
+            return perMetodo.computeIfAbsent(method, m -> statistiche.computeIfAbsent(chiave(m), k -> {
+                StatisticheMetodo nuove = new StatisticheMetodo(interfaccia.getSimpleName(), firma(m));
+                if (jmx) {
+                    nuove.registraJmx();
+                }
+                return nuove;
+            }));
+        }
+
+        /** Il nome del metodo, oppure la firma completa se l'interfaccia ha più metodi con lo stesso nome. */
+        private String firma(Method method) {
+            long omonimi = Stream.of(interfaccia.getMethods()).filter(m -> m.getName().equals(method.getName())).count();
+            if (omonimi == 1) {
+                return method.getName();
+            }
+            StringJoiner parametri = new StringJoiner(", ", method.getName() + "(", ")");
+            for (Class<?> tipo : method.getParameterTypes()) {
+                parametri.add(tipo.getSimpleName());
+            }
+            return parametri.toString();
+        }
+
+        private String chiave(Method method) {
+            return interfaccia.getSimpleName() + "." + firma(method);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "Misurato[" + dao + "]";
+                };
+            }
+
+            StatisticheMetodo s = statistiche(method);
+            int[] livello = profondita.get();
+            long[] istruzioniPrima = istruzioniThread.get();
+            long istruzioniIniziali = istruzioniPrima[0];
+            livello[0]++;
+            long inizio = System.nanoTime();
+            try {
+                return contaRighe(method.invoke(dao, args), s);
+            } catch (InvocationTargetException e) {
+                s.errori.increment();
+                throw e.getCause();
+            } finally {
+                long nanos = System.nanoTime() - inizio;
+                livello[0]--;
+                s.latenze.registra(TimeUnit.NANOSECONDS.toMicros(nanos));
+                s.istruzioni.add(istruzioniPrima[0] - istruzioniIniziali);
+                if (livello[0] == 0) {
+                    chiamate.increment();
+                    Azione azione = azioneCorrente.get();
+                    if (azione != null) {
+                        azione.registraChiamata(interfaccia.getSimpleName() + "." + method.getName(), nanos);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dao;
+
+import java.util.List;
+
+/**
+ * Interfaccia JMX con il riepilogo di {@link MetricheDAO}, pubblicata con nome {@code todo.dao:type=MetricheDAO}.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public interface MetricheDAOMXBean {
+
+    /** @return Il numero totale di chiamate DAO di primo livello (escluse quelle annidate). */
+    long getChiamate();
+
+    /** @return Il numero totale di istruzioni SQL preparate, anche fuori dai DAO. */
+    long getIstruzioniSql();
+
+    /** @return I resoconti delle ultime azioni dell'interfaccia grafica, dal più recente. */
+    List<String> getUltimeAzioni();
+
+    /** Azzera le metriche di tutti i metodi e dimentica i resoconti delle azioni. */
+    void azzera();
+}
@@ -0,0 +1,26 @@
+package dao;
+
+import model.ToDo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Le modifiche ai ToDo visibili da un utente avvenute dopo un certo watermark
+ * (vedi {@link ToDoDAO#getModificheDal(long, int)}).
+ *
+ * @param perBacheca I ToDo inseriti o modificati (anche solo nella checklist o nelle condivisioni),
+ *                   per ID della bacheca dell'utente in cui vanno mostrati.
+ * @param eliminati  Gli ID dei ToDo eliminati o non più condivisi con l'utente.
+ * @param watermark  Il watermark da passare alla sincronizzazione successiva.
+ * @author marrenza
+ * @version 1.0
+ */
+public record ModificheToDo(Map<Integer, List<ToDo>> perBacheca, Set<Integer> eliminati, long watermark) {
+
+    /** @return {@code true} se non c'è nessuna modifica. */
+    public boolean isVuota() {
+        return perBacheca.isEmpty() && eliminati.isEmpty();
+    }
+}
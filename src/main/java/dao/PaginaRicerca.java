@@ -0,0 +1,20 @@
+package dao;
+
+import model.ToDo;
+
+import java.util.List;
+
+/**
+ * Una pagina di risultati di una ricerca testuale, ordinati per rilevanza.
+ *
+ * @param risultati       I ToDo della pagina, dal più al meno rilevante.
+ * @param pagina          L'indice della pagina (a partire da 0).
+ * @param dimensione      Il numero massimo di risultati per pagina.
+ * @param altriRisultati  {@code true} se esiste almeno un'altra pagina dopo questa.
+ * @param fullText        {@code true} se la ricerca ha usato l'indice full-text;
+ *                        {@code false} se è stata usata la ricerca semplice di ripiego.
+ * @author marrenza
+ * @version 1.0
+ */
+public record PaginaRicerca(List<ToDo> risultati, int pagina, int dimensione, boolean altriRisultati, boolean fullText) {
+}
@@ -0,0 +1,21 @@
+package dao;
+
+import model.ToDo;
+
+import java.util.List;
+
+/**
+ * Una pagina di ToDo letta con la paginazione "keyset" (vedi {@link CursoreToDo}).
+ *
+ * @param todos      I ToDo della pagina, nell'ordine richiesto.
+ * @param successivo Il cursore per leggere la pagina successiva, oppure {@code null} se questa è l'ultima.
+ * @author marrenza
+ * @version 1.0
+ */
+public record PaginaToDo(List<ToDo> todos, CursoreToDo successivo) {
+
+    /** @return {@code true} se esiste almeno un'altra pagina dopo questa. */
+    public boolean haSuccessiva() {
+        return successivo != null;
+    }
+}
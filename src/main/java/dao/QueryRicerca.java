@@ -0,0 +1,156 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Query di ricerca testuale sui ToDo, ottenuta analizzando il testo inserito dall'utente.
+ * <p>
+ * La sintassi supportata è volutamente semplice:
+ * <ul>
+ * <li>{@code parola} &mdash; il ToDo deve contenere la parola;</li>
+ * <li>{@code pref*} &mdash; il ToDo deve contenere una parola che inizia con "pref";</li>
+ * <li>{@code "frase esatta"} &mdash; le parole devono comparire consecutive (anche {@code "frase es*"}).</li>
+ * </ul>
+ * Più termini vanno soddisfatti tutti (AND). Le parole vengono ridotte a lettere e cifre in minuscolo,
+ * quindi la query risultante può essere inserita senza rischi nelle espressioni {@code tsquery}.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public final class QueryRicerca {
+
+    /**
+     * Singolo termine della query.
+     *
+     * @param parole   Le parole del termine (più di una per le frasi).
+     * @param prefisso Se {@code true}, l'ultima parola è un prefisso.
+     */
+    public record Termine(List<String> parole, boolean prefisso) {
+        /** @return {@code true} se il termine è una frase di più parole consecutive. */
+        public boolean isFrase() {
+            return parole.size() > 1;
+        }
+    }
+
+    private final String testo;
+    private final List<Termine> termini;
+
+    private QueryRicerca(String testo, List<Termine> termini) {
+        this.testo = testo;
+        this.termini = Collections.unmodifiableList(termini);
+    }
+
+    /**
+     * Analizza il testo inserito dall'utente.
+     *
+     * @param testo Il testo della ricerca (può contenere frasi tra virgolette e prefissi con "*").
+     * @return La query analizzata; è vuota se il testo non contiene nessuna parola utile.
+     */
+    public static QueryRicerca analizza(String testo) {
+        List<Termine> termini = new ArrayList<>();
+        if (testo != null) {
+            int i = 0;
+            while (i < testo.length()) {
+                char c = testo.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"') {
+                    int fine = testo.indexOf('"', i + 1);
+                    if (fine < 0) {
+                        fine = testo.length();
+                    }
+                    aggiungiTermine(termini, testo.substring(i + 1, fine));
+                    i = fine + 1;
+                } else {
+                    int fine = i;
+                    while (fine < testo.length() && !Character.isWhitespace(testo.charAt(fine)) && testo.charAt(fine) != '"') {
+                        fine++;
+                    }
+                    aggiungiTermine(termini, testo.substring(i, fine));
+                    i = fine;
+                }
+            }
+        }
+        return new QueryRicerca(testo == null ? "" : testo.trim(), termini);
+    }
+
+    private static void aggiungiTermine(List<Termine> termini, String grezzo) {
+        String pulito = grezzo.trim();
+        boolean prefisso = pulito.endsWith("*");
+        List<String> parole = new ArrayList<>();
+        StringBuilder parola = new StringBuilder();
+        for (int i = 0; i < pulito.length(); i++) {
+            char c = pulito.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                parola.append(Character.toLowerCase(c));
+            } else if (!parola.isEmpty()) {
+                parole.add(parola.toString());
+                parola.setLength(0);
+            }
+        }
+        if (!parola.isEmpty()) {
+            parole.add(parola.toString());
+        }
+        if (!parole.isEmpty()) {
+            termini.add(new Termine(List.copyOf(parole), prefisso));
+        }
+    }
+
+    /**
+     * Restituisce la query nella sintassi di {@code to_tsquery} di PostgreSQL
+     * (es. {@code bilancio & "relazione finale"} diventa {@code bilancio & relazione <-> finale}).
+     *
+     * @return L'espressione tsquery, oppure una stringa vuota se la query è vuota.
+     */
+    public String toTsQuery() {
+        List<String> parti = new ArrayList<>(termini.size());
+        for (Termine termine : termini) {
+            List<String> parole = new ArrayList<>(termine.parole());
+            if (termine.prefisso()) {
+                int ultima = parole.size() - 1;
+                parole.set(ultima, parole.get(ultima) + ":*");
+            }
+            String espressione = String.join(" <-> ", parole);
+            parti.add(termine.isFrase() ? "(" + espressione + ")" : espressione);
+        }
+        return String.join(" & ", parti);
+    }
+
+    /**
+     * Restituisce, per ogni termine, un pattern {@code LIKE} (già in minuscolo) equivalente.
+     * Usato quando l'indice full-text non è disponibile.
+     *
+     * @return Un pattern per termine, da combinare in AND.
+     */
+    public List<String> toPatternLike() {
+        List<String> pattern = new ArrayList<>(termini.size());
+        for (Termine termine : termini) {
+            pattern.add("%" + String.join(" ", termine.parole()) + "%");
+        }
+        return pattern;
+    }
+
+    /** @return I termini della query. */
+    public List<Termine> getTermini() {
+        return termini;
+    }
+
+    /** @return Il testo originale inserito dall'utente. */
+    public String getTesto() {
+        return testo;
+    }
+
+    /** @return {@code true} se la query non contiene nessun termine. */
+    public boolean isVuota() {
+        return termini.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return testo;
+    }
+}
@@ -3,13 +3,22 @@ package dao;
 import model.ToDo;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interfaccia che definisce le operazioni di accesso ai dati (CRUD) per l'entità {@link ToDo}.
  * Questa interfaccia è il cuore della persistenza delle attività. Oltre alle operazioni standard
  * (Create, Read, Update, Delete), definisce metodi complessi per la ricerca (per termine o scadenza)
  * e per il recupero dei ToDo visibili a un utente, inclusi quelli condivisi.
+ * <p>
+ * Per i risultati potenzialmente grandi sono disponibili anche varianti paginate con cursore
+ * ({@link CursoreToDo}, {@link PaginaToDo}) e varianti in streaming, che leggono le righe a blocchi
+ * senza mai materializzare l'intero risultato in memoria.
+ * </p>
  *
  * @author marrenza
  * @version 1.0
@@ -40,14 +49,100 @@ public interface ToDoDAO {
      */
     List<ToDo> getAllToDo();
 
+    /**
+     * Recupera una pagina di tutti i ToDo, ordinati per {@code (posizione, id)}.
+     *
+     * @param dopo             Il cursore restituito dalla pagina precedente, oppure {@code null} per la prima pagina.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina richiesta, con il cursore per quella successiva.
+     */
+    PaginaToDo getAllToDo(CursoreToDo dopo, int dimensionePagina);
+
+    /**
+     * Restituisce tutti i ToDo, ordinati per {@code (posizione, id)}, come stream letto a blocchi dal database.
+     * <p>
+     * Lo stream tiene occupata una connessione del pool (con una transazione aperta) finché non viene
+     * chiuso o letto fino in fondo: il chiamante deve quindi sempre chiuderlo, usandolo in un blocco
+     * try-with-resources, oppure passare per {@link #forEachToDo(Consumer)}, che lo chiude da sé.
+     * Uno stream abbandonato viene rilasciato solo dal garbage collector.
+     * </p>
+     *
+     * @return Lo stream dei ToDo completi (autore, checklist e condivisioni).
+     */
+    Stream<ToDo> streamAllToDo();
+
+    /**
+     * Passa all'azione indicata tutti i ToDo, ordinati per {@code (posizione, id)}, uno alla volta
+     * e con memoria costante, indipendentemente dalla dimensione della tabella.
+     *
+     * @param azione L'azione da eseguire per ogni ToDo.
+     */
+    default void forEachToDo(Consumer<? super ToDo> azione) {
+        try (Stream<ToDo> todos = streamAllToDo()) {
+            todos.forEach(azione);
+        }
+    }
+
+    /**
+     * Restituisce come stream, letto a blocchi dal database, tutti i ToDo visibili dall'utente
+     * (autore o condivisi), ordinati per {@code (scadenza, id)}.
+     * Come {@link #streamAllToDo()}, il chiamante deve chiuderlo (in un blocco try-with-resources)
+     * oppure usare {@link #forEachToDoVisibile(int, Consumer)}.
+     *
+     * @param userId L'ID dell'utente.
+     * @return Lo stream dei ToDo visibili.
+     */
+    Stream<ToDo> streamToDosVisibili(int userId);
+
+    /**
+     * Passa all'azione indicata, uno alla volta, tutti i ToDo visibili dall'utente, ordinati per {@code (scadenza, id)}.
+     *
+     * @param userId L'ID dell'utente.
+     * @param azione L'azione da eseguire per ogni ToDo.
+     */
+    default void forEachToDoVisibile(int userId, Consumer<? super ToDo> azione) {
+        try (Stream<ToDo> todos = streamToDosVisibili(userId)) {
+            todos.forEach(azione);
+        }
+    }
+
     /**
      * Aggiorna le informazioni di un ToDo esistente.
      * Utilizzato per modificare titolo, descrizione, stato, posizione, ecc.
+     * <p>
+     * Il controllo di concorrenza è ottimistico: la riga viene scritta solo se la sua versione è ancora
+     * quella del ToDo ({@link ToDo#getVersione()}), che dopo il salvataggio riceve la nuova versione.
+     * Altrimenti non viene scritto nulla e viene sollevata una {@link ConflittoVersioneException}
+     * con la versione attuale, da unire alle modifiche locali.
+     * La versione cambia solo con i dati del ToDo: le scritture della checklist, delle condivisioni e del
+     * solo rango ({@link #updatePosizione}, {@link #updatePosizioni}) non la rendono obsoleta.
+     * </p>
      *
      * @param todo L'oggetto ToDo con i dati aggiornati.
+     * @throws ConflittoVersioneException Se un altro utente ha modificato il ToDo dopo l'ultima lettura.
+     * @throws IllegalStateException      Se la scrittura non riesce per un errore del database.
      */
     void updateToDo(ToDo todo);
 
+    /**
+     * Aggiorna solo la posizione (il rango nell'ordinamento della bacheca) di un ToDo.
+     * Uno spostamento all'interno della bacheca modifica così una sola riga, senza controllo di versione:
+     * il rango non è un dato dell'utente (vedi {@link #updateToDo(ToDo)}).
+     *
+     * @param id        L'identificativo del ToDo.
+     * @param posizione Il nuovo rango.
+     * @throws IllegalStateException Se il salvataggio non riesce.
+     */
+    void updatePosizione(int id, int posizione);
+
+    /**
+     * Aggiorna in un'unica transazione le posizioni di più ToDo (es. dopo il ribilanciamento dei ranghi di una bacheca).
+     *
+     * @param posizioni Mappa ID del ToDo → nuovo rango.
+     * @throws IllegalStateException Se il salvataggio non riesce (nessuna posizione viene aggiornata).
+     */
+    void updatePosizioni(Map<Integer, Integer> posizioni);
+
     /**
      * Elimina un ToDo dal database.
      *
@@ -66,6 +161,34 @@ public interface ToDoDAO {
      */
     List<ToDo> findToDosByTerm(String searchTerm, int userId);
 
+    /**
+     * Variante paginata di {@link #findToDosByTerm(String, int)}, ordinata per {@code (scadenza, id)}.
+     *
+     * @param searchTerm       La stringa da cercare.
+     * @param userId           L'ID dell'utente che effettua la ricerca.
+     * @param dopo             Il cursore restituito dalla pagina precedente, oppure {@code null} per la prima pagina.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina richiesta, con il cursore per quella successiva.
+     */
+    PaginaToDo findToDosByTerm(String searchTerm, int userId, CursoreToDo dopo, int dimensionePagina);
+
+    /**
+     * Esegue una ricerca testuale ordinata per rilevanza su titolo, descrizione e nomi delle
+     * attività della checklist, limitata ai ToDo visibili dall'utente (autore o condivisi).
+     * <p>
+     * Supporta prefissi e frasi (vedi {@link QueryRicerca}) e restituisce una pagina di risultati.
+     * Se l'indice full-text non è disponibile, l'implementazione ripiega su una ricerca semplice
+     * e lo segnala con {@link PaginaRicerca#fullText()}.
+     * </p>
+     *
+     * @param query            La query analizzata.
+     * @param userId           L'ID dell'utente che effettua la ricerca.
+     * @param pagina           L'indice della pagina richiesta (a partire da 0).
+     * @param dimensionePagina Il numero massimo di risultati per pagina.
+     * @return La pagina di risultati richiesta.
+     */
+    PaginaRicerca searchToDos(QueryRicerca query, int userId, int pagina, int dimensionePagina);
+
     /**
      * Cerca i ToDo che scadono entro una certa data.
 ì     * La ricerca è limitata ai ToDo visibili dall'utente specificato (autore o condivisi).
@@ -76,6 +199,17 @@ public interface ToDoDAO {
      */
     List<ToDo> findToDosByScadenza(LocalDate date, int userId);
 
+    /**
+     * Variante paginata di {@link #findToDosByScadenza(LocalDate, int)}, ordinata per {@code (scadenza, id)}.
+     *
+     * @param date             La data di scadenza cercata.
+     * @param userId           L'ID dell'utente che effettua la ricerca.
+     * @param dopo             Il cursore restituito dalla pagina precedente, oppure {@code null} per la prima pagina.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina richiesta, con il cursore per quella successiva.
+     */
+    PaginaToDo findToDosByScadenza(LocalDate date, int userId, CursoreToDo dopo, int dimensionePagina);
+
     /**
      * Cerca i ToDo in scadenza nella giornata odierna.
      * Metodo di convenienza che richiama {@link #findToDosByScadenza} con la data corrente.
@@ -101,6 +235,17 @@ public interface ToDoDAO {
      */
     List<ToDo> getToDosForBachecaAndUtente(int bachecaId,  int utenteId);
 
+    /**
+     * Variante paginata di {@link #getToDosForBachecaAndUtente(int, int)}, ordinata per {@code (posizione, id)}.
+     *
+     * @param bachecaId        L'ID della bacheca da visualizzare.
+     * @param utenteId         L'ID dell'utente corrente.
+     * @param dopo             Il cursore restituito dalla pagina precedente, oppure {@code null} per la prima pagina.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina richiesta, con il cursore per quella successiva.
+     */
+    PaginaToDo getToDosForBachecaAndUtente(int bachecaId, int utenteId, CursoreToDo dopo, int dimensionePagina);
+
     /**
      * Cerca i ToDo che sono *già scaduti* (data precedente a oggi) e non ancora completati.
      * <p>
@@ -112,6 +257,16 @@ public interface ToDoDAO {
      */
     List<ToDo> findToDosScaduti(int userId);
 
+    /**
+     * Variante paginata di {@link #findToDosScaduti(int)}, ordinata per {@code (scadenza, id)}.
+     *
+     * @param userId           L'ID dell'utente corrente.
+     * @param dopo             Il cursore restituito dalla pagina precedente, oppure {@code null} per la prima pagina.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina richiesta, con il cursore per quella successiva.
+     */
+    PaginaToDo findToDosScaduti(int userId, CursoreToDo dopo, int dimensionePagina);
+
     /**
      * Imposta come "COMPLETATO" tutti i ToDo appartenenti a una specifica bacheca.
      * Operazione batch utile per chiudere rapidamente una lista di attività.
@@ -119,4 +274,61 @@ public interface ToDoDAO {
      * @param bachecaId L'ID della bacheca target.
      */
     void markAllToDoAsCompletedByBachecaId(int bachecaId);
+
+    /**
+     * Carica in blocco autore e condivisioni dei ToDo indicati, che i metodi di lettura
+     * lasciano differiti fino al primo accesso.
+     * <p>
+     * Va invocato (fuori dall'EDT) prima di mostrare una finestra che usa queste relazioni:
+     * i ToDo che le hanno già vengono ignorati.
+     * </p>
+     *
+     * @param todos I ToDo di cui caricare le relazioni.
+     */
+    void precaricaRelazioni(Collection<ToDo> todos);
+
+    /**
+     * Rilegge i ToDo indicati, limitatamente a quelli ancora visibili dall'utente (autore o condivisi),
+     * raggruppandoli per la bacheca dell'utente in cui vanno mostrati (quella con lo stesso titolo
+     * della bacheca del ToDo, come in {@link #getToDosForBachecaAndUtente(int, int)}).
+     * <p>
+     * Usato per applicare le modifiche notificate da altri client senza ricaricare tutto:
+     * gli ID assenti dal risultato corrispondono a ToDo eliminati o non più visibili.
+     * Per questo, a differenza degli altri metodi di lettura, un errore non produce un risultato vuoto.
+     * </p>
+     *
+     * @param ids      Gli ID dei ToDo da rileggere.
+     * @param utenteId L'ID dell'utente corrente.
+     * @return Mappa ID della bacheca dell'utente → ToDo visibili in quella bacheca.
+     * @throws IllegalStateException Se la lettura non riesce.
+     */
+    Map<Integer, List<ToDo>> getToDosVisibiliByIds(Collection<Integer> ids, int utenteId);
+
+    /**
+     * Restituisce il watermark corrente, da leggere subito prima di un caricamento completo
+     * e da passare poi a {@link #getModificheDal(long, int)}.
+     *
+     * @return Il watermark.
+     * @throws IllegalStateException Se la lettura non riesce.
+     */
+    long getWatermarkModifiche();
+
+    /**
+     * Restituisce solo le modifiche ai ToDo visibili dall'utente avvenute dal watermark indicato:
+     * ToDo inseriti o aggiornati (compresi quelli di cui è cambiata un'attività o una condivisione)
+     * ed eliminazioni. Il costo dipende dal numero di modifiche, non dal numero di ToDo.
+     * I cambi del solo rango (riordini e ribilanciamenti) non contano come modifiche.
+     * <p>
+     * Un ToDo può essere restituito più di una volta in sincronizzazioni successive: le modifiche
+     * vanno applicate per ID. Come {@link #getToDosVisibiliByIds(Collection, int)}, in caso di errore
+     * non restituisce un risultato vuoto, che verrebbe scambiato per "nessuna modifica".
+     * </p>
+     *
+     * @param watermark Il watermark della sincronizzazione precedente (o di {@link #getWatermarkModifiche()}),
+     *                  oppure 0 per ottenere tutti i ToDo visibili.
+     * @param utenteId  L'ID dell'utente corrente.
+     * @return Le modifiche, con il watermark per la sincronizzazione successiva.
+     * @throws IllegalStateException Se la lettura non riesce.
+     */
+    ModificheToDo getModificheDal(long watermark, int utenteId);
 }
@@ -0,0 +1,137 @@
+package dao;
+
+import model.Attivita;
+import model.Checklist;
+import model.Condivisione;
+import model.ToDo;
+import model.Utente;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ricostruisce il grafo (autore, checklist, condivisioni) di una pagina di {@link ToDo}.
+ * <p>
+ * Invece di interrogare il database riga per riga, raccoglie gli ID dell'intera pagina ed esegue
+ * una sola query {@code = ANY(?)} per ciascuna tabella collegata (attività, condivisioni, utenti),
+ * ricucendo poi le relazioni in memoria. Il numero di query per pagina resta quindi costante,
+ * indipendentemente dal numero di ToDo caricati.
+ * </p>
+ * <p>
+ * La checklist, visualizzata nelle bacheche, viene caricata subito. Autore e condivisioni, che servono
+ * solo ad alcune finestre, vengono caricati al primo accesso di uno qualsiasi dei ToDo, per tutta
+ * la pagina insieme, oppure in anticipo con {@link #caricaRelazioni(Collection)}.
+ * </p>
+ * <p>
+ * Usa solo le interfacce dei DAO, quindi è condiviso dalle implementazioni PostgreSQL e in memoria.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class ToDoGraphLoader {
+    private final UtenteDAO utenteDAO;
+    private final AttivitaDAO attivitaDAO;
+    private final CondivisioneDAO condivisioneDAO;
+
+    /**
+     * Costruttore del loader.
+     *
+     * @param utenteDAO       Il DAO usato per risolvere autori e destinatari delle condivisioni.
+     * @param attivitaDAO     Il DAO usato per caricare le checklist.
+     * @param condivisioneDAO Il DAO usato per caricare le condivisioni.
+     */
+    public ToDoGraphLoader(UtenteDAO utenteDAO, AttivitaDAO attivitaDAO, CondivisioneDAO condivisioneDAO) {
+        this.utenteDAO = utenteDAO;
+        this.attivitaDAO = attivitaDAO;
+        this.condivisioneDAO = condivisioneDAO;
+    }
+
+    /**
+     * Completa i ToDo indicati collegando la checklist e registrando il caricamento differito
+     * di autore e condivisioni. I ToDo devono avere già valorizzati ID e ID autore (letti dalla tabella {@code todo}).
+     *
+     * @param todos La pagina di ToDo da completare.
+     */
+    public void carica(List<ToDo> todos) {
+        if (todos.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Attivita>> attivitaPerToDo = attivitaDAO.getAttivitaByToDoIds(raccogliIdToDo(todos));
+
+        List<ToDo> pagina = List.copyOf(todos);
+        Runnable caricatore = () -> caricaRelazioni(pagina);
+        for (ToDo todo : todos) {
+            Checklist checklist = new Checklist();
+            List<Attivita> attivitaList = attivitaPerToDo.get(todo.getId());
+            if (attivitaList != null) {
+                checklist.setAttivita(attivitaList);
+            }
+            todo.setChecklist(checklist);
+            todo.setCaricatoreRelazioni(caricatore);
+        }
+    }
+
+    /**
+     * Carica subito, con una query per tabella, autore e condivisioni dei ToDo indicati
+     * che non li hanno ancora. Da usare prima di aprire una finestra che li mostra per molti ToDo.
+     *
+     * @param todos I ToDo di cui caricare le relazioni.
+     */
+    public synchronized void caricaRelazioni(Collection<ToDo> todos) {
+        List<ToDo> daCaricare = new ArrayList<>();
+        for (ToDo todo : todos) {
+            if (!todo.isRelazioniCaricate()) {
+                daCaricare.add(todo);
+            }
+        }
+        if (daCaricare.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Condivisione>> condivisioniPerToDo = condivisioneDAO.getCondivisioniByToDoIds(raccogliIdToDo(daCaricare));
+        Map<Integer, Utente> utenti = utenteDAO.getUtentiByIds(raccogliIdUtenti(daCaricare, condivisioniPerToDo.values()));
+
+        for (ToDo todo : daCaricare) {
+            todo.setAutore(utenti.get(todo.getIdAutore()));
+
+            List<Condivisione> condivisioni = condivisioniPerToDo.get(todo.getId());
+            if (condivisioni == null) {
+                condivisioni = new ArrayList<>();
+            }
+            for (Condivisione c : condivisioni) {
+                c.setUtente(utenti.get(c.getIdUtente()));
+                c.setToDo(todo);
+            }
+            todo.setCondivisioni(condivisioni);
+            todo.setCaricatoreRelazioni(null);
+        }
+    }
+
+    private static List<Integer> raccogliIdToDo(List<ToDo> todos) {
+        List<Integer> todoIds = new ArrayList<>(todos.size());
+        for (ToDo todo : todos) {
+            todoIds.add(todo.getId());
+        }
+        return todoIds;
+    }
+
+    /**
+     * Raccoglie gli ID (senza duplicati) di tutti gli autori e di tutti i destinatari delle condivisioni.
+     */
+    private Set<Integer> raccogliIdUtenti(List<ToDo> todos, Collection<List<Condivisione>> condivisioni) {
+        Set<Integer> ids = new HashSet<>();
+        for (ToDo todo : todos) {
+            ids.add(todo.getIdAutore());
+        }
+        for (List<Condivisione> lista : condivisioni) {
+            for (Condivisione c : lista) {
+                ids.add(c.getIdUtente());
+            }
+        }
+        return ids;
+    }
+}
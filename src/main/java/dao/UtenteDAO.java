@@ -1,7 +1,9 @@
 package dao;
 
 import model.Utente;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interfaccia che definisce le operazioni di accesso ai dati (CRUD) per l'entità {@link Utente}.
@@ -31,6 +33,16 @@ public interface UtenteDAO {
      */
     Utente getUtenteById(int id);
 
+    /**
+     * Recupera in un'unica interrogazione tutti gli utenti con gli ID indicati.
+     * Utilizzato per risolvere autori e destinatari delle condivisioni di molti ToDo
+     * con un solo accesso al database.
+     *
+     * @param ids Gli identificativi degli utenti (eventuali duplicati vengono ignorati).
+     * @return Una mappa ID → {@link Utente}; gli ID inesistenti non compaiono come chiave.
+     */
+    Map<Integer, Utente> getUtentiByIds(Collection<Integer> ids);
+
     /**
      * Recupera un utente tramite il suo login (username).
      * Questo metodo è fondamentale per la procedura di autenticazione (login)
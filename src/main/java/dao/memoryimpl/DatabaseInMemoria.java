@@ -0,0 +1,394 @@
+package dao.memoryimpl;
+
+import model.StatoAttivita;
+import model.StatoToDo;
+import model.TitoloBacheca;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * "Database" in memoria condiviso dai DAO di {@code dao.memoryimpl}.
+ * <p>
+ * Ogni tabella è una mappa concorrente ID → riga immutabile, affiancata dagli indici secondari
+ * che servono alle query dei DAO: ToDo per autore, per bacheca e per data di scadenza,
+ * condivisioni per ToDo e per utente, attività per ToDo, bacheche per utente, utenti per login.
+ * Le letture non prendono lock; le scritture sono sincronizzate sull'istanza, così che una riga
+ * e i suoi indici cambino insieme. Le eliminazioni si propagano come le chiavi esterne
+ * {@code ON DELETE CASCADE} dello schema PostgreSQL.
+ * </p>
+ * <p>
+ * Come le colonne {@code versione} e la tabella {@code todo_eliminazioni} della migrazione V5,
+ * ogni scrittura su un ToDo, sulle sue attività o sulle sue condivisioni assegna al ToDo una nuova
+ * versione, e ogni eliminazione lascia una lapide: sono la base di {@code getModificheDal}.
+ * La versione della riga del ToDo, usata dal controllo di concorrenza di {@code updateToDo}, cambia
+ * invece solo con i dati del ToDo stesso, come la colonna {@code todo.versione}.
+ * </p>
+ * <p>
+ * I DAO non restituiscono mai le righe: costruiscono ogni volta nuovi oggetti del modello,
+ * quindi (come con il database vero) le modifiche a un oggetto diventano visibili solo
+ * dopo averlo salvato con il DAO.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class DatabaseInMemoria {
+
+    /** Riga della tabella {@code utente}. */
+    record RigaUtente(int id, String nome, String cognome, String login, String password) {
+    }
+
+    /** Riga della tabella {@code bacheca}. */
+    record RigaBacheca(int id, TitoloBacheca titolo, String descrizione, int idUtente) {
+    }
+
+    /** Riga della tabella {@code todo}. */
+    record RigaToDo(int id, String titolo, String descrizione, LocalDate scadenza, String imagePath, String url,
+                    String coloreSfondo, StatoToDo stato, int posizione, int idAutore, int idBacheca) {
+    }
+
+    /** Riga della tabella {@code attivita}. */
+    record RigaAttivita(int id, int idToDo, String nome, StatoAttivita stato) {
+    }
+
+    /** Lapide di un ToDo eliminato ({@code idUtente} = 0) o di una condivisione revocata all'utente indicato. */
+    record Eliminazione(int idToDo, int idUtente) {
+    }
+
+    final Map<Integer, RigaUtente> utenti = new ConcurrentHashMap<>();
+    final Map<String, Integer> utentiPerLogin = new ConcurrentHashMap<>();
+
+    final Map<Integer, RigaBacheca> bacheche = new ConcurrentHashMap<>();
+    final Map<Integer, Set<Integer>> bachechePerUtente = new ConcurrentHashMap<>();
+
+    final Map<Integer, RigaToDo> todos = new ConcurrentHashMap<>();
+    final Map<Integer, Set<Integer>> todoPerAutore = new ConcurrentHashMap<>();
+    final Map<Integer, Set<Integer>> todoPerBacheca = new ConcurrentHashMap<>();
+    final ConcurrentSkipListMap<LocalDate, Set<Integer>> todoPerScadenza = new ConcurrentSkipListMap<>();
+
+    final Map<Integer, RigaAttivita> attivita = new ConcurrentHashMap<>();
+    /** Attività di ogni ToDo, in ordine di ID (l'ordine di inserimento). */
+    final Map<Integer, Set<Integer>> attivitaPerToDo = new ConcurrentHashMap<>();
+
+    /** Condivisioni: ToDo → utenti destinatari e utente → ToDo ricevuti. */
+    final Map<Integer, Set<Integer>> condivisioniPerToDo = new ConcurrentHashMap<>();
+    final Map<Integer, Set<Integer>> condivisioniPerUtente = new ConcurrentHashMap<>();
+
+    /** Ultima versione di ogni ToDo e, all'inverso, versione → ToDo (una sola voce per ToDo). */
+    final Map<Integer, Long> versionePerToDo = new ConcurrentHashMap<>();
+    final ConcurrentSkipListMap<Long, Integer> toDoPerVersione = new ConcurrentSkipListMap<>();
+    /** Versione della sola riga di ogni ToDo (la colonna {@code todo.versione}). */
+    final Map<Integer, Long> versioneRigaPerToDo = new ConcurrentHashMap<>();
+    /** Lapidi, per versione. */
+    final ConcurrentSkipListMap<Long, Eliminazione> eliminazioni = new ConcurrentSkipListMap<>();
+
+    /** Ultima versione assegnata; le scritture sono sincronizzate, quindi le versioni seguono l'ordine dei commit. */
+    private long versione = 0;
+
+    private final AtomicInteger sequenzaUtenti = new AtomicInteger();
+    private final AtomicInteger sequenzaBacheche = new AtomicInteger();
+    private final AtomicInteger sequenzaToDo = new AtomicInteger();
+    private final AtomicInteger sequenzaAttivita = new AtomicInteger();
+
+    /**
+     * Esegue più scritture come un'unica operazione atomica rispetto alle altre scritture
+     * (l'equivalente di una transazione).
+     *
+     * @param operazione Le scritture da eseguire.
+     */
+    public synchronized void inTransazione(Runnable operazione) {
+        operazione.run();
+    }
+
+    /** Svuota tutte le tabelle (le sequenze degli ID non ripartono da capo). */
+    public synchronized void svuota() {
+        utenti.clear();
+        utentiPerLogin.clear();
+        bacheche.clear();
+        bachechePerUtente.clear();
+        todos.clear();
+        todoPerAutore.clear();
+        todoPerBacheca.clear();
+        todoPerScadenza.clear();
+        attivita.clear();
+        attivitaPerToDo.clear();
+        condivisioniPerToDo.clear();
+        condivisioniPerUtente.clear();
+        versionePerToDo.clear();
+        toDoPerVersione.clear();
+        versioneRigaPerToDo.clear();
+        eliminazioni.clear();
+    }
+
+    /**
+     * Restituisce il watermark corrente: tutte le scritture già concluse hanno una versione inferiore.
+     *
+     * @return La prima versione non ancora assegnata.
+     */
+    synchronized long prossimaVersione() {
+        return versione + 1;
+    }
+
+    // --- utente ---
+
+    /** @return L'ID assegnato, oppure 0 se il login è già in uso (vincolo di unicità). */
+    synchronized int inserisciUtente(String nome, String cognome, String login, String password) {
+        if (login != null && utentiPerLogin.containsKey(login)) {
+            return 0;
+        }
+        int id = sequenzaUtenti.incrementAndGet();
+        utenti.put(id, new RigaUtente(id, nome, cognome, login, password));
+        if (login != null) {
+            utentiPerLogin.put(login, id);
+        }
+        return id;
+    }
+
+    /** @return {@code false} se l'utente non esiste o il nuovo login è già usato da un altro utente. */
+    synchronized boolean aggiornaUtente(RigaUtente nuova) {
+        RigaUtente vecchia = utenti.get(nuova.id());
+        if (vecchia == null) {
+            return false;
+        }
+        Integer proprietario = nuova.login() == null ? null : utentiPerLogin.get(nuova.login());
+        if (proprietario != null && proprietario != nuova.id()) {
+            return false;
+        }
+        if (vecchia.login() != null) {
+            utentiPerLogin.remove(vecchia.login());
+        }
+        if (nuova.login() != null) {
+            utentiPerLogin.put(nuova.login(), nuova.id());
+        }
+        utenti.put(nuova.id(), nuova);
+        return true;
+    }
+
+    synchronized void eliminaUtente(int id) {
+        RigaUtente riga = utenti.remove(id);
+        if (riga == null) {
+            return;
+        }
+        if (riga.login() != null) {
+            utentiPerLogin.remove(riga.login());
+        }
+        for (Integer idBacheca : copia(bachechePerUtente.get(id))) {
+            eliminaBacheca(idBacheca);
+        }
+        for (Integer idToDo : copia(todoPerAutore.get(id))) {
+            eliminaToDo(idToDo);
+        }
+        for (Integer idToDo : copia(condivisioniPerUtente.get(id))) {
+            rimuoviCondivisione(id, idToDo);
+        }
+    }
+
+    // --- bacheca ---
+
+    synchronized int inserisciBacheca(TitoloBacheca titolo, String descrizione, int idUtente) {
+        int id = sequenzaBacheche.incrementAndGet();
+        bacheche.put(id, new RigaBacheca(id, titolo, descrizione, idUtente));
+        aggiungi(bachechePerUtente, idUtente, id);
+        return id;
+    }
+
+    synchronized void aggiornaBacheca(RigaBacheca nuova) {
+        if (bacheche.containsKey(nuova.id())) {
+            bacheche.put(nuova.id(), nuova);
+        }
+    }
+
+    synchronized void eliminaBacheca(int id) {
+        RigaBacheca riga = bacheche.remove(id);
+        if (riga == null) {
+            return;
+        }
+        rimuovi(bachechePerUtente, riga.idUtente(), id);
+        for (Integer idToDo : copia(todoPerBacheca.get(id))) {
+            eliminaToDo(idToDo);
+        }
+    }
+
+    // --- todo ---
+
+    synchronized int inserisciToDo(RigaToDo senzaId) {
+        int id = sequenzaToDo.incrementAndGet();
+        RigaToDo riga = new RigaToDo(id, senzaId.titolo(), senzaId.descrizione(), senzaId.scadenza(), senzaId.imagePath(),
+                senzaId.url(), senzaId.coloreSfondo(), senzaId.stato(), senzaId.posizione(), senzaId.idAutore(), senzaId.idBacheca());
+        todos.put(id, riga);
+        indicizzaToDo(riga);
+        toccaRiga(id);
+        return id;
+    }
+
+    /**
+     * Sostituisce la riga di un ToDo esistente, aggiornando solo gli indici delle colonne cambiate.
+     * Come il trigger {@code trg_todo_versione}, un cambio del solo rango non assegna una nuova versione.
+     */
+    synchronized void aggiornaToDo(RigaToDo nuova) {
+        RigaToDo vecchia = todos.get(nuova.id());
+        if (vecchia == null) {
+            return;
+        }
+        todos.put(nuova.id(), nuova);
+        if (!conPosizione(nuova, vecchia.posizione()).equals(vecchia)) {
+            toccaRiga(nuova.id());
+        }
+        if (vecchia.idAutore() != nuova.idAutore()) {
+            rimuovi(todoPerAutore, vecchia.idAutore(), nuova.id());
+            aggiungi(todoPerAutore, nuova.idAutore(), nuova.id());
+        }
+        if (vecchia.idBacheca() != nuova.idBacheca()) {
+            rimuovi(todoPerBacheca, vecchia.idBacheca(), nuova.id());
+            aggiungi(todoPerBacheca, nuova.idBacheca(), nuova.id());
+        }
+        if (!Objects.equals(vecchia.scadenza(), nuova.scadenza())) {
+            if (vecchia.scadenza() != null) {
+                rimuovi(todoPerScadenza, vecchia.scadenza(), nuova.id());
+            }
+            if (nuova.scadenza() != null) {
+                aggiungi(todoPerScadenza, nuova.scadenza(), nuova.id());
+            }
+        }
+    }
+
+    synchronized void eliminaToDo(int id) {
+        RigaToDo riga = todos.remove(id);
+        if (riga == null) {
+            return;
+        }
+        rimuovi(todoPerAutore, riga.idAutore(), id);
+        rimuovi(todoPerBacheca, riga.idBacheca(), id);
+        if (riga.scadenza() != null) {
+            rimuovi(todoPerScadenza, riga.scadenza(), id);
+        }
+        for (Integer idAttivita : copia(attivitaPerToDo.remove(id))) {
+            attivita.remove(idAttivita);
+        }
+        for (Integer idUtente : copia(condivisioniPerToDo.remove(id))) {
+            rimuovi(condivisioniPerUtente, idUtente, id);
+        }
+        versioneRigaPerToDo.remove(id);
+        Long ultima = versionePerToDo.remove(id);
+        if (ultima != null) {
+            toDoPerVersione.remove(ultima);
+        }
+        eliminazioni.put(++versione, new Eliminazione(id, 0));
+    }
+
+    private static RigaToDo conPosizione(RigaToDo riga, int posizione) {
+        return new RigaToDo(riga.id(), riga.titolo(), riga.descrizione(), riga.scadenza(), riga.imagePath(), riga.url(),
+                riga.coloreSfondo(), riga.stato(), posizione, riga.idAutore(), riga.idBacheca());
+    }
+
+    private void indicizzaToDo(RigaToDo riga) {
+        aggiungi(todoPerAutore, riga.idAutore(), riga.id());
+        aggiungi(todoPerBacheca, riga.idBacheca(), riga.id());
+        if (riga.scadenza() != null) {
+            aggiungi(todoPerScadenza, riga.scadenza(), riga.id());
+        }
+    }
+
+    // --- attivita ---
+
+    synchronized int inserisciAttivita(int idToDo, String nome, StatoAttivita stato) {
+        int id = sequenzaAttivita.incrementAndGet();
+        attivita.put(id, new RigaAttivita(id, idToDo, nome, stato));
+        attivitaPerToDo.computeIfAbsent(idToDo, k -> new ConcurrentSkipListSet<>()).add(id);
+        tocca(idToDo);
+        return id;
+    }
+
+    synchronized void aggiornaAttivita(int id, String nome, StatoAttivita stato) {
+        RigaAttivita vecchia = attivita.get(id);
+        if (vecchia != null) {
+            attivita.put(id, new RigaAttivita(id, vecchia.idToDo(), nome, stato));
+            tocca(vecchia.idToDo());
+        }
+    }
+
+    synchronized void eliminaAttivita(int id) {
+        RigaAttivita riga = attivita.remove(id);
+        if (riga != null) {
+            rimuovi(attivitaPerToDo, riga.idToDo(), id);
+            tocca(riga.idToDo());
+        }
+    }
+
+    // --- condivisione ---
+
+    /** @return {@code false} se la condivisione esiste già (vincolo di unicità). */
+    synchronized boolean aggiungiCondivisione(int idUtente, int idToDo) {
+        boolean nuova = aggiungi(condivisioniPerToDo, idToDo, idUtente);
+        aggiungi(condivisioniPerUtente, idUtente, idToDo);
+        if (nuova) {
+            tocca(idToDo);
+        }
+        return nuova;
+    }
+
+    synchronized void rimuoviCondivisione(int idUtente, int idToDo) {
+        if (isCondiviso(idToDo, idUtente)) {
+            rimuovi(condivisioniPerToDo, idToDo, idUtente);
+            rimuovi(condivisioniPerUtente, idUtente, idToDo);
+            tocca(idToDo);
+            eliminazioni.put(++versione, new Eliminazione(idToDo, idUtente));
+        }
+    }
+
+    /** Indica se il ToDo è condiviso con l'utente. */
+    boolean isCondiviso(int idToDo, int idUtente) {
+        Set<Integer> destinatari = condivisioniPerToDo.get(idToDo);
+        return destinatari != null && destinatari.contains(idUtente);
+    }
+
+    // --- versioni ---
+
+    /** Assegna una nuova versione a un ToDo esistente, come il trigger {@code imposta_versione_riga}. */
+    private void tocca(int idToDo) {
+        if (!todos.containsKey(idToDo)) {
+            return;
+        }
+        long nuova = ++versione;
+        Long precedente = versionePerToDo.put(idToDo, nuova);
+        if (precedente != null) {
+            toDoPerVersione.remove(precedente);
+        }
+        toDoPerVersione.put(nuova, idToDo);
+    }
+
+    /** Assegna una nuova versione al ToDo e alla sua riga, per una scrittura dei dati del ToDo stesso. */
+    private void toccaRiga(int idToDo) {
+        tocca(idToDo);
+        versioneRigaPerToDo.put(idToDo, versione);
+    }
+
+    // --- indici ---
+
+    private static <K> boolean aggiungi(Map<K, Set<Integer>> indice, K chiave, int id) {
+        return indice.computeIfAbsent(chiave, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    private static <K> void rimuovi(Map<K, Set<Integer>> indice, K chiave, int id) {
+        Set<Integer> ids = indice.get(chiave);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                indice.remove(chiave);
+            }
+        }
+    }
+
+    /** Copia di un insieme dell'indice, da usare quando lo si scorre modificandolo. */
+    private static List<Integer> copia(Set<Integer> ids) {
+        return ids == null ? List.of() : List.copyOf(ids);
+    }
+}
@@ -0,0 +1,124 @@
+package dao.memoryimpl;
+
+import dao.AttivitaDAO;
+import model.Attivita;
+import model.Checklist;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementazione in memoria dell'interfaccia {@link AttivitaDAO}, basata su {@link DatabaseInMemoria}.
+ * Le attività di ogni ToDo sono restituite in ordine di ID, cioè di inserimento.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class MemoriaAttivitaDAO implements AttivitaDAO {
+    private final DatabaseInMemoria db;
+
+    /**
+     * Costruttore della classe DAO.
+     *
+     * @param db Il database in memoria condiviso.
+     */
+    public MemoriaAttivitaDAO(DatabaseInMemoria db) {
+        this.db = db;
+    }
+
+    @Override
+    public void addAttivita(Attivita attivita) {
+        attivita.setId(db.inserisciAttivita(attivita.getIdTodo(), attivita.getNome(), attivita.getStato()));
+    }
+
+    @Override
+    public List<Attivita> getAttivitaByToDoId(int todoId) {
+        List<Attivita> attivitaList = new ArrayList<>();
+        for (Integer id : db.attivitaPerToDo.getOrDefault(todoId, Set.of())) {
+            DatabaseInMemoria.RigaAttivita riga = db.attivita.get(id);
+            if (riga != null) {
+                attivitaList.add(new Attivita(riga.id(), riga.idToDo(), riga.nome(), riga.stato()));
+            }
+        }
+        return attivitaList;
+    }
+
+    @Override
+    public Map<Integer, List<Attivita>> getAttivitaByToDoIds(Collection<Integer> todoIds) {
+        Map<Integer, List<Attivita>> attivitaPerToDo = new HashMap<>();
+        for (Integer todoId : todoIds) {
+            if (!attivitaPerToDo.containsKey(todoId)) {
+                List<Attivita> attivitaList = getAttivitaByToDoId(todoId);
+                if (!attivitaList.isEmpty()) {
+                    attivitaPerToDo.put(todoId, attivitaList);
+                }
+            }
+        }
+        return attivitaPerToDo;
+    }
+
+    @Override
+    public void updateAttivita(Attivita attivita) {
+        db.aggiornaAttivita(attivita.getId(), attivita.getNome(), attivita.getStato());
+    }
+
+    @Override
+    public void deleteAttivita(int attivitaId) {
+        db.eliminaAttivita(attivitaId);
+    }
+
+    @Override
+    public void deleteAttivitaByToDoId(int todoId) {
+        db.inTransazione(() -> {
+            for (Integer id : List.copyOf(db.attivitaPerToDo.getOrDefault(todoId, Set.of()))) {
+                db.eliminaAttivita(id);
+            }
+        });
+    }
+
+    /**
+     * Allinea le attività salvate alla nuova checklist con lo stesso confronto per ID di
+     * {@code PostgresAttivitaDAO}: si inseriscono le attività senza ID, si aggiornano solo quelle
+     * cambiate e si eliminano gli ID della vecchia checklist assenti dalla nuova.
+     *
+     * @param todoId  L'ID del ToDo.
+     * @param vecchia La checklist salvata in precedenza (può essere {@code null}).
+     * @param nuova   La checklist da salvare (può essere {@code null}).
+     */
+    @Override
+    public void sincronizzaChecklist(int todoId, Checklist vecchia, Checklist nuova) {
+        List<Attivita> nuove = nuova != null ? nuova.getAttivita() : List.of();
+        Map<Integer, Attivita> vecchiePerId = new HashMap<>();
+        if (vecchia != null) {
+            for (Attivita attivita : vecchia.getAttivita()) {
+                if (attivita.getId() > 0) {
+                    vecchiePerId.put(attivita.getId(), attivita);
+                }
+            }
+        }
+
+        db.inTransazione(() -> {
+            for (Attivita attivita : nuove) {
+                if (attivita.getId() <= 0) {
+                    attivita.setId(db.inserisciAttivita(todoId, attivita.getNome(), attivita.getStato()));
+                } else {
+                    Attivita precedente = vecchiePerId.remove(attivita.getId());
+                    boolean cambiata = precedente == null || !Objects.equals(precedente.getNome(), attivita.getNome())
+                            || precedente.getStato() != attivita.getStato();
+                    if (cambiata && db.attivitaPerToDo.getOrDefault(todoId, Set.of()).contains(attivita.getId())) {
+                        db.aggiornaAttivita(attivita.getId(), attivita.getNome(), attivita.getStato());
+                    }
+                }
+                attivita.setIdTodo(todoId);
+            }
+            for (Integer id : vecchiePerId.keySet()) {
+                db.eliminaAttivita(id);
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package dao.memoryimpl;
+
+import dao.BachecaDAO;
+import model.Bacheca;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Implementazione in memoria dell'interfaccia {@link BachecaDAO}, basata su {@link DatabaseInMemoria}.
+ * Come {@code PostgresBachecaDAO}, non crea due bacheche con lo stesso titolo per lo stesso utente.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class MemoriaBachecaDAO implements BachecaDAO {
+    private static final Logger logger = Logger.getLogger(MemoriaBachecaDAO.class.getName());
+
+    private final DatabaseInMemoria db;
+
+    /**
+     * Costruttore della classe DAO.
+     *
+     * @param db Il database in memoria condiviso.
+     */
+    public MemoriaBachecaDAO(DatabaseInMemoria db) {
+        this.db = db;
+    }
+
+    /**
+     * Aggiunge una nuova bacheca. Se l'utente ne ha già una con lo stesso titolo,
+     * imposta sull'oggetto l'ID di quella esistente senza crearne un'altra.
+     *
+     * @param bacheca L'oggetto Bacheca da salvare.
+     */
+    @Override
+    public void addBacheca(Bacheca bacheca) {
+        db.inTransazione(() -> {
+            Bacheca existing = getBachecaByTitoloAndUtente(bacheca.getTitolo().name(), bacheca.getIdUtente());
+            if (existing != null) {
+                logger.info("La bacheca \"" + bacheca.getTitolo().name() + "\" esiste già.");
+                bacheca.setId(existing.getId());
+                return;
+            }
+            bacheca.setId(db.inserisciBacheca(bacheca.getTitolo(), bacheca.getDescrizione(), bacheca.getIdUtente()));
+        });
+    }
+
+    @Override
+    public Bacheca getBachecaById(int id) {
+        DatabaseInMemoria.RigaBacheca riga = db.bacheche.get(id);
+        return riga != null ? daRiga(riga) : null;
+    }
+
+    @Override
+    public List<Bacheca> getBachecaByUserId(int userId) {
+        List<Bacheca> bacheche = new ArrayList<>();
+        for (Integer id : db.bachechePerUtente.getOrDefault(userId, Set.of())) {
+            DatabaseInMemoria.RigaBacheca riga = db.bacheche.get(id);
+            if (riga != null) {
+                bacheche.add(daRiga(riga));
+            }
+        }
+        bacheche.sort(Comparator.comparingInt(Bacheca::getId));
+        return bacheche;
+    }
+
+    /**
+     * Aggiorna le informazioni di una bacheca esistente.
+     * Come la versione PostgreSQL, aggiorna solo la descrizione.
+     *
+     * @param bacheca L'oggetto Bacheca con i dati aggiornati.
+     */
+    @Override
+    public void updateBacheca(Bacheca bacheca) {
+        db.inTransazione(() -> {
+            DatabaseInMemoria.RigaBacheca riga = db.bacheche.get(bacheca.getId());
+            if (riga != null) {
+                db.aggiornaBacheca(new DatabaseInMemoria.RigaBacheca(riga.id(), riga.titolo(), bacheca.getDescrizione(), riga.idUtente()));
+            }
+        });
+    }
+
+    /**
+     * Elimina una bacheca insieme ai suoi ToDo.
+     *
+     * @param id L'ID della bacheca da eliminare.
+     */
+    @Override
+    public void deleteBacheca(int id) {
+        db.eliminaBacheca(id);
+    }
+
+    @Override
+    public Bacheca getBachecaByTitoloAndUtente(String titolo, int idUtente) {
+        for (Integer id : db.bachechePerUtente.getOrDefault(idUtente, Set.of())) {
+            DatabaseInMemoria.RigaBacheca riga = db.bacheche.get(id);
+            if (riga != null && riga.titolo() != null && riga.titolo().name().equals(titolo)) {
+                return daRiga(riga);
+            }
+        }
+        return null;
+    }
+
+    private static Bacheca daRiga(DatabaseInMemoria.RigaBacheca riga) {
+        return new Bacheca(riga.id(), riga.titolo(), riga.descrizione(), riga.idUtente());
+    }
+}
@@ -0,0 +1,74 @@
+package dao.memoryimpl;
+
+import dao.CondivisioneDAO;
+import model.Condivisione;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementazione in memoria dell'interfaccia {@link CondivisioneDAO}, basata su {@link DatabaseInMemoria}.
+ * Le condivisioni sono indicizzate sia per ToDo sia per utente; aggiungere una condivisione
+ * già esistente non ha effetto, come per la chiave primaria della tabella {@code condivisione}.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class MemoriaCondivisioneDAO implements CondivisioneDAO {
+    private final DatabaseInMemoria db;
+
+    /**
+     * Costruttore della classe DAO.
+     *
+     * @param db Il database in memoria condiviso.
+     */
+    public MemoriaCondivisioneDAO(DatabaseInMemoria db) {
+        this.db = db;
+    }
+
+    @Override
+    public void addCondivisione(Condivisione condivisione) {
+        db.aggiungiCondivisione(condivisione.getIdUtente(), condivisione.getIdToDo());
+    }
+
+    @Override
+    public void deleteCondivisione(Condivisione condivisione) {
+        db.rimuoviCondivisione(condivisione.getIdUtente(), condivisione.getIdToDo());
+    }
+
+    @Override
+    public List<Condivisione> getCondivisioniByToDoId(int todoId) {
+        List<Condivisione> condivisioni = new ArrayList<>();
+        for (Integer idUtente : db.condivisioniPerToDo.getOrDefault(todoId, Set.of())) {
+            condivisioni.add(new Condivisione(idUtente, todoId));
+        }
+        return condivisioni;
+    }
+
+    @Override
+    public Map<Integer, List<Condivisione>> getCondivisioniByToDoIds(Collection<Integer> todoIds) {
+        Map<Integer, List<Condivisione>> condivisioniPerToDo = new HashMap<>();
+        for (Integer todoId : todoIds) {
+            if (!condivisioniPerToDo.containsKey(todoId)) {
+                List<Condivisione> condivisioni = getCondivisioniByToDoId(todoId);
+                if (!condivisioni.isEmpty()) {
+                    condivisioniPerToDo.put(todoId, condivisioni);
+                }
+            }
+        }
+        return condivisioniPerToDo;
+    }
+
+    @Override
+    public List<Condivisione> getCondivisioniByUtenteId(int utenteId) {
+        List<Condivisione> condivisioni = new ArrayList<>();
+        for (Integer todoId : db.condivisioniPerUtente.getOrDefault(utenteId, Set.of())) {
+            condivisioni.add(new Condivisione(utenteId, todoId));
+        }
+        return condivisioni;
+    }
+}
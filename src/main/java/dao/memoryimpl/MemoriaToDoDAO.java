@@ -0,0 +1,511 @@
+package dao.memoryimpl;
+
+import dao.AttivitaDAO;
+import dao.CondivisioneDAO;
+import dao.ConflittoVersioneException;
+import dao.CursoreToDo;
+import dao.ModificheToDo;
+import dao.PaginaRicerca;
+import dao.PaginaToDo;
+import dao.QueryRicerca;
+import dao.ToDoDAO;
+import dao.ToDoGraphLoader;
+import dao.UtenteDAO;
+import model.CampoToDo;
+import model.StatoToDo;
+import model.TitoloBacheca;
+import model.ToDo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementazione in memoria dell'interfaccia {@link ToDoDAO}, basata su {@link DatabaseInMemoria}.
+ * <p>
+ * Le query riproducono esattamente la semantica di {@code PostgresToDoDAO}: stessa visibilità
+ * (autore oppure destinatario di una condivisione), stesso criterio sul titolo della bacheca in
+ * {@link #getToDosForBachecaAndUtente(int, int)}, stesse condizioni sulle date, stessi ordinamenti e
+ * stessa paginazione keyset. Invece di scorrere tutti i ToDo, ogni query parte dall'indice più
+ * selettivo: i ToDo dell'autore e quelli condivisi con l'utente, oppure i ToDo con una certa scadenza.
+ * </p>
+ * <p>
+ * La ricerca testuale usa sempre la ricerca semplice ({@code LIKE}) della versione PostgreSQL,
+ * e lo segnala con {@link PaginaRicerca#fullText()} uguale a {@code false}.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class MemoriaToDoDAO implements ToDoDAO {
+    /** Numero di ToDo per cui gli stream costruiscono il grafo in un colpo solo. */
+    private static final int DIMENSIONE_BLOCCO = 500;
+
+    private static final Comparator<LocalDate> SCADENZA = Comparator.nullsLast(Comparator.naturalOrder());
+    private static final Comparator<DatabaseInMemoria.RigaToDo> PER_POSIZIONE =
+            Comparator.comparingInt(DatabaseInMemoria.RigaToDo::posizione).thenComparingInt(DatabaseInMemoria.RigaToDo::id);
+    private static final Comparator<DatabaseInMemoria.RigaToDo> PER_SCADENZA =
+            Comparator.comparing(DatabaseInMemoria.RigaToDo::scadenza, SCADENZA).thenComparingInt(DatabaseInMemoria.RigaToDo::id);
+
+    private final DatabaseInMemoria db;
+    private final ToDoGraphLoader graphLoader;
+
+    /**
+     * Costruttore della classe DAO.
+     *
+     * @param db              Il database in memoria condiviso.
+     * @param utenteDAO       Il DAO per caricare gli autori e i destinatari delle condivisioni.
+     * @param attivitaDAO     Il DAO per caricare la checklist.
+     * @param condivisioneDAO Il DAO per caricare le condivisioni.
+     */
+    public MemoriaToDoDAO(DatabaseInMemoria db, UtenteDAO utenteDAO, AttivitaDAO attivitaDAO, CondivisioneDAO condivisioneDAO) {
+        this.db = db;
+        this.graphLoader = new ToDoGraphLoader(utenteDAO, attivitaDAO, condivisioneDAO);
+    }
+
+    /**
+     * Inserisce un nuovo ToDo e ne imposta l'ID generato.
+     *
+     * @param todo Il ToDo da salvare.
+     */
+    @Override
+    public void addToDo(ToDo todo) {
+        if (todo.getStato() == null) {
+            todo.setStato(StatoToDo.NON_COMPLETATO);
+        }
+        todo.setId(db.inserisciToDo(new DatabaseInMemoria.RigaToDo(0, todo.getTitolo(), todo.getDescrizione(),
+                todo.getScadenza(), todo.getImagePath(), todo.getURL(), todo.getColoreSfondo(), todo.getStato(),
+                todo.getPosizione(), todo.getIdAutore(), todo.getIdBacheca())));
+        todo.setVersione(db.versioneRigaPerToDo.getOrDefault(todo.getId(), 0L));
+        todo.segnaSalvato();
+    }
+
+    @Override
+    public ToDo getToDoById(int id) {
+        DatabaseInMemoria.RigaToDo riga = db.todos.get(id);
+        if (riga == null) {
+            return null;
+        }
+        return carica(List.of(riga)).get(0);
+    }
+
+    @Override
+    public List<ToDo> getAllToDo() {
+        return carica(ordina(db.todos.values(), PER_POSIZIONE));
+    }
+
+    @Override
+    public PaginaToDo getAllToDo(CursoreToDo dopo, int dimensionePagina) {
+        return pagina(db.todos.values(), riga -> true, PER_POSIZIONE, dopo, dimensionePagina);
+    }
+
+    @Override
+    public Stream<ToDo> streamAllToDo() {
+        return streamABlocchi(ordina(db.todos.values(), PER_POSIZIONE));
+    }
+
+    @Override
+    public Stream<ToDo> streamToDosVisibili(int userId) {
+        return streamABlocchi(ordina(righeVisibili(userId), PER_SCADENZA));
+    }
+
+    /**
+     * Applica al ToDo salvato solo i campi modificati dall'ultimo salvataggio (vedi {@link ToDo#prendiCampiModificati()}).
+     *
+     * @param todo Il ToDo con i dati aggiornati.
+     */
+    @Override
+    public void updateToDo(ToDo todo) {
+        Set<CampoToDo> campi = todo.prendiCampiModificati();
+        if (campi.isEmpty()) {
+            return;
+        }
+        db.inTransazione(() -> {
+            DatabaseInMemoria.RigaToDo r = db.todos.get(todo.getId());
+            if (r == null || db.versioneRigaPerToDo.getOrDefault(r.id(), 0L) != todo.getVersione()) {
+                todo.ripristinaCampiModificati(campi);
+                throw new ConflittoVersioneException(todo.getId(), r != null ? carica(List.of(r)).get(0) : null, campi);
+            }
+            db.aggiornaToDo(new DatabaseInMemoria.RigaToDo(r.id(),
+                    campi.contains(CampoToDo.TITOLO) ? todo.getTitolo() : r.titolo(),
+                    campi.contains(CampoToDo.DESCRIZIONE) ? todo.getDescrizione() : r.descrizione(),
+                    campi.contains(CampoToDo.SCADENZA) ? todo.getScadenza() : r.scadenza(),
+                    campi.contains(CampoToDo.IMAGE_PATH) ? todo.getImagePath() : r.imagePath(),
+                    campi.contains(CampoToDo.URL) ? todo.getURL() : r.url(),
+                    campi.contains(CampoToDo.COLORE_SFONDO) ? todo.getColoreSfondo() : r.coloreSfondo(),
+                    campi.contains(CampoToDo.STATO) ? todo.getStato() : r.stato(),
+                    campi.contains(CampoToDo.POSIZIONE) ? todo.getPosizione() : r.posizione(),
+                    r.idAutore(),
+                    campi.contains(CampoToDo.BACHECA) ? todo.getIdBacheca() : r.idBacheca()));
+            todo.setVersione(db.versioneRigaPerToDo.getOrDefault(r.id(), 0L));
+        });
+    }
+
+    @Override
+    public void updatePosizione(int id, int posizione) {
+        db.inTransazione(() -> impostaPosizione(id, posizione));
+    }
+
+    @Override
+    public void updatePosizioni(Map<Integer, Integer> posizioni) {
+        db.inTransazione(() -> posizioni.forEach(this::impostaPosizione));
+    }
+
+    private void impostaPosizione(int id, int posizione) {
+        DatabaseInMemoria.RigaToDo r = db.todos.get(id);
+        if (r != null) {
+            db.aggiornaToDo(new DatabaseInMemoria.RigaToDo(r.id(), r.titolo(), r.descrizione(), r.scadenza(), r.imagePath(),
+                    r.url(), r.coloreSfondo(), r.stato(), posizione, r.idAutore(), r.idBacheca()));
+        }
+    }
+
+    /**
+     * Elimina un ToDo insieme alla sua checklist e alle sue condivisioni.
+     *
+     * @param id L'ID del ToDo da eliminare.
+     */
+    @Override
+    public void deleteToDo(int id) {
+        db.eliminaToDo(id);
+    }
+
+    @Override
+    public List<ToDo> findToDosByTerm(String searchTerm, int userId) {
+        return carica(ordina(filtra(righeVisibili(userId), perTermine(searchTerm)), PER_SCADENZA));
+    }
+
+    @Override
+    public PaginaToDo findToDosByTerm(String searchTerm, int userId, CursoreToDo dopo, int dimensionePagina) {
+        return pagina(righeVisibili(userId), perTermine(searchTerm), PER_SCADENZA, dopo, dimensionePagina);
+    }
+
+    /**
+     * Ricerca semplice su titolo, descrizione e nomi delle attività: ogni termine della query deve comparire
+     * in almeno uno dei tre. Come nella versione PostgreSQL vengono prima i ToDo il cui titolo contiene
+     * il primo termine, poi l'ordine è per scadenza e ID.
+     */
+    @Override
+    public PaginaRicerca searchToDos(QueryRicerca query, int userId, int pagina, int dimensionePagina) {
+        if (query.isVuota()) {
+            return new PaginaRicerca(List.of(), pagina, dimensionePagina, false, false);
+        }
+        List<Pattern> pattern = new ArrayList<>();
+        for (String p : query.toPatternLike()) {
+            pattern.add(compilaLike(p));
+        }
+        Pattern primo = pattern.get(0);
+
+        List<DatabaseInMemoria.RigaToDo> trovate = ordina(filtra(righeVisibili(userId), riga -> {
+            for (Pattern p : pattern) {
+                if (!corrisponde(p, riga.titolo()) && !corrisponde(p, riga.descrizione()) && !attivitaCorrisponde(riga.id(), p)) {
+                    return false;
+                }
+            }
+            return true;
+        }), Comparator.<DatabaseInMemoria.RigaToDo>comparingInt(riga -> corrisponde(primo, riga.titolo()) ? 0 : 1)
+                .thenComparing(PER_SCADENZA));
+
+        int inizio = Math.min(pagina * dimensionePagina, trovate.size());
+        int fine = Math.min(inizio + dimensionePagina, trovate.size());
+        List<ToDo> todos = carica(trovate.subList(inizio, fine));
+        return new PaginaRicerca(todos, pagina, dimensionePagina, trovate.size() > fine, false);
+    }
+
+    @Override
+    public List<ToDo> findToDosByScadenza(LocalDate date, int userId) {
+        return carica(ordina(righeInScadenza(date, userId), PER_SCADENZA));
+    }
+
+    @Override
+    public PaginaToDo findToDosByScadenza(LocalDate date, int userId, CursoreToDo dopo, int dimensionePagina) {
+        return pagina(righeInScadenza(date, userId), riga -> true, PER_SCADENZA, dopo, dimensionePagina);
+    }
+
+    @Override
+    public List<ToDo> findToDosScadenzaOggi(int userId) {
+        return findToDosByScadenza(LocalDate.now(), userId);
+    }
+
+    /**
+     * Recupera i ToDo visibili in una bacheca, con la stessa regola di {@code PostgresToDoDAO}:
+     * i ToDo dell'utente in una sua bacheca con lo stesso titolo di quella richiesta, più i ToDo
+     * di altri autori condivisi con l'utente e collocati in una bacheca con quel titolo.
+     *
+     * @param bachecaId L'ID della bacheca.
+     * @param utenteId  L'ID dell'utente corrente.
+     * @return Lista di ToDo visibili, ordinati per posizione e ID.
+     */
+    @Override
+    public List<ToDo> getToDosForBachecaAndUtente(int bachecaId, int utenteId) {
+        return carica(ordina(righeInBacheca(bachecaId, utenteId), PER_POSIZIONE));
+    }
+
+    @Override
+    public PaginaToDo getToDosForBachecaAndUtente(int bachecaId, int utenteId, CursoreToDo dopo, int dimensionePagina) {
+        return pagina(righeInBacheca(bachecaId, utenteId), riga -> true, PER_POSIZIONE, dopo, dimensionePagina);
+    }
+
+    @Override
+    public List<ToDo> findToDosScaduti(int userId) {
+        return carica(ordina(filtra(righeVisibili(userId), scaduto(LocalDate.now())), PER_SCADENZA));
+    }
+
+    @Override
+    public PaginaToDo findToDosScaduti(int userId, CursoreToDo dopo, int dimensionePagina) {
+        return pagina(righeVisibili(userId), scaduto(LocalDate.now()), PER_SCADENZA, dopo, dimensionePagina);
+    }
+
+    @Override
+    public void markAllToDoAsCompletedByBachecaId(int bachecaId) {
+        db.inTransazione(() -> {
+            for (Integer id : List.copyOf(db.todoPerBacheca.getOrDefault(bachecaId, Set.of()))) {
+                DatabaseInMemoria.RigaToDo r = db.todos.get(id);
+                if (r != null && r.stato() != StatoToDo.COMPLETATO) {
+                    db.aggiornaToDo(new DatabaseInMemoria.RigaToDo(r.id(), r.titolo(), r.descrizione(), r.scadenza(), r.imagePath(),
+                            r.url(), r.coloreSfondo(), StatoToDo.COMPLETATO, r.posizione(), r.idAutore(), r.idBacheca()));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void precaricaRelazioni(Collection<ToDo> todos) {
+        graphLoader.caricaRelazioni(todos);
+    }
+
+    @Override
+    public Map<Integer, List<ToDo>> getToDosVisibiliByIds(Collection<Integer> ids, int utenteId) {
+        Map<TitoloBacheca, Integer> bachecheUtente = new EnumMap<>(TitoloBacheca.class);
+        for (Integer id : db.bachechePerUtente.getOrDefault(utenteId, Set.of())) {
+            DatabaseInMemoria.RigaBacheca b = db.bacheche.get(id);
+            if (b != null && b.titolo() != null) {
+                bachecheUtente.putIfAbsent(b.titolo(), b.id());
+            }
+        }
+        List<DatabaseInMemoria.RigaToDo> visibili = new ArrayList<>();
+        List<Integer> destinazioni = new ArrayList<>();
+        for (DatabaseInMemoria.RigaToDo riga : righe(new HashSet<>(ids))) {
+            DatabaseInMemoria.RigaBacheca b = db.bacheche.get(riga.idBacheca());
+            Integer idBachecaUtente = b != null && b.titolo() != null ? bachecheUtente.get(b.titolo()) : null;
+            if (idBachecaUtente != null && (riga.idAutore() == utenteId || db.isCondiviso(riga.id(), utenteId))) {
+                visibili.add(riga);
+                destinazioni.add(idBachecaUtente);
+            }
+        }
+        List<ToDo> todos = carica(visibili);
+        Map<Integer, List<ToDo>> perBacheca = new HashMap<>();
+        for (int i = 0; i < todos.size(); i++) {
+            perBacheca.computeIfAbsent(destinazioni.get(i), k -> new ArrayList<>()).add(todos.get(i));
+        }
+        return perBacheca;
+    }
+
+    @Override
+    public long getWatermarkModifiche() {
+        return db.prossimaVersione();
+    }
+
+    /**
+     * Legge le modifiche dagli indici per versione di {@link DatabaseInMemoria}: il costo dipende
+     * solo dal numero di ToDo modificati e di lapidi dal watermark in poi.
+     */
+    @Override
+    public ModificheToDo getModificheDal(long watermark, int utenteId) {
+        long nuovoWatermark = db.prossimaVersione();
+        Set<Integer> modificati = new HashSet<>(db.toDoPerVersione.tailMap(watermark, true).values());
+        Set<Integer> eliminati = new HashSet<>();
+        for (DatabaseInMemoria.Eliminazione e : db.eliminazioni.tailMap(watermark, true).values()) {
+            if (e.idUtente() == 0 || e.idUtente() == utenteId) {
+                eliminati.add(e.idToDo());
+            }
+        }
+        Map<Integer, List<ToDo>> perBacheca = getToDosVisibiliByIds(modificati, utenteId);
+        for (List<ToDo> todos : perBacheca.values()) {
+            for (ToDo t : todos) {
+                eliminati.remove(t.getId());
+            }
+        }
+        return new ModificheToDo(perBacheca, eliminati, nuovoWatermark);
+    }
+
+    // --- selezione delle righe ---
+
+    /** Righe dei ToDo visibili dall'utente: quelli di cui è autore più quelli condivisi con lui. */
+    private List<DatabaseInMemoria.RigaToDo> righeVisibili(int userId) {
+        Set<Integer> ids = new HashSet<>(db.todoPerAutore.getOrDefault(userId, Set.of()));
+        ids.addAll(db.condivisioniPerUtente.getOrDefault(userId, Set.of()));
+        return righe(ids);
+    }
+
+    /** Righe dei ToDo visibili dall'utente con la scadenza indicata, partendo dall'indice per data. */
+    private List<DatabaseInMemoria.RigaToDo> righeInScadenza(LocalDate date, int userId) {
+        List<DatabaseInMemoria.RigaToDo> righe = new ArrayList<>();
+        for (DatabaseInMemoria.RigaToDo riga : righe(db.todoPerScadenza.getOrDefault(date, Set.of()))) {
+            if (riga.idAutore() == userId || db.isCondiviso(riga.id(), userId)) {
+                righe.add(riga);
+            }
+        }
+        return righe;
+    }
+
+    /** Le due parti (autore e condivisi) della visibilità in bacheca, confrontando il titolo della bacheca. */
+    private List<DatabaseInMemoria.RigaToDo> righeInBacheca(int bachecaId, int utenteId) {
+        DatabaseInMemoria.RigaBacheca bacheca = db.bacheche.get(bachecaId);
+        if (bacheca == null || bacheca.titolo() == null) {
+            return List.of();
+        }
+        TitoloBacheca titolo = bacheca.titolo();
+        Predicate<DatabaseInMemoria.RigaToDo> stessoTitolo = riga -> {
+            DatabaseInMemoria.RigaBacheca b = db.bacheche.get(riga.idBacheca());
+            return b != null && b.titolo() == titolo;
+        };
+
+        List<DatabaseInMemoria.RigaToDo> righe = filtra(righe(db.todoPerAutore.getOrDefault(utenteId, Set.of())), stessoTitolo);
+        for (DatabaseInMemoria.RigaToDo riga : righe(db.condivisioniPerUtente.getOrDefault(utenteId, Set.of()))) {
+            if (riga.idAutore() != utenteId && stessoTitolo.test(riga)) {
+                righe.add(riga);
+            }
+        }
+        return righe;
+    }
+
+    private List<DatabaseInMemoria.RigaToDo> righe(Collection<Integer> ids) {
+        List<DatabaseInMemoria.RigaToDo> righe = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            DatabaseInMemoria.RigaToDo riga = db.todos.get(id);
+            if (riga != null) {
+                righe.add(riga);
+            }
+        }
+        return righe;
+    }
+
+    private static List<DatabaseInMemoria.RigaToDo> filtra(Collection<DatabaseInMemoria.RigaToDo> righe,
+                                                            Predicate<DatabaseInMemoria.RigaToDo> condizione) {
+        List<DatabaseInMemoria.RigaToDo> filtrate = new ArrayList<>();
+        for (DatabaseInMemoria.RigaToDo riga : righe) {
+            if (condizione.test(riga)) {
+                filtrate.add(riga);
+            }
+        }
+        return filtrate;
+    }
+
+    private static List<DatabaseInMemoria.RigaToDo> ordina(Collection<DatabaseInMemoria.RigaToDo> righe,
+                                                           Comparator<DatabaseInMemoria.RigaToDo> ordine) {
+        List<DatabaseInMemoria.RigaToDo> ordinate = new ArrayList<>(righe);
+        ordinate.sort(ordine);
+        return ordinate;
+    }
+
+    /** Come {@code t.scadenza < oggi AND t.stato = 'NON_COMPLETATO'}. */
+    private static Predicate<DatabaseInMemoria.RigaToDo> scaduto(LocalDate oggi) {
+        return riga -> riga.scadenza() != null && riga.scadenza().isBefore(oggi) && riga.stato() == StatoToDo.NON_COMPLETATO;
+    }
+
+    /** Come {@code LOWER(t.titolo) LIKE '%termine%' OR LOWER(t.descrizione) LIKE '%termine%'}. */
+    private static Predicate<DatabaseInMemoria.RigaToDo> perTermine(String searchTerm) {
+        Pattern pattern = compilaLike("%" + searchTerm.toLowerCase() + "%");
+        return riga -> corrisponde(pattern, riga.titolo()) || corrisponde(pattern, riga.descrizione());
+    }
+
+    private boolean attivitaCorrisponde(int idToDo, Pattern pattern) {
+        for (Integer id : db.attivitaPerToDo.getOrDefault(idToDo, Set.of())) {
+            DatabaseInMemoria.RigaAttivita attivita = db.attivita.get(id);
+            if (attivita != null && corrisponde(pattern, attivita.nome())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- LIKE ---
+
+    /**
+     * Traduce un pattern {@code LIKE} di PostgreSQL in un'espressione regolare: {@code %} è una
+     * sequenza qualsiasi, {@code _} un carattere qualsiasi e {@code \} rende letterale il carattere
+     * successivo. Anche i caratteri speciali scritti dall'utente mantengono quindi lo stesso significato.
+     */
+    static Pattern compilaLike(String like) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '\\' && i + 1 < like.length()) {
+                regex.append(Pattern.quote(String.valueOf(like.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /** Come {@code LOWER(testo) LIKE pattern}: un valore {@code NULL} non corrisponde mai. */
+    private static boolean corrisponde(Pattern pattern, String testo) {
+        return testo != null && pattern.matcher(testo.toLowerCase(Locale.ROOT)).matches();
+    }
+
+    // --- costruzione dei ToDo ---
+
+    /**
+     * Pagina keyset: dopo il filtro e l'ordinamento tiene solo le righe successive al cursore
+     * ({@code (posizione, id)} o {@code (scadenza, id)}) e ne legge una in più per sapere se esiste la pagina seguente.
+     */
+    private PaginaToDo pagina(Collection<DatabaseInMemoria.RigaToDo> candidate, Predicate<DatabaseInMemoria.RigaToDo> condizione,
+                              Comparator<DatabaseInMemoria.RigaToDo> ordine, CursoreToDo dopo, int dimensionePagina) {
+        Predicate<DatabaseInMemoria.RigaToDo> dopoCursore = riga -> true;
+        if (dopo != null) {
+            DatabaseInMemoria.RigaToDo limite = new DatabaseInMemoria.RigaToDo(dopo.id(), null, null, dopo.scadenza(),
+                    null, null, null, null, dopo.posizione(), 0, 0);
+            dopoCursore = riga -> ordine.compare(riga, limite) > 0;
+        }
+        List<DatabaseInMemoria.RigaToDo> righe = ordina(filtra(candidate, condizione.and(dopoCursore)), ordine);
+
+        List<ToDo> todos = carica(righe.subList(0, Math.min(dimensionePagina, righe.size())));
+        CursoreToDo successivo = null;
+        if (righe.size() > dimensionePagina && !todos.isEmpty()) {
+            successivo = CursoreToDo.dopo(todos.get(todos.size() - 1));
+        }
+        return new PaginaToDo(todos, successivo);
+    }
+
+    /** Stream che costruisce i ToDo (e il loro grafo) un blocco alla volta, man mano che viene consumato. */
+    private Stream<ToDo> streamABlocchi(List<DatabaseInMemoria.RigaToDo> righe) {
+        int blocchi = (righe.size() + DIMENSIONE_BLOCCO - 1) / DIMENSIONE_BLOCCO;
+        return IntStream.range(0, blocchi)
+                .mapToObj(i -> carica(righe.subList(i * DIMENSIONE_BLOCCO, Math.min((i + 1) * DIMENSIONE_BLOCCO, righe.size()))))
+                .flatMap(List::stream);
+    }
+
+    /** Costruisce nuovi ToDo dalle righe e li completa con autore, checklist e condivisioni. */
+    private List<ToDo> carica(List<DatabaseInMemoria.RigaToDo> righe) {
+        List<ToDo> todos = new ArrayList<>(righe.size());
+        for (DatabaseInMemoria.RigaToDo riga : righe) {
+            ToDo todo = new ToDo(riga.id(), riga.titolo(), riga.descrizione(), riga.scadenza(), riga.imagePath(),
+                    riga.url(), riga.coloreSfondo(), riga.posizione(), null);
+            todo.setStato(riga.stato());
+            todo.setIdAutore(riga.idAutore());
+            todo.setIdBacheca(riga.idBacheca());
+            todo.setVersione(db.versioneRigaPerToDo.getOrDefault(riga.id(), 0L));
+            todo.segnaSalvato();
+            todos.add(todo);
+        }
+        graphLoader.carica(todos);
+        return todos;
+    }
+}
@@ -0,0 +1,112 @@
+package dao.memoryimpl;
+
+import dao.UtenteDAO;
+import model.Utente;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementazione in memoria dell'interfaccia {@link UtenteDAO}, basata su {@link DatabaseInMemoria}.
+ * Come il vincolo di unicità della tabella {@code utente}, rifiuta un login già in uso.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class MemoriaUtenteDAO implements UtenteDAO {
+    private static final Logger LOGGER = Logger.getLogger(MemoriaUtenteDAO.class.getName());
+
+    private final DatabaseInMemoria db;
+
+    /**
+     * Costruttore della classe DAO.
+     *
+     * @param db Il database in memoria condiviso.
+     */
+    public MemoriaUtenteDAO(DatabaseInMemoria db) {
+        this.db = db;
+    }
+
+    /**
+     * Inserisce un nuovo utente e ne imposta l'ID generato.
+     *
+     * @param utente L'oggetto Utente da salvare.
+     */
+    @Override
+    public void addUtente(Utente utente) {
+        int id = db.inserisciUtente(utente.getNome(), utente.getCognome(), utente.getLogin(), utente.getPassword());
+        if (id == 0) {
+            LOGGER.log(Level.SEVERE, "Errore addUtente: login \"{0}\" già in uso", utente.getLogin());
+            return;
+        }
+        utente.setId(id);
+    }
+
+    @Override
+    public Utente getUtenteById(int id) {
+        DatabaseInMemoria.RigaUtente riga = db.utenti.get(id);
+        return riga != null ? daRiga(riga) : null;
+    }
+
+    @Override
+    public Map<Integer, Utente> getUtentiByIds(Collection<Integer> ids) {
+        Map<Integer, Utente> utenti = new HashMap<>();
+        for (Integer id : ids) {
+            DatabaseInMemoria.RigaUtente riga = db.utenti.get(id);
+            if (riga != null) {
+                utenti.putIfAbsent(id, daRiga(riga));
+            }
+        }
+        return utenti;
+    }
+
+    @Override
+    public Utente getUtenteByLogin(String login) {
+        Integer id = login != null ? db.utentiPerLogin.get(login) : null;
+        return id != null ? getUtenteById(id) : null;
+    }
+
+    @Override
+    public List<Utente> getAllUtenti() {
+        List<Utente> utenti = new ArrayList<>(db.utenti.size());
+        for (DatabaseInMemoria.RigaUtente riga : db.utenti.values()) {
+            utenti.add(daRiga(riga));
+        }
+        utenti.sort(Comparator.comparingInt(Utente::getId));
+        return utenti;
+    }
+
+    /**
+     * Aggiorna nome, cognome, login e password di un utente esistente.
+     *
+     * @param utente L'oggetto Utente con i dati aggiornati.
+     */
+    @Override
+    public void updateUtente(Utente utente) {
+        boolean aggiornato = db.aggiornaUtente(new DatabaseInMemoria.RigaUtente(utente.getId(),
+                utente.getNome(), utente.getCognome(), utente.getLogin(), utente.getPassword()));
+        if (!aggiornato && db.utenti.containsKey(utente.getId())) {
+            LOGGER.log(Level.SEVERE, "Errore updateUtente: login \"{0}\" già in uso", utente.getLogin());
+        }
+    }
+
+    /**
+     * Elimina un utente insieme alle sue bacheche, ai suoi ToDo e alle sue condivisioni.
+     *
+     * @param id L'ID dell'utente da eliminare.
+     */
+    @Override
+    public void deleteUtenteById(int id) {
+        db.eliminaUtente(id);
+    }
+
+    private static Utente daRiga(DatabaseInMemoria.RigaUtente riga) {
+        return new Utente(riga.id(), riga.nome(), riga.cognome(), riga.login(), riga.password());
+    }
+}
@@ -2,11 +2,17 @@ package dao.postgresimpl;
 
 import dao.AttivitaDAO;
 import model.Attivita;
+import model.Checklist;
 import model.StatoAttivita;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,8 +25,8 @@ import java.util.logging.Logger;
  * @version 1.0
  */
 public class PostgresAttivitaDAO implements AttivitaDAO {
-    /** La connessione attiva al database. */
-    private final Connection connection;
+    /** Il pool da cui prendere in prestito una connessione per ogni operazione. */
+    private final DataSource dataSource;
 
     /** Logger per tracciare eventuali eccezioni SQL. */
     private static final Logger logger = Logger.getLogger(PostgresAttivitaDAO.class.getName());
@@ -28,10 +34,10 @@ public class PostgresAttivitaDAO implements AttivitaDAO {
     /**
      * Costruttore della classe DAO.
      *
-     * @param connection La connessione al database da utilizzare per le operazioni.
+     * @param dataSource Il pool di connessioni da cui prendere in prestito le connessioni.
      */
-    public PostgresAttivitaDAO(Connection connection) {
-        this.connection = connection;
+    public PostgresAttivitaDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -47,7 +53,8 @@ public class PostgresAttivitaDAO implements AttivitaDAO {
     @Override
     public void addAttivita(Attivita attivita) {
         String sql = "INSERT INTO attivita (nome, stato, id_todo) VALUES (?, ?, ?) RETURNING id";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, attivita.getNome());
             stmt.setString(2, attivita.getStato().name());
             stmt.setInt(3, attivita.getIdTodo());
@@ -76,7 +83,8 @@ public class PostgresAttivitaDAO implements AttivitaDAO {
         List<Attivita> attivitaList = new ArrayList<>();
         String sql = "SELECT id, id_todo, nome, stato FROM attivita WHERE id_todo = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, todoId);
             ResultSet rs = stmt.executeQuery();
 
@@ -94,6 +102,44 @@ public class PostgresAttivitaDAO implements AttivitaDAO {
         return attivitaList;
     }
 
+    /**
+     * Recupera le attività di più ToDo con una sola query.
+     * <p>
+     * Passa gli ID come array PostgreSQL e filtra con {@code id_todo = ANY(?)},
+     * raggruppando poi le righe per ToDo genitore.
+     * </p>
+     *
+     * @param todoIds Gli identificativi dei ToDo genitori.
+     * @return Una mappa ID ToDo → lista di {@link Attivita}.
+     */
+    @Override
+    public Map<Integer, List<Attivita>> getAttivitaByToDoIds(Collection<Integer> todoIds) {
+        Map<Integer, List<Attivita>> attivitaPerToDo = new HashMap<>();
+        if (todoIds.isEmpty()) {
+            return attivitaPerToDo;
+        }
+        String sql = "SELECT id, id_todo, nome, stato FROM attivita WHERE id_todo = ANY(?) ORDER BY id_todo, id";
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("integer", todoIds.toArray()));
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                Attivita attivita = new Attivita(
+                        rs.getInt("id"),
+                        rs.getInt("id_todo"),
+                        rs.getString("nome"),
+                        StatoAttivita.valueOf(rs.getString("stato"))
+                );
+                attivitaPerToDo.computeIfAbsent(attivita.getIdTodo(), k -> new ArrayList<>()).add(attivita);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore getAttivitaByToDoIds", e);
+        }
+        return attivitaPerToDo;
+    }
+
     /**
      * Aggiorna i dati di un'attività esistente nel database.
      * Modifica il nome e lo stato dell'attività identificata dal suo ID.
@@ -103,7 +149,8 @@ public class PostgresAttivitaDAO implements AttivitaDAO {
     @Override
     public void updateAttivita(Attivita attivita) {
         String sql = "UPDATE attivita SET nome = ?, stato = ? WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, attivita.getNome());
             stmt.setString(2, attivita.getStato().name());
             stmt.setInt(3, attivita.getId());
@@ -122,7 +169,8 @@ public class PostgresAttivitaDAO implements AttivitaDAO {
     @Override
     public void deleteAttivita(int attivitaId) {
         String sql = "DELETE FROM attivita WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, attivitaId);
             stmt.executeUpdate();
         } catch (SQLException e) {
@@ -139,11 +187,127 @@ public class PostgresAttivitaDAO implements AttivitaDAO {
     @Override
     public void deleteAttivitaByToDoId(int todoId) {
         String sql = "DELETE FROM attivita WHERE id_todo = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, todoId);
             stmt.executeUpdate();
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore deleteAttivitaByToDoId", e);
         }
     }
+
+    /**
+     * Allinea le attività di un ToDo alla nuova checklist con il minimo numero di istruzioni.
+     * <p>
+     * Le attività sono confrontate per ID: quelle senza ID diventano {@code INSERT} (con gli ID generati
+     * letti dal batch), quelle con un ID già presente nella vecchia checklist diventano {@code UPDATE}
+     * solo se nome o stato sono cambiati, e gli ID della vecchia checklist assenti dalla nuova vengono
+     * eliminati con un'unica {@code DELETE ... = ANY(?)}. Così riordinare o rimuovere un'attività
+     * non riscrive quelle che la seguono.
+     * Aggiornamenti e inserimenti sono inviati come batch JDBC, il tutto in una sola transazione:
+     * in caso di errore viene eseguito il rollback e nessuna attività viene modificata, né nel database
+     * né in memoria.
+     * </p>
+     *
+     * @param todoId  L'ID del ToDo genitore.
+     * @param vecchia La checklist attualmente salvata, o {@code null}.
+     * @param nuova   La checklist da salvare, o {@code null}.
+     * @throws IllegalStateException Se la transazione non riesce.
+     */
+    @Override
+    public void sincronizzaChecklist(int todoId, Checklist vecchia, Checklist nuova) {
+        List<Attivita> nuove = nuova != null ? nuova.getAttivita() : List.of();
+        Map<Integer, Attivita> vecchiePerId = new HashMap<>();
+        if (vecchia != null) {
+            for (Attivita attivita : vecchia.getAttivita()) {
+                if (attivita.getId() > 0) {
+                    vecchiePerId.put(attivita.getId(), attivita);
+                }
+            }
+        }
+
+        List<Attivita> daAggiornare = new ArrayList<>();
+        List<Attivita> daInserire = new ArrayList<>();
+        for (Attivita attivita : nuove) {
+            if (attivita.getId() <= 0) {
+                daInserire.add(attivita);
+                continue;
+            }
+            Attivita precedente = vecchiePerId.remove(attivita.getId());
+            if (precedente == null || !Objects.equals(precedente.getNome(), attivita.getNome())
+                    || precedente.getStato() != attivita.getStato()) {
+                daAggiornare.add(attivita);
+            }
+        }
+        List<Integer> daEliminare = new ArrayList<>(vecchiePerId.keySet());
+
+        if (!daAggiornare.isEmpty() || !daInserire.isEmpty() || !daEliminare.isEmpty()) {
+            List<Integer> idGenerati = new ArrayList<>(daInserire.size());
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    if (!daAggiornare.isEmpty()) {
+                        aggiornaInBatch(connection, todoId, daAggiornare);
+                    }
+                    if (!daInserire.isEmpty()) {
+                        inserisciInBatch(connection, todoId, daInserire, idGenerati);
+                    }
+                    if (!daEliminare.isEmpty()) {
+                        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM attivita WHERE id = ANY(?)")) {
+                            stmt.setArray(1, connection.createArrayOf("integer", daEliminare.toArray()));
+                            stmt.executeUpdate();
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Errore sincronizzaChecklist", e);
+                throw new IllegalStateException("Impossibile salvare la checklist del ToDo " + todoId, e);
+            }
+            for (int i = 0; i < daInserire.size(); i++) {
+                daInserire.get(i).setId(idGenerati.get(i));
+            }
+        }
+        for (Attivita attivita : nuove) {
+            attivita.setIdTodo(todoId);
+        }
+    }
+
+    private static void aggiornaInBatch(Connection connection, int todoId, List<Attivita> daAggiornare) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE attivita SET nome = ?, stato = ? WHERE id = ? AND id_todo = ?")) {
+            for (Attivita attivita : daAggiornare) {
+                stmt.setString(1, attivita.getNome());
+                stmt.setString(2, attivita.getStato().name());
+                stmt.setInt(3, attivita.getId());
+                stmt.setInt(4, todoId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void inserisciInBatch(Connection connection, int todoId, List<Attivita> daInserire,
+                                         List<Integer> idGenerati) throws SQLException {
+        String sql = "INSERT INTO attivita (nome, stato, id_todo) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql, new String[]{"id"})) {
+            for (Attivita attivita : daInserire) {
+                stmt.setString(1, attivita.getNome());
+                stmt.setString(2, attivita.getStato().name());
+                stmt.setInt(3, todoId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                while (rs.next()) {
+                    idGenerati.add(rs.getInt(1));
+                }
+            }
+        }
+        if (idGenerati.size() != daInserire.size()) {
+            throw new SQLException("Il driver non ha restituito gli ID di tutte le attività inserite.");
+        }
+    }
 }
@@ -3,6 +3,7 @@ package dao.postgresimpl;
 import dao.BachecaDAO;
 import model.Bacheca;
 import model.TitoloBacheca;
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -32,8 +33,8 @@ public class PostgresBachecaDAO implements BachecaDAO {
 
     private static final String SELECT_ALL_QUERY = "SELECT id, " + COLUMN_TITOLO + ", " + COLUMN_DESCRIZIONE + ", " + COLUMN_ID_UTENTE + " FROM " + TABLE_NAME;
 
-    /** La connessione attiva al database. */
-    private final Connection connection;
+    /** Il pool da cui prendere in prestito una connessione per ogni operazione. */
+    private final DataSource dataSource;
 
     /** Logger per tracciare errori e informazioni operative. */
     private static final Logger logger = Logger.getLogger(PostgresBachecaDAO.class.getName());
@@ -41,10 +42,10 @@ public class PostgresBachecaDAO implements BachecaDAO {
     /**
      * Costruttore della classe DAO.
      *
-     * @param connection La connessione al database da utilizzare.
+     * @param dataSource Il pool di connessioni da cui prendere in prestito le connessioni.
      */
-    public PostgresBachecaDAO(Connection connection) {
-        this.connection = connection;
+    public PostgresBachecaDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -66,7 +67,8 @@ public class PostgresBachecaDAO implements BachecaDAO {
         }
 
         String sql = "INSERT INTO " + TABLE_NAME + " (" + COLUMN_TITOLO + ", " + COLUMN_DESCRIZIONE + ", " + COLUMN_ID_UTENTE + ") VALUES (?, ?, ?) RETURNING id";
-        try (PreparedStatement stmt = this.connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, bacheca.getTitolo().name());
             stmt.setString(2, bacheca.getDescrizione());
             stmt.setInt(3, bacheca.getIdUtente());
@@ -91,7 +93,8 @@ public class PostgresBachecaDAO implements BachecaDAO {
     @Override
     public Bacheca getBachecaById(int id) {
         String sql = SELECT_ALL_QUERY + " WHERE id = ?";
-        try (PreparedStatement stmt = this.connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
@@ -118,7 +121,8 @@ public class PostgresBachecaDAO implements BachecaDAO {
     public List<Bacheca> getBachecaByUserId(int userId) {
         List<Bacheca> bacheche = new ArrayList<>();
         String sql = SELECT_ALL_QUERY + " WHERE " + COLUMN_ID_UTENTE + " = ?";
-        try (PreparedStatement stmt = this.connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
@@ -144,7 +148,8 @@ public class PostgresBachecaDAO implements BachecaDAO {
     @Override
     public void updateBacheca(Bacheca bacheca) {
         String sql = "UPDATE " + TABLE_NAME + " SET " + COLUMN_DESCRIZIONE + " = ? WHERE id = ?";
-        try (PreparedStatement stmt = this.connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, bacheca.getDescrizione());
             stmt.setInt(2, bacheca.getId());
             stmt.executeUpdate();
@@ -161,7 +166,8 @@ public class PostgresBachecaDAO implements BachecaDAO {
     @Override
     public void deleteBacheca(int id) {
         String sql = "DELETE FROM bacheca WHERE id = ?";
-        try (PreparedStatement stmt = this.connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             stmt.executeUpdate();
         } catch (SQLException e) {
@@ -181,7 +187,8 @@ public class PostgresBachecaDAO implements BachecaDAO {
     @Override
     public Bacheca getBachecaByTitoloAndUtente(String titolo, int idUtente) {
         String sql = SELECT_ALL_QUERY + " WHERE " + COLUMN_TITOLO + " = ? AND " + COLUMN_ID_UTENTE + " = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, titolo);
             stmt.setInt(2, idUtente);
             ResultSet rs = stmt.executeQuery();
@@ -2,9 +2,13 @@ package dao.postgresimpl;
 
 import dao.CondivisioneDAO;
 import model.Condivisione;
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,8 +28,8 @@ public class PostgresCondivisioneDAO implements CondivisioneDAO {
 
     // Questa costante risolve l'errore "SELECT *" e previene i duplicati delle stringhe
     private static final String SELECT_ALL_QUERY = "SELECT " + COLUMN_ID_UTENTE + ", " + COLUMN_ID_TODO + " FROM " + TABLE_NAME;
-    /** La connessione attiva al database. */
-    private final Connection connection;
+    /** Il pool da cui prendere in prestito una connessione per ogni operazione. */
+    private final DataSource dataSource;
 
     /** Logger per tracciare errori e warning. */
     private static final Logger LOGGER = Logger.getLogger(PostgresCondivisioneDAO.class.getName());
@@ -33,10 +37,10 @@ public class PostgresCondivisioneDAO implements CondivisioneDAO {
     /**
      * Costruttore della classe DAO.
      *
-     * @param connection La connessione al database da utilizzare.
+     * @param dataSource Il pool di connessioni da cui prendere in prestito le connessioni.
      */
-    public PostgresCondivisioneDAO(Connection connection) {
-        this.connection = connection;
+    public PostgresCondivisioneDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -44,21 +48,24 @@ public class PostgresCondivisioneDAO implements CondivisioneDAO {
      * Tenta di inserire una coppia (id_utente, id_todo). Se la coppia esiste già,
      * il database solleva un'eccezione di violazione di chiave primaria (SQLState 23505).
      * In questo caso, l'eccezione viene catturata e ignorata, poiché il risultato desiderato
-     * (il ToDo è condiviso) è già stato raggiunto.
+     * (il ToDo è condiviso) è già stato raggiunto. Gli altri errori vengono rilanciati.
      *
      * @param condivisione L'oggetto Condivisione da salvare.
+     * @throws IllegalStateException Se l'inserimento non riesce per un motivo diverso dal duplicato.
      */
     @Override
     public void addCondivisione(Condivisione condivisione) {
         String sql = "INSERT INTO condivisione (id_utente, id_todo) VALUES (?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, condivisione.getIdUtente());
             stmt.setInt(2, condivisione.getIdToDo());
             stmt.executeUpdate();
         } catch (SQLException e) {
             // Ignora l'errore di chiave duplicata (se già condiviso)
-            if (!e.getSQLState().equals("23505")) {
+            if (!"23505".equals(e.getSQLState())) {
                 LOGGER.log(Level.SEVERE, "Errore addCondivisione", e);
+                throw new IllegalStateException("Impossibile salvare la condivisione", e);
             }
         }
     }
@@ -72,7 +79,8 @@ public class PostgresCondivisioneDAO implements CondivisioneDAO {
     @Override
     public void deleteCondivisione(Condivisione condivisione) {
         String sql = "DELETE FROM condivisione WHERE id_utente = ? AND id_todo = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, condivisione.getIdUtente());
             stmt.setInt(2, condivisione.getIdToDo());
             stmt.executeUpdate();
@@ -93,7 +101,8 @@ public class PostgresCondivisioneDAO implements CondivisioneDAO {
     public List<Condivisione> getCondivisioniByToDoId(int todoId) {
         List<Condivisione> condivisioni = new ArrayList<>();
         String sql = SELECT_ALL_QUERY + " WHERE " + COLUMN_ID_TODO + " = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, todoId);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
@@ -108,6 +117,36 @@ public class PostgresCondivisioneDAO implements CondivisioneDAO {
         return condivisioni;
     }
 
+    /**
+     * Recupera le condivisioni di più ToDo con una sola query {@code id_todo = ANY(?)}.
+     *
+     * @param todoIds Gli ID dei ToDo.
+     * @return Una mappa ID ToDo → lista di condivisioni.
+     */
+    @Override
+    public Map<Integer, List<Condivisione>> getCondivisioniByToDoIds(Collection<Integer> todoIds) {
+        Map<Integer, List<Condivisione>> condivisioniPerToDo = new HashMap<>();
+        if (todoIds.isEmpty()) {
+            return condivisioniPerToDo;
+        }
+        String sql = SELECT_ALL_QUERY + " WHERE " + COLUMN_ID_TODO + " = ANY(?)";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("integer", todoIds.toArray()));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Condivisione condivisione = new Condivisione(
+                        rs.getInt(COLUMN_ID_UTENTE),
+                        rs.getInt(COLUMN_ID_TODO)
+                );
+                condivisioniPerToDo.computeIfAbsent(condivisione.getIdToDo(), k -> new ArrayList<>()).add(condivisione);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore getCondivisioniByToDoIds", e);
+        }
+        return condivisioniPerToDo;
+    }
+
     /**
      * Recupera tutte le condivisioni associate a un determinato Utente.
      * Restituisce una lista di oggetti {@link Condivisione} che rappresentano i ToDo
@@ -120,7 +159,8 @@ public class PostgresCondivisioneDAO implements CondivisioneDAO {
     public List<Condivisione> getCondivisioniByUtenteId(int utenteId) {
         List<Condivisione> condivisioni = new ArrayList<>();
         String sql = SELECT_ALL_QUERY + " WHERE " + COLUMN_ID_UTENTE + " = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, utenteId);
             ResultSet rs = stmt.executeQuery();
 
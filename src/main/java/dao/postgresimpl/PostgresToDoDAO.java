@@ -4,11 +4,33 @@ import dao.ToDoDAO;
 import dao.UtenteDAO;
 import dao.AttivitaDAO;
 import dao.CondivisioneDAO;
+import dao.ConflittoVersioneException;
+import dao.CursoreToDo;
+import dao.ModificheToDo;
+import dao.PaginaRicerca;
+import dao.PaginaToDo;
+import dao.QueryRicerca;
+import dao.ToDoGraphLoader;
 import model.*;
+import javax.sql.DataSource;
 import java.sql.*;
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
 import java.time.LocalDate;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +41,19 @@ import java.util.logging.Logger;
  * Si occupa di query complesse che coinvolgono join con la tabella delle condivisioni
  * e utilizza altri DAO (Utente, Attivita, Condivisione) per ricostruire l'intero
  * grafo degli oggetti quando un ToDo viene letto dal database.
+ * Il grafo viene caricato per pagine tramite il {@link ToDoGraphLoader}, così che ogni
+ * metodo di ricerca esegua un numero costante di query. Le letture includono solo le colonne
+ * e le tabelle mostrate nelle bacheche (ToDo e checklist); autore e condivisioni vengono letti
+ * al primo accesso o in anticipo con {@link #precaricaRelazioni(Collection)}.
+ * </p>
+ * <p>
+ * Le varianti paginate usano la paginazione "keyset" (condizione {@code (t.posizione, t.id) > (?, ?)}
+ * o {@code (t.scadenza, t.id) > (?, ?)}), il cui costo non cresce con il numero di pagine già lette.
+ * Le varianti in streaming disattivano l'autocommit e impostano {@code setFetchSize}, così che il driver
+ * legga le righe tramite un cursore lato server a blocchi di {@value #DIMENSIONE_BLOCCO}; ogni blocco viene
+ * completato dal {@link ToDoGraphLoader} prima di essere consegnato, quindi la memoria usata resta costante.
+ * Poiché il loader prende in prestito altre connessioni mentre quella dello stream è aperta,
+ * il pool deve consentire almeno due connessioni contemporanee.
  * </p>
  *
  * @author Utente
@@ -26,32 +61,132 @@ import java.util.logging.Logger;
  */
 public class PostgresToDoDAO implements ToDoDAO {
 
-    private final Connection connection;
-    private final UtenteDAO utenteDAO;
-    private final AttivitaDAO attivitaDAO;
-    private final CondivisioneDAO condivisioneDAO;
+    private final DataSource dataSource;
+    private final ToDoGraphLoader graphLoader;
 
     private static final Logger logger = Logger.getLogger(PostgresToDoDAO.class.getName());
 
     private static final String COL_STATO = "stato";
     private static final String COL_ID_AUTORE = "id_autore";
     private static final String COL_ID_BACHECA = "id_bacheca";
-    private static final String SELECT_COLUMNS = "id, titolo, descrizione, scadenza, image_path, url, colore_sfondo, stato, posizione, id_autore, id_bacheca";
+    private static final String SELECT_COLUMNS = "id, titolo, descrizione, scadenza, image_path, url, colore_sfondo, stato, posizione, id_autore, id_bacheca, versione";
+    private static final String SELECT_COLUMNS_T = "t.id, t.titolo, t.descrizione, t.scadenza, t.image_path, t.url, t.colore_sfondo, t.stato, t.posizione, t.id_autore, t.id_bacheca, t.versione";
+
+    /** Condizione di visibilità: il ToDo {@code t} è dell'utente oppure è condiviso con lui. */
+    private static final String VISIBILE_ALL_UTENTE =
+            "(t.id_autore = ? OR EXISTS (SELECT 1 FROM condivisione c WHERE c.id_todo = t.id AND c.id_utente = ?))";
+
+    /**
+     * ToDo visibili dall'utente nelle bacheche che hanno lo stesso titolo della bacheca indicata.
+     * <p>
+     * È l'unione di due rami disgiunti, ciascuno servito da un indice della migrazione V2:
+     * i ToDo creati dall'utente ({@code todo(id_autore, id_bacheca, posizione)}) e quelli creati da altri
+     * e condivisi con lui ({@code EXISTS} su {@code condivisione(id_utente, id_todo)}). Poiché i rami non
+     * si sovrappongono basta {@code UNION ALL}, senza deduplicare con {@code GROUP BY}.
+     * Il titolo della bacheca è letto una sola volta per ramo tramite sottoquery scalare.
+     * </p>
+     * Parametri: id utente, id bacheca, id utente, id utente, id bacheca.
+     */
+    private static final String TODO_VISIBILI_IN_BACHECA =
+            "SELECT " + SELECT_COLUMNS_T + " FROM todo t JOIN bacheca b ON b.id = t.id_bacheca " +
+            "WHERE t.id_autore = ? AND b.titolo = (SELECT titolo FROM bacheca WHERE id = ?) " +
+            "UNION ALL " +
+            "SELECT " + SELECT_COLUMNS_T + " FROM todo t JOIN bacheca b ON b.id = t.id_bacheca " +
+            "WHERE t.id_autore <> ? " +
+            "AND EXISTS (SELECT 1 FROM condivisione c WHERE c.id_utente = ? AND c.id_todo = t.id) " +
+            "AND b.titolo = (SELECT titolo FROM bacheca WHERE id = ?)";
+
+    /**
+     * {@link #TODO_VISIBILI_IN_BACHECA} in ordine di visualizzazione, come letta da {@link #getToDosForBachecaAndUtente(int, int)}.
+     * Visibile nel package per la verifica del piano d'esecuzione del modulo {@code benchmarks}.
+     */
+    static final String TODO_VISIBILI_IN_BACHECA_ORDINATI =
+            "SELECT * FROM (" + TODO_VISIBILI_IN_BACHECA + ") t ORDER BY t.posizione ASC, t.id ASC";
+
+    /**
+     * ToDo con l'ID della bacheca dell'utente in cui vanno mostrati (quella con lo stesso titolo),
+     * da completare con la condizione sugli ID e con {@link #VISIBILE_ALL_UTENTE}. Primo parametro: id utente.
+     */
+    private static final String SELECT_PER_BACHECA_UTENTE =
+            "SELECT " + SELECT_COLUMNS_T + ", vb.id AS id_bacheca_utente FROM todo t " +
+            "JOIN bacheca b ON b.id = t.id_bacheca " +
+            "JOIN bacheca vb ON vb.id_utente = ? AND vb.titolo = b.titolo ";
+
+    /**
+     * ID dei ToDo scritti dal watermark in poi, direttamente o tramite un'attività o una condivisione
+     * (vedi migrazione V5). Parametri: quattro volte il watermark.
+     */
+    private static final String TODO_MODIFICATI_DAL =
+            "SELECT id FROM todo WHERE versione >= ? " +
+            "UNION SELECT id_todo FROM attivita WHERE versione >= ? " +
+            "UNION SELECT id_todo FROM condivisione WHERE versione >= ? " +
+            "UNION SELECT id_todo FROM todo_eliminazioni WHERE tabella = 'attivita' AND versione >= ?";
+
+    /** ToDo eliminati, o non più condivisi con l'utente, dal watermark in poi. Parametri: watermark, id utente. */
+    private static final String TODO_ELIMINATI_DAL =
+            "SELECT DISTINCT id_todo FROM todo_eliminazioni WHERE versione >= ? " +
+            "AND (tabella = 'todo' OR tabella = 'condivisione' AND id_utente = ?)";
+
+    /** Watermark: le transazioni con ID inferiore sono tutte concluse e visibili nell'istantanea corrente. */
+    private static final String WATERMARK_CORRENTE = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    /** Configurazione testuale usata dall'indice full-text (vedi migrazione V1). */
+    private static final String CONFIGURAZIONE_FTS = "simple";
+
+    /** SQLState di PostgreSQL per colonna o funzione inesistente. */
+    private static final String SQLSTATE_COLONNA_INESISTENTE = "42703";
+    private static final String SQLSTATE_FUNZIONE_INESISTENTE = "42883";
+
+    /** Righe lette dal database (e completate dal loader) per ogni blocco delle varianti in streaming. */
+    private static final int DIMENSIONE_BLOCCO = 500;
+
+    /** Restituisce al pool le connessioni degli stream abbandonati senza essere chiusi. */
+    private static final Cleaner PULITORE = Cleaner.create();
+
+    /** Condizioni "keyset" per leggere le righe successive al cursore. */
+    private static final String DOPO_POSIZIONE = " AND (t.posizione, t.id) > (?, ?)";
+    private static final String DOPO_SCADENZA = " AND (t.scadenza, t.id) > (?, ?)";
+
+    /**
+     * Condizione di {@link #updateToDo(ToDo)}: la riga viene scritta solo se ha ancora la versione letta,
+     * e la nuova versione (assegnata dal trigger della migrazione V5) torna senza un'altra lettura.
+     */
+    private static final String WHERE_VERSIONE = " WHERE id = ? AND versione = ? RETURNING versione";
+
+    /** UPDATE dedicati ai casi più frequenti: spunta del ToDo e rango da salvare insieme agli altri campi. */
+    private static final String UPDATE_STATO = "UPDATE todo SET " + COL_STATO + " = ?" + WHERE_VERSIONE;
+    private static final String UPDATE_POSIZIONE_VERSIONATA = "UPDATE todo SET posizione = ?" + WHERE_VERSIONE;
+
+    /**
+     * Riordino senza controllo di versione, per gli spostamenti nella bacheca e i ribilanciamenti
+     * (il rango non è un dato dell'utente).
+     */
+    private static final String UPDATE_POSIZIONE = "UPDATE todo SET posizione = ? WHERE id = ?";
+
+    /** Imposta i parametri di una query preparata. */
+    @FunctionalInterface
+    private interface ParametriQuery {
+        void imposta(PreparedStatement stmt) throws SQLException;
+    }
+
+    /**
+     * Indica se la colonna {@code todo.search_vector} è presente; {@code null} finché non è stato verificato.
+     * Se la migrazione full-text non è stata applicata, {@link #searchToDos} usa la ricerca semplice.
+     */
+    private volatile Boolean fullTextDisponibile;
 
     /**
      * Costruttore della classe.
      * Riceve le dipendenze (altri DAO) necessarie per costruire oggetti ToDo completi.
      *
-     * @param connection      La connessione al database.
+     * @param dataSource      Il pool di connessioni da cui prendere in prestito le connessioni.
      * @param utenteDAO       Il DAO per gestire gli utenti.
      * @param attivitaDAO     Il DAO per gestire le attività della checklist.
      * @param condivisioneDAO Il DAO per gestire le condivisioni.
      */
-    public PostgresToDoDAO(Connection connection, UtenteDAO utenteDAO, AttivitaDAO attivitaDAO, CondivisioneDAO condivisioneDAO) {
-        this.connection = connection;
-        this.utenteDAO = utenteDAO;
-        this.attivitaDAO = attivitaDAO;
-        this.condivisioneDAO = condivisioneDAO;
+    public PostgresToDoDAO(DataSource dataSource, UtenteDAO utenteDAO, AttivitaDAO attivitaDAO, CondivisioneDAO condivisioneDAO) {
+        this.dataSource = dataSource;
+        this.graphLoader = new ToDoGraphLoader(utenteDAO, attivitaDAO, condivisioneDAO);
     }
 
     /**
@@ -62,9 +197,10 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public void addToDo(ToDo todo) {
         String sql = "INSERT INTO todo (titolo, descrizione, scadenza, image_path, url, colore_sfondo, stato, posizione, id_autore, id_bacheca) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id, versione";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
 
             stmt.setString(1, todo.getTitolo());
             stmt.setString(2, todo.getDescrizione());
@@ -85,6 +221,8 @@ public class PostgresToDoDAO implements ToDoDAO {
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 todo.setId(rs.getInt(1));
+                todo.setVersione(rs.getLong(2));
+                todo.segnaSalvato();
             }
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore addToDo", e);
@@ -100,17 +238,22 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public ToDo getToDoById(int id) {
         String sql = "SELECT " + SELECT_COLUMNS + " FROM todo WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        ToDo todo = null;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
 
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return costruisciToDoDaResultSet(rs);
+                todo = costruisciToDoDaResultSet(rs);
             }
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore getToDoById", e);
         }
-        return null;
+        if (todo != null) {
+            graphLoader.carica(List.of(todo));
+        }
+        return todo;
     }
 
     /**
@@ -123,7 +266,8 @@ public class PostgresToDoDAO implements ToDoDAO {
         List<ToDo> todos = new ArrayList<>();
         String sql = "SELECT " + SELECT_COLUMNS + " FROM todo ORDER BY posizione ASC";
 
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
@@ -132,35 +276,210 @@ public class PostgresToDoDAO implements ToDoDAO {
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore getAllToDo", e);
         }
+        graphLoader.carica(todos);
         return todos;
     }
 
     /**
-     * Aggiorna un ToDo esistente.
+     * Recupera una pagina di tutti i ToDo, ordinati per posizione e ID.
+     *
+     * @param dopo             Il cursore della pagina precedente, o {@code null} per la prima.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina di ToDo.
+     */
+    @Override
+    public PaginaToDo getAllToDo(CursoreToDo dopo, int dimensionePagina) {
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t WHERE TRUE" + (dopo != null ? DOPO_POSIZIONE : "") +
+                " ORDER BY t.posizione ASC, t.id ASC LIMIT ?";
+        return leggiPagina(sql, stmt -> {
+            int indice = impostaCursore(stmt, 1, dopo, false);
+            stmt.setInt(indice, dimensionePagina + 1);
+        }, dimensionePagina, "getAllToDo (pagina)");
+    }
+
+    /**
+     * Restituisce tutti i ToDo, ordinati per posizione e ID, letti a blocchi tramite cursore lato server.
+     *
+     * @return Lo stream dei ToDo; va chiuso per restituire la connessione al pool.
+     */
+    @Override
+    public Stream<ToDo> streamAllToDo() {
+        String sql = "SELECT " + SELECT_COLUMNS + " FROM todo ORDER BY posizione ASC, id ASC";
+        return apriStream(sql, _ -> { }, "streamAllToDo");
+    }
+
+    /**
+     * Restituisce i ToDo visibili dall'utente, ordinati per scadenza e ID, letti a blocchi tramite cursore lato server.
+     *
+     * @param userId L'ID dell'utente corrente.
+     * @return Lo stream dei ToDo; va chiuso per restituire la connessione al pool.
+     */
+    @Override
+    public Stream<ToDo> streamToDosVisibili(int userId) {
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t WHERE " + VISIBILE_ALL_UTENTE +
+                " ORDER BY t.scadenza ASC, t.id ASC";
+        return apriStream(sql, stmt -> {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, userId);
+        }, "streamToDosVisibili");
+    }
+
+    /**
+     * Aggiorna un ToDo esistente, scrivendo solo le colonne dei campi modificati
+     * dall'ultimo salvataggio (vedi {@link ToDo#prendiCampiModificati()}).
+     * <p>
+     * I casi più frequenti (solo stato, solo posizione) usano uno statement dedicato;
+     * se non è cambiato nulla non viene eseguito alcuno statement. In caso di errore
+     * i campi tornano a risultare modificati, così da essere riscritti al salvataggio successivo.
+     * </p>
+     * <p>
+     * Senza concorrenza il costo è quello di prima: un solo UPDATE, senza lock né letture aggiuntive.
+     * Solo se la versione non corrisponde più la riga attuale viene letta, sulla stessa connessione,
+     * per la {@link ConflittoVersioneException}.
+     * </p>
      *
      * @param todo Il ToDo con i dati aggiornati.
+     * @throws ConflittoVersioneException Se un altro utente ha modificato il ToDo dopo l'ultima lettura.
+     * @throws IllegalStateException      Se la scrittura non riesce per un errore del database.
      */
     @Override
     public void updateToDo(ToDo todo) {
-        String sql = "UPDATE todo SET titolo = ?, descrizione = ?, scadenza = ?, image_path = ?, " +
-                "url = ?, colore_sfondo = ?, stato = ?, posizione = ?, id_bacheca = ? " +
-                "WHERE id = ?";
+        Set<CampoToDo> campi = todo.prendiCampiModificati();
+        if (campi.isEmpty()) {
+            logger.log(Level.FINE, "updateToDo: nessuna modifica per il ToDo {0}", todo.getId());
+            return;
+        }
+        String sql = sqlUpdateToDo(campi);
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, todo.getTitolo());
-            stmt.setString(2, todo.getDescrizione());
-            stmt.setDate(3, java.sql.Date.valueOf(todo.getScadenza()));
-            stmt.setString(4, todo.getImagePath());
-            stmt.setString(5, todo.getURL());
-            stmt.setString(6, todo.getColoreSfondo());
-            stmt.setString(7, todo.getStato().name());
-            stmt.setInt(8, todo.getPosizione());
-            stmt.setInt(9, todo.getIdBacheca());
-            stmt.setInt(10, todo.getId());
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int idx = 1;
+            for (CampoToDo campo : campi) {
+                impostaCampo(stmt, idx++, campo, todo);
+            }
+            stmt.setInt(idx, todo.getId());
+            stmt.setLong(idx + 1, todo.getVersione());
 
-            stmt.executeUpdate();
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    todo.setVersione(rs.getLong(1));
+                    return;
+                }
+            }
+            todo.ripristinaCampiModificati(campi);
+            throw new ConflittoVersioneException(todo.getId(), leggiRiga(connection, todo.getId()), campi);
         } catch (SQLException e) {
+            todo.ripristinaCampiModificati(campi);
             logger.log(Level.SEVERE, "Errore updateToDo", e);
+            throw new IllegalStateException("Impossibile aggiornare il ToDo " + todo.getId(), e);
+        }
+    }
+
+    /** Legge i soli campi di una riga (senza checklist né relazioni), oppure {@code null} se non esiste. */
+    private ToDo leggiRiga(Connection connection, int id) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT " + SELECT_COLUMNS + " FROM todo WHERE id = ?")) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? costruisciToDoDaResultSet(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Restituisce l'UPDATE per le sole colonne indicate, nell'ordine di {@link CampoToDo}.
+     */
+    private static String sqlUpdateToDo(Set<CampoToDo> campi) {
+        if (campi.size() == 1) {
+            CampoToDo campo = campi.iterator().next();
+            if (campo == CampoToDo.STATO) {
+                return UPDATE_STATO;
+            } else if (campo == CampoToDo.POSIZIONE) {
+                return UPDATE_POSIZIONE_VERSIONATA;
+            }
+        }
+        StringJoiner colonne = new StringJoiner(", ", "UPDATE todo SET ", WHERE_VERSIONE);
+        for (CampoToDo campo : campi) {
+            colonne.add(colonna(campo) + " = ?");
+        }
+        return colonne.toString();
+    }
+
+    private static String colonna(CampoToDo campo) {
+        return switch (campo) {
+            case TITOLO -> "titolo";
+            case DESCRIZIONE -> "descrizione";
+            case SCADENZA -> "scadenza";
+            case IMAGE_PATH -> "image_path";
+            case URL -> "url";
+            case COLORE_SFONDO -> "colore_sfondo";
+            case STATO -> COL_STATO;
+            case POSIZIONE -> "posizione";
+            case BACHECA -> COL_ID_BACHECA;
+        };
+    }
+
+    private static void impostaCampo(PreparedStatement stmt, int idx, CampoToDo campo, ToDo todo) throws SQLException {
+        switch (campo) {
+            case TITOLO -> stmt.setString(idx, todo.getTitolo());
+            case DESCRIZIONE -> stmt.setString(idx, todo.getDescrizione());
+            case SCADENZA -> stmt.setDate(idx, java.sql.Date.valueOf(todo.getScadenza()));
+            case IMAGE_PATH -> stmt.setString(idx, todo.getImagePath());
+            case URL -> stmt.setString(idx, todo.getURL());
+            case COLORE_SFONDO -> stmt.setString(idx, todo.getColoreSfondo());
+            case STATO -> stmt.setString(idx, todo.getStato().name());
+            case POSIZIONE -> stmt.setInt(idx, todo.getPosizione());
+            case BACHECA -> stmt.setInt(idx, todo.getIdBacheca());
+        }
+    }
+
+    /**
+     * Aggiorna la sola colonna {@code posizione} di un ToDo.
+     *
+     * @param id        L'ID del ToDo.
+     * @param posizione Il nuovo rango.
+     */
+    @Override
+    public void updatePosizione(int id, int posizione) {
+        String sql = UPDATE_POSIZIONE;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, posizione);
+            stmt.setInt(2, id);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore updatePosizione", e);
+            throw new IllegalStateException("Impossibile salvare la posizione del ToDo " + id, e);
+        }
+    }
+
+    /**
+     * Aggiorna le posizioni di più ToDo con un batch JDBC, in un'unica transazione.
+     *
+     * @param posizioni Mappa ID del ToDo → nuovo rango.
+     */
+    @Override
+    public void updatePosizioni(Map<Integer, Integer> posizioni) {
+        if (posizioni.isEmpty()) {
+            return;
+        }
+        String sql = UPDATE_POSIZIONE;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (Map.Entry<Integer, Integer> entry : posizioni.entrySet()) {
+                    stmt.setInt(1, entry.getValue());
+                    stmt.setInt(2, entry.getKey());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore updatePosizioni", e);
+            throw new IllegalStateException("Impossibile salvare le posizioni dei ToDo", e);
         }
     }
 
@@ -172,7 +491,8 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public void deleteToDo(int id) {
         String sql = "DELETE FROM todo WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             stmt.executeUpdate();
         } catch (SQLException e) {
@@ -190,13 +510,14 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public List<ToDo> findToDosByTerm(String searchTerm, int userId) {
         List<ToDo> todos = new ArrayList<>();
-        String sql = "SELECT t.* FROM todo t " +
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t " +
                 "LEFT JOIN condivisione c ON t.id = c.id_todo " +
                 "WHERE (t.id_autore = ? OR c.id_utente = ?) " +
                 "AND (LOWER(t.titolo) LIKE ? OR LOWER(t.descrizione) LIKE ?) " +
                 "GROUP BY t.id " +
                 "ORDER BY t.scadenza ASC";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, userId);
             stmt.setString(3, "%" + searchTerm.toLowerCase() + "%");
@@ -209,9 +530,160 @@ public class PostgresToDoDAO implements ToDoDAO {
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore findToDosByTerm", e);
         }
+        graphLoader.carica(todos);
         return todos;
     }
 
+    /**
+     * Cerca una pagina di ToDo per termine di ricerca (titolo o descrizione), ordinati per scadenza e ID.
+     *
+     * @param searchTerm       Il testo da cercare.
+     * @param userId           L'ID dell'utente corrente.
+     * @param dopo             Il cursore della pagina precedente, o {@code null} per la prima.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina di ToDo trovati.
+     */
+    @Override
+    public PaginaToDo findToDosByTerm(String searchTerm, int userId, CursoreToDo dopo, int dimensionePagina) {
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t " +
+                "WHERE " + VISIBILE_ALL_UTENTE + " " +
+                "AND (LOWER(t.titolo) LIKE ? OR LOWER(t.descrizione) LIKE ?)" + (dopo != null ? DOPO_SCADENZA : "") +
+                " ORDER BY t.scadenza ASC, t.id ASC LIMIT ?";
+        String pattern = "%" + searchTerm.toLowerCase() + "%";
+        return leggiPagina(sql, stmt -> {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, userId);
+            stmt.setString(3, pattern);
+            stmt.setString(4, pattern);
+            int indice = impostaCursore(stmt, 5, dopo, true);
+            stmt.setInt(indice, dimensionePagina + 1);
+        }, dimensionePagina, "findToDosByTerm (pagina)");
+    }
+
+    /**
+     * Ricerca testuale ordinata per rilevanza.
+     * <p>
+     * Se l'indice full-text è disponibile usa {@code search_vector @@ to_tsquery(...)}, servita
+     * dall'indice GIN, e ordina per {@code ts_rank_cd}. Altrimenti ripiega su una ricerca
+     * {@code LIKE} su titolo, descrizione e nomi delle attività, mettendo prima i ToDo il cui
+     * titolo contiene il primo termine. In entrambi i casi la visibilità è verificata con
+     * {@code EXISTS} sulle condivisioni e i risultati sono paginati con {@code LIMIT/OFFSET}.
+     * </p>
+     *
+     * @param query            La query analizzata.
+     * @param userId           L'ID dell'utente corrente.
+     * @param pagina           L'indice della pagina (a partire da 0).
+     * @param dimensionePagina Il numero massimo di risultati per pagina.
+     * @return La pagina di risultati.
+     */
+    @Override
+    public PaginaRicerca searchToDos(QueryRicerca query, int userId, int pagina, int dimensionePagina) {
+        boolean fullText = isFullTextDisponibile();
+        if (query.isVuota()) {
+            return new PaginaRicerca(List.of(), pagina, dimensionePagina, false, fullText);
+        }
+        List<ToDo> todos = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            try {
+                eseguiRicerca(connection, query, userId, pagina, dimensionePagina, fullText, todos);
+            } catch (SQLException e) {
+                if (!fullText || !isSchemaFullTextMancante(e)) {
+                    throw e;
+                }
+                logger.log(Level.WARNING, "Indice full-text non disponibile, uso la ricerca semplice", e);
+                fullTextDisponibile = false;
+                fullText = false;
+                todos.clear();
+                eseguiRicerca(connection, query, userId, pagina, dimensionePagina, false, todos);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore searchToDos", e);
+        }
+
+        boolean altriRisultati = todos.size() > dimensionePagina;
+        if (altriRisultati) {
+            todos.remove(todos.size() - 1);
+        }
+        graphLoader.carica(todos);
+        return new PaginaRicerca(todos, pagina, dimensionePagina, altriRisultati, fullText);
+    }
+
+    /**
+     * Esegue la query di ricerca (full-text o semplice), leggendo un risultato in più del necessario
+     * per sapere se esiste una pagina successiva.
+     */
+    private void eseguiRicerca(Connection connection, QueryRicerca query, int userId, int pagina,
+                               int dimensionePagina, boolean fullText, List<ToDo> todos) throws SQLException {
+        String sql;
+        if (fullText) {
+            sql = "SELECT " + SELECT_COLUMNS_T + ", ts_rank_cd(t.search_vector, q) AS rilevanza " +
+                    "FROM todo t CROSS JOIN to_tsquery('" + CONFIGURAZIONE_FTS + "', ?) q " +
+                    "WHERE t.search_vector @@ q AND " + VISIBILE_ALL_UTENTE + " " +
+                    "ORDER BY rilevanza DESC, t.scadenza ASC, t.id ASC " +
+                    "LIMIT ? OFFSET ?";
+        } else {
+            StringBuilder where = new StringBuilder(VISIBILE_ALL_UTENTE);
+            for (int i = 0; i < query.getTermini().size(); i++) {
+                where.append(" AND (LOWER(t.titolo) LIKE ? OR LOWER(t.descrizione) LIKE ? " +
+                        "OR EXISTS (SELECT 1 FROM attivita a WHERE a.id_todo = t.id AND LOWER(a.nome) LIKE ?))");
+            }
+            sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t WHERE " + where + " " +
+                    "ORDER BY (CASE WHEN LOWER(t.titolo) LIKE ? THEN 0 ELSE 1 END), t.scadenza ASC, t.id ASC " +
+                    "LIMIT ? OFFSET ?";
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int indice = 1;
+            if (fullText) {
+                stmt.setString(indice++, query.toTsQuery());
+            }
+            stmt.setInt(indice++, userId);
+            stmt.setInt(indice++, userId);
+            if (!fullText) {
+                List<String> pattern = query.toPatternLike();
+                for (String p : pattern) {
+                    stmt.setString(indice++, p);
+                    stmt.setString(indice++, p);
+                    stmt.setString(indice++, p);
+                }
+                stmt.setString(indice++, pattern.get(0));
+            }
+            stmt.setInt(indice++, dimensionePagina + 1);
+            stmt.setInt(indice, pagina * dimensionePagina);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    todos.add(costruisciToDoDaResultSet(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifica (una sola volta) se la colonna {@code search_vector} esiste nella tabella {@code todo}.
+     */
+    private boolean isFullTextDisponibile() {
+        Boolean disponibile = fullTextDisponibile;
+        if (disponibile == null) {
+            String sql = "SELECT 1 FROM information_schema.columns " +
+                    "WHERE table_schema = current_schema() AND table_name = 'todo' AND column_name = 'search_vector'";
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                disponibile = rs.next();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Impossibile verificare la presenza dell'indice full-text", e);
+                disponibile = false;
+            }
+            fullTextDisponibile = disponibile;
+        }
+        return disponibile;
+    }
+
+    private static boolean isSchemaFullTextMancante(SQLException e) {
+        return SQLSTATE_COLONNA_INESISTENTE.equals(e.getSQLState()) || SQLSTATE_FUNZIONE_INESISTENTE.equals(e.getSQLState());
+    }
+
     /**
      * Cerca i ToDo che scadono entro (o il) una certa data.
      *
@@ -222,13 +694,14 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public List<ToDo> findToDosByScadenza(LocalDate date, int userId) {
         List<ToDo> todos = new ArrayList<>();
-        String sql = "SELECT t.* FROM todo t " +
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t " +
                 "LEFT JOIN condivisione c ON t.id = c.id_todo " +
                 "WHERE (t.id_autore = ? OR c.id_utente = ?) " +
                 "AND t.scadenza = ? " +
                 "GROUP BY t.id " +
                 "ORDER BY t.scadenza ASC";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, userId);
             stmt.setDate(3, java.sql.Date.valueOf(date));
@@ -239,9 +712,33 @@ public class PostgresToDoDAO implements ToDoDAO {
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore findToDosByScadenza", e);
         }
+        graphLoader.carica(todos);
         return todos;
     }
 
+    /**
+     * Cerca una pagina di ToDo con la scadenza indicata, ordinati per scadenza e ID.
+     *
+     * @param date             La data di scadenza.
+     * @param userId           L'ID dell'utente corrente.
+     * @param dopo             Il cursore della pagina precedente, o {@code null} per la prima.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina di ToDo in scadenza.
+     */
+    @Override
+    public PaginaToDo findToDosByScadenza(LocalDate date, int userId, CursoreToDo dopo, int dimensionePagina) {
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t " +
+                "WHERE " + VISIBILE_ALL_UTENTE + " AND t.scadenza = ?" + (dopo != null ? DOPO_SCADENZA : "") +
+                " ORDER BY t.scadenza ASC, t.id ASC LIMIT ?";
+        return leggiPagina(sql, stmt -> {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, userId);
+            stmt.setDate(3, java.sql.Date.valueOf(date));
+            int indice = impostaCursore(stmt, 4, dopo, true);
+            stmt.setInt(indice, dimensionePagina + 1);
+        }, dimensionePagina, "findToDosByScadenza (pagina)");
+    }
+
     /**
      * Cerca i ToDo che scadono *esattamente* oggi.
      * <p>
@@ -254,14 +751,15 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public List<ToDo> findToDosScadenzaOggi(int userId) {
         List<ToDo> todos = new ArrayList<>();
-        String sql = "SELECT t.* FROM todo t " +
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t " +
                 "LEFT JOIN condivisione c ON t.id = c.id_todo " +
                 "WHERE (t.id_autore = ? OR c.id_utente = ?) " +
                 "AND t.scadenza = ? " + // UGUALE A OGGI
                 "GROUP BY t.id " +
                 "ORDER BY t.scadenza ASC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, userId);
             stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now())); // Data odierna
@@ -272,6 +770,7 @@ public class PostgresToDoDAO implements ToDoDAO {
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore findToDosScadenzaOggi", e);
         }
+        graphLoader.carica(todos);
         return todos;
     }
 
@@ -287,7 +786,7 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public List<ToDo> findToDosScaduti(int userId) {
         List<ToDo> todos = new ArrayList<>();
-        String sql = "SELECT t.* FROM todo t " +
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t " +
                 "LEFT JOIN condivisione c ON t.id = c.id_todo " +
                 "WHERE (t.id_autore = ? OR c.id_utente = ?) " +
                 "AND t.scadenza < ? " + // MINORE DI OGGI
@@ -295,7 +794,8 @@ public class PostgresToDoDAO implements ToDoDAO {
                 "GROUP BY t.id " +
                 "ORDER BY t.scadenza ASC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, userId);
             stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now())); // Confronta con oggi
@@ -306,12 +806,37 @@ public class PostgresToDoDAO implements ToDoDAO {
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore findToDosScaduti", e);
         }
+        graphLoader.carica(todos);
         return todos;
     }
 
+    /**
+     * Cerca una pagina di ToDo già scaduti e non completati, ordinati per scadenza e ID.
+     *
+     * @param userId           L'ID dell'utente corrente.
+     * @param dopo             Il cursore della pagina precedente, o {@code null} per la prima.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina di ToDo scaduti.
+     */
+    @Override
+    public PaginaToDo findToDosScaduti(int userId, CursoreToDo dopo, int dimensionePagina) {
+        String sql = "SELECT " + SELECT_COLUMNS_T + " FROM todo t " +
+                "WHERE " + VISIBILE_ALL_UTENTE + " AND t.scadenza < ? AND t." + COL_STATO + " = ?" +
+                (dopo != null ? DOPO_SCADENZA : "") +
+                " ORDER BY t.scadenza ASC, t.id ASC LIMIT ?";
+        return leggiPagina(sql, stmt -> {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, userId);
+            stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(4, StatoToDo.NON_COMPLETATO.name());
+            int indice = impostaCursore(stmt, 5, dopo, true);
+            stmt.setInt(indice, dimensionePagina + 1);
+        }, dimensionePagina, "findToDosScaduti (pagina)");
+    }
+
     /**
      * Recupera i ToDo da visualizzare in una specifica bacheca per un utente.
-     * Include i ToDo creati dall'utente o condivisi con lui.
+     * Include i ToDo creati dall'utente o condivisi con lui (vedi {@link #TODO_VISIBILI_IN_BACHECA}).
      *
      * @param bachecaId L'ID della bacheca.
      * @param utenteId  L'ID dell'utente corrente.
@@ -320,17 +845,10 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public List<ToDo> getToDosForBachecaAndUtente(int bachecaId, int utenteId) {
         List<ToDo> todos = new ArrayList<>();
-        String sql = "SELECT t.* FROM todo t " +
-                "JOIN bacheca b_origin ON t.id_bacheca = b_origin.id " +
-                "LEFT JOIN condivisione c ON t.id = c.id_todo " +
-                "WHERE b_origin.titolo = (SELECT titolo FROM bacheca WHERE id = ?) " +
-                "AND (t.id_autore = ? OR c.id_utente = ?) " +
-                "GROUP BY t.id " +
-                "ORDER BY t.posizione ASC";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, bachecaId);
-            stmt.setInt(2, utenteId);
-            stmt.setInt(3, utenteId);
+        String sql = TODO_VISIBILI_IN_BACHECA_ORDINATI;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            impostaVisibiliInBacheca(stmt, bachecaId, utenteId);
 
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
@@ -339,9 +857,31 @@ public class PostgresToDoDAO implements ToDoDAO {
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Errore getToDosForBachecaAndUtente", e);
         }
+        graphLoader.carica(todos);
         return todos;
     }
 
+    /**
+     * Recupera una pagina dei ToDo visibili in una bacheca, ordinati per posizione e ID.
+     *
+     * @param bachecaId        L'ID della bacheca.
+     * @param utenteId         L'ID dell'utente corrente.
+     * @param dopo             Il cursore della pagina precedente, o {@code null} per la prima.
+     * @param dimensionePagina Il numero massimo di ToDo della pagina.
+     * @return La pagina di ToDo visibili.
+     */
+    @Override
+    public PaginaToDo getToDosForBachecaAndUtente(int bachecaId, int utenteId, CursoreToDo dopo, int dimensionePagina) {
+        String sql = "SELECT * FROM (" + TODO_VISIBILI_IN_BACHECA + ") t WHERE TRUE" +
+                (dopo != null ? DOPO_POSIZIONE : "") +
+                " ORDER BY t.posizione ASC, t.id ASC LIMIT ?";
+        return leggiPagina(sql, stmt -> {
+            int indice = impostaVisibiliInBacheca(stmt, bachecaId, utenteId);
+            indice = impostaCursore(stmt, indice, dopo, false);
+            stmt.setInt(indice, dimensionePagina + 1);
+        }, dimensionePagina, "getToDosForBachecaAndUtente (pagina)");
+    }
+
     /**
      * Imposta come completati tutti i ToDo di una bacheca.
      *
@@ -350,7 +890,8 @@ public class PostgresToDoDAO implements ToDoDAO {
     @Override
     public void markAllToDoAsCompletedByBachecaId(int bachecaId) {
         String sql = "UPDATE todo SET " + COL_STATO + " = ? WHERE " + COL_ID_BACHECA + " = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, StatoToDo.COMPLETATO.name());
             stmt.setInt(2, bachecaId);
             stmt.executeUpdate();
@@ -359,6 +900,323 @@ public class PostgresToDoDAO implements ToDoDAO {
         }
     }
 
+    /**
+     * Carica autore e condivisioni dei ToDo indicati con una query per tabella (vedi {@link ToDoGraphLoader}).
+     *
+     * @param todos I ToDo di cui caricare le relazioni.
+     */
+    @Override
+    public void precaricaRelazioni(Collection<ToDo> todos) {
+        graphLoader.caricaRelazioni(todos);
+    }
+
+    /**
+     * Rilegge i ToDo indicati con un'unica query su {@code id = ANY(?)}: il join con le bacheche
+     * dell'utente che hanno lo stesso titolo fornisce la bacheca in cui mostrare ciascun ToDo.
+     *
+     * @param ids      Gli ID dei ToDo da rileggere.
+     * @param utenteId L'ID dell'utente corrente.
+     * @return Mappa ID della bacheca dell'utente → ToDo visibili in quella bacheca.
+     */
+    @Override
+    public Map<Integer, List<ToDo>> getToDosVisibiliByIds(Collection<Integer> ids, int utenteId) {
+        Map<Integer, List<ToDo>> perBacheca = new HashMap<>();
+        if (ids.isEmpty()) {
+            return perBacheca;
+        }
+        String sql = SELECT_PER_BACHECA_UTENTE + "WHERE t.id = ANY(?) AND " + VISIBILE_ALL_UTENTE;
+        List<ToDo> todos = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, utenteId);
+            stmt.setArray(2, connection.createArrayOf("integer", new HashSet<>(ids).toArray()));
+            stmt.setInt(3, utenteId);
+            stmt.setInt(4, utenteId);
+            leggiPerBachecaUtente(stmt, todos, perBacheca);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore getToDosVisibiliByIds", e);
+            throw new IllegalStateException("Impossibile rileggere i ToDo modificati", e);
+        }
+        graphLoader.carica(todos);
+        return perBacheca;
+    }
+
+    /**
+     * Legge il watermark corrente (vedi {@link #WATERMARK_CORRENTE}).
+     *
+     * @return Il watermark.
+     */
+    @Override
+    public long getWatermarkModifiche() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(WATERMARK_CORRENTE);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore getWatermarkModifiche", e);
+            throw new IllegalStateException("Impossibile leggere il watermark delle modifiche", e);
+        }
+    }
+
+    /**
+     * Legge le modifiche dal watermark indicato tramite le versioni di riga e le lapidi della migrazione V5.
+     * <p>
+     * Il nuovo watermark e le due query sono eseguiti nella stessa transazione {@code REPEATABLE READ},
+     * quindi vedono la stessa istantanea: le scritture concluse dopo la lettura hanno una versione non
+     * inferiore al nuovo watermark e vengono restituite alla sincronizzazione successiva.
+     * </p>
+     *
+     * @param watermark Il watermark della sincronizzazione precedente, oppure 0.
+     * @param utenteId  L'ID dell'utente corrente.
+     * @return Le modifiche e il nuovo watermark.
+     */
+    @Override
+    public ModificheToDo getModificheDal(long watermark, int utenteId) {
+        String sql = SELECT_PER_BACHECA_UTENTE + "WHERE t.id IN (" + TODO_MODIFICATI_DAL + ") AND " + VISIBILE_ALL_UTENTE;
+        Map<Integer, List<ToDo>> perBacheca = new HashMap<>();
+        Set<Integer> eliminati = new HashSet<>();
+        List<ToDo> todos = new ArrayList<>();
+        long nuovoWatermark;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            try {
+                try (PreparedStatement stmt = connection.prepareStatement(WATERMARK_CORRENTE);
+                     ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    nuovoWatermark = rs.getLong(1);
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    stmt.setInt(1, utenteId);
+                    for (int i = 2; i <= 5; i++) {
+                        stmt.setLong(i, watermark);
+                    }
+                    stmt.setInt(6, utenteId);
+                    stmt.setInt(7, utenteId);
+                    leggiPerBachecaUtente(stmt, todos, perBacheca);
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(TODO_ELIMINATI_DAL)) {
+                    stmt.setLong(1, watermark);
+                    stmt.setInt(2, utenteId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            eliminati.add(rs.getInt(1));
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setReadOnly(false);
+                connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore getModificheDal", e);
+            throw new IllegalStateException("Impossibile leggere le modifiche dal watermark " + watermark, e);
+        }
+        for (ToDo t : todos) {
+            // condiviso di nuovo dopo la revoca, o eliminato e visibile nella stessa finestra: conta lo stato attuale
+            eliminati.remove(t.getId());
+        }
+        graphLoader.carica(todos);
+        return new ModificheToDo(perBacheca, eliminati, nuovoWatermark);
+    }
+
+    /** Esegue una query basata su {@link #SELECT_PER_BACHECA_UTENTE} e raggruppa i ToDo per bacheca dell'utente. */
+    private void leggiPerBachecaUtente(PreparedStatement stmt, List<ToDo> todos, Map<Integer, List<ToDo>> perBacheca) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ToDo todo = costruisciToDoDaResultSet(rs);
+                todos.add(todo);
+                perBacheca.computeIfAbsent(rs.getInt("id_bacheca_utente"), k -> new ArrayList<>()).add(todo);
+            }
+        }
+    }
+
+    /**
+     * Esegue una query paginata che legge un ToDo in più del necessario (il parametro {@code LIMIT}
+     * vale {@code dimensionePagina + 1}) per sapere se esiste una pagina successiva.
+     */
+    private PaginaToDo leggiPagina(String sql, ParametriQuery parametri, int dimensionePagina, String operazione) {
+        List<ToDo> todos = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            parametri.imposta(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    todos.add(costruisciToDoDaResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore " + operazione, e);
+        }
+
+        CursoreToDo successivo = null;
+        if (todos.size() > dimensionePagina) {
+            todos.remove(todos.size() - 1);
+            successivo = todos.isEmpty() ? null : CursoreToDo.dopo(todos.get(todos.size() - 1));
+        }
+        graphLoader.carica(todos);
+        return new PaginaToDo(todos, successivo);
+    }
+
+    /**
+     * Imposta i parametri di {@link #TODO_VISIBILI_IN_BACHECA}.
+     *
+     * @return L'indice del primo parametro successivo.
+     */
+    static int impostaVisibiliInBacheca(PreparedStatement stmt, int bachecaId, int utenteId) throws SQLException {
+        stmt.setInt(1, utenteId);
+        stmt.setInt(2, bachecaId);
+        stmt.setInt(3, utenteId);
+        stmt.setInt(4, utenteId);
+        stmt.setInt(5, bachecaId);
+        return 6;
+    }
+
+    /**
+     * Imposta i due parametri della condizione keyset, se il cursore è presente.
+     *
+     * @return L'indice del primo parametro successivo.
+     */
+    private static int impostaCursore(PreparedStatement stmt, int indice, CursoreToDo dopo, boolean perScadenza) throws SQLException {
+        if (dopo == null) {
+            return indice;
+        }
+        if (perScadenza) {
+            stmt.setDate(indice, java.sql.Date.valueOf(dopo.scadenza()));
+        } else {
+            stmt.setInt(indice, dopo.posizione());
+        }
+        stmt.setInt(indice + 1, dopo.id());
+        return indice + 2;
+    }
+
+    /**
+     * Apre uno stream sui ToDo restituiti dalla query. La connessione resta in prestito (con autocommit
+     * disattivato, condizione necessaria perché il driver PostgreSQL usi un cursore e rispetti
+     * {@code setFetchSize}) finché lo stream non viene chiuso o esaurito. Se il chiamante lo abbandona
+     * senza chiuderlo, la connessione viene rilasciata quando lo stream è raccolto dal garbage collector
+     * e l'abbandono viene segnalato nel log.
+     */
+    private Stream<ToDo> apriStream(String sql, ParametriQuery parametri, String operazione) {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(DIMENSIONE_BLOCCO);
+            parametri.imposta(stmt);
+            LettoreToDo lettore = new LettoreToDo(connection, stmt.executeQuery(), operazione);
+            Stream<ToDo> stream = StreamSupport.stream(lettore, false);
+            Cleaner.Cleanable rilascio = PULITORE.register(stream, lettore::rilasciaSeAbbandonato);
+            return stream.onClose(() -> {
+                lettore.chiudi();
+                rilascio.clean();
+            });
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Errore " + operazione, e);
+            chiudiConnessione(connection);
+            return Stream.empty();
+        }
+    }
+
+    private static void chiudiConnessione(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Errore nella chiusura della connessione", e);
+            }
+        }
+    }
+
+    /**
+     * Legge i ToDo da un ResultSet aperto a blocchi di {@value #DIMENSIONE_BLOCCO} righe,
+     * completando ogni blocco con il {@link ToDoGraphLoader} prima di consegnarlo allo stream.
+     */
+    private final class LettoreToDo extends Spliterators.AbstractSpliterator<ToDo> {
+        private final Connection connection;
+        private final ResultSet rs;
+        private final String operazione;
+        private final Deque<ToDo> blocco = new ArrayDeque<>(DIMENSIONE_BLOCCO);
+        private volatile boolean chiuso;
+
+        LettoreToDo(Connection connection, ResultSet rs, String operazione) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+            this.rs = rs;
+            this.operazione = operazione;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ToDo> azione) {
+            if (blocco.isEmpty() && !chiuso) {
+                leggiBlocco();
+            }
+            ToDo todo = blocco.pollFirst();
+            if (todo == null) {
+                return false;
+            }
+            azione.accept(todo);
+            return true;
+        }
+
+        private void leggiBlocco() {
+            List<ToDo> letti = new ArrayList<>(DIMENSIONE_BLOCCO);
+            try {
+                while (letti.size() < DIMENSIONE_BLOCCO && rs.next()) {
+                    letti.add(costruisciToDoDaResultSet(rs));
+                }
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Errore " + operazione, e);
+                letti.clear();
+            }
+            if (letti.size() < DIMENSIONE_BLOCCO) {
+                chiudi();
+            }
+            graphLoader.carica(letti);
+            blocco.addAll(letti);
+        }
+
+        /** Chiude ResultSet e statement e restituisce la connessione al pool; può essere invocato più volte. */
+        void chiudi() {
+            if (chiuso) {
+                return;
+            }
+            chiuso = true;
+            try {
+                rs.getStatement().close();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Errore nella chiusura dello statement", e);
+            }
+            chiudiConnessione(connection);
+        }
+
+        /** Azione del {@link #PULITORE}: chiude il lettore di uno stream non esaurito e mai chiuso. */
+        void rilasciaSeAbbandonato() {
+            if (!chiuso) {
+                logger.log(Level.WARNING, "Stream {0} abbandonato senza essere chiuso: rilascio la connessione", operazione);
+                chiudi();
+            }
+        }
+    }
+
+    /**
+     * Costruisce un ToDo "superficiale" a partire dalla riga corrente del ResultSet.
+     * <p>
+     * Legge solo le colonne della tabella {@code todo}: autore, checklist e condivisioni
+     * vengono collegati successivamente, per l'intera pagina, dal {@link ToDoGraphLoader}.
+     * </p>
+     *
+     * @param rs Il ResultSet posizionato sulla riga da leggere.
+     * @return Il ToDo con i soli campi della riga valorizzati.
+     * @throws SQLException In caso di errore di lettura delle colonne.
+     */
     private ToDo costruisciToDoDaResultSet(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
         String titolo = rs.getString("titolo");
@@ -372,25 +1230,14 @@ public class PostgresToDoDAO implements ToDoDAO {
         int idAutore = rs.getInt(COL_ID_AUTORE);
         int idBacheca = rs.getInt(COL_ID_BACHECA);
 
-        Utente autore = utenteDAO.getUtenteById(idAutore);
-
-        ToDo todo = new ToDo(id, titolo, descrizione, scadenza, imaginePath, url, coloreSfondo, posizione, autore);
+        ToDo todo = new ToDo(id, titolo, descrizione, scadenza, imaginePath, url, coloreSfondo, posizione, null);
 
         todo.setStato(stato);
+        todo.setIdAutore(idAutore);
         todo.setIdBacheca(idBacheca);
-
-        List<Attivita> attivitaList = attivitaDAO.getAttivitaByToDoId(id);
-        Checklist checklist = new Checklist();
-        checklist.setAttivita(attivitaList);
-        todo.setChecklist(checklist);
-
-        List<Condivisione> condivisioni = condivisioneDAO.getCondivisioniByToDoId(id);
-        for (Condivisione c : condivisioni) {
-            c.setUtente(utenteDAO.getUtenteById(c.getIdUtente()));
-            c.setToDo(todo);
-        }
-        todo.setCondivisioni(condivisioni);
+        todo.setVersione(rs.getLong("versione"));
+        todo.segnaSalvato();
 
         return todo;
     }
-}
\ No newline at end of file
+}
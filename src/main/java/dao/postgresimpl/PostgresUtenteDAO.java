@@ -3,9 +3,14 @@ package dao.postgresimpl;
 import dao.UtenteDAO;
 import model.Utente;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,8 +23,8 @@ import java.util.logging.Logger;
  * @version 1.0
  */
 public class PostgresUtenteDAO implements UtenteDAO{
-    /** La connessione attiva al database. */
-    private final Connection connection;
+    /** Il pool da cui prendere in prestito una connessione per ogni operazione. */
+    private final DataSource dataSource;
 
     /** Logger per la gestione degli errori SQL. */
     private static final Logger LOGGER = Logger.getLogger(PostgresUtenteDAO.class.getName());
@@ -35,10 +40,10 @@ public class PostgresUtenteDAO implements UtenteDAO{
     /**
      * Costruttore della classe DAO.
      *
-     * @param connection La connessione al database da utilizzare.
+     * @param dataSource Il pool di connessioni da cui prendere in prestito le connessioni.
      */
-    public PostgresUtenteDAO(Connection connection) {
-        this.connection = connection;
+    public PostgresUtenteDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -51,7 +56,8 @@ public class PostgresUtenteDAO implements UtenteDAO{
     @Override
     public void addUtente(Utente utente) {
         String sql = "INSERT INTO utente (nome, login, password) VALUES (?, ?, ?) RETURNING id";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, utente.getNome());
             stmt.setString(1, utente.getCognome());
             stmt.setString(2, utente.getLogin());
@@ -75,7 +81,8 @@ public class PostgresUtenteDAO implements UtenteDAO{
     @Override
     public Utente getUtenteById(int id) {
         String sql = SELECT_ALL_QUERY + " WHERE " + COL_ID + " = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
@@ -93,6 +100,40 @@ public class PostgresUtenteDAO implements UtenteDAO{
         return null;
     }
 
+    /**
+     * Recupera più utenti con una sola query {@code id = ANY(?)}.
+     * Gli ID duplicati vengono eliminati prima di interrogare il database.
+     *
+     * @param ids Gli ID degli utenti da cercare.
+     * @return Una mappa ID → Utente contenente solo gli utenti trovati.
+     */
+    @Override
+    public Map<Integer, Utente> getUtentiByIds(Collection<Integer> ids) {
+        Map<Integer, Utente> utenti = new HashMap<>();
+        if (ids.isEmpty()) {
+            return utenti;
+        }
+        String sql = SELECT_ALL_QUERY + " WHERE " + COL_ID + " = ANY(?)";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("integer", new HashSet<>(ids).toArray()));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Utente utente = new Utente(
+                        rs.getInt(COL_ID),
+                        rs.getString(COL_NOME),
+                        rs.getString(COL_COGNOME),
+                        rs.getString(COL_LOGIN),
+                        rs.getString(COL_PASSWORD)
+                );
+                utenti.put(utente.getId(), utente);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Errore getUtentiByIds", e);
+        }
+        return utenti;
+    }
+
     /**
      * Recupera un utente dal database tramite il suo login (username).
      * Questo metodo è essenziale per la fase di autenticazione.
@@ -103,7 +144,8 @@ public class PostgresUtenteDAO implements UtenteDAO{
     @Override
     public Utente getUtenteByLogin(String login) {
         String sql = SELECT_ALL_QUERY + " WHERE " + COL_LOGIN + " = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, login);
 
             ResultSet rs = stmt.executeQuery();
@@ -132,7 +174,8 @@ public class PostgresUtenteDAO implements UtenteDAO{
         List<Utente> utenti = new ArrayList<>();
         String sql = SELECT_ALL_QUERY;
 
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 utenti.add(new Utente(
@@ -157,7 +200,8 @@ public class PostgresUtenteDAO implements UtenteDAO{
     @Override
     public void updateUtente(Utente utente) {
         String sql = "UPDATE utente SET nome = ?, login = ?, password = ? WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, utente.getNome());
             stmt.setString(1, utente.getCognome());
             stmt.setString(2, utente.getLogin());
@@ -178,7 +222,8 @@ public class PostgresUtenteDAO implements UtenteDAO{
     @Override
     public void deleteUtenteById(int id) {
         String sql = "DELETE FROM utente WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             stmt.executeUpdate();
         } catch (SQLException e) {
@@ -0,0 +1,172 @@
+package database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Riceve dal database, senza interrogazioni periodiche, gli ID dei ToDo modificati da altri client.
+ * <p>
+ * I trigger della migrazione {@code V4__notifiche_modifiche.sql} inviano sul canale {@value #CANALE}
+ * un payload {@code <application_name>|id1,id2,...} per ogni istruzione che modifica {@code todo},
+ * {@code attivita} o {@code condivisione}. L'ascoltatore tiene una connessione dedicata (fuori dal pool)
+ * in {@code LISTEN} su un thread virtuale, scarta le notifiche generate da questa stessa istanza
+ * (vedi {@link DatabaseConnection#getNomeApplicazione()}), unisce quelle che arrivano a raffica
+ * e consegna gli ID al chiamante.
+ * </p>
+ * <p>
+ * Se la connessione cade, viene riaperta con attese crescenti; poiché nel frattempo delle notifiche
+ * possono essere andate perse, dopo ogni riconnessione viene invocata la callback di risincronizzazione.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public final class AscoltatoreModifiche implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(AscoltatoreModifiche.class.getName());
+
+    /** Canale delle notifiche. */
+    public static final String CANALE = "todo_modifiche";
+
+    /** Attesa massima di una notifica prima di ricontrollare se l'ascoltatore è stato chiuso. */
+    private static final int ATTESA_NOTIFICHE_MILLIS = 10_000;
+
+    /** Finestra entro cui le notifiche successive alla prima vengono unite in una sola consegna. */
+    private static final int FINESTRA_UNIONE_MILLIS = 100;
+
+    /** Attese minima e massima prima di riprovare a connettersi. */
+    private static final long ATTESA_RICONNESSIONE_MIN_MILLIS = 1_000;
+    private static final long ATTESA_RICONNESSIONE_MAX_MILLIS = 30_000;
+
+    private final Consumer<Set<Integer>> allaModifica;
+    private final Runnable allaRiconnessione;
+    private final String origineLocale = DatabaseConnection.getNomeApplicazione();
+
+    private volatile boolean attivo = true;
+    private volatile Connection connessione;
+    private Thread thread;
+
+    /**
+     * Crea l'ascoltatore (senza avviarlo).
+     *
+     * @param allaModifica      Callback invocata, sul thread dell'ascoltatore, con gli ID dei ToDo modificati.
+     * @param allaRiconnessione Callback invocata dopo una riconnessione, quando alcune modifiche possono essere sfuggite.
+     */
+    public AscoltatoreModifiche(Consumer<Set<Integer>> allaModifica, Runnable allaRiconnessione) {
+        this.allaModifica = allaModifica;
+        this.allaRiconnessione = allaRiconnessione;
+    }
+
+    /**
+     * Avvia l'ascolto su un thread virtuale.
+     */
+    public synchronized void avvia() {
+        if (thread == null) {
+            thread = Thread.ofVirtual().name("ascoltatore-modifiche").start(this::ascolta);
+        }
+    }
+
+    private void ascolta() {
+        long attesa = ATTESA_RICONNESSIONE_MIN_MILLIS;
+        boolean riconnessione = false;
+        while (attivo) {
+            try (Connection c = DatabaseConnection.apriConnessioneDedicata()) {
+                connessione = c;
+                try (Statement stmt = c.createStatement()) {
+                    stmt.execute("LISTEN " + CANALE);
+                }
+                LOGGER.log(Level.FINE, "In ascolto sul canale {0}", CANALE);
+                if (riconnessione) {
+                    allaRiconnessione.run();
+                }
+                attesa = ATTESA_RICONNESSIONE_MIN_MILLIS;
+                ricevi(c.unwrap(PGConnection.class));
+            } catch (SQLException e) {
+                if (!attivo) {
+                    break;
+                }
+                LOGGER.log(Level.WARNING, "Ascolto delle modifiche interrotto, nuovo tentativo tra " + attesa + " ms", e);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Errore nella gestione di una notifica", e);
+            } finally {
+                connessione = null;
+            }
+            riconnessione = true;
+            try {
+                Thread.sleep(attesa);
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            attesa = Math.min(attesa * 2, ATTESA_RICONNESSIONE_MAX_MILLIS);
+        }
+    }
+
+    private void ricevi(PGConnection pg) throws SQLException {
+        while (attivo) {
+            PGNotification[] notifiche = pg.getNotifications(ATTESA_NOTIFICHE_MILLIS);
+            if (notifiche == null || notifiche.length == 0) {
+                continue;
+            }
+            Set<Integer> ids = new HashSet<>();
+            do {
+                for (PGNotification notifica : notifiche) {
+                    raccogliIds(notifica.getParameter(), ids);
+                }
+                notifiche = pg.getNotifications(FINESTRA_UNIONE_MILLIS);
+            } while (notifiche != null && notifiche.length > 0);
+            if (!ids.isEmpty()) {
+                allaModifica.accept(ids);
+            }
+        }
+    }
+
+    /** Aggiunge gli ID di un payload {@code origine|id1,id2,...}, se la modifica non è di questa istanza. */
+    private void raccogliIds(String payload, Set<Integer> ids) {
+        int separatore = payload.indexOf('|');
+        if (separatore < 0 || payload.substring(0, separatore).equals(origineLocale)) {
+            return;
+        }
+        for (String id : payload.substring(separatore + 1).split(",")) {
+            if (!id.isEmpty()) {
+                try {
+                    ids.add(Integer.parseInt(id));
+                } catch (NumberFormatException _) {
+                    LOGGER.log(Level.WARNING, "Notifica non valida: {0}", payload);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ferma l'ascolto e chiude la connessione dedicata.
+     */
+    @Override
+    public void close() {
+        attivo = false;
+        Connection c = connessione;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Errore nella chiusura della connessione di ascolto", e);
+            }
+        }
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache dei {@link PreparedStatement} di una singola connessione fisica del pool.
+ * <p>
+ * Gli statement preparati con {@link Connection#prepareStatement(String)} vengono indicizzati
+ * per testo SQL: il chiamante riceve un proxy il cui {@code close()} azzera parametri e batch,
+ * riporta ai valori predefiniti le impostazioni dello statement (fetch size, numero massimo di righe,
+ * timeout), chiude l'eventuale ResultSet aperto e rimette lo statement fisico in cache invece di chiuderlo.
+ * Riutilizzando lo stesso oggetto il driver PostgreSQL, dopo alcune esecuzioni, passa a uno
+ * statement "named" lato server e non rifà più parsing e pianificazione.
+ * </p>
+ * <p>
+ * In cache ci sono solo gli statement inattivi: se lo stesso SQL serve due volte contemporaneamente
+ * sulla stessa connessione, il secondo viene preparato da zero. La cache è limitata (LRU) e
+ * chiude fisicamente gli statement scartati. Non è thread-safe: una connessione è usata
+ * da un solo thread alla volta.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+final class CacheStatement {
+    private static final Logger LOGGER = Logger.getLogger(CacheStatement.class.getName());
+
+    private final Connection fisica;
+
+    /** Contatori condivisi con il pool: richieste totali e richieste servite dalla cache. */
+    private final AtomicLong richieste;
+    private final AtomicLong riusi;
+
+    /** SQL → statement fisico inattivo, in ordine di accesso. */
+    private final LinkedHashMap<String, PreparedStatement> inattivi;
+
+    /**
+     * Costruisce la cache per una connessione fisica.
+     *
+     * @param fisica     La connessione fisica a cui appartengono gli statement.
+     * @param dimensione Il numero massimo di statement inattivi tenuti aperti.
+     * @param richieste  Contatore da incrementare a ogni richiesta.
+     * @param riusi      Contatore da incrementare a ogni richiesta servita dalla cache.
+     */
+    CacheStatement(Connection fisica, int dimensione, AtomicLong richieste, AtomicLong riusi) {
+        this.fisica = fisica;
+        this.richieste = richieste;
+        this.riusi = riusi;
+        this.inattivi = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > dimensione) {
+                    chiudiSilenziosamente(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Restituisce uno statement per il testo SQL indicato, preso dalla cache se disponibile.
+     *
+     * @param sql Il testo SQL.
+     * @return Un proxy dello statement, da chiudere come di consueto.
+     * @throws SQLException Se la preparazione dello statement fallisce.
+     */
+    PreparedStatement prendi(String sql) throws SQLException {
+        PreparedStatement stmt = inattivi.remove(sql);
+        richieste.incrementAndGet();
+        if (stmt != null && !stmt.isClosed()) {
+            riusi.incrementAndGet();
+        } else {
+            stmt = fisica.prepareStatement(sql);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                CacheStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new StatementPrestato(sql, stmt));
+    }
+
+    /** Chiude tutti gli statement inattivi (ad esempio prima di chiudere la connessione fisica). */
+    void svuota() {
+        List<PreparedStatement> daChiudere = new ArrayList<>(inattivi.values());
+        inattivi.clear();
+        for (PreparedStatement stmt : daChiudere) {
+            chiudiSilenziosamente(stmt);
+        }
+    }
+
+    /**
+     * Rimette in cache uno statement chiuso dal chiamante, dopo averlo ripulito: le impostazioni
+     * cambiate da un chiamante (es. la fetch size delle letture in streaming) non devono valere
+     * per il successivo. Se in cache ce n'è già uno per lo stesso SQL, questo viene chiuso.
+     */
+    private void restituisci(String sql, PreparedStatement stmt, ResultSet aperto) {
+        try {
+            if (aperto != null) {
+                aperto.close();
+            }
+            if (stmt.isClosed()) {
+                return;
+            }
+            stmt.clearParameters();
+            stmt.clearBatch();
+            stmt.clearWarnings();
+            if (stmt.getFetchSize() != 0) {
+                stmt.setFetchSize(0);
+            }
+            if (stmt.getMaxRows() != 0) {
+                stmt.setMaxRows(0);
+            }
+            if (stmt.getQueryTimeout() != 0) {
+                stmt.setQueryTimeout(0);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Statement scartato durante la restituzione alla cache", e);
+            chiudiSilenziosamente(stmt);
+            return;
+        }
+        PreparedStatement precedente = inattivi.putIfAbsent(sql, stmt);
+        if (precedente != null) {
+            chiudiSilenziosamente(stmt);
+        }
+    }
+
+    private static void chiudiSilenziosamente(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Errore durante la chiusura di uno statement", e);
+        }
+    }
+
+    /**
+     * Gestore del proxy consegnato al chiamante: inoltra ogni chiamata allo statement fisico,
+     * tranne {@code close()} che lo rimette in cache.
+     */
+    private final class StatementPrestato implements InvocationHandler {
+        private final String sql;
+        private PreparedStatement stmt;
+
+        /** L'ultimo ResultSet ottenuto con {@code executeQuery}: va chiuso alla restituzione. */
+        private ResultSet aperto;
+
+        StatementPrestato(String sql, PreparedStatement stmt) {
+            this.sql = sql;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (stmt != null) {
+                        PreparedStatement daRestituire = stmt;
+                        stmt = null;
+                        restituisci(sql, daRestituire, aperto);
+                        aperto = null;
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return stmt == null || stmt.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "StatementPrestato[" + sql + "]";
+                }
+                default -> {
+                    if (stmt == null) {
+                        throw new SQLException("Lo statement è già stato chiuso.");
+                    }
+                    try {
+                        Object risultato = method.invoke(stmt, args);
+                        if (risultato instanceof ResultSet rs && method.getName().equals("executeQuery")) {
+                            aperto = rs;
+                        }
+                        return risultato;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package database;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool di connessioni JDBC limitato e thread-safe.
+ * <p>
+ * Ogni unità di lavoro (tipicamente un singolo metodo DAO) prende in prestito una connessione
+ * con {@link #getConnection()} e la restituisce chiudendola: la {@link Connection} ottenuta è
+ * un proxy il cui {@code close()} riconsegna la connessione fisica al pool invece di chiuderla.
+ * </p>
+ * Caratteristiche principali:
+ * <ul>
+ * <li>Numero massimo di connessioni fisiche fissato alla creazione.</li>
+ * <li>Timeout di attesa: se nessuna connessione si libera entro il tempo stabilito viene
+ * sollevata una {@link SQLTimeoutException}.</li>
+ * <li>Validazione delle connessioni rimaste inattive a lungo prima di riconsegnarle.</li>
+ * <li>Cache dei {@link PreparedStatement} per connessione fisica (vedi {@link CacheStatement}),
+ * disattivabile impostandone la dimensione a 0.</li>
+ * <li>Metriche (connessioni attive e inattive, tempo di attesa, timeout, riuso degli statement)
+ * tramite {@link #getStatistiche()}.</li>
+ * <li>Registro facoltativo delle query lente, con parametri ed EXPLAIN (vedi {@link #attivaRegistroQueryLente}).</li>
+ * </ul>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class ConnectionPool implements DataSource {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    /** Secondi concessi a {@link Connection#isValid(int)} per validare una connessione inattiva. */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxConnessioni;
+    private final long borrowTimeoutMillis;
+    private final long validationIdleMillis;
+    private final int dimensioneCacheStatement;
+
+    /** Cache degli statement di ogni connessione fisica aperta (vuota se la cache è disattivata). */
+    private final Map<Connection, CacheStatement> cacheStatement = new ConcurrentHashMap<>();
+
+    /** Connessioni fisiche libere, usate in ordine LIFO per riutilizzare quelle più "calde". */
+    private final LinkedBlockingDeque<ConnessioneInattiva> inattive = new LinkedBlockingDeque<>();
+
+    /** Un permesso per ogni connessione che può essere prestata contemporaneamente. */
+    private final Semaphore permessi;
+
+    private final AtomicInteger attive = new AtomicInteger();
+    private final AtomicLong prestiti = new AtomicLong();
+    private final AtomicLong attesaTotaleNanos = new AtomicLong();
+    private final AtomicLong timeout = new AtomicLong();
+    private final AtomicLong statementRichiesti = new AtomicLong();
+    private final AtomicLong statementRiusati = new AtomicLong();
+    private final AtomicLong preparazioni = new AtomicLong();
+    private final AtomicLong preparazioneTotaleNanos = new AtomicLong();
+
+    private volatile boolean chiuso = false;
+
+    /** Invocato, sul thread del chiamante, per ogni statement creato o preparato su una connessione prestata. */
+    private volatile Runnable osservatoreIstruzioni = () -> { };
+
+    /** Registro delle query lente, {@code null} se non attivato. */
+    private volatile RegistroQueryLente registroQueryLente;
+
+    /**
+     * Costruisce un nuovo pool. Le connessioni fisiche vengono aperte solo quando servono.
+     *
+     * @param url                  L'URL JDBC del database.
+     * @param user                 L'utente del database.
+     * @param password             La password del database.
+     * @param maxConnessioni       Il numero massimo di connessioni prestate contemporaneamente.
+     * @param borrowTimeoutMillis  Il tempo massimo di attesa per ottenere una connessione.
+     * @param validationIdleMillis Dopo quanti millisecondi di inattività una connessione va validata prima del riuso.
+     */
+    public ConnectionPool(String url, String user, String password, int maxConnessioni,
+                          long borrowTimeoutMillis, long validationIdleMillis) {
+        this(url, user, password, maxConnessioni, borrowTimeoutMillis, validationIdleMillis, 0);
+    }
+
+    /**
+     * Costruisce un nuovo pool con la cache dei {@link PreparedStatement}.
+     *
+     * @param url                      L'URL JDBC del database.
+     * @param user                     L'utente del database.
+     * @param password                 La password del database.
+     * @param maxConnessioni           Il numero massimo di connessioni prestate contemporaneamente.
+     * @param borrowTimeoutMillis      Il tempo massimo di attesa per ottenere una connessione.
+     * @param validationIdleMillis     Dopo quanti millisecondi di inattività una connessione va validata prima del riuso.
+     * @param dimensioneCacheStatement Il numero massimo di statement tenuti aperti per connessione (0 = cache disattivata).
+     */
+    public ConnectionPool(String url, String user, String password, int maxConnessioni,
+                          long borrowTimeoutMillis, long validationIdleMillis, int dimensioneCacheStatement) {
+        if (maxConnessioni <= 0) {
+            throw new IllegalArgumentException("Il pool deve contenere almeno una connessione.");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxConnessioni = maxConnessioni;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIdleMillis = validationIdleMillis;
+        this.dimensioneCacheStatement = Math.max(0, dimensioneCacheStatement);
+        this.permessi = new Semaphore(maxConnessioni, true);
+    }
+
+    /**
+     * Prende in prestito una connessione dal pool.
+     * Il chiamante deve chiuderla (preferibilmente con try-with-resources) per restituirla.
+     *
+     * @return Una connessione pronta all'uso.
+     * @throws SQLTimeoutException Se nessuna connessione si libera entro il timeout configurato.
+     * @throws SQLException        Se il pool è chiuso o non è possibile aprire una nuova connessione.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (chiuso) {
+            throw new SQLException("Il pool di connessioni è stato chiuso.");
+        }
+        long inizio = System.nanoTime();
+        boolean acquisito;
+        try {
+            acquisito = permessi.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attesa di una connessione interrotta.", e);
+        }
+        attesaTotaleNanos.addAndGet(System.nanoTime() - inizio);
+        if (!acquisito) {
+            timeout.incrementAndGet();
+            throw new SQLTimeoutException("Nessuna connessione disponibile entro " + borrowTimeoutMillis + " ms.");
+        }
+
+        try {
+            Connection fisica = prendiConnessioneFisica();
+            attive.incrementAndGet();
+            prestiti.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ConnessionePrestata(fisica));
+        } catch (SQLException | RuntimeException e) {
+            permessi.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Restituisce una connessione fisica valida: riusa una di quelle inattive oppure ne apre una nuova.
+     */
+    private Connection prendiConnessioneFisica() throws SQLException {
+        ConnessioneInattiva candidata;
+        while ((candidata = inattive.pollFirst()) != null) {
+            if (isUtilizzabile(candidata)) {
+                return candidata.connessione();
+            }
+            chiudiSilenziosamente(candidata.connessione());
+        }
+        Connection nuova = DriverManager.getConnection(url, user, password);
+        LOGGER.fine("Nuova connessione fisica aperta dal pool.");
+        return nuova;
+    }
+
+    private boolean isUtilizzabile(ConnessioneInattiva candidata) {
+        try {
+            if (candidata.connessione().isClosed()) {
+                return false;
+            }
+            long inattivaDa = System.currentTimeMillis() - candidata.restituitaIl();
+            return inattivaDa < validationIdleMillis || candidata.connessione().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException _) {
+            return false;
+        }
+    }
+
+    /**
+     * Riconsegna al pool una connessione fisica, riportandola allo stato di default.
+     */
+    private void restituisci(Connection fisica) {
+        attive.decrementAndGet();
+        try {
+            if (chiuso || fisica.isClosed()) {
+                chiudiSilenziosamente(fisica);
+                return;
+            }
+            if (!fisica.getAutoCommit()) {
+                fisica.rollback();
+                fisica.setAutoCommit(true);
+            }
+            inattive.offerFirst(new ConnessioneInattiva(fisica, System.currentTimeMillis()));
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Connessione scartata durante la restituzione al pool", e);
+            chiudiSilenziosamente(fisica);
+        } finally {
+            permessi.release();
+        }
+    }
+
+    /**
+     * Chiude il pool e tutte le connessioni fisiche inattive.
+     * Le connessioni ancora in prestito vengono chiuse al momento della loro restituzione.
+     */
+    public void close() {
+        chiuso = true;
+        ConnessioneInattiva c;
+        while ((c = inattive.pollFirst()) != null) {
+            chiudiSilenziosamente(c.connessione());
+        }
+        RegistroQueryLente registro = registroQueryLente;
+        if (registro != null) {
+            registro.chiudi();
+        }
+        LOGGER.info("Pool di connessioni chiuso.");
+    }
+
+    private void chiudiSilenziosamente(Connection connessione) {
+        CacheStatement cache = cacheStatement.remove(connessione);
+        if (cache != null) {
+            cache.svuota();
+        }
+        try {
+            connessione.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Errore durante la chiusura di una connessione fisica", e);
+        }
+    }
+
+    /**
+     * Restituisce un'istantanea delle metriche del pool.
+     *
+     * @return Le statistiche correnti.
+     */
+    public Statistiche getStatistiche() {
+        long numeroPrestiti = prestiti.get();
+        long attesaMediaMicros = numeroPrestiti == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(attesaTotaleNanos.get()) / numeroPrestiti;
+        long numeroPreparazioni = preparazioni.get();
+        long preparazioneMediaMicros = numeroPreparazioni == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(preparazioneTotaleNanos.get()) / numeroPreparazioni;
+        return new Statistiche(attive.get(), inattive.size(), maxConnessioni, numeroPrestiti,
+                TimeUnit.NANOSECONDS.toMillis(attesaTotaleNanos.get()), attesaMediaMicros, timeout.get(),
+                statementRichiesti.get(), statementRiusati.get(), numeroPreparazioni, preparazioneMediaMicros);
+    }
+
+    /**
+     * Indica se la cache dei {@link PreparedStatement} è attiva.
+     *
+     * @return {@code true} se gli statement vengono riutilizzati tra un prestito e l'altro.
+     */
+    public boolean isCacheStatementAttiva() {
+        return dimensioneCacheStatement > 0;
+    }
+
+    /**
+     * Registra chi deve essere avvisato di ogni istruzione SQL ({@code prepareStatement}, {@code prepareCall}
+     * o {@code createStatement}) eseguita sulle connessioni prestate, ad esempio per contare le query
+     * di ogni operazione DAO. L'osservatore viene invocato sul thread che esegue l'istruzione.
+     *
+     * @param osservatoreIstruzioni L'azione da invocare per ogni istruzione.
+     */
+    public void setOsservatoreIstruzioni(Runnable osservatoreIstruzioni) {
+        this.osservatoreIstruzioni = osservatoreIstruzioni;
+    }
+
+    /**
+     * Attiva il registro delle query lente: ogni esecuzione più lunga della soglia viene scritta,
+     * con i valori dei parametri e la durata, in un file locale a rotazione (vedi {@link RegistroQueryLente}).
+     *
+     * @param sogliaMillis Durata (ms) oltre la quale un'esecuzione viene registrata.
+     * @param explain      Se catturare anche il piano di esecuzione ({@code EXPLAIN (ANALYZE, BUFFERS)} per le letture).
+     * @param patternFile  Il pattern dei file del registro, nel formato di {@link java.util.logging.FileHandler}.
+     * @throws IOException Se il file del registro non può essere aperto.
+     */
+    public synchronized void attivaRegistroQueryLente(long sogliaMillis, boolean explain, String patternFile) throws IOException {
+        RegistroQueryLente precedente = registroQueryLente;
+        registroQueryLente = new RegistroQueryLente(sogliaMillis, explain, patternFile);
+        if (precedente != null) {
+            precedente.chiudi();
+        }
+    }
+
+    /**
+     * Istantanea delle metriche del pool.
+     *
+     * @param attive             Connessioni attualmente in prestito.
+     * @param inattive           Connessioni fisiche aperte e disponibili.
+     * @param massimo            Dimensione massima del pool.
+     * @param prestiti           Numero totale di prestiti riusciti.
+     * @param attesaTotaleMillis Tempo complessivo trascorso in attesa di una connessione.
+     * @param attesaMediaMicros  Tempo medio di attesa per prestito.
+     * @param timeout            Numero di richieste scadute senza ottenere una connessione.
+     * @param statementRichiesti Numero di {@code prepareStatement(String)} passati dalla cache degli statement.
+     * @param statementRiusati   Quanti di questi sono stati serviti da uno statement già preparato.
+     * @param preparazioni       Numero totale di chiamate a {@code prepareStatement}, con o senza cache.
+     * @param preparazioneMediaMicros Tempo medio di una chiamata a {@code prepareStatement}: confrontandolo con la
+     *                                cache attiva e disattivata si misura il guadagno per chiamata.
+     */
+    public record Statistiche(int attive, int inattive, int massimo, long prestiti,
+                              long attesaTotaleMillis, long attesaMediaMicros, long timeout,
+                              long statementRichiesti, long statementRiusati,
+                              long preparazioni, long preparazioneMediaMicros) {
+
+        /**
+         * @return La frazione di statement serviti dalla cache (0 se la cache non è stata usata).
+         */
+        public double hitRatioStatement() {
+            return statementRichiesti == 0 ? 0 : (double) statementRiusati / statementRichiesti;
+        }
+    }
+
+    /** Connessione fisica libera, con l'istante in cui è stata restituita. */
+    private record ConnessioneInattiva(Connection connessione, long restituitaIl) {
+    }
+
+    /**
+     * Gestore del proxy consegnato ai chiamanti: inoltra ogni chiamata alla connessione fisica,
+     * tranne {@code close()} che la riconsegna al pool.
+     */
+    private final class ConnessionePrestata implements InvocationHandler {
+        private Connection fisica;
+
+        ConnessionePrestata(Connection fisica) {
+            this.fisica = fisica;
+        }
+
+        /**
+         * Prepara uno statement: le chiamate con il solo testo SQL passano dalla cache della
+         * connessione fisica (se attiva), le altre varianti vengono inoltrate così come sono.
+         */
+        private Object prepara(Method method, Object[] args) throws Throwable {
+            long inizio = System.nanoTime();
+            try {
+                if (dimensioneCacheStatement > 0 && args.length == 1) {
+                    CacheStatement cache = cacheStatement.computeIfAbsent(fisica,
+                            c -> new CacheStatement(c, dimensioneCacheStatement, statementRichiesti, statementRiusati));
+                    return cache.prendi((String) args[0]);
+                }
+                return method.invoke(fisica, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                preparazioni.incrementAndGet();
+                preparazioneTotaleNanos.addAndGet(System.nanoTime() - inizio);
+            }
+        }
+
+        private Object inoltra(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(fisica, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (fisica != null) {
+                        Connection daRestituire = fisica;
+                        fisica = null;
+                        restituisci(daRestituire);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return fisica == null;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "ConnessionePrestata[" + fisica + "]";
+                }
+                default -> {
+                    if (fisica == null) {
+                        throw new SQLException("La connessione è già stata restituita al pool.");
+                    }
+                    Object risultato;
+                    switch (method.getName()) {
+                        case "prepareStatement" -> {
+                            osservatoreIstruzioni.run();
+                            risultato = prepara(method, args);
+                        }
+                        case "prepareCall", "createStatement" -> {
+                            osservatoreIstruzioni.run();
+                            risultato = inoltra(method, args);
+                        }
+                        default -> {
+                            return inoltra(method, args);
+                        }
+                    }
+                    RegistroQueryLente registro = registroQueryLente;
+                    if (registro != null && risultato instanceof Statement statement) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String testo ? testo : null;
+                        return registro.avvolgi(statement, sql, fisica);
+                    }
+                    return risultato;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Il pool usa credenziali fisse.");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return LOGGER;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("ConnectionPool non implementa " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -1,25 +1,29 @@
 package database;
 
+import javax.sql.DataSource;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Gestisce la connessione al database PostgreSQL tramite il pattern Singleton.
+ * Punto di accesso centralizzato al database PostgreSQL.
  * <p>
- * Questa classe garantisce che esista un'unica istanza della connessione attiva
- * per tutta la durata dell'applicazione, centralizzando la configurazione e
- * ottimizzando l'uso delle risorse.
+ * Questa classe custodisce la configurazione della connessione e un unico
+ * {@link ConnectionPool} condiviso da tutta l'applicazione. I DAO non possiedono
+ * una connessione per tutta la loro vita: prendono in prestito una connessione dal pool
+ * per ogni unità di lavoro e la restituiscono chiudendola.
  * </p>
  *
  * @author marrenza
- * @version 1.0
+ * @version 1.1
  */
 public class DatabaseConnection {
-    /** L'unica istanza condivisa della connessione (Singleton). */
-    private static Connection connection = null;
+    /** L'unico pool di connessioni dell'applicazione, creato alla prima richiesta. */
+    private static ConnectionPool pool = null;
 
     /** Username per l'accesso al database. */
     private static final String USER = "postgres";
@@ -27,8 +31,42 @@ public class DatabaseConnection {
     /** Password per l'accesso al database. */
     private static final String PASSWORD = "3570";
 
+    /**
+     * Nome con cui questa istanza dell'applicazione si presenta al database ({@code application_name}),
+     * diverso a ogni avvio: permette di riconoscere le notifiche delle proprie modifiche (vedi {@link AscoltatoreModifiche}).
+     */
+    private static final String NOME_APPLICAZIONE = "todo-manager-" + UUID.randomUUID().toString().substring(0, 8);
+
     /** URL di connessione JDBC formattato per PostgreSQL. */
-    private static final String URL = "jdbc:postgresql://localhost:5432/todo_manager_db";
+    private static final String URL = "jdbc:postgresql://localhost:5432/todo_manager_db?ApplicationName=" + NOME_APPLICAZIONE;
+
+    /** Numero massimo di connessioni fisiche aperte contemporaneamente. */
+    private static final int POOL_MAX_CONNESSIONI = 8;
+
+    /** Tempo massimo di attesa (ms) per ottenere una connessione dal pool. */
+    private static final long POOL_TIMEOUT_MILLIS = 5_000;
+
+    /** Dopo quanti ms di inattività una connessione viene validata prima di essere riutilizzata. */
+    private static final long POOL_VALIDAZIONE_MILLIS = 30_000;
+
+    /**
+     * Numero massimo di PreparedStatement tenuti aperti per connessione fisica.
+     * Si può cambiare (o disattivare con 0, ad esempio per confrontare le latenze)
+     * con la proprietà di sistema {@code todo.db.cacheStatement}.
+     */
+    private static final int POOL_CACHE_STATEMENT = Integer.getInteger("todo.db.cacheStatement", 64);
+
+    /**
+     * Soglia (ms) oltre la quale un'esecuzione finisce nel registro delle query lente.
+     * Il registro è disattivato finché la proprietà di sistema {@code todo.db.queryLente.sogliaMillis} non viene impostata.
+     */
+    private static final long SOGLIA_QUERY_LENTE_MILLIS = Long.getLong("todo.db.queryLente.sogliaMillis", -1);
+
+    /** Se catturare anche il piano di esecuzione delle query lente ({@code -Dtodo.db.queryLente.explain=true}). */
+    private static final boolean EXPLAIN_QUERY_LENTE = Boolean.getBoolean("todo.db.queryLente.explain");
+
+    /** Pattern dei file a rotazione del registro delle query lente (di default nella home dell'utente). */
+    private static final String FILE_QUERY_LENTE = System.getProperty("todo.db.queryLente.file", "%h/todo-query-lente.%g.log");
 
     /** Logger per tracciare eventi di connessione ed eventuali errori. */
     private static final Logger LOGGER = Logger.getLogger(DatabaseConnection.class.getName());
@@ -36,48 +74,86 @@ public class DatabaseConnection {
     /**
      * Costruttore privato.
      * Impedisce l'istanziazione diretta della classe dall'esterno,
-     * forzando l'uso del metodo {@link #getConnection()}.
+     * forzando l'uso dei metodi statici.
      */
     private DatabaseConnection() {
     }
 
     /**
-     * Restituisce l'istanza unica della connessione al database.
+     * Restituisce il pool di connessioni condiviso, creandolo alla prima chiamata.
      * Carica dinamicamente il driver PostgreSQL.
      *
-     * @return L'oggetto {@link Connection} attivo verso il database.
+     * @return Il {@link DataSource} da cui i DAO prendono in prestito le connessioni.
+     * @throws SQLException Se il driver PostgreSQL non è disponibile.
      */
-    public static Connection getConnection() {
-        if (connection == null) {
+    public static synchronized ConnectionPool getDataSource() throws SQLException {
+        if (pool == null) {
             try {
                 Class.forName("org.postgresql.Driver");
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-                LOGGER.info("Connessione al database stabilita.");
             } catch (ClassNotFoundException e) {
                 LOGGER.severe("Errore: Driver PostgreSQL non trovato.");
-                e.printStackTrace();
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Errore di connessione al database", e);
-                e.printStackTrace();
+                throw new SQLException("Driver PostgreSQL non trovato.", e);
+            }
+            pool = new ConnectionPool(URL, USER, PASSWORD, POOL_MAX_CONNESSIONI, POOL_TIMEOUT_MILLIS,
+                    POOL_VALIDAZIONE_MILLIS, POOL_CACHE_STATEMENT);
+            LOGGER.info("Pool di connessioni al database inizializzato (cache statement: "
+                    + (pool.isCacheStatementAttiva() ? POOL_CACHE_STATEMENT + " per connessione" : "disattivata") + ").");
+            if (SOGLIA_QUERY_LENTE_MILLIS >= 0) {
+                try {
+                    pool.attivaRegistroQueryLente(SOGLIA_QUERY_LENTE_MILLIS, EXPLAIN_QUERY_LENTE, FILE_QUERY_LENTE);
+                    LOGGER.log(Level.INFO, "Registro delle query lente attivo: soglia {0} ms, EXPLAIN {1}, file {2}",
+                            new Object[]{SOGLIA_QUERY_LENTE_MILLIS, EXPLAIN_QUERY_LENTE ? "sì" : "no", FILE_QUERY_LENTE});
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Impossibile aprire il registro delle query lente", e);
+                }
             }
         }
-        return connection;
+        return pool;
     }
 
     /**
-     * Chiude la connessione al database se è attualmente aperta.
+     * Prende in prestito una connessione dal pool condiviso.
+     * La connessione va chiusa al termine dell'unità di lavoro per restituirla al pool.
+     *
+     * @return Una {@link Connection} in prestito.
+     * @throws SQLException Se non è possibile ottenere una connessione entro il timeout.
      */
-    public static void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                connection = null;
-                LOGGER.info("Connessione al database chiusa.");
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Errore durante la chiusura della connessione al database:", e);
-                e.printStackTrace();
-            }
+    public static Connection getConnection() throws SQLException {
+        return getDataSource().getConnection();
+    }
+
+    /**
+     * Apre una connessione fisica dedicata, al di fuori del pool, per un uso di lunga durata
+     * (es. {@code LISTEN}). Va chiusa dal chiamante.
+     *
+     * @return Una nuova {@link Connection}.
+     * @throws SQLException Se la connessione non può essere aperta.
+     */
+    public static Connection apriConnessioneDedicata() throws SQLException {
+        return DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+
+    /**
+     * Restituisce il nome ({@code application_name}) con cui questa istanza si connette al database.
+     *
+     * @return Il nome, univoco per ogni avvio dell'applicazione.
+     */
+    public static String getNomeApplicazione() {
+        return NOME_APPLICAZIONE;
+    }
+
+    /**
+     * Chiude il pool e tutte le connessioni fisiche che contiene.
+     */
+    public static synchronized void closeConnection() {
+        if (pool != null) {
+            ConnectionPool.Statistiche statistiche = pool.getStatistiche();
+            LOGGER.log(Level.INFO, "Statement riusati: {0} su {1} ({2}%), preparazione media {3} µs",
+                    new Object[]{statistiche.statementRiusati(), statistiche.statementRichiesti(),
+                            Math.round(statistiche.hitRatioStatement() * 100), statistiche.preparazioneMediaMicros()});
+            pool.close();
+            pool = null;
+            LOGGER.info("Connessione al database chiusa.");
         }
     }
 }
-
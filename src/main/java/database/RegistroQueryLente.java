@@ -0,0 +1,243 @@
+package database;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Registro delle query lente, attivabile sul {@link ConnectionPool}.
+ * <p>
+ * Gli statement consegnati ai DAO vengono avvolti in un proxy che annota i valori dei parametri
+ * ({@code setInt}, {@code setString}, ...) e misura ogni esecuzione. Le esecuzioni che superano la
+ * soglia vengono scritte, con SQL, parametri e durata, in un file locale a rotazione e segnalate
+ * con un avviso nel log dell'applicazione.
+ * </p>
+ * <p>
+ * Se richiesto, per le query lente viene catturato anche il piano di esecuzione, sulla stessa
+ * connessione e con gli stessi parametri: {@code EXPLAIN (ANALYZE, BUFFERS)} per le {@code SELECT}
+ * (che vengono quindi rieseguite) e un semplice {@code EXPLAIN}, che non esegue nulla, per le scritture.
+ * Per non raddoppiare il carico, lo stesso SQL viene analizzato al più una volta al minuto.
+ * I parametri delle istruzioni che contengono la parola "password" vengono mascherati.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+final class RegistroQueryLente {
+    private static final Logger LOGGER = Logger.getLogger(RegistroQueryLente.class.getName());
+
+    /** Dimensione massima di ogni file del registro prima della rotazione. */
+    private static final int LIMITE_FILE_BYTE = 5 * 1024 * 1024;
+
+    /** Numero di file conservati dalla rotazione. */
+    private static final int NUMERO_FILE = 5;
+
+    /** Intervallo minimo tra due EXPLAIN dello stesso SQL. */
+    private static final long INTERVALLO_EXPLAIN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** Lunghezza massima con cui vengono riportati i parametri testuali. */
+    private static final int LUNGHEZZA_MASSIMA_VALORE = 200;
+
+    private final long sogliaNanos;
+    private final boolean explain;
+
+    /** Logger dedicato, che scrive solo nel file del registro. */
+    private final Logger registro;
+    private final FileHandler file;
+
+    /** SQL → istante dell'ultimo EXPLAIN catturato. */
+    private final Map<String, Long> ultimoExplain = new ConcurrentHashMap<>();
+
+    /**
+     * Crea il registro e apre il file a rotazione.
+     *
+     * @param sogliaMillis Durata oltre la quale un'esecuzione viene registrata.
+     * @param explain      Se catturare anche il piano di esecuzione delle query lente.
+     * @param patternFile  Il pattern dei file, nel formato di {@link FileHandler} (es. {@code %h/todo-query-lente.%g.log}).
+     * @throws IOException Se il file non può essere aperto.
+     */
+    RegistroQueryLente(long sogliaMillis, boolean explain, String patternFile) throws IOException {
+        this.sogliaNanos = TimeUnit.MILLISECONDS.toNanos(sogliaMillis);
+        this.explain = explain;
+        this.file = new FileHandler(patternFile, LIMITE_FILE_BYTE, NUMERO_FILE, true);
+        this.file.setFormatter(new SimpleFormatter());
+        this.registro = Logger.getLogger(RegistroQueryLente.class.getName() + ".file");
+        this.registro.setUseParentHandlers(false);
+        this.registro.addHandler(file);
+    }
+
+    /**
+     * Avvolge uno statement appena creato o preparato.
+     *
+     * @param statement Lo statement consegnato al chiamante.
+     * @param sql       Il testo SQL, per i {@link PreparedStatement}; {@code null} per gli {@link Statement} semplici.
+     * @param fisica    La connessione fisica, usata per l'EXPLAIN.
+     * @return Il proxy dello statement, dello stesso tipo.
+     */
+    Statement avvolgi(Statement statement, String sql, Connection fisica) {
+        Class<?> tipo = statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{tipo},
+                new StatementMisurato(statement, sql, fisica));
+    }
+
+    /** Chiude il file del registro. */
+    void chiudi() {
+        registro.removeHandler(file);
+        file.close();
+    }
+
+    private void registra(String sql, Map<Integer, Object> parametri, int righeBatch, long nanos, Connection fisica) {
+        double millis = nanos / 1_000_000.0;
+        StringBuilder voce = new StringBuilder(String.format(Locale.ROOT, "Query lenta (%.1f ms)", millis));
+        if (righeBatch > 0) {
+            voce.append(", batch di ").append(righeBatch).append(" righe");
+        }
+        voce.append(System.lineSeparator()).append(sql);
+        if (!parametri.isEmpty()) {
+            voce.append(System.lineSeparator()).append("Parametri: ").append(formatta(sql, parametri));
+        }
+        if (explain && righeBatch == 0 && devoSpiegare(sql)) {
+            voce.append(System.lineSeparator()).append(spiega(sql, parametri, fisica));
+        }
+        registro.warning(voce.toString());
+        LOGGER.log(Level.WARNING, "Query lenta ({0} ms): {1}", new Object[]{String.format(Locale.ROOT, "%.1f", millis), sql});
+    }
+
+    private boolean devoSpiegare(String sql) {
+        long adesso = System.nanoTime();
+        Long ultimo = ultimoExplain.get(sql);
+        if (ultimo != null && adesso - ultimo < INTERVALLO_EXPLAIN_NANOS) {
+            return false;
+        }
+        ultimoExplain.put(sql, adesso);
+        return true;
+    }
+
+    /** Cattura il piano di esecuzione; {@code ANALYZE} solo per le letture, che si possono rieseguire senza effetti. */
+    private static String spiega(String sql, Map<Integer, Object> parametri, Connection fisica) {
+        String inizio = sql.stripLeading().toUpperCase(Locale.ROOT);
+        boolean lettura = inizio.startsWith("SELECT") || inizio.startsWith("WITH") && !inizio.matches("(?s).*\\b(INSERT|UPDATE|DELETE)\\b.*");
+        String prefisso = lettura ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ";
+        StringJoiner piano = new StringJoiner(System.lineSeparator(), prefisso + System.lineSeparator(), "");
+        try (PreparedStatement stmt = fisica.prepareStatement(prefisso + sql)) {
+            for (Map.Entry<Integer, Object> parametro : parametri.entrySet()) {
+                stmt.setObject(parametro.getKey(), parametro.getValue());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    piano.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            return "EXPLAIN non riuscito: " + e.getMessage();
+        }
+        return piano.toString();
+    }
+
+    private static String formatta(String sql, Map<Integer, Object> parametri) {
+        boolean riservato = sql.toLowerCase(Locale.ROOT).contains("password");
+        StringJoiner valori = new StringJoiner(", ", "[", "]");
+        for (Map.Entry<Integer, Object> parametro : parametri.entrySet()) {
+            Object valore = parametro.getValue();
+            String testo;
+            if (valore == null) {
+                testo = "NULL";
+            } else if (valore instanceof String s) {
+                testo = riservato ? "'***'" : "'" + (s.length() > LUNGHEZZA_MASSIMA_VALORE ? s.substring(0, LUNGHEZZA_MASSIMA_VALORE) + "…" : s) + "'";
+            } else {
+                testo = String.valueOf(valore);
+            }
+            valori.add("$" + parametro.getKey() + "=" + testo);
+        }
+        return valori.toString();
+    }
+
+    /**
+     * Gestore del proxy di uno statement: annota i parametri impostati e misura le esecuzioni.
+     * Come la connessione a cui appartiene, è usato da un solo thread alla volta.
+     */
+    private final class StatementMisurato implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        private final Connection fisica;
+
+        /** Indice del parametro → valore, per l'esecuzione corrente. */
+        private final Map<Integer, Object> parametri = new TreeMap<>();
+        private int righeBatch = 0;
+
+        StatementMisurato(Statement statement, String sql, Connection fisica) {
+            this.statement = statement;
+            this.sql = sql;
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            if (nome.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer indice
+                    && method.getParameterTypes()[0] == int.class) {
+                parametri.put(indice, nome.equals("setNull") ? null : args[1]);
+            } else if (nome.equals("clearParameters")) {
+                parametri.clear();
+            } else if (nome.equals("addBatch") && sql != null) {
+                righeBatch++;
+            } else if (nome.equals("clearBatch")) {
+                righeBatch = 0;
+            } else if (nome.startsWith("execute")) {
+                return esegui(method, args);
+            }
+            switch (nome) {
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    return inoltra(method, args);
+                }
+            }
+        }
+
+        private Object esegui(Method method, Object[] args) throws Throwable {
+            long inizio = System.nanoTime();
+            Object risultato = inoltra(method, args);
+            long nanos = System.nanoTime() - inizio;
+            if (nanos >= sogliaNanos) {
+                boolean conTesto = args != null && args.length > 0 && args[0] instanceof String;
+                String eseguito = conTesto ? (String) args[0] : sql;
+                int batch = method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch") ? righeBatch : 0;
+                registra(eseguito, conTesto ? Map.of() : new TreeMap<>(parametri), batch, nanos, fisica);
+            }
+            if (method.getName().contains("Batch")) {
+                righeBatch = 0;
+            }
+            return risultato;
+        }
+
+        private Object inoltra(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
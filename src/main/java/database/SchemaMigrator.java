@@ -0,0 +1,166 @@
+package database;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applica in ordine le migrazioni versionate dello schema del database.
+ * <p>
+ * Le migrazioni sono script SQL in {@code src/main/resources/db/migration}, chiamati
+ * {@code V<versione>__<descrizione>.sql} ed elencati esplicitamente in {@link #MIGRAZIONI}.
+ * Le versioni già applicate sono registrate nella tabella {@code schema_version}; ogni script
+ * viene eseguito in una propria transazione insieme alla sua registrazione, quindi una migrazione
+ * fallita non lascia lo schema a metà. In caso di errore le migrazioni successive non vengono
+ * tentate: le query dei DAO presuppongono lo schema dell'ultima versione, quindi l'applicazione
+ * non deve proseguire (vedi il valore restituito da {@link #migra()}).
+ * </p>
+ * <p>
+ * Le migrazioni richiedono PostgreSQL {@value #VERSIONE_MINIMA_POSTGRES_TESTO} o successivo; su un server
+ * più vecchio non viene applicato nulla.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class SchemaMigrator {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    /** Cartella (nel classpath) che contiene gli script di migrazione. */
+    private static final String CARTELLA = "/db/migration/";
+
+    /** Elenco ordinato delle migrazioni da applicare. */
+    private static final List<String> MIGRAZIONI = List.of(
+            "V1__ricerca_full_text.sql",
+            "V2__indici_visibilita.sql",
+            "V3__ranghi_sparsi.sql",
+            "V4__notifiche_modifiche.sql",
+            "V5__versioni_righe.sql"
+    );
+
+    /** Versione minima del server, nel formato di {@code server_version_num}. */
+    private static final int VERSIONE_MINIMA_POSTGRES = 130000;
+    private static final String VERSIONE_MINIMA_POSTGRES_TESTO = "13";
+
+    private final DataSource dataSource;
+
+    /**
+     * Costruttore del migratore.
+     *
+     * @param dataSource Il pool da cui prendere in prestito la connessione.
+     */
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Applica tutte le migrazioni non ancora registrate in {@code schema_version}.
+     *
+     * @return {@code true} se lo schema è aggiornato all'ultima versione; {@code false} se il server è
+     *         troppo vecchio o una migrazione è fallita (il motivo viene registrato nel log).
+     */
+    public boolean migra() {
+        try (Connection connection = dataSource.getConnection()) {
+            int versioneServer = leggiVersioneServer(connection);
+            if (versioneServer < VERSIONE_MINIMA_POSTGRES) {
+                LOGGER.log(Level.SEVERE, "Migrazione dello schema non applicata: il server PostgreSQL ({0}) è più vecchio della versione "
+                        + VERSIONE_MINIMA_POSTGRES_TESTO + " richiesta", versioneServer);
+                return false;
+            }
+            creaTabellaVersioni(connection);
+            Set<Integer> applicate = leggiVersioniApplicate(connection);
+            for (String script : MIGRAZIONI) {
+                int versione = versioneDi(script);
+                if (!applicate.contains(versione)) {
+                    applica(connection, versione, script);
+                }
+            }
+            return true;
+        } catch (SQLException | IOException e) {
+            LOGGER.log(Level.SEVERE, "Migrazione dello schema non riuscita", e);
+            return false;
+        }
+    }
+
+    /**
+     * Restituisce la versione minima di PostgreSQL richiesta dalle migrazioni, per i messaggi all'utente.
+     *
+     * @return La versione principale, es. {@code "13"}.
+     */
+    public static String getVersioneMinimaPostgres() {
+        return VERSIONE_MINIMA_POSTGRES_TESTO;
+    }
+
+    private static int leggiVersioneServer(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT current_setting('server_version_num')::int")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void creaTabellaVersioni(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "versione INTEGER PRIMARY KEY, " +
+                    "script VARCHAR(255) NOT NULL, " +
+                    "applicata_il TIMESTAMPTZ NOT NULL DEFAULT now())");
+        }
+    }
+
+    private static Set<Integer> leggiVersioniApplicate(Connection connection) throws SQLException {
+        Set<Integer> versioni = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT versione FROM schema_version")) {
+            while (rs.next()) {
+                versioni.add(rs.getInt(1));
+            }
+        }
+        return versioni;
+    }
+
+    private static void applica(Connection connection, int versione, String script) throws SQLException, IOException {
+        String sql = leggiScript(script);
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement();
+             PreparedStatement registra = connection.prepareStatement(
+                     "INSERT INTO schema_version (versione, script) VALUES (?, ?)")) {
+            stmt.execute(sql);
+            registra.setInt(1, versione);
+            registra.setString(2, script);
+            registra.executeUpdate();
+            connection.commit();
+            LOGGER.log(Level.INFO, "Migrazione applicata: {0}", script);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static String leggiScript(String script) throws IOException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(CARTELLA + script)) {
+            if (in == null) {
+                throw new IOException("Script di migrazione non trovato: " + script);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Estrae il numero di versione da un nome come {@code V12__descrizione.sql}. */
+    private static int versioneDi(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+}
@@ -0,0 +1,56 @@
+package gui;
+
+import model.Attivita;
+import model.ToDo;
+
+import java.awt.Component;
+
+/**
+ * Azioni che l'utente può compiere su una riga della bacheca.
+ * <p>
+ * Le righe di {@link BachecaPanel} sono disegnate da un unico {@link ToDoPanel} riutilizzato,
+ * quindi le sue checkbox e il suo pulsante non possono ricevere listener propri: la bacheca
+ * individua il componente cliccato e inoltra l'azione al Controller tramite questa interfaccia.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public interface AzioniToDo {
+
+    /**
+     * Invocato quando l'utente spunta o toglie la spunta dalla checkbox principale di un ToDo.
+     *
+     * @param toDo       Il ToDo interessato.
+     * @param completato Il nuovo stato richiesto.
+     */
+    void completamentoCambiato(ToDo toDo, boolean completato);
+
+    /**
+     * Invocato quando l'utente spunta o toglie la spunta da una sotto-attività.
+     *
+     * @param toDo       Il ToDo a cui appartiene l'attività.
+     * @param attivita   L'attività interessata.
+     * @param completata Il nuovo stato richiesto.
+     */
+    void sottoAttivitaCambiata(ToDo toDo, Attivita attivita, boolean completata);
+
+    /**
+     * Invocato quando l'utente richiede il menu contestuale di un ToDo
+     * (pulsante "..." o click destro).
+     *
+     * @param toDo    Il ToDo interessato.
+     * @param invoker Il componente rispetto a cui posizionare il menu.
+     * @param x       La coordinata x del menu nel sistema di {@code invoker}.
+     * @param y       La coordinata y del menu nel sistema di {@code invoker}.
+     */
+    void menuRichiesto(ToDo toDo, Component invoker, int x, int y);
+
+    /**
+     * Invocato quando l'utente trascina un ToDo in un altro punto della stessa bacheca.
+     *
+     * @param toDo        Il ToDo trascinato.
+     * @param nuovoIndice L'indice che il ToDo deve occupare, calcolato sulla lista senza il ToDo stesso.
+     */
+    void spostamentoRichiesto(ToDo toDo, int nuovoIndice);
+}
@@ -1,10 +1,30 @@
 package gui;
 
+import model.Attivita;
 import model.Bacheca;
+import model.StatoAttivita;
+import model.StatoToDo;
+import model.ToDo;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Rappresenta il pannello grafico di una singola bacheca (colonna).
@@ -12,22 +32,45 @@ import java.util.List;
  * È composto da:
  * <ul>
  * <li>Un'intestazione (Header) con titolo, descrizione e pulsante di modifica.</li>
- * <li>Un'area centrale scrollabile che contiene la lista verticale dei {@link ToDoPanel}.</li>
+ * <li>Un'area centrale scrollabile con la lista dei ToDo.</li>
  * </ul>
+ * <p>
+ * La lista è virtualizzata: è una {@link JTable} a una colonna che disegna solo le righe visibili
+ * usando un unico {@link ToDoPanel} come renderer, quindi memoria e tempi di layout non crescono con
+ * il numero di ToDo della bacheca. L'altezza di ogni riga viene misurata solo quando la riga
+ * cambia (o cambia la larghezza della bacheca). I click su checkbox, sotto-attività e pulsante "..."
+ * vengono ricondotti al componente della riga sotto il puntatore e inoltrati ad {@link AzioniToDo}.
+ * </p>
  *
  * @author marrenza
- * @version 1.0
+ * @version 1.1
  */
 public class BachecaPanel extends JPanel {
-    /** Pannello interno che contiene la lista verticale dei ToDo. */
-    private JPanel todoListPanel;
+    /** Lista virtualizzata dei ToDo della bacheca (tabella a una colonna, senza intestazione). */
+    private JTable todoList;
 
-    /** Lista di riferimenti ai pannelli ToDo attualmente visualizzati (utile per la gestione). */
-    private List<ToDoPanel> currentToDoPanels;
+    /** Modello della lista, riconciliato in modo incrementale a ogni aggiornamento. */
+    private ToDoListModel todoListModel;
+
+    /** Pannello "timbro" usato per disegnare tutte le righe e per individuare il componente cliccato. */
+    private ToDoPanel renderer;
+
+    /** Azioni da eseguire quando l'utente interagisce con una riga. */
+    private transient AzioniToDo azioni;
 
     /** Il modello dati della bacheca associata a questo pannello. */
     private transient Bacheca bacheca;
 
+    /** Miniature già pronte, indicizzate per percorso (valore {@code null} = immagine non leggibile). */
+    private final Map<String, Icon> anteprime = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Icon> eldest) {
+            return size() > MAX_ANTEPRIME;
+        }
+    };
+
+    /** Percorsi delle miniature richieste e non ancora pronte. */
+    private final Set<String> anteprimeInArrivo = new HashSet<>();
 
     /** Etichetta per il titolo della bacheca. */
     private JLabel titoloLabel;
@@ -38,7 +81,14 @@ public class BachecaPanel extends JPanel {
     /** Pulsante per modificare la descrizione della bacheca. */
     private JButton modifyDescButton;
 
+    /** Indicatore mostrato finché i ToDo della bacheca non sono stati caricati tutti. */
+    private JProgressBar caricamentoIndicator;
+
     private static final String FONT_NAME = "Segoe UI";
+
+    /** Numero massimo di miniature tenute dalla bacheca (le altre restano nella cache di {@link ThumbnailService}). */
+    private static final int MAX_ANTEPRIME = 256;
+
     /**
      * Costruisce il pannello grafico per una specifica bacheca.
      * Imposta il layout, lo stile grafico (sfondo blu scuro) e inizializza
@@ -72,49 +122,305 @@ public class BachecaPanel extends JPanel {
 
         add(headerPanel, BorderLayout.NORTH);
 
-        todoListPanel = new JPanel();
-        todoListPanel.setLayout(new BoxLayout(todoListPanel, BoxLayout.Y_AXIS));
-        todoListPanel.setBackground(Color.WHITE);
+        renderer = new ToDoPanel();
+        todoListModel = new ToDoListModel();
+        todoList = new JTable(todoListModel) {
+            @Override
+            public void tableChanged(TableModelEvent e) {
+                super.tableChanged(e);
+                if (todoListModel != null) {
+                    aggiornaAltezze(e);
+                }
+            }
 
-        JScrollPane scrollPane = new JScrollPane(todoListPanel);
+            @Override
+            public String getToolTipText(MouseEvent e) {
+                Component c = componenteSotto(e.getPoint());
+                return c instanceof JComponent jc ? jc.getToolTipText() : null;
+            }
+        };
+        todoList.setTableHeader(null);
+        todoList.setShowGrid(false);
+        todoList.setIntercellSpacing(new Dimension(0, 0));
+        todoList.setFillsViewportHeight(true);
+        todoList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        todoList.setBackground(Color.WHITE);
+        todoList.setDefaultRenderer(Object.class, (table, valore, selezionato, focus, riga, colonna) -> {
+            ToDo toDo = (ToDo) valore;
+            renderer.configura(toDo, anteprima(toDo), table.getWidth());
+            renderer.setSelezionato(selezionato);
+            return renderer;
+        });
+        todoList.setDragEnabled(true);
+        todoList.setDropMode(DropMode.INSERT_ROWS);
+        todoList.setTransferHandler(new RiordinoTransferHandler());
+        installaGestoriInput();
+
+        JScrollPane scrollPane = new JScrollPane(todoList);
         scrollPane.setBorder(null);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
 
         add(scrollPane, BorderLayout.CENTER);
-        currentToDoPanels = new ArrayList<>();
+
+        caricamentoIndicator = new JProgressBar();
+        caricamentoIndicator.setIndeterminate(true);
+        caricamentoIndicator.setPreferredSize(new Dimension(0, 4));
+        caricamentoIndicator.setBorderPainted(false);
+        caricamentoIndicator.setToolTipText("Caricamento dei ToDo in corso...");
+        caricamentoIndicator.setVisible(false);
+        add(caricamentoIndicator, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Collega mouse e tastiera della lista alle {@link AzioniToDo}.
+     * La lista ricalcola le altezze delle righe quando cambia larghezza, perché la descrizione va a capo.
+     */
+    private void installaGestoriInput() {
+        todoList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (e.isPopupTrigger()) {
+                    mostraMenuContestuale(e);
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (e.isPopupTrigger()) {
+                    mostraMenuContestuale(e);
+                }
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e)) {
+                    gestisciClick(e.getPoint());
+                }
+            }
+        });
+
+        InputMap tasti = todoList.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
+        tasti.put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE, 0), "completaToDo");
+        todoList.getActionMap().put("completaToDo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int riga = todoList.getSelectedRow();
+                ToDo toDo = riga >= 0 ? todoListModel.getToDo(riga) : null;
+                if (toDo != null && azioni != null && !haChecklist(toDo)) {
+                    azioni.completamentoCambiato(toDo, toDo.getStato() != StatoToDo.COMPLETATO);
+                }
+            }
+        });
+        tasti.put(KeyStroke.getKeyStroke(KeyEvent.VK_CONTEXT_MENU, 0), "menuToDo");
+        todoList.getActionMap().put("menuToDo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int riga = todoList.getSelectedRow();
+                if (riga >= 0 && azioni != null) {
+                    Rectangle cella = todoList.getCellRect(riga, 0, true);
+                    azioni.menuRichiesto(todoListModel.getToDo(riga), todoList, cella.x, cella.y + cella.height);
+                }
+            }
+        });
+
+        todoList.addComponentListener(new ComponentAdapter() {
+            private int ultimaLarghezza = -1;
+
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (todoList.getWidth() != ultimaLarghezza) {
+                    ultimaLarghezza = todoList.getWidth();
+                    for (int riga = 0; riga < todoListModel.getRowCount(); riga++) {
+                        misuraRiga(riga);
+                    }
+                }
+            }
+        });
+    }
+
+    private void mostraMenuContestuale(MouseEvent e) {
+        int index = indiceSotto(e.getPoint());
+        if (index >= 0 && azioni != null) {
+            todoList.setRowSelectionInterval(index, index);
+            azioni.menuRichiesto(todoListModel.getToDo(index), todoList, e.getX(), e.getY());
+        }
+    }
+
+    /**
+     * Individua il componente della riga cliccato e invoca l'azione corrispondente.
+     */
+    private void gestisciClick(Point punto) {
+        int index = indiceSotto(punto);
+        if (index < 0 || azioni == null) {
+            return;
+        }
+        ToDo toDo = todoListModel.getToDo(index);
+        Component cliccato = componenteSotto(punto);
+        if (cliccato == null) {
+            return;
+        }
+        if (cliccato == renderer.getCompletatoCheckbox()) {
+            if (cliccato.isEnabled()) {
+                azioni.completamentoCambiato(toDo, toDo.getStato() != StatoToDo.COMPLETATO);
+            }
+        } else if (cliccato == renderer.getMenuButton()) {
+            Point sotto = SwingUtilities.convertPoint(cliccato, 0, cliccato.getHeight(), renderer);
+            Rectangle cella = todoList.getCellRect(index, 0, true);
+            azioni.menuRichiesto(toDo, todoList, cella.x + sotto.x, cella.y + sotto.y);
+        } else {
+            int i = renderer.getSubTaskCheckboxes().indexOf(cliccato);
+            List<Attivita> attivita = haChecklist(toDo) ? toDo.getChecklist().getAttivita() : List.of();
+            if (i >= 0 && i < attivita.size()) {
+                Attivita a = attivita.get(i);
+                azioni.sottoAttivitaCambiata(toDo, a, a.getStato() != StatoAttivita.COMPLETATO);
+            }
+        }
+    }
+
+    /** Restituisce l'indice della riga sotto il punto, oppure -1 se il punto è fuori dalle righe. */
+    private int indiceSotto(Point punto) {
+        return todoList.rowAtPoint(punto);
+    }
+
+    /**
+     * Configura il renderer sulla riga sotto il punto, ne esegue il layout con le dimensioni della cella
+     * e restituisce il componente più interno che si trova sotto il punto.
+     */
+    private Component componenteSotto(Point punto) {
+        int index = indiceSotto(punto);
+        if (index < 0) {
+            return null;
+        }
+        Rectangle cella = todoList.getCellRect(index, 0, true);
+        todoList.prepareRenderer(todoList.getCellRenderer(index, 0), index, 0);
+        renderer.setBounds(0, 0, cella.width, cella.height);
+        eseguiLayout(renderer);
+        return SwingUtilities.getDeepestComponentAt(renderer, punto.x - cella.x, punto.y - cella.y);
+    }
+
+    /**
+     * Misura le righe inserite o modificate: le altre righe mantengono l'altezza già calcolata.
+     * Invocato dopo che la tabella ha aggiornato il proprio modello delle righe.
+     */
+    private void aggiornaAltezze(TableModelEvent e) {
+        if (e.getType() == TableModelEvent.DELETE || e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+            return;
+        }
+        int ultima = Math.min(e.getLastRow(), todoListModel.getRowCount() - 1);
+        for (int riga = Math.max(0, e.getFirstRow()); riga <= ultima; riga++) {
+            misuraRiga(riga);
+        }
+    }
+
+    /** Imposta l'altezza di una riga pari all'altezza preferita del renderer configurato su di essa. */
+    private void misuraRiga(int riga) {
+        Component c = todoList.prepareRenderer(todoList.getCellRenderer(riga, 0), riga, 0);
+        int altezza = Math.max(1, c.getPreferredSize().height);
+        if (todoList.getRowHeight(riga) != altezza) {
+            todoList.setRowHeight(riga, altezza);
+        }
+    }
+
+    private static void eseguiLayout(Container contenitore) {
+        contenitore.doLayout();
+        for (Component figlio : contenitore.getComponents()) {
+            if (figlio instanceof Container c) {
+                eseguiLayout(c);
+            }
+        }
+    }
+
+    private static boolean haChecklist(ToDo toDo) {
+        return toDo.getChecklist() != null && !toDo.getChecklist().getAttivita().isEmpty();
+    }
+
+    /**
+     * Restituisce la miniatura dell'immagine del ToDo se già pronta; altrimenti la richiede a
+     * {@link ThumbnailService} e restituisce un segnaposto, ridisegnando la lista quando arriva.
+     */
+    private Icon anteprima(ToDo toDo) {
+        String percorso = toDo.getImagePath();
+        if (percorso == null || percorso.isEmpty()) {
+            return null;
+        }
+        if (anteprime.containsKey(percorso)) {
+            return anteprime.get(percorso);
+        }
+        ThumbnailService servizio = ThumbnailService.getInstance();
+        if (anteprimeInArrivo.add(percorso)) {
+            servizio.richiedi(percorso, ToDoPanel.MAX_LARGHEZZA_ANTEPRIMA, ToDoPanel.MAX_ALTEZZA_ANTEPRIMA)
+                    .whenComplete((immagine, errore) -> {
+                        anteprimeInArrivo.remove(percorso);
+                        anteprime.put(percorso, errore == null ? new ImageIcon(immagine) : null);
+                        todoList.repaint();
+                    });
+        }
+        return servizio.getSegnaposto(ToDoPanel.MAX_LARGHEZZA_ANTEPRIMA, ToDoPanel.MAX_ALTEZZA_ANTEPRIMA);
     }
 
     /**
-     * Aggiunge dinamicamente un pannello ToDo alla lista visuale.
-     * Aggiunge il pannello al contenitore {@code todoListPanel} e forza
-     * il ricalcolo del layout per mostrare immediatamente il nuovo elemento.
+     * Registra le azioni da eseguire quando l'utente interagisce con i ToDo della bacheca.
      *
-     * @param todoPanel Il pannello grafico del ToDo da aggiungere.
+     * @param azioni L'implementazione fornita dal Controller.
      */
-    public void aggiungiToDo(ToDoPanel todoPanel) {
-        todoListPanel.add(todoPanel);
-        currentToDoPanels.add(todoPanel);
-        todoListPanel.revalidate();
-        todoListPanel.repaint();
+    public void setAzioniToDo(AzioniToDo azioni) {
+        this.azioni = azioni;
     }
 
     /**
-     * Rimuove tutti i ToDo visualizzati nel pannello.
-     * Utilizzato prima di ricaricare i dati dal database (refresh).
+     * Allinea la lista visualizzata alla lista ordinata di ToDo, notificando solo le righe cambiate.
+     * <p>
+     * Le righe sono confrontate per ID e per "firma" (i dati visualizzati): il prefisso e il suffisso
+     * comuni vengono mantenuti e ridisegnati solo se la firma è cambiata, mentre il tratto centrale
+     * diverso viene sostituito con una sola notifica di rimozione e una di inserimento.
+     * </p>
+     *
+     * @param todos La lista dei ToDo nell'ordine in cui devono comparire.
+     */
+    public void sincronizzaToDo(List<ToDo> todos) {
+        todoListModel.sincronizza(todos);
+    }
+
+    /**
+     * Segnala che i ToDo della bacheca sono ancora in arrivo: mostra l'indicatore di caricamento e,
+     * finché la lista è parziale, disattiva il riordino per trascinamento.
+     *
+     * @param inCaricamento {@code true} finché non è arrivata l'ultima pagina di ToDo.
+     */
+    public void setInCaricamento(boolean inCaricamento) {
+        caricamentoIndicator.setVisible(inCaricamento);
+        todoList.setDragEnabled(!inCaricamento);
+        revalidate();
+    }
+
+    /**
+     * Ridisegna la riga di un singolo ToDo dopo una modifica che non ne cambia la posizione.
+     *
+     * @param toDo Il ToDo modificato.
+     * @return {@code true} se il ToDo è visualizzato in questa bacheca ed è stato aggiornato.
      */
-    public void clearToDos() {
-        todoListPanel.removeAll();
-        currentToDoPanels.clear();
-        todoListPanel.revalidate();
-        todoListPanel.repaint();
+    public boolean aggiornaToDo(ToDo toDo) {
+        return todoListModel.aggiorna(toDo);
     }
 
     /**
-     * Restituisce la lista dei pannelli ToDo attualmente presenti nella bacheca.
-     * @return Una lista di {@link ToDoPanel}.
+     * Restituisce la bacheca visualizzata da questo pannello.
+     * @return Il modello {@link Bacheca}.
      */
-    public List<ToDoPanel> getCurrentToDoPanels() {
+    public Bacheca getBacheca() {
+        return bacheca;
+    }
 
-        return currentToDoPanels;
+    /**
+     * Collega il pannello a un'istanza aggiornata della stessa bacheca (es. dopo un ricaricamento)
+     * e aggiorna l'intestazione.
+     *
+     * @param bacheca Il nuovo modello della bacheca.
+     */
+    public void setBacheca(Bacheca bacheca) {
+        this.bacheca = bacheca;
+        titoloLabel.setText(bacheca.getTitolo().toString());
+        updateDescrizioneLabel();
     }
 
     /**
@@ -133,4 +439,167 @@ public class BachecaPanel extends JPanel {
     public void updateDescrizioneLabel() {
         this.descrizioneLabel.setText(this.bacheca.getDescrizione());
     }
+
+    /**
+     * Gestisce il trascinamento di una riga all'interno della stessa bacheca: al rilascio
+     * inoltra il nuovo indice ad {@link AzioniToDo#spostamentoRichiesto(ToDo, int)}.
+     * Il riordino vero e proprio (e il salvataggio) sono a carico del Controller.
+     */
+    private final class RiordinoTransferHandler extends TransferHandler {
+        /** Riga trascinata, oppure -1 se non è in corso un trascinamento da questa bacheca. */
+        private int rigaTrascinata = -1;
+
+        @Override
+        public int getSourceActions(JComponent c) {
+            return MOVE;
+        }
+
+        @Override
+        protected Transferable createTransferable(JComponent c) {
+            rigaTrascinata = todoList.getSelectedRow();
+            if (rigaTrascinata < 0) {
+                return null;
+            }
+            return new StringSelection(String.valueOf(todoListModel.getToDo(rigaTrascinata).getId()));
+        }
+
+        @Override
+        public boolean canImport(TransferSupport support) {
+            return support.isDrop() && support.getComponent() == todoList && rigaTrascinata >= 0;
+        }
+
+        @Override
+        public boolean importData(TransferSupport support) {
+            if (!canImport(support) || azioni == null) {
+                return false;
+            }
+            int destinazione = ((JTable.DropLocation) support.getDropLocation()).getRow();
+            if (destinazione > rigaTrascinata) {
+                destinazione--;
+            }
+            if (destinazione == rigaTrascinata) {
+                return false;
+            }
+            azioni.spostamentoRichiesto(todoListModel.getToDo(rigaTrascinata), destinazione);
+            return true;
+        }
+
+        @Override
+        protected void exportDone(JComponent source, Transferable data, int action) {
+            rigaTrascinata = -1;
+        }
+    }
+
+    /**
+     * Modello della lista dei ToDo con riconciliazione incrementale per ID.
+     */
+    private static final class ToDoListModel extends AbstractTableModel {
+        private final List<ToDo> righe = new ArrayList<>();
+        private final List<Firma> firme = new ArrayList<>();
+        private final Map<Integer, Integer> indicePerId = new HashMap<>();
+
+        @Override
+        public int getRowCount() {
+            return righe.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 1;
+        }
+
+        @Override
+        public Object getValueAt(int riga, int colonna) {
+            return righe.get(riga);
+        }
+
+        ToDo getToDo(int riga) {
+            return righe.get(riga);
+        }
+
+        void sincronizza(List<ToDo> todos) {
+            int vecchi = righe.size();
+            int nuovi = todos.size();
+            int prefisso = 0;
+            while (prefisso < vecchi && prefisso < nuovi && righe.get(prefisso).getId() == todos.get(prefisso).getId()) {
+                prefisso++;
+            }
+            int suffisso = 0;
+            while (suffisso < vecchi - prefisso && suffisso < nuovi - prefisso
+                    && righe.get(vecchi - 1 - suffisso).getId() == todos.get(nuovi - 1 - suffisso).getId()) {
+                suffisso++;
+            }
+
+            // Tratto centrale diverso: sostituito in blocco.
+            if (vecchi - prefisso - suffisso > 0) {
+                righe.subList(prefisso, vecchi - suffisso).clear();
+                firme.subList(prefisso, vecchi - suffisso).clear();
+                fireTableRowsDeleted(prefisso, vecchi - suffisso - 1);
+            }
+            if (nuovi - prefisso - suffisso > 0) {
+                List<ToDo> inseriti = todos.subList(prefisso, nuovi - suffisso);
+                List<Firma> nuoveFirme = new ArrayList<>(inseriti.size());
+                for (ToDo t : inseriti) {
+                    nuoveFirme.add(Firma.di(t));
+                }
+                righe.addAll(prefisso, inseriti);
+                firme.addAll(prefisso, nuoveFirme);
+                fireTableRowsInserted(prefisso, nuovi - suffisso - 1);
+            }
+
+            // Prefisso e suffisso comuni: ridisegnati solo se i dati visualizzati sono cambiati.
+            for (int i = 0; i < nuovi; i++) {
+                if (i == prefisso) {
+                    i = nuovi - suffisso;
+                    if (i >= nuovi) {
+                        break;
+                    }
+                }
+                aggiornaRiga(i, todos.get(i));
+            }
+
+            indicePerId.clear();
+            for (int i = 0; i < righe.size(); i++) {
+                indicePerId.put(righe.get(i).getId(), i);
+            }
+        }
+
+        boolean aggiorna(ToDo toDo) {
+            Integer index = indicePerId.get(toDo.getId());
+            if (index == null) {
+                return false;
+            }
+            righe.set(index, toDo);
+            firme.set(index, Firma.di(toDo));
+            fireTableRowsUpdated(index, index);
+            return true;
+        }
+
+        private void aggiornaRiga(int index, ToDo toDo) {
+            Firma firma = Firma.di(toDo);
+            if (righe.get(index) != toDo || !firme.get(index).equals(firma)) {
+                righe.set(index, toDo);
+                firme.set(index, firma);
+                fireTableRowsUpdated(index, index);
+            }
+        }
+    }
+
+    /**
+     * Istantanea dei dati di un ToDo che influenzano la sua riga: se due firme coincidono,
+     * la riga non va ridisegnata.
+     */
+    private record Firma(String titolo, String descrizione, LocalDate scadenza, String imagePath,
+                         String coloreSfondo, StatoToDo stato, List<String> attivita, boolean daConfermare) {
+        static Firma di(ToDo toDo) {
+            List<String> nomi = new ArrayList<>();
+            if (toDo.getChecklist() != null) {
+                for (Attivita a : toDo.getChecklist().getAttivita()) {
+                    nomi.add(a.getNome() + (a.getStato() == StatoAttivita.COMPLETATO ? " [x]" : " [ ]"));
+                }
+            }
+            return new Firma(toDo.getTitolo(), toDo.getDescrizione(), toDo.getScadenza(),
+                    toDo.getImagePath(), toDo.getColoreSfondo(), toDo.getStato(), nomi, toDo.isDaConfermare());
+        }
+    }
 }
@@ -36,6 +36,9 @@ public class MainFrame extends JFrame {
     /** Etichetta di benvenuto che mostra il nome dell'utente loggato. */
     private JLabel welcomeLabel;
 
+    /** Indicatore leggero mostrato mentre sono in corso operazioni sul database. */
+    private JProgressBar busyIndicator;
+
     /**
      * Costruisce e inizializza la finestra principale.
      * Imposta il layout (BorderLayout), massimizza la finestra all'avvio,
@@ -66,6 +69,12 @@ public class MainFrame extends JFrame {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         buttonPanel.setOpaque(false);
 
+        busyIndicator = new JProgressBar();
+        busyIndicator.setIndeterminate(true);
+        busyIndicator.setPreferredSize(new Dimension(80, 8));
+        busyIndicator.setToolTipText("Sincronizzazione con il database in corso...");
+        busyIndicator.setVisible(false);
+        buttonPanel.add(busyIndicator);
 
         addToDoButton = new JButton("Aggiungi ToDo");
         styleButton(addToDoButton);
@@ -112,6 +121,17 @@ public class MainFrame extends JFrame {
         button.setCursor(new Cursor(Cursor.HAND_CURSOR));
     }
 
+    /**
+     * Mostra o nasconde l'indicatore di attività nella toolbar.
+     * Va invocato sull'Event Dispatch Thread.
+     *
+     * @param occupato {@code true} se ci sono operazioni sul database in corso.
+     */
+    public void setOccupato(boolean occupato) {
+        busyIndicator.setVisible(occupato);
+        busyIndicator.getParent().revalidate();
+    }
+
     /**
      * Restituisce il pannello che contiene le bacheche.
      * Utilizzato dal controller per aggiungere dinamicamente i {@link BachecaPanel}.
@@ -1,7 +1,10 @@
 package gui;
 
+import model.ToDo;
+
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
 
 /**
  * Finestra di dialogo per la ricerca dei ToDo.
@@ -9,7 +12,9 @@ import java.awt.*;
  * Questa classe fornisce l'interfaccia grafica che permette all'utente di filtrare
  * le proprie attività. Offre tre modalità di interazione:
  * <ul>
- * <li>Ricerca testuale (per Titolo o Descrizione).</li>
+ * <li>Ricerca testuale (Titolo, Descrizione e attività), ordinata per rilevanza,
+ * con prefissi ({@code parola*}) e frasi tra virgolette. Mentre l'utente scrive,
+ * l'elenco sotto al campo mostra i ToDo corrispondenti già caricati.</li>
  * <li>Ricerca per data di scadenza specifica.</li>
  * <li>Ricerca rapida per i ToDo in scadenza oggi o già scaduti.</li>
  * </ul>
@@ -38,6 +43,15 @@ public class SearchDialog extends JDialog {
     /** Pulsante per chiudere la finestra di ricerca. */
     private JButton btnAnnulla;
 
+    /** Etichetta che indica se la ricerca testuale usa l'indice full-text o la ricerca semplice. */
+    private JLabel lblModalitaRicerca;
+
+    /** Modello dell'elenco dei risultati istantanei. */
+    private DefaultListModel<ToDo> risultatiIstantanei;
+
+    /** Elenco dei ToDo che corrispondono al testo digitato, aggiornato mentre l'utente scrive. */
+    private JList<ToDo> listaRisultatiIstantanei;
+
     /**
      * Costruttore della finestra di ricerca.
      * Configura le proprietà della finestra (modale, non ridimensionabile) e inizializza i componenti.
@@ -48,8 +62,8 @@ public class SearchDialog extends JDialog {
      */
     public SearchDialog(Frame owner, String title, boolean modal) {
         super(owner, title, modal);
-        // Altezza aumentata a 450 per contenere comodamente tutti i tasti
-        setSize(500, 450);
+        // Altezza aumentata a 600 per contenere tutti i tasti e l'elenco dei risultati istantanei
+        setSize(500, 600);
         setLocationRelativeTo(owner);
         setLayout(new GridBagLayout());
         setResizable(false);
@@ -64,6 +78,8 @@ public class SearchDialog extends JDialog {
      */
     private void initComponents() {
         txtSearchTerm = new JTextField(20);
+        txtSearchTerm.setToolTipText("<html>Parole cercate in titolo, descrizione e attività.<br>" +
+                "Usa <b>parola*</b> per i prefissi e <b>\"frase esatta\"</b> per le frasi.</html>");
         txtScadenzaSearch = new JTextField(10);
         txtScadenzaSearch.setToolTipText("Formato: YYYY-MM-DD");
 
@@ -72,6 +88,28 @@ public class SearchDialog extends JDialog {
         btnGiaScaduti = new JButton("ToDo Scaduti (Passati)");
         btnAnnulla = new JButton("Annulla");
 
+        lblModalitaRicerca = new JLabel(" ");
+        lblModalitaRicerca.setFont(lblModalitaRicerca.getFont().deriveFont(Font.ITALIC, 11f));
+        lblModalitaRicerca.setForeground(Color.GRAY);
+
+        risultatiIstantanei = new DefaultListModel<>();
+        listaRisultatiIstantanei = new JList<>(risultatiIstantanei);
+        listaRisultatiIstantanei.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        listaRisultatiIstantanei.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                ToDo todo = (ToDo) value;
+                StringBuilder testo = new StringBuilder(todo.getTitolo());
+                if (todo.getScadenza() != null) {
+                    testo.append(" (Scadenza: ").append(todo.getScadenza()).append(")");
+                }
+                if (todo.getBacheca() != null) {
+                    testo.append(" [Bacheca: ").append(todo.getBacheca().getTitolo()).append("]");
+                }
+                return super.getListCellRendererComponent(list, testo.toString(), index, isSelected, cellHasFocus);
+            }
+        });
+
         btnAnnulla.addActionListener(e -> dispose());
     }
 
@@ -89,7 +127,7 @@ public class SearchDialog extends JDialog {
         // --- Riga 0: Etichetta Titolo ---
         gbc.gridx = 0;
         gbc.gridy = row;
-        add(new JLabel("Cerca per Titolo/Descrizione:"), gbc);
+        add(new JLabel("Cerca per Titolo/Descrizione/Attività:"), gbc);
 
         // --- Riga 1: Campo Titolo ---
         gbc.gridx = 1;
@@ -98,6 +136,15 @@ public class SearchDialog extends JDialog {
         txtSearchTerm.setPreferredSize(new Dimension(200, 30));
         add(txtSearchTerm, gbc);
 
+        // --- Risultati istantanei della ricerca testuale ---
+        gbc.gridx = 0;
+        gbc.gridy = row++;
+        gbc.gridwidth = 2;
+        JScrollPane scrollRisultati = new JScrollPane(listaRisultatiIstantanei);
+        scrollRisultati.setPreferredSize(new Dimension(400, 140));
+        add(scrollRisultati, gbc);
+        gbc.gridwidth = 1;
+
         // --- Riga 2: Etichetta Scadenza ---
         gbc.gridx = 0;
         gbc.gridy = row;
@@ -137,10 +184,42 @@ public class SearchDialog extends JDialog {
         gbc.gridx = 0;
         gbc.gridy = row;
         gbc.gridwidth = 2;
-        gbc.insets = new Insets(15, 10, 15, 10);
+        gbc.insets = new Insets(15, 10, 5, 10);
         add(btnAnnulla, gbc);
+        row++;
+
+        // --- Riga 8: Modalità della ricerca testuale ---
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        gbc.insets = new Insets(0, 10, 10, 10);
+        add(lblModalitaRicerca, gbc);
+    }
+
+    /**
+     * Mostra quale modalità è stata usata per l'ultima ricerca testuale.
+     * @param descrizione Il testo da visualizzare (es. ricerca full-text o ricerca semplice).
+     */
+    public void setModalitaRicerca(String descrizione) {
+        lblModalitaRicerca.setText(descrizione);
+    }
+
+    /**
+     * Sostituisce il contenuto dell'elenco dei risultati istantanei.
+     * @param todos I ToDo da mostrare (vuota per svuotare l'elenco).
+     */
+    public void mostraRisultatiIstantanei(List<ToDo> todos) {
+        risultatiIstantanei.clear();
+        risultatiIstantanei.addAll(todos);
     }
 
+    /**
+     * Restituisce l'elenco dei risultati istantanei.
+     * Utilizzato dal controller per gestire il doppio click su un risultato.
+     * @return Il componente JList.
+     */
+    public JList<ToDo> getListaRisultatiIstantanei() { return listaRisultatiIstantanei; }
+
     /**
      * Restituisce il campo di testo per la ricerca per parola chiave.
      * @return Il componente JTextField.
@@ -0,0 +1,364 @@
+package gui;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servizio che produce le miniature delle immagini associate ai ToDo senza bloccare l'interfaccia.
+ * <p>
+ * La pipeline è composta da tre livelli:
+ * <ul>
+ * <li>una cache LRU in memoria, limitata in byte, delle miniature già pronte;</li>
+ * <li>una cache opzionale su disco (nella cartella di configurazione dell'utente), così che
+ * dopo un riavvio le immagini non debbano essere decodificate di nuovo;</li>
+ * <li>la decodifica vera e propria, eseguita su un pool di thread in background con il
+ * sotto-campionamento di {@link ImageIO}, in modo che l'immagine a piena risoluzione
+ * non venga mai tenuta in memoria.</li>
+ * </ul>
+ * Le miniature sono identificate da percorso, data di modifica e dimensione del file, oltre che
+ * dalle dimensioni richieste: se il file cambia su disco la vecchia miniatura non viene più usata.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public class ThumbnailService {
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailService.class.getName());
+
+    /** Proprietà di sistema che, se impostata a {@code false}, disattiva la cache su disco. */
+    public static final String PROPRIETA_CACHE_DISCO = "homeworkoo.thumbnails.disco";
+
+    /** Memoria massima (in byte) occupata dalle miniature nella cache in memoria. */
+    private static final long MAX_BYTE_CACHE = 16L * 1024 * 1024;
+
+    /** Chiave della client property con cui un'etichetta ricorda quale miniatura sta aspettando. */
+    private static final String RICHIESTA_PROPERTY = "THUMBNAIL_RICHIESTA";
+
+    private static ThumbnailService istanza;
+
+    /** Pool dedicato alla decodifica: lavoro CPU-bound, quindi pochi thread daemon. */
+    private final ExecutorService executor;
+
+    /** Cache LRU in memoria (ordine di accesso). Protetta da {@code this}. */
+    private final LinkedHashMap<Chiave, BufferedImage> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long byteInCache = 0;
+
+    /** Decodifiche in corso, per non elaborare due volte la stessa miniatura. */
+    private final Map<Chiave, CompletableFuture<BufferedImage>> inCorso = new ConcurrentHashMap<>();
+
+    /** Segnaposto già disegnati, indicizzati per dimensione ("larghezza x altezza"). Usata solo sull'EDT. */
+    private final Map<String, ImageIcon> segnaposto = new HashMap<>();
+
+    /** Cartella della cache su disco, oppure {@code null} se disattivata. */
+    private final Path cartellaDisco;
+
+    /**
+     * Costruisce il servizio.
+     *
+     * @param cartellaDisco La cartella in cui salvare le miniature, oppure {@code null} per non usare il disco.
+     */
+    public ThumbnailService(Path cartellaDisco) {
+        int thread = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = Executors.newFixedThreadPool(thread, r -> {
+            Thread t = new Thread(r, "thumbnail-decoder");
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        this.cartellaDisco = preparaCartella(cartellaDisco);
+    }
+
+    /**
+     * Restituisce il servizio condiviso dall'applicazione, creandolo alla prima richiesta.
+     * La cache su disco si trova in {@code ~/.homeworkoo/thumbnails}, salvo che sia stata
+     * disattivata con la proprietà di sistema {@value #PROPRIETA_CACHE_DISCO}.
+     *
+     * @return Il servizio condiviso.
+     */
+    public static synchronized ThumbnailService getInstance() {
+        if (istanza == null) {
+            Path cartella = null;
+            if (Boolean.parseBoolean(System.getProperty(PROPRIETA_CACHE_DISCO, "true"))) {
+                cartella = Path.of(System.getProperty("user.home"), ".homeworkoo", "thumbnails");
+            }
+            istanza = new ThumbnailService(cartella);
+        }
+        return istanza;
+    }
+
+    private static Path preparaCartella(Path cartella) {
+        if (cartella == null) {
+            return null;
+        }
+        try {
+            Files.createDirectories(cartella);
+            return cartella;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cache delle miniature su disco non disponibile: " + cartella, e);
+            return null;
+        }
+    }
+
+    /**
+     * Mostra nell'etichetta un segnaposto e lo sostituisce con la miniatura appena è pronta.
+     * Se nel frattempo l'etichetta riceve un'altra richiesta, il risultato superato viene ignorato.
+     *
+     * @param label        L'etichetta in cui visualizzare la miniatura.
+     * @param percorso     Il percorso del file immagine.
+     * @param maxLarghezza La larghezza massima della miniatura.
+     * @param maxAltezza   L'altezza massima della miniatura.
+     */
+    public void caricaIn(JLabel label, String percorso, int maxLarghezza, int maxAltezza) {
+        Object richiesta = new Object();
+        label.putClientProperty(RICHIESTA_PROPERTY, richiesta);
+        label.setText(null);
+        label.setIcon(getSegnaposto(maxLarghezza, maxAltezza));
+
+        richiedi(percorso, maxLarghezza, maxAltezza).whenComplete((immagine, errore) -> {
+            if (label.getClientProperty(RICHIESTA_PROPERTY) != richiesta) {
+                return;
+            }
+            if (errore != null) {
+                label.setIcon(null);
+                label.setText("Immagine non trovata.");
+            } else {
+                label.setIcon(new ImageIcon(immagine));
+            }
+            label.revalidate();
+            label.repaint();
+        });
+    }
+
+    /**
+     * Richiede la miniatura di un'immagine, ridimensionata per stare in un riquadro preservando le proporzioni.
+     *
+     * @param percorso     Il percorso del file immagine.
+     * @param maxLarghezza La larghezza massima della miniatura.
+     * @param maxAltezza   L'altezza massima della miniatura.
+     * @return Un future completato sull'EDT con la miniatura, o con un'eccezione se il file non è leggibile.
+     */
+    public CompletableFuture<BufferedImage> richiedi(String percorso, int maxLarghezza, int maxAltezza) {
+        CompletableFuture<BufferedImage> suEdt = new CompletableFuture<>();
+        CompletableFuture
+                .supplyAsync(() -> Chiave.di(percorso, maxLarghezza, maxAltezza), executor)
+                .thenCompose(this::ottieni)
+                .whenComplete((immagine, errore) -> SwingUtilities.invokeLater(() -> {
+                    if (errore != null) {
+                        suEdt.completeExceptionally(errore);
+                    } else {
+                        suEdt.complete(immagine);
+                    }
+                }));
+        return suEdt;
+    }
+
+    private CompletableFuture<BufferedImage> ottieni(Chiave chiave) {
+        BufferedImage presente = leggiCache(chiave);
+        if (presente != null) {
+            return CompletableFuture.completedFuture(presente);
+        }
+        return inCorso.computeIfAbsent(chiave, k -> {
+            CompletableFuture<BufferedImage> f = CompletableFuture.supplyAsync(() -> produci(k), executor);
+            f.whenComplete((r, e) -> inCorso.remove(k));
+            return f;
+        });
+    }
+
+    /** Legge la miniatura dal disco se disponibile, altrimenti la decodifica e la salva. */
+    private BufferedImage produci(Chiave chiave) {
+        BufferedImage immagine = leggiDaDisco(chiave);
+        if (immagine == null) {
+            try {
+                immagine = decodifica(chiave);
+            } catch (IOException e) {
+                throw new IllegalStateException("Impossibile leggere l'immagine " + chiave.percorso(), e);
+            }
+            scriviSuDisco(chiave, immagine);
+        }
+        salvaInCache(chiave, immagine);
+        return immagine;
+    }
+
+    /**
+     * Decodifica l'immagine sotto-campionandola già in lettura, poi la scala alla dimensione esatta.
+     */
+    private static BufferedImage decodifica(Chiave chiave) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(Path.of(chiave.percorso()).toFile())) {
+            if (input == null) {
+                throw new IOException("File non accessibile");
+            }
+            Iterator<ImageReader> lettori = ImageIO.getImageReaders(input);
+            if (!lettori.hasNext()) {
+                throw new IOException("Formato immagine non supportato");
+            }
+            ImageReader lettore = lettori.next();
+            try {
+                lettore.setInput(input, true, true);
+                int larghezza = lettore.getWidth(0);
+                int altezza = lettore.getHeight(0);
+                double scala = Math.min((double) chiave.maxLarghezza() / larghezza, (double) chiave.maxAltezza() / altezza);
+                scala = Math.min(scala, 1.0);
+                int destLarghezza = Math.max(1, (int) Math.round(larghezza * scala));
+                int destAltezza = Math.max(1, (int) Math.round(altezza * scala));
+
+                ImageReadParam parametri = lettore.getDefaultReadParam();
+                int passo = Math.max(1, Math.min(larghezza / destLarghezza, altezza / destAltezza));
+                parametri.setSourceSubsampling(passo, passo, 0, 0);
+                BufferedImage ridotta = lettore.read(0, parametri);
+                return scala(ridotta, destLarghezza, destAltezza);
+            } finally {
+                lettore.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scala(BufferedImage sorgente, int larghezza, int altezza) {
+        BufferedImage risultato = new BufferedImage(larghezza, altezza, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = risultato.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(sorgente, 0, 0, larghezza, altezza, null);
+        } finally {
+            g.dispose();
+        }
+        return risultato;
+    }
+
+    private BufferedImage leggiDaDisco(Chiave chiave) {
+        if (cartellaDisco == null) {
+            return null;
+        }
+        Path file = cartellaDisco.resolve(chiave.nomeFile());
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return ImageIO.read(file.toFile());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Miniatura su disco illeggibile, verrà rigenerata: " + file, e);
+            return null;
+        }
+    }
+
+    private void scriviSuDisco(Chiave chiave, BufferedImage immagine) {
+        if (cartellaDisco == null) {
+            return;
+        }
+        Path destinazione = cartellaDisco.resolve(chiave.nomeFile());
+        try {
+            Path temporaneo = Files.createTempFile(cartellaDisco, "thumb", ".tmp");
+            try {
+                ImageIO.write(immagine, "png", temporaneo.toFile());
+                Files.move(temporaneo, destinazione, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporaneo);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Impossibile salvare la miniatura su disco: " + destinazione, e);
+        }
+    }
+
+    private synchronized BufferedImage leggiCache(Chiave chiave) {
+        return cache.get(chiave);
+    }
+
+    private synchronized void salvaInCache(Chiave chiave, BufferedImage immagine) {
+        BufferedImage precedente = cache.put(chiave, immagine);
+        if (precedente != null) {
+            byteInCache -= byteOccupati(precedente);
+        }
+        byteInCache += byteOccupati(immagine);
+        Iterator<Map.Entry<Chiave, BufferedImage>> it = cache.entrySet().iterator();
+        while (byteInCache > MAX_BYTE_CACHE && it.hasNext()) {
+            Map.Entry<Chiave, BufferedImage> piuVecchia = it.next();
+            if (piuVecchia.getKey().equals(chiave)) {
+                break;
+            }
+            byteInCache -= byteOccupati(piuVecchia.getValue());
+            it.remove();
+        }
+    }
+
+    private static long byteOccupati(BufferedImage immagine) {
+        return 4L * immagine.getWidth() * immagine.getHeight();
+    }
+
+    /**
+     * Restituisce un riquadro grigio delle dimensioni indicate, da mostrare finché la miniatura non è pronta.
+     * Da invocare sull'EDT.
+     *
+     * @param larghezza La larghezza del segnaposto.
+     * @param altezza   L'altezza del segnaposto.
+     * @return L'icona segnaposto (condivisa tra tutte le richieste della stessa dimensione).
+     */
+    public ImageIcon getSegnaposto(int larghezza, int altezza) {
+        return segnaposto.computeIfAbsent(larghezza + "x" + altezza, k -> {
+            BufferedImage img = new BufferedImage(larghezza, altezza, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = img.createGraphics();
+            try {
+                g.setColor(new Color(235, 235, 235));
+                g.fillRect(0, 0, larghezza, altezza);
+                g.setColor(Color.LIGHT_GRAY);
+                g.drawRect(0, 0, larghezza - 1, altezza - 1);
+            } finally {
+                g.dispose();
+            }
+            return new ImageIcon(img);
+        });
+    }
+
+    /**
+     * Identifica una miniatura: file sorgente (percorso, data di modifica, dimensione) e riquadro richiesto.
+     */
+    private record Chiave(String percorso, long modificatoIl, long dimensione, int maxLarghezza, int maxAltezza) {
+
+        static Chiave di(String percorso, int maxLarghezza, int maxAltezza) {
+            try {
+                BasicFileAttributes attributi = Files.readAttributes(Path.of(percorso), BasicFileAttributes.class);
+                return new Chiave(percorso, attributi.lastModifiedTime().toMillis(), attributi.size(), maxLarghezza, maxAltezza);
+            } catch (IOException e) {
+                throw new IllegalStateException("Immagine non trovata: " + percorso, e);
+            }
+        }
+
+        /** Nome del file della cache su disco, ricavato dall'hash della chiave. */
+        String nomeFile() {
+            String testo = percorso + '|' + modificatoIl + '|' + dimensione + '|' + maxLarghezza + 'x' + maxAltezza;
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(testo.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(hash) + ".png";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
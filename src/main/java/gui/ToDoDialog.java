@@ -68,6 +68,9 @@ public class ToDoDialog extends JDialog {
     /** Lista di checkbox per lo stato di completamento delle attività della checklist. */
     private List<JCheckBox> activityCompletionCheckboxes;
 
+    /** Lista degli ID delle attività della checklist (0 per le righe aggiunte nel dialogo). */
+    private List<Integer> activityIds;
+
 
     /** Pannello scrollabile che contiene la checklist. */
     private JScrollPane checklistScrollPane;
@@ -90,6 +93,7 @@ public class ToDoDialog extends JDialog {
 
         activityNameFields = new ArrayList<>();
         activityCompletionCheckboxes = new ArrayList<>();
+        activityIds = new ArrayList<>();
 
         initComponents();
         layoutComponents();
@@ -236,6 +240,18 @@ public class ToDoDialog extends JDialog {
      * @param isCompleted  Lo stato di completamento iniziale.
      */
     public void addChecklistActivityField(String activityName, boolean isCompleted) {
+        addChecklistActivityField(0, activityName, isCompleted);
+    }
+
+    /**
+     * Aggiunge la riga di un'attività già salvata, ricordandone l'ID: al salvataggio
+     * l'attività viene così aggiornata invece che eliminata e reinserita.
+     *
+     * @param activityId   L'ID dell'attività (0 se non ancora salvata).
+     * @param activityName Il nome dell'attività (se null, campo vuoto).
+     * @param isCompleted  Lo stato di completamento iniziale.
+     */
+    public void addChecklistActivityField(int activityId, String activityName, boolean isCompleted) {
         JPanel activityRow = new JPanel(new BorderLayout());
         JTextField activityField = new JTextField(activityName);
 
@@ -248,6 +264,7 @@ public class ToDoDialog extends JDialog {
 
         activityNameFields.add(activityField);
         activityCompletionCheckboxes.add(activityCheckbox);
+        activityIds.add(activityId);
 
         JButton removeButton = new JButton("X");
         removeButton.setForeground(Color.RED);
@@ -256,8 +273,10 @@ public class ToDoDialog extends JDialog {
         removeButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
         removeButton.addActionListener(e -> {
             checklistPanel.remove(activityRow);
-            activityNameFields.remove(activityField);
-            activityCompletionCheckboxes.remove(activityCheckbox);
+            int indice = activityNameFields.indexOf(activityField);
+            activityNameFields.remove(indice);
+            activityCompletionCheckboxes.remove(indice);
+            activityIds.remove(indice);
             checklistPanel.revalidate();
             checklistPanel.repaint();
         });
@@ -361,6 +380,14 @@ public class ToDoDialog extends JDialog {
         return states;
     }
 
+    /**
+     * Recupera gli ID delle attività della checklist.
+     * @return Una lista di ID corrispondente all'ordine dei nomi (0 per le attività nuove).
+     */
+    public List<Integer> getChecklistActivityIds() {
+        return new ArrayList<>(activityIds);
+    }
+
     /**
      * Pulisce tutti i campi del form, resettandoli allo stato iniziale.
      * Utilizzato quando si apre il dialog per creare un *nuovo* ToDo.
@@ -378,6 +405,7 @@ public class ToDoDialog extends JDialog {
         checklistPanel.removeAll();
         activityNameFields.clear();
         activityCompletionCheckboxes.clear();
+        activityIds.clear();
         checklistPanel.revalidate();
         checklistPanel.repaint();
     }
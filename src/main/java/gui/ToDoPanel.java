@@ -22,9 +22,15 @@ import java.util.logging.Level;
  * <li>Colore di sfondo personalizzato.</li>
  * <li>Lista delle sotto-attività (Checklist) se presenti.</li>
  * </ul>
+ * <p>
+ * Il pannello è riutilizzabile: i componenti vengono creati una sola volta e
+ * {@link #configura(ToDo, Icon, int)} li ricollega a un ToDo diverso. In questo modo
+ * {@link BachecaPanel} può usare un'unica istanza come "timbro" per disegnare tutte le righe
+ * visibili della bacheca, invece di tenere in memoria un pannello per ogni ToDo.
+ * </p>
  *
  * @author marrenza
- * @version 1.0
+ * @version 1.1
  */
 public class ToDoPanel extends JPanel {
     /** Etichetta per il titolo del ToDo. */
@@ -36,7 +42,7 @@ public class ToDoPanel extends JPanel {
     /** Checkbox principale per segnare il ToDo come completato. */
     private JCheckBox completatoCheckbox;
 
-    /** Il modello dati del ToDo associato a questo pannello. */
+    /** Il modello dati del ToDo attualmente visualizzato da questo pannello. */
     private transient ToDo toDo;
 
     /** Pannello destro contenente il menu e la checkbox. */
@@ -45,52 +51,66 @@ public class ToDoPanel extends JPanel {
     /** Pulsante per aprire il menu contestuale (modifica, elimina, sposta). */
     private JButton menuButton;
 
-    /** Lista delle checkbox relative alle sotto-attività della checklist. */
+    /** Area di testo con la descrizione del ToDo. */
+    private JTextArea descArea;
+
+    /** Contenitore dell'anteprima dell'immagine allegata. */
+    private JPanel imgContainer;
+
+    /** Etichetta che mostra l'anteprima dell'immagine allegata. */
+    private JLabel imageLabel;
+
+    /** Pannello che contiene le checkbox delle sotto-attività. */
+    private JPanel subTaskPanel;
+
+    /**
+     * Checkbox relative alle sotto-attività della checklist. Le checkbox vengono riutilizzate tra
+     * un ToDo e l'altro: solo le prime {@code n} (con n = numero di attività) sono visibili.
+     */
     private List<JCheckBox> subTaskCheckboxes;
 
     private static final String FONT_NAME = "Segoe UI";
 
+    /** Dimensioni massime dell'anteprima dell'immagine allegata. */
+    public static final int MAX_LARGHEZZA_ANTEPRIMA = 150;
+    public static final int MAX_ALTEZZA_ANTEPRIMA = 100;
+
+    /** Altezza massima dell'area della descrizione. */
+    private static final int MAX_ALTEZZA_DESCRIZIONE = 60;
+
+    private static final Color BORDO_NORMALE = Color.LIGHT_GRAY;
+    private static final Color BORDO_SELEZIONATO = new Color(11, 0, 128);
+
     private static final Logger LOGGER = Logger.getLogger(ToDoPanel.class.getName());
+
     /**
-     * Costruisce il pannello grafico per un singolo ToDo.
-     * Configura il layout verticale per ospitare eventualmente la checklist sotto il titolo.
-     * Gestisce la logica di abilitazione della checkbox principale: se esiste una checklist
-     * non vuota, la checkbox principale viene disabilitata per forzare l'utente a
-     * completare le sotto-attività.
-     *
-     * @param toDo L'oggetto ToDo da visualizzare.
+     * Costruisce un pannello vuoto, da configurare con {@link #configura(ToDo, Icon, int)}.
+     * Crea una sola volta tutti i componenti che un ToDo può richiedere.
      */
-    public ToDoPanel(ToDo toDo) {
-        this.toDo = toDo;
+    public ToDoPanel() {
         this.subTaskCheckboxes = new ArrayList<>();
 
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
-        setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(Color.LIGHT_GRAY),
-                BorderFactory.createEmptyBorder(5, 10, 5, 10)
-        ));
+        setSelezionato(false);
         setBackground(Color.WHITE);
 
         JPanel mainInfoPanel = new JPanel(new BorderLayout(10, 0));
         mainInfoPanel.setOpaque(false);
-        mainInfoPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 70));
+        mainInfoPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
         JPanel titleContainer = new JPanel();
         titleContainer.setLayout((new BoxLayout(titleContainer, BoxLayout.Y_AXIS)));
         titleContainer.setOpaque(false);
 
-        titleLabel = new JLabel(toDo.getTitolo());
+        titleLabel = new JLabel();
         titleLabel.setFont(new Font(FONT_NAME, Font.BOLD, 14));
         titleLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         titleContainer.add(titleLabel);
 
-        if(toDo.getScadenza() != null) {
-            dateLabel = new JLabel("Scadenza: " + toDo.getScadenza().toString());
-            dateLabel.setFont(new Font(FONT_NAME, Font.PLAIN, 10));
-            dateLabel.setForeground(Color.DARK_GRAY);
-            dateLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-            titleContainer.add(dateLabel);
-        }
+        dateLabel = new JLabel();
+        dateLabel.setFont(new Font(FONT_NAME, Font.PLAIN, 10));
+        dateLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        titleContainer.add(dateLabel);
 
         mainInfoPanel.add(titleContainer, BorderLayout.CENTER);
 
@@ -102,8 +122,7 @@ public class ToDoPanel extends JPanel {
         eastPanel.add(menuButton);
 
         completatoCheckbox = new JCheckBox();
-        completatoCheckbox.setSelected(toDo.getStato() == StatoToDo.COMPLETATO);
-        completatoCheckbox.setBackground(Color.WHITE);
+        completatoCheckbox.setOpaque(false);
         completatoCheckbox.setFocusPainted(false);
         eastPanel.add(completatoCheckbox);
 
@@ -111,74 +130,150 @@ public class ToDoPanel extends JPanel {
 
         add(mainInfoPanel);
 
-        if (toDo.getDescrizione() != null && !toDo.getDescrizione().isEmpty()) {
-            JTextArea descArea = new JTextArea(toDo.getDescrizione());
-            descArea.setFont(new Font(FONT_NAME, Font.ITALIC, 11));
-            descArea.setLineWrap(true);
-            descArea.setWrapStyleWord(true);
-            descArea.setEditable(false);
-            descArea.setOpaque(false);
-            descArea.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
-            descArea.setMaximumSize(new Dimension(Integer.MAX_VALUE, 60));
-            add(descArea);
-        }
+        descArea = new JTextArea();
+        descArea.setFont(new Font(FONT_NAME, Font.ITALIC, 11));
+        descArea.setLineWrap(true);
+        descArea.setWrapStyleWord(true);
+        descArea.setEditable(false);
+        descArea.setOpaque(false);
+        descArea.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+        descArea.setAlignmentX(Component.LEFT_ALIGNMENT);
+        add(descArea);
 
         JPanel contentPanel = new JPanel(new BorderLayout(15, 0));
         contentPanel.setOpaque(false);
         contentPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
-        if (toDo.getImagePath() != null && !toDo.getImagePath().isEmpty()) {
-            try {
-                ImageIcon icon = new ImageIcon(toDo.getImagePath());
-                int maxWidth = 150;
-                int maxHeight = 100;
-                float ratio = (float) icon.getIconWidth() / icon.getIconHeight();
-                int newWidth = maxWidth;
-                int newHeight = (int) (maxHeight / ratio);
-                if (newHeight > maxHeight) {
-                    newHeight = maxHeight;
-                    newWidth = (int) (maxWidth * ratio);
-                }
-                Image scaledImg = icon.getImage().getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-                JLabel imageLabel = new JLabel(new ImageIcon(scaledImg));
-                imageLabel.setBorder(BorderFactory.createLineBorder(Color.GRAY));
-
-                JPanel imgContainer = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
-                imgContainer.setOpaque(false);
-                imgContainer.add(imageLabel);
-                contentPanel.add(imgContainer, BorderLayout.WEST);
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Errore caricamento anteprima immagine", e);
+        imageLabel = new JLabel();
+        imageLabel.setBorder(BorderFactory.createLineBorder(Color.GRAY));
+        imageLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        imageLabel.setFont(new Font(FONT_NAME, Font.PLAIN, 10));
+        // Riquadro di dimensione fissa: l'altezza della riga non cambia quando arriva la miniatura.
+        imageLabel.setPreferredSize(new Dimension(MAX_LARGHEZZA_ANTEPRIMA + 2, MAX_ALTEZZA_ANTEPRIMA + 2));
+        imgContainer = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        imgContainer.setOpaque(false);
+        imgContainer.add(imageLabel);
+        contentPanel.add(imgContainer, BorderLayout.WEST);
+
+        subTaskPanel = new JPanel();
+        subTaskPanel.setLayout(new BoxLayout(subTaskPanel, BoxLayout.Y_AXIS));
+        subTaskPanel.setOpaque(false);
+        contentPanel.add(subTaskPanel, BorderLayout.CENTER);
+
+        add(contentPanel);
+    }
+
+    /**
+     * Costruisce il pannello grafico per un singolo ToDo.
+     *
+     * @param toDo L'oggetto ToDo da visualizzare.
+     */
+    public ToDoPanel(ToDo toDo) {
+        this();
+        configura(toDo, null, 0);
+    }
+
+    /**
+     * Ricollega il pannello a un ToDo, aggiornando testi, visibilità dei componenti, colori e checkbox.
+     * Gestisce la logica di abilitazione della checkbox principale: se esiste una checklist
+     * non vuota, la checkbox principale viene disabilitata per forzare l'utente a
+     * completare le sotto-attività.
+     *
+     * @param toDo      Il ToDo da visualizzare.
+     * @param anteprima L'anteprima dell'immagine allegata (o un segnaposto); ignorata se il ToDo non ha immagine.
+     * @param larghezza La larghezza disponibile, usata per calcolare l'a capo della descrizione;
+     *                  se non positiva la descrizione non viene mandata a capo.
+     */
+    public void configura(ToDo toDo, Icon anteprima, int larghezza) {
+        this.toDo = toDo;
+
+        titleLabel.setText(toDo.getTitolo());
+        dateLabel.setVisible(toDo.getScadenza() != null);
+        if (toDo.getScadenza() != null) {
+            dateLabel.setText("Scadenza: " + toDo.getScadenza().toString());
+        }
+
+        completatoCheckbox.setSelected(toDo.getStato() == StatoToDo.COMPLETATO);
+
+        boolean haDescrizione = toDo.getDescrizione() != null && !toDo.getDescrizione().isEmpty();
+        descArea.setVisible(haDescrizione);
+        if (haDescrizione) {
+            descArea.setText(toDo.getDescrizione());
+            descArea.setPreferredSize(null);
+            Insets bordo = getInsets();
+            int larghezzaTesto = larghezza - bordo.left - bordo.right;
+            if (larghezzaTesto > 0) {
+                descArea.setSize(larghezzaTesto, Short.MAX_VALUE);
             }
+            Dimension pref = descArea.getPreferredSize();
+            descArea.setPreferredSize(new Dimension(pref.width, Math.min(pref.height, MAX_ALTEZZA_DESCRIZIONE)));
         }
 
-        boolean haChecklist = (toDo.getChecklist() != null && !toDo.getChecklist().getAttivita().isEmpty());
-        if (haChecklist) {
-            completatoCheckbox.setEnabled(false);
-            completatoCheckbox.setToolTipText("Completa le sotto-attività per finire questo ToDo");
+        boolean haImmagine = toDo.getImagePath() != null && !toDo.getImagePath().isEmpty();
+        imgContainer.setVisible(haImmagine);
+        if (haImmagine) {
+            imageLabel.setIcon(anteprima);
+            imageLabel.setText(anteprima == null ? "Immagine non trovata." : null);
+        }
 
-            JPanel subTaskPanel = new JPanel();
-            subTaskPanel.setLayout(new BoxLayout(subTaskPanel, BoxLayout.Y_AXIS));
-            subTaskPanel.setOpaque(false);
-            for (Attivita a : toDo.getChecklist().getAttivita()) {
-                JCheckBox subCb = new JCheckBox(a.getNome());
+        List<Attivita> attivita = toDo.getChecklist() != null ? toDo.getChecklist().getAttivita() : List.of();
+        while (subTaskCheckboxes.size() < attivita.size()) {
+            JCheckBox subCb = new JCheckBox();
+            subCb.setOpaque(false);
+            subCb.setFont(new Font(FONT_NAME, Font.PLAIN, 12));
+            subTaskCheckboxes.add(subCb);
+            subTaskPanel.add(subCb);
+        }
+        for (int i = 0; i < subTaskCheckboxes.size(); i++) {
+            JCheckBox subCb = subTaskCheckboxes.get(i);
+            boolean visibile = i < attivita.size();
+            subCb.setVisible(visibile);
+            if (visibile) {
+                Attivita a = attivita.get(i);
+                subCb.setText(a.getNome());
                 subCb.setSelected(a.getStato() == StatoAttivita.COMPLETATO);
-                subCb.setOpaque(false);
-                subCb.setFont(new Font(FONT_NAME, Font.PLAIN, 12));
-                subCb.putClientProperty("ATTIVITA_OBJ", a);
-                subTaskCheckboxes.add(subCb);
-                subTaskPanel.add(subCb);
             }
-            contentPanel.add(subTaskPanel, BorderLayout.CENTER);
+        }
+        subTaskPanel.setVisible(!attivita.isEmpty());
+
+        if (!attivita.isEmpty()) {
+            completatoCheckbox.setEnabled(false);
+            completatoCheckbox.setToolTipText("Completa le sotto-attività per finire questo ToDo");
         } else {
             completatoCheckbox.setEnabled(true);
+            completatoCheckbox.setToolTipText(null);
         }
 
-        add(contentPanel);
         updateColoreSfondo();
         checkAndMarkExpired();
+        if (toDo.isDaConfermare()) {
+            segnaDaConfermare();
+        }
+        invalidaLayout(this);
+    }
 
-        setMaximumSize(new Dimension(Integer.MAX_VALUE, getPreferredSize().height));
+    /**
+     * Invalida ricorsivamente il layout, così che le dimensioni preferite memorizzate dai contenitori
+     * durante la riga precedente non vengano riutilizzate per il nuovo ToDo.
+     */
+    private static void invalidaLayout(Container contenitore) {
+        contenitore.invalidate();
+        for (Component figlio : contenitore.getComponents()) {
+            if (figlio instanceof Container c) {
+                invalidaLayout(c);
+            }
+        }
+    }
+
+    /**
+     * Evidenzia il bordo del pannello quando la riga corrispondente è selezionata.
+     *
+     * @param selezionato {@code true} se la riga è selezionata.
+     */
+    public void setSelezionato(boolean selezionato) {
+        setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(selezionato ? BORDO_SELEZIONATO : BORDO_NORMALE),
+                BorderFactory.createEmptyBorder(5, 10, 5, 10)));
     }
 
     /**
@@ -203,16 +298,30 @@ public class ToDoPanel extends JPanel {
                 toDo.getScadenza().isBefore(LocalDate.now());
         if(scaduto) {
             titleLabel.setForeground(Color.RED);
-            if(dateLabel != null) dateLabel.setForeground(Color.RED);
+            dateLabel.setForeground(Color.RED);
         } else {
             titleLabel.setForeground(Color.BLACK);
-            if(dateLabel != null) dateLabel.setForeground(Color.DARK_GRAY);
+            dateLabel.setForeground(Color.DARK_GRAY);
         }
     }
 
     /**
-     * Applica il colore di sfondo personalizzato al pannello e ai suoi componenti figli.
-     * Decodifica la stringa esadecimale salvata nel modello.
+     * Mostra in grigio, e non modificabile, un ToDo letto dall'istantanea locale
+     * e non ancora confermato dal database.
+     */
+    private void segnaDaConfermare() {
+        titleLabel.setForeground(Color.GRAY);
+        dateLabel.setForeground(Color.GRAY);
+        completatoCheckbox.setEnabled(false);
+        completatoCheckbox.setToolTipText("Sincronizzazione con il database in corso...");
+        for (JCheckBox subCb : subTaskCheckboxes) {
+            subCb.setEnabled(false);
+        }
+    }
+
+    /**
+     * Applica il colore di sfondo personalizzato al pannello.
+     * Decodifica la stringa esadecimale salvata nel modello; i componenti figli sono trasparenti.
      */
     private void updateColoreSfondo() {
         Color bgColor = Color.WHITE;
@@ -225,23 +334,11 @@ public class ToDoPanel extends JPanel {
             }
         }
         setBackground(bgColor);
-        completatoCheckbox.setBackground(bgColor);
-        if (eastPanel != null) {
-            eastPanel.setBackground(bgColor);
-        }
-        for (Component c : getComponents()) {
-            if (c instanceof JPanel panel) {
-                panel.setOpaque(false);
-            }
-            if (c instanceof JTextArea descArea) {
-                descArea.setOpaque(false);
-            }
-        }
     }
 
     /**
      * Restituisce la checkbox principale di completamento.
-     * Utilizzata dal Controller per gestire l'evento di click.
+     * Utilizzata per individuare il componente cliccato in una riga della bacheca.
      * @return Il JCheckBox principale.
      */
     public JCheckBox getCompletatoCheckbox() {
@@ -249,7 +346,7 @@ public class ToDoPanel extends JPanel {
     }
 
     /**
-     * Restituisce l'oggetto ToDo associato a questo pannello.
+     * Restituisce l'oggetto ToDo attualmente visualizzato da questo pannello.
      * @return Il modello ToDo.
      */
     public ToDo getToDo() {
@@ -258,7 +355,7 @@ public class ToDoPanel extends JPanel {
 
     /**
      * Restituisce il pulsante per aprire il menu contestuale.
-     * Utilizzato dal Controller per collegare il popup menu.
+     * Utilizzato per individuare il componente cliccato e posizionare il popup menu.
      * @return Il JButton del menu ("...").
      */
     public JButton getMenuButton() {
@@ -267,10 +364,10 @@ public class ToDoPanel extends JPanel {
 
     /**
      * Restituisce la lista delle checkbox relative alle sotto-attività.
-     * Utilizzata dal Controller per aggiungere i listener di completamento per ogni attività.
+     * Solo le prime {@code n} checkbox, con n pari al numero di attività del ToDo visualizzato, sono in uso.
      * @return Una lista di JCheckBox.
      */
     public List<JCheckBox> getSubTaskCheckboxes() {
         return subTaskCheckboxes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package model;
+
+/**
+ * Elenca i campi persistenti di un {@link ToDo} che possono essere modificati dopo la creazione.
+ * <p>
+ * Il ToDo tiene traccia dei campi cambiati dall'ultimo salvataggio, così il DAO può
+ * aggiornare nel database solo le colonne effettivamente modificate.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public enum CampoToDo {
+    /** Il titolo dell'attività. */
+    TITOLO,
+
+    /** La descrizione dell'attività. */
+    DESCRIZIONE,
+
+    /** La data di scadenza. */
+    SCADENZA,
+
+    /** Il percorso dell'immagine associata. */
+    IMAGE_PATH,
+
+    /** L'URL correlato. */
+    URL,
+
+    /** Il colore di sfondo. */
+    COLORE_SFONDO,
+
+    /** Lo stato di completamento. */
+    STATO,
+
+    /** Il rango nell'ordinamento della bacheca. */
+    POSIZIONE,
+
+    /** La bacheca di appartenenza. */
+    BACHECA
+}
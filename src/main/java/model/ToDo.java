@@ -2,13 +2,26 @@ package model;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Rappresenta un'attività personale (ToDo) all'interno del sistema.
  * Ogni ToDo è caratterizzato da un titolo, una descrizione, una data di scadenza,
  * un'immagine e un collegamento URL. I ToDo possono essere organizzati in bacheche
  * e possono contenere una checklist di sotto-attività.
+ * <p>
+ * I setter dei campi persistenti registrano quali campi sono cambiati dall'ultimo salvataggio
+ * (vedi {@link CampoToDo}): il DAO li usa per aggiornare solo le colonne modificate.
+ * Un ToDo appena costruito non ha campi modificati.
+ * </p>
+ * <p>
+ * Autore e condivisioni possono essere caricati in modo differito: il DAO registra un
+ * caricatore (vedi {@link #setCaricatoreRelazioni(Runnable)}) che viene eseguito al primo accesso
+ * a una delle due relazioni. Chi sa in anticipo di averne bisogno può precaricarle in blocco.
+ * </p>
  * @author marrenza
  * @version 1.0
  */
@@ -58,6 +71,18 @@ public class ToDo {
     /** Lista degli utenti con cui è condiviso il ToDo. */
     private List<Condivisione> condivisioni;
 
+    /** Caricatore differito di autore e condivisioni; {@code null} se sono già disponibili. */
+    private volatile Runnable caricatoreRelazioni;
+
+    /** Indica che il ToDo proviene da un'istantanea locale e non è ancora stato confermato dal database. */
+    private volatile boolean daConfermare;
+
+    /** Versione della riga su cui si basano i valori locali (controllo di concorrenza ottimistico). */
+    private volatile long versione;
+
+    /** Campi modificati e non ancora salvati (accesso sincronizzato: il salvataggio avviene fuori dall'EDT). */
+    private final Set<CampoToDo> campiModificati = EnumSet.noneOf(CampoToDo.class);
+
     /**
      * Costruisce un nuovo oggetto ToDo con i dettagli specificati.
      * Lo stato iniziale viene impostato di default a {@code NON_COMPLETATO}.
@@ -118,7 +143,10 @@ public class ToDo {
      * @param titolo Il nuovo titolo.
      */
     public void setTitolo(String titolo) {
-        this.titolo = titolo;
+        if (!Objects.equals(this.titolo, titolo)) {
+            this.titolo = titolo;
+            segnaModificato(CampoToDo.TITOLO);
+        }
     }
 
     /**
@@ -134,7 +162,10 @@ public class ToDo {
      * @param descrizione La nuova descrizione.
      */
     public void setDescrizione(String descrizione) {
-        this.descrizione = descrizione;
+        if (!Objects.equals(this.descrizione, descrizione)) {
+            this.descrizione = descrizione;
+            segnaModificato(CampoToDo.DESCRIZIONE);
+        }
     }
 
     /**
@@ -150,7 +181,10 @@ public class ToDo {
      * @param scadenza La nuova data di scadenza.
      */
     public void setScadenza(LocalDate scadenza) {
-        this.scadenza = scadenza;
+        if (!Objects.equals(this.scadenza, scadenza)) {
+            this.scadenza = scadenza;
+            segnaModificato(CampoToDo.SCADENZA);
+        }
     }
 
     /**
@@ -166,7 +200,10 @@ public class ToDo {
      * @param imagePath Il percorso del file.
      */
     public void setImagePath(String imagePath) {
-        this.imagePath = imagePath;
+        if (!Objects.equals(this.imagePath, imagePath)) {
+            this.imagePath = imagePath;
+            segnaModificato(CampoToDo.IMAGE_PATH);
+        }
     }
 
     /**
@@ -182,7 +219,10 @@ public class ToDo {
      * @param url Il nuovo URL.
      */
     public void setURL(String url) {
-        this.url = url;
+        if (!Objects.equals(this.url, url)) {
+            this.url = url;
+            segnaModificato(CampoToDo.URL);
+        }
     }
 
     /**
@@ -198,7 +238,10 @@ public class ToDo {
      * @param coloreSfondo Il codice esadecimale del colore.
      */
     public void setColoreSfondo(String coloreSfondo) {
-        this.coloreSfondo = coloreSfondo;
+        if (!Objects.equals(this.coloreSfondo, coloreSfondo)) {
+            this.coloreSfondo = coloreSfondo;
+            segnaModificato(CampoToDo.COLORE_SFONDO);
+        }
     }
 
     /**
@@ -214,7 +257,10 @@ public class ToDo {
      * @param posizione La nuova posizione.
      */
     public void setPosizione(int posizione) {
-        this.posizione = posizione;
+        if (this.posizione != posizione) {
+            this.posizione = posizione;
+            segnaModificato(CampoToDo.POSIZIONE);
+        }
     }
 
     /**
@@ -248,7 +294,7 @@ public class ToDo {
     public void setBacheca(Bacheca bacheca) {
         this.bacheca = bacheca;
         if (bacheca != null) {
-            this.idBacheca = bacheca.getId();
+            setIdBacheca(bacheca.getId());
         }
     }
 
@@ -257,6 +303,7 @@ public class ToDo {
      * @return Una lista di oggetti {@code Condivisione}.
      */
     public List<Condivisione> getCondivisioni() {
+        caricaRelazioni();
         return condivisioni;
     }
 
@@ -281,7 +328,10 @@ public class ToDo {
      * @param stato Il nuovo stato.
      */
     public void setStato(StatoToDo stato) {
-        this.stato = stato;
+        if (!Objects.equals(this.stato, stato)) {
+            this.stato = stato;
+            segnaModificato(CampoToDo.STATO);
+        }
     }
 
     /**
@@ -289,6 +339,7 @@ public class ToDo {
      * @return L'oggetto Utente che ha creato il ToDo.
      */
     public Utente getAutore() {
+        caricaRelazioni();
         return autore;
     }
 
@@ -332,7 +383,142 @@ public class ToDo {
      * @param idBacheca Il nuovo ID della bacheca.
      */
     public void setIdBacheca(int idBacheca) {
-        this.idBacheca = idBacheca;
+        if (this.idBacheca != idBacheca) {
+            this.idBacheca = idBacheca;
+            segnaModificato(CampoToDo.BACHECA);
+        }
+    }
+
+    /**
+     * Indica se il ToDo ha modifiche non ancora salvate.
+     * @return {@code true} se almeno un campo persistente è cambiato dall'ultimo salvataggio.
+     */
+    public boolean isModificato() {
+        synchronized (campiModificati) {
+            return !campiModificati.isEmpty();
+        }
+    }
+
+    /**
+     * Restituisce i campi modificati dall'ultimo salvataggio, senza azzerarli.
+     * @return Una copia dell'insieme dei campi modificati.
+     */
+    public Set<CampoToDo> getCampiModificati() {
+        synchronized (campiModificati) {
+            return campiModificati.isEmpty() ? EnumSet.noneOf(CampoToDo.class) : EnumSet.copyOf(campiModificati);
+        }
+    }
+
+    /**
+     * Restituisce e azzera, in un'unica operazione, i campi modificati dall'ultimo salvataggio.
+     * Va invocato dal DAO subito prima di scrivere: le modifiche successive verranno salvate
+     * dal salvataggio seguente.
+     * @return I campi da salvare (insieme vuoto se non c'è nulla da salvare).
+     */
+    public Set<CampoToDo> prendiCampiModificati() {
+        synchronized (campiModificati) {
+            Set<CampoToDo> campi = campiModificati.isEmpty() ? EnumSet.noneOf(CampoToDo.class) : EnumSet.copyOf(campiModificati);
+            campiModificati.clear();
+            return campi;
+        }
+    }
+
+    /**
+     * Segna di nuovo come modificati dei campi il cui salvataggio non è andato a buon fine.
+     * @param campi I campi ottenuti da {@link #prendiCampiModificati()}.
+     */
+    public void ripristinaCampiModificati(Set<CampoToDo> campi) {
+        synchronized (campiModificati) {
+            campiModificati.addAll(campi);
+        }
+    }
+
+    /**
+     * Segna tutti i campi come salvati (es. dopo il caricamento dal database o un inserimento completo).
+     */
+    public void segnaSalvato() {
+        synchronized (campiModificati) {
+            campiModificati.clear();
+        }
+    }
+
+    /**
+     * Segna come salvato il solo rango, se è ancora quello scritto nel database.
+     * Le posizioni vengono salvate anche senza {@code updateToDo} (vedi {@code ToDoDAO#updatePosizioni}),
+     * quindi il campo va azzerato a parte; se nel frattempo il rango è cambiato resta da salvare.
+     * @param posizione Il rango salvato.
+     */
+    public void segnaPosizioneSalvata(int posizione) {
+        synchronized (campiModificati) {
+            if (this.posizione == posizione) {
+                campiModificati.remove(CampoToDo.POSIZIONE);
+            }
+        }
+    }
+
+    private void segnaModificato(CampoToDo campo) {
+        synchronized (campiModificati) {
+            campiModificati.add(campo);
+        }
+    }
+
+    /**
+     * Registra il caricatore differito di autore e condivisioni, eseguito al primo accesso a una delle due.
+     * Il caricatore deve valorizzarle con {@link #setAutore(Utente)} e {@link #setCondivisioni(List)}
+     * e poi rimuoversi invocando questo metodo con {@code null}.
+     *
+     * @param caricatoreRelazioni Il caricatore, oppure {@code null} se le relazioni sono già valorizzate.
+     */
+    public void setCaricatoreRelazioni(Runnable caricatoreRelazioni) {
+        this.caricatoreRelazioni = caricatoreRelazioni;
+    }
+
+    /**
+     * Indica se autore e condivisioni sono già disponibili senza accedere al database.
+     * @return {@code false} se il loro caricamento è ancora differito.
+     */
+    public boolean isRelazioniCaricate() {
+        return caricatoreRelazioni == null;
+    }
+
+    /**
+     * Indica se il ToDo proviene da un'istantanea locale e attende la conferma del database.
+     * @return {@code true} finché i dati non sono stati riletti dal database.
+     */
+    public boolean isDaConfermare() {
+        return daConfermare;
+    }
+
+    /**
+     * Segna il ToDo come (non più) in attesa di conferma dal database. Non è un campo persistente.
+     * @param daConfermare {@code true} per un ToDo letto dall'istantanea locale.
+     */
+    public void setDaConfermare(boolean daConfermare) {
+        this.daConfermare = daConfermare;
+    }
+
+    /**
+     * Restituisce la versione della riga nel database letta o scritta per ultima.
+     * Un salvataggio riesce solo se nel frattempo nessun altro ha modificato la riga.
+     * @return La versione, oppure 0 se sconosciuta.
+     */
+    public long getVersione() {
+        return versione;
+    }
+
+    /**
+     * Imposta la versione della riga, dopo una lettura o un salvataggio. Non segna il ToDo come modificato.
+     * @param versione La versione restituita dal database.
+     */
+    public void setVersione(long versione) {
+        this.versione = versione;
+    }
+
+    private void caricaRelazioni() {
+        Runnable caricatore = caricatoreRelazioni;
+        if (caricatore != null) {
+            caricatore.run();
+        }
     }
 
     /**
@@ -341,6 +527,7 @@ public class ToDo {
      * @param condivisione L'oggetto condivisione da aggiungere.
      */
     public void aggiungiCondivisione(Condivisione condivisione) {
+        caricaRelazioni();
         if(this.condivisioni == null) {
             this.condivisioni = new ArrayList<>();
         }
@@ -352,6 +539,7 @@ public class ToDo {
      * @param condivisione L'oggetto condivisione da rimuovere.
      */
     public void rimuoviCondivisione(Condivisione condivisione) {
+        caricaRelazioni();
         if(this.condivisioni != null) {
             this.condivisioni.remove(condivisione);
         }
@@ -0,0 +1,81 @@
+-- Ricerca full-text sui ToDo.
+-- La colonna search_vector raccoglie titolo (peso A), descrizione (peso B) e nomi delle
+-- attività della checklist (peso C). Non può essere una colonna GENERATED perché i nomi
+-- delle attività stanno in un'altra tabella: è mantenuta dai trigger definiti qui sotto.
+-- Si usa la configurazione 'simple' (nessuno stemming) così che le ricerche per prefisso
+-- ("prog:*") si comportino in modo prevedibile anche su nomi propri e sigle.
+
+ALTER TABLE todo ADD COLUMN IF NOT EXISTS search_vector tsvector;
+
+CREATE OR REPLACE FUNCTION todo_calcola_search_vector(p_titolo text, p_descrizione text, p_id_todo integer)
+RETURNS tsvector AS $$
+    SELECT setweight(to_tsvector('simple', coalesce(p_titolo, '')), 'A')
+        || setweight(to_tsvector('simple', coalesce(p_descrizione, '')), 'B')
+        || setweight(to_tsvector('simple', coalesce(
+               (SELECT string_agg(a.nome, ' ') FROM attivita a WHERE a.id_todo = p_id_todo), '')), 'C');
+$$ LANGUAGE sql STABLE;
+
+CREATE OR REPLACE FUNCTION todo_search_vector_trigger() RETURNS trigger AS $$
+BEGIN
+    NEW.search_vector := todo_calcola_search_vector(NEW.titolo, NEW.descrizione, NEW.id);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_todo_search_vector ON todo;
+CREATE TRIGGER trg_todo_search_vector
+    BEFORE INSERT OR UPDATE OF titolo, descrizione ON todo
+    FOR EACH ROW EXECUTE FUNCTION todo_search_vector_trigger();
+
+-- Quando cambia la checklist si ricalcola il vettore dei ToDo proprietari.
+-- I trigger sono per istruzione (con tabelle di transizione): una sincronizzazione che inserisce,
+-- aggiorna o elimina molte attività dello stesso ToDo ricalcola il suo vettore una sola volta.
+-- Le tabelle di transizione non sono ammesse con UPDATE OF <colonne>, quindi il trigger di UPDATE
+-- scatta per ogni aggiornamento e considera solo le righe in cui sono cambiati nome o id_todo.
+-- L'UPDATE tocca solo search_vector, quindi non riattiva trg_todo_search_vector.
+CREATE OR REPLACE FUNCTION todo_ricalcola_search_vector(p_ids integer[]) RETURNS void AS $$
+BEGIN
+    IF coalesce(cardinality(p_ids), 0) = 0 THEN
+        RETURN;
+    END IF;
+    UPDATE todo t
+       SET search_vector = todo_calcola_search_vector(t.titolo, t.descrizione, t.id)
+     WHERE t.id = ANY(p_ids);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION attivita_search_vector_trigger() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM todo_ricalcola_search_vector(ARRAY(SELECT DISTINCT id_todo FROM righe_nuove));
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM todo_ricalcola_search_vector(ARRAY(
+            WITH cambiate AS (
+                SELECT v.id_todo AS id_vecchio, n.id_todo AS id_nuovo
+                  FROM righe_vecchie v JOIN righe_nuove n ON n.id = v.id
+                 WHERE v.nome IS DISTINCT FROM n.nome OR v.id_todo IS DISTINCT FROM n.id_todo)
+            SELECT id_vecchio FROM cambiate UNION SELECT id_nuovo FROM cambiate));
+    ELSE
+        PERFORM todo_ricalcola_search_vector(ARRAY(SELECT DISTINCT id_todo FROM righe_vecchie));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_attivita_search_vector ON attivita;
+DROP TRIGGER IF EXISTS trg_attivita_search_vector_ins ON attivita;
+DROP TRIGGER IF EXISTS trg_attivita_search_vector_upd ON attivita;
+DROP TRIGGER IF EXISTS trg_attivita_search_vector_del ON attivita;
+CREATE TRIGGER trg_attivita_search_vector_ins AFTER INSERT ON attivita
+    REFERENCING NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION attivita_search_vector_trigger();
+CREATE TRIGGER trg_attivita_search_vector_upd AFTER UPDATE ON attivita
+    REFERENCING OLD TABLE AS righe_vecchie NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION attivita_search_vector_trigger();
+CREATE TRIGGER trg_attivita_search_vector_del AFTER DELETE ON attivita
+    REFERENCING OLD TABLE AS righe_vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION attivita_search_vector_trigger();
+
+UPDATE todo t SET search_vector = todo_calcola_search_vector(t.titolo, t.descrizione, t.id);
+
+CREATE INDEX IF NOT EXISTS idx_todo_search_vector ON todo USING GIN (search_vector);
@@ -0,0 +1,20 @@
+-- Indici a supporto della query di visibilità dei ToDo di una bacheca
+-- (PostgresToDoDAO.getToDosForBachecaAndUtente), la più eseguita dell'applicazione.
+-- La query è divisa in due rami UNION ALL, ciascuno servito dal proprio indice:
+--   * ToDo creati dall'utente: todo(id_autore, id_bacheca, posizione), che restituisce
+--     le righe già nell'ordine di visualizzazione;
+--   * ToDo condivisi con l'utente: condivisione(id_utente, id_todo), che evita la
+--     lettura completa della tabella delle condivisioni.
+-- bacheca(id_utente, titolo) serve la lettura delle bacheche dell'utente al login
+-- e la ricerca di una bacheca per titolo.
+-- Non si usa CREATE INDEX CONCURRENTLY perché ogni migrazione gira in una transazione.
+
+CREATE INDEX IF NOT EXISTS idx_todo_autore_bacheca_posizione ON todo (id_autore, id_bacheca, posizione);
+
+CREATE INDEX IF NOT EXISTS idx_condivisione_utente_todo ON condivisione (id_utente, id_todo);
+
+CREATE INDEX IF NOT EXISTS idx_bacheca_utente_titolo ON bacheca (id_utente, titolo);
+
+ANALYZE todo;
+ANALYZE condivisione;
+ANALYZE bacheca;
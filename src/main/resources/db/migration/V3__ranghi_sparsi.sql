@@ -0,0 +1,13 @@
+-- Ranghi sparsi per l'ordinamento dei ToDo.
+-- La colonna posizione non è più un indice 0, 1, 2, ... ma un rango: i ToDo di ogni bacheca
+-- vengono rinumerati a intervalli di 1024 mantenendo l'ordine attuale, così che uno spostamento
+-- possa assegnare al ToDo il punto medio tra i vicini e aggiornare una sola riga.
+-- A parità di posizione (possibile con la vecchia numerazione) decide l'ID.
+
+UPDATE todo t
+SET posizione = r.rango
+FROM (
+    SELECT id, (row_number() OVER (PARTITION BY id_bacheca ORDER BY posizione, id) * 1024)::integer AS rango
+    FROM todo
+) r
+WHERE r.id = t.id AND t.posizione IS DISTINCT FROM r.rango;
@@ -0,0 +1,87 @@
+-- Notifiche push delle modifiche ai ToDo tramite LISTEN/NOTIFY.
+-- Ogni istruzione che modifica todo, attivita o condivisione invia sul canale 'todo_modifiche'
+-- gli ID dei ToDo coinvolti, nel formato "<application_name>|id1,id2,...": il client che ha
+-- eseguito la modifica la riconosce dal proprio application_name e la ignora.
+-- I trigger sono per istruzione (con tabelle di transizione), quindi un aggiornamento di massa
+-- produce una sola notifica, divisa in blocchi di 500 ID per restare sotto il limite di 8000 byte
+-- del payload. Le notifiche vengono consegnate solo al commit e quelle identiche, nella stessa
+-- transazione, vengono unite.
+
+CREATE OR REPLACE FUNCTION notifica_todo_modificati(p_ids integer[]) RETURNS void AS $$
+DECLARE
+    v_origine text := coalesce(current_setting('application_name', true), '');
+BEGIN
+    IF p_ids IS NULL THEN
+        RETURN;
+    END IF;
+    FOR i IN 1 .. coalesce(cardinality(p_ids), 0) BY 500 LOOP
+        PERFORM pg_notify('todo_modifiche', v_origine || '|' || array_to_string(p_ids[i : i + 499], ','));
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION todo_notifica_modifiche() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM notifica_todo_modificati(ARRAY(SELECT DISTINCT id FROM righe_nuove));
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM notifica_todo_modificati(ARRAY(SELECT id FROM righe_nuove UNION SELECT id FROM righe_vecchie));
+    ELSE
+        PERFORM notifica_todo_modificati(ARRAY(SELECT DISTINCT id FROM righe_vecchie));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Per attivita e condivisione il ToDo coinvolto è quello della colonna id_todo.
+CREATE OR REPLACE FUNCTION figlio_todo_notifica_modifiche() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM notifica_todo_modificati(ARRAY(SELECT DISTINCT id_todo FROM righe_nuove));
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM notifica_todo_modificati(ARRAY(SELECT id_todo FROM righe_nuove UNION SELECT id_todo FROM righe_vecchie));
+    ELSE
+        PERFORM notifica_todo_modificati(ARRAY(SELECT DISTINCT id_todo FROM righe_vecchie));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_todo_notifica_ins ON todo;
+DROP TRIGGER IF EXISTS trg_todo_notifica_upd ON todo;
+DROP TRIGGER IF EXISTS trg_todo_notifica_del ON todo;
+CREATE TRIGGER trg_todo_notifica_ins AFTER INSERT ON todo
+    REFERENCING NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION todo_notifica_modifiche();
+CREATE TRIGGER trg_todo_notifica_upd AFTER UPDATE ON todo
+    REFERENCING OLD TABLE AS righe_vecchie NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION todo_notifica_modifiche();
+CREATE TRIGGER trg_todo_notifica_del AFTER DELETE ON todo
+    REFERENCING OLD TABLE AS righe_vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION todo_notifica_modifiche();
+
+DROP TRIGGER IF EXISTS trg_attivita_notifica_ins ON attivita;
+DROP TRIGGER IF EXISTS trg_attivita_notifica_upd ON attivita;
+DROP TRIGGER IF EXISTS trg_attivita_notifica_del ON attivita;
+CREATE TRIGGER trg_attivita_notifica_ins AFTER INSERT ON attivita
+    REFERENCING NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION figlio_todo_notifica_modifiche();
+CREATE TRIGGER trg_attivita_notifica_upd AFTER UPDATE ON attivita
+    REFERENCING OLD TABLE AS righe_vecchie NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION figlio_todo_notifica_modifiche();
+CREATE TRIGGER trg_attivita_notifica_del AFTER DELETE ON attivita
+    REFERENCING OLD TABLE AS righe_vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION figlio_todo_notifica_modifiche();
+
+DROP TRIGGER IF EXISTS trg_condivisione_notifica_ins ON condivisione;
+DROP TRIGGER IF EXISTS trg_condivisione_notifica_upd ON condivisione;
+DROP TRIGGER IF EXISTS trg_condivisione_notifica_del ON condivisione;
+CREATE TRIGGER trg_condivisione_notifica_ins AFTER INSERT ON condivisione
+    REFERENCING NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION figlio_todo_notifica_modifiche();
+CREATE TRIGGER trg_condivisione_notifica_upd AFTER UPDATE ON condivisione
+    REFERENCING OLD TABLE AS righe_vecchie NEW TABLE AS righe_nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION figlio_todo_notifica_modifiche();
+CREATE TRIGGER trg_condivisione_notifica_del AFTER DELETE ON condivisione
+    REFERENCING OLD TABLE AS righe_vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION figlio_todo_notifica_modifiche();
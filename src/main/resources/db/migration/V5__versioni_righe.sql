@@ -0,0 +1,86 @@
+-- Versioni di riga e lapidi per la sincronizzazione incrementale (ToDoDAO.getModificheDal).
+-- todo, attivita e condivisione ricevono due colonne mantenute da trigger:
+--   * versione: l'ID (64 bit, mai riutilizzato) della transazione che ha scritto la riga per ultima;
+--   * aggiornato_il: l'istante dell'ultima scrittura, a scopo diagnostico.
+-- Le eliminazioni lasciano una lapide in todo_eliminazioni, con la stessa versione.
+-- Il client chiede le righe con versione >= del proprio watermark e come nuovo watermark riceve
+-- l'xmin della propria istantanea: le transazioni precedenti sono tutte concluse e visibili, quelle
+-- successive (anche se ancora in corso) verranno lette alla sincronizzazione seguente. Un numero di
+-- sequenza assegnato alla scrittura non basterebbe, perché le transazioni fanno commit in ordine diverso.
+-- Le righe esistenti partono da versione 0, quindi sono incluse da una sincronizzazione dal watermark 0.
+-- Su todo la versione cambia solo quando si scrivono i dati dell'utente: non per il rango (posizione),
+-- riscritto in blocco dai riordini e dai ribilanciamenti, né per search_vector, che il trigger della
+-- migrazione V1 aggiorna a ogni modifica della checklist. Altrimenti quelle scritture renderebbero
+-- obsoleta la versione in mano al client (ToDoDAO.updateToDo la usa come controllo di concorrenza)
+-- e farebbero rileggere ai client interi ToDo per un semplice riordino.
+-- Richiede PostgreSQL 13 (pg_current_xact_id).
+
+ALTER TABLE todo ADD COLUMN IF NOT EXISTS versione bigint NOT NULL DEFAULT 0;
+ALTER TABLE todo ADD COLUMN IF NOT EXISTS aggiornato_il timestamptz NOT NULL DEFAULT now();
+ALTER TABLE attivita ADD COLUMN IF NOT EXISTS versione bigint NOT NULL DEFAULT 0;
+ALTER TABLE attivita ADD COLUMN IF NOT EXISTS aggiornato_il timestamptz NOT NULL DEFAULT now();
+ALTER TABLE condivisione ADD COLUMN IF NOT EXISTS versione bigint NOT NULL DEFAULT 0;
+ALTER TABLE condivisione ADD COLUMN IF NOT EXISTS aggiornato_il timestamptz NOT NULL DEFAULT now();
+
+CREATE INDEX IF NOT EXISTS idx_todo_versione ON todo (versione);
+CREATE INDEX IF NOT EXISTS idx_attivita_versione ON attivita (versione);
+CREATE INDEX IF NOT EXISTS idx_condivisione_versione ON condivisione (versione);
+
+-- tabella: 'todo', 'attivita' o 'condivisione'; id_utente è valorizzato solo per le condivisioni.
+CREATE TABLE IF NOT EXISTS todo_eliminazioni (
+    id           bigserial PRIMARY KEY,
+    tabella      text        NOT NULL,
+    id_todo      integer     NOT NULL,
+    id_utente    integer,
+    versione     bigint      NOT NULL DEFAULT (pg_current_xact_id()::text::bigint),
+    eliminato_il timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_todo_eliminazioni_versione ON todo_eliminazioni (versione);
+
+CREATE OR REPLACE FUNCTION imposta_versione_riga() RETURNS trigger AS $$
+BEGIN
+    NEW.versione := pg_current_xact_id()::text::bigint;
+    NEW.aggiornato_il := now();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION registra_eliminazioni() RETURNS trigger AS $$
+BEGIN
+    IF TG_TABLE_NAME = 'todo' THEN
+        INSERT INTO todo_eliminazioni (tabella, id_todo) SELECT 'todo', id FROM righe_vecchie;
+    ELSIF TG_TABLE_NAME = 'attivita' THEN
+        INSERT INTO todo_eliminazioni (tabella, id_todo) SELECT DISTINCT 'attivita', id_todo FROM righe_vecchie;
+    ELSE
+        INSERT INTO todo_eliminazioni (tabella, id_todo, id_utente) SELECT 'condivisione', id_todo, id_utente FROM righe_vecchie;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_todo_versione ON todo;
+DROP TRIGGER IF EXISTS trg_todo_eliminazioni ON todo;
+CREATE TRIGGER trg_todo_versione
+    BEFORE INSERT OR UPDATE OF titolo, descrizione, scadenza, image_path, url, colore_sfondo, stato, id_autore, id_bacheca
+    ON todo
+    FOR EACH ROW EXECUTE FUNCTION imposta_versione_riga();
+CREATE TRIGGER trg_todo_eliminazioni AFTER DELETE ON todo
+    REFERENCING OLD TABLE AS righe_vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION registra_eliminazioni();
+
+DROP TRIGGER IF EXISTS trg_attivita_versione ON attivita;
+DROP TRIGGER IF EXISTS trg_attivita_eliminazioni ON attivita;
+CREATE TRIGGER trg_attivita_versione BEFORE INSERT OR UPDATE ON attivita
+    FOR EACH ROW EXECUTE FUNCTION imposta_versione_riga();
+CREATE TRIGGER trg_attivita_eliminazioni AFTER DELETE ON attivita
+    REFERENCING OLD TABLE AS righe_vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION registra_eliminazioni();
+
+DROP TRIGGER IF EXISTS trg_condivisione_versione ON condivisione;
+DROP TRIGGER IF EXISTS trg_condivisione_eliminazioni ON condivisione;
+CREATE TRIGGER trg_condivisione_versione BEFORE INSERT OR UPDATE ON condivisione
+    FOR EACH ROW EXECUTE FUNCTION imposta_versione_riga();
+CREATE TRIGGER trg_condivisione_eliminazioni AFTER DELETE ON condivisione
+    REFERENCING OLD TABLE AS righe_vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION registra_eliminazioni();
@@ -0,0 +1,102 @@
+package controller;
+
+import dao.QueryRicerca;
+import model.Attivita;
+import model.Checklist;
+import model.ToDo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test dell'indice invertito in memoria {@link IndiceRicerca}.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+class IndiceRicercaTest {
+
+    private IndiceRicerca indice;
+    private ToDo relazione;
+    private ToDo spesa;
+    private ToDo progetto;
+
+    private static ToDo nuovoToDo(int id, String titolo, String descrizione, String... attivita) {
+        ToDo todo = new ToDo(id, titolo, descrizione, LocalDate.of(2025, 6, id), null, null, null, id * 1024, null);
+        Checklist checklist = new Checklist();
+        for (String nome : attivita) {
+            checklist.aggiungiAttivita(new Attivita(nome));
+        }
+        todo.setChecklist(checklist);
+        return todo;
+    }
+
+    private List<ToDo> cerca(String testo) {
+        return indice.cerca(QueryRicerca.analizza(testo), 10);
+    }
+
+    @BeforeEach
+    void popola() {
+        indice = new IndiceRicerca();
+        relazione = nuovoToDo(1, "Relazione finale", "Consegnare al professore", "Rileggere");
+        spesa = nuovoToDo(2, "Spesa", "Latte e pane", "Relazione col fornitore");
+        progetto = nuovoToDo(3, "Progetto", "Scrivere la relazione", "Programmare la demo");
+        indice.ricostruisci(List.of(relazione, spesa, progetto));
+    }
+
+    @Test
+    void iRisultatiConIlTermineNelTitoloVengonoPrima() {
+        List<ToDo> trovati = cerca("relazione");
+
+        assertEquals(relazione, trovati.get(0));
+        assertEquals(List.of(progetto, spesa), trovati.subList(1, 3));
+    }
+
+    @Test
+    void tuttiITerminiDevonoEssereTrovati() {
+        assertEquals(List.of(progetto), cerca("relazione demo"));
+        assertTrue(cerca("relazione inesistente").isEmpty());
+    }
+
+    @Test
+    void prefissiEFrasi() {
+        assertEquals(List.of(progetto), cerca("progr*"));
+        assertEquals(List.of(progetto, relazione), cerca("pro*"));
+        assertEquals(List.of(relazione), cerca("\"relazione finale\""));
+        assertEquals(List.of(spesa), cerca("\"col forn*\""));
+    }
+
+    @Test
+    void unaFraseNonAttraversaDueCampi() {
+        // "finale" chiude il titolo e "consegnare" apre la descrizione dello stesso ToDo.
+        assertTrue(cerca("\"finale consegnare\"").isEmpty());
+    }
+
+    @Test
+    void siCercaAncheNellaDataDiScadenza() {
+        assertEquals(List.of(spesa), cerca("\"2025-06-02\""));
+    }
+
+    @Test
+    void indicizzaSostituisceERimuoviElimina() {
+        spesa.setTitolo("Acquisti");
+        indice.indicizza(spesa);
+        assertTrue(cerca("spesa").isEmpty());
+        assertEquals(List.of(spesa), cerca("acquisti"));
+
+        indice.rimuovi(spesa.getId());
+        assertTrue(cerca("acquisti").isEmpty());
+        assertEquals(2, indice.size());
+    }
+
+    @Test
+    void ilLimiteTieneIMiglioriRisultati() {
+        assertEquals(List.of(relazione), indice.cerca(QueryRicerca.analizza("relazione"), 1));
+        assertTrue(indice.cerca(QueryRicerca.analizza(""), 10).isEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+package controller;
+
+import model.ToDo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test del calcolo dei ranghi sparsi di {@link OrdinamentoToDo}.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+class OrdinamentoToDoTest {
+
+    private static ToDo conRango(int id, int posizione) {
+        ToDo todo = new ToDo(id, "ToDo " + id, "", null, null, null, null, posizione, null);
+        todo.segnaSalvato();
+        return todo;
+    }
+
+    @Test
+    void inUnaBachecaVuotaIlPrimoRangoEUnIntervallo() {
+        assertEquals(OptionalInt.of(OrdinamentoToDo.INTERVALLO), OrdinamentoToDo.rangoInCoda(List.of()));
+    }
+
+    @Test
+    void inCodaSiAggiungeUnIntervalloDopoLUltimo() {
+        List<ToDo> ordinati = List.of(conRango(1, 1024), conRango(2, 2048));
+
+        assertEquals(OptionalInt.of(3072), OrdinamentoToDo.rangoInCoda(ordinati));
+    }
+
+    @Test
+    void traDueViciniSiUsaIlPuntoMedio() {
+        assertEquals(OptionalInt.of(1536), OrdinamentoToDo.rangoTra(conRango(1, 1024), conRango(2, 2048)));
+        assertEquals(OptionalInt.of(0), OrdinamentoToDo.rangoTra(null, conRango(1, 1024)));
+    }
+
+    @Test
+    void senzaSpazioTraIViciniServeUnRibilanciamento() {
+        assertTrue(OrdinamentoToDo.rangoTra(conRango(1, 1024), conRango(2, 1025)).isEmpty());
+        assertTrue(OrdinamentoToDo.rangoTra(conRango(1, 1024), conRango(2, 1024)).isEmpty());
+    }
+
+    @Test
+    void aiLimitiDegliInteriNonSiVaInOverflow() {
+        assertTrue(OrdinamentoToDo.rangoInCoda(List.of(conRango(1, Integer.MAX_VALUE - 1))).isEmpty());
+        assertTrue(OrdinamentoToDo.rangoTra(null, conRango(1, Integer.MIN_VALUE + 1)).isEmpty());
+    }
+
+    @Test
+    void spostamentiRipetutiNelloStessoPuntoEsaurisconoLoSpazio() {
+        ToDo prima = conRango(1, 1024);
+        ToDo dopo = conRango(2, 2048);
+        int spostamenti = 0;
+        OptionalInt rango;
+        while ((rango = OrdinamentoToDo.rangoTra(prima, dopo)).isPresent()) {
+            dopo = conRango(3, rango.getAsInt());
+            spostamenti++;
+        }
+        // Ogni spostamento dimezza l'intervallo: 1024 = 2^10.
+        assertEquals(10, spostamenti);
+    }
+
+    @Test
+    void ribilanciaRestituisceSoloIRanghiCambiati() {
+        List<ToDo> ordinati = new ArrayList<>(List.of(conRango(7, 1024), conRango(8, 1030), conRango(9, 1031)));
+
+        Map<Integer, Integer> modificati = OrdinamentoToDo.ribilancia(ordinati);
+
+        assertEquals(Map.of(8, 2048, 9, 3072), modificati);
+        assertEquals(List.of(1024, 2048, 3072), ordinati.stream().map(ToDo::getPosizione).toList());
+    }
+}
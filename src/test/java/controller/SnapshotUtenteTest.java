@@ -0,0 +1,132 @@
+package controller;
+
+import model.Attivita;
+import model.Bacheca;
+import model.Checklist;
+import model.StatoAttivita;
+import model.StatoToDo;
+import model.TitoloBacheca;
+import model.ToDo;
+import model.Utente;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test della codifica e della lettura dell'istantanea su disco {@link SnapshotUtente}.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+class SnapshotUtenteTest {
+
+    @TempDir
+    Path cartella;
+
+    private static Utente utenteConBacheche() {
+        Utente utente = new Utente(7, "Mario", "Rossi", "mrossi", "segreta");
+        Bacheca lavoro = new Bacheca(70, TitoloBacheca.LAVORO, "Ufficio", 7);
+        ToDo completo = new ToDo(100, "Relazione è pronta", "Descrizione", LocalDate.of(2025, 5, 20),
+                "/img/a.png", "https://example.org", "#FF0000", 2048, utente);
+        completo.setStato(StatoToDo.COMPLETATO);
+        Checklist checklist = new Checklist();
+        checklist.setAttivita(List.of(new Attivita(1000, 100, "Scrivere", StatoAttivita.COMPLETATO),
+                new Attivita(1001, 100, "Rileggere", StatoAttivita.NON_COMPLETATO)));
+        completo.setChecklist(checklist);
+        lavoro.aggiungiToDo(completo);
+        lavoro.aggiungiToDo(new ToDo(101, "Senza campi", null, null, null, null, null, 3072, utente));
+        utente.getBacheche().add(lavoro);
+        utente.getBacheche().add(new Bacheca(71, TitoloBacheca.TEMPO_LIBERO, null, 7));
+        return utente;
+    }
+
+    @Test
+    void codificaELetturaRestituisconoGliStessiDati() throws IOException {
+        Utente utente = utenteConBacheche();
+        Path file = SnapshotUtente.percorso(cartella, utente.getId());
+        SnapshotUtente.scrivi(file, SnapshotUtente.codifica(utente));
+
+        List<Bacheca> lette = SnapshotUtente.leggi(file, utente);
+
+        assertEquals(2, lette.size());
+        Bacheca lavoro = lette.get(0);
+        assertEquals(70, lavoro.getId());
+        assertEquals(TitoloBacheca.LAVORO, lavoro.getTitolo());
+        assertEquals("Ufficio", lavoro.getDescrizione());
+        assertSame(utente, lavoro.getProprietario());
+        assertNull(lette.get(1).getDescrizione());
+        assertTrue(lette.get(1).getToDoList().isEmpty());
+
+        ToDo completo = lavoro.getToDoList().get(0);
+        assertEquals("Relazione è pronta", completo.getTitolo());
+        assertEquals(LocalDate.of(2025, 5, 20), completo.getScadenza());
+        assertEquals("/img/a.png", completo.getImagePath());
+        assertEquals("https://example.org", completo.getURL());
+        assertEquals("#FF0000", completo.getColoreSfondo());
+        assertEquals(StatoToDo.COMPLETATO, completo.getStato());
+        assertEquals(2048, completo.getPosizione());
+        assertEquals(7, completo.getIdAutore());
+        assertEquals(70, completo.getIdBacheca());
+        assertSame(lavoro, completo.getBacheca());
+        assertTrue(completo.isDaConfermare());
+        assertTrue(completo.getCampiModificati().isEmpty());
+        assertEquals(List.of("1000:Scrivere:COMPLETATO", "1001:Rileggere:NON_COMPLETATO"),
+                completo.getChecklist().getAttivita().stream()
+                        .map(a -> a.getId() + ":" + a.getNome() + ":" + a.getStato()).toList());
+
+        ToDo vuoto = lavoro.getToDoList().get(1);
+        assertNull(vuoto.getDescrizione());
+        assertNull(vuoto.getScadenza());
+        assertTrue(vuoto.getChecklist().getAttivita().isEmpty());
+    }
+
+    @Test
+    void lIstantaneaDiUnAltroUtenteVieneRifiutata() throws IOException {
+        Utente utente = utenteConBacheche();
+        Path file = SnapshotUtente.percorso(cartella, utente.getId());
+        SnapshotUtente.scrivi(file, SnapshotUtente.codifica(utente));
+
+        assertThrows(IOException.class, () -> SnapshotUtente.leggi(file, new Utente(8, "Anna", "Bianchi", "abianchi", "x")));
+    }
+
+    @Test
+    void unFileTroncatoORovinatoVieneRifiutato() throws IOException {
+        Utente utente = utenteConBacheche();
+        byte[] dati = SnapshotUtente.codifica(utente);
+        Path troncato = cartella.resolve("troncato.bin");
+        Files.write(troncato, Arrays.copyOf(dati, dati.length - 10));
+        Path rovinato = cartella.resolve("rovinato.bin");
+        byte[] copia = dati.clone();
+        copia[0] ^= 0x7F;
+        Files.write(rovinato, copia);
+
+        assertThrows(IOException.class, () -> SnapshotUtente.leggi(troncato, utente));
+        assertThrows(IOException.class, () -> SnapshotUtente.leggi(rovinato, utente));
+    }
+
+    @Test
+    void laScritturaSostituisceLIstantaneaSenzaLasciareTemporanei() throws IOException {
+        Utente utente = utenteConBacheche();
+        Path file = SnapshotUtente.percorso(cartella.resolve("sotto"), utente.getId());
+        SnapshotUtente.scrivi(file, SnapshotUtente.codifica(utente));
+        utente.getBacheche().remove(1);
+        SnapshotUtente.scrivi(file, SnapshotUtente.codifica(utente));
+
+        assertEquals(1, SnapshotUtente.leggi(file, utente).size());
+        try (var contenuto = Files.list(file.getParent())) {
+            assertEquals(List.of(file), contenuto.toList());
+        }
+    }
+}
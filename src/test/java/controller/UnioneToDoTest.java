@@ -0,0 +1,143 @@
+package controller;
+
+import model.CampoToDo;
+import model.StatoToDo;
+import model.ToDo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test dell'unione a tre vie di {@link UnioneToDo}.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+class UnioneToDoTest {
+
+    private static ToDo nuovoToDo() {
+        ToDo todo = new ToDo(1, "Relazione", "Bozza", LocalDate.of(2025, 3, 1), null, null, "#FFFFFF", 1024, null);
+        todo.setIdBacheca(10);
+        todo.setVersione(5);
+        todo.segnaSalvato();
+        return todo;
+    }
+
+    /** La riga salvata nel frattempo da un altro utente: parte dagli stessi valori, con una versione più recente. */
+    private static ToDo attuale() {
+        ToDo attuale = nuovoToDo();
+        attuale.setVersione(6);
+        return attuale;
+    }
+
+    @Test
+    void campiCambiatiDaUnaSolaParteSiUnisconoSenzaConflitti() {
+        ToDo locale = nuovoToDo();
+        Map<CampoToDo, Object> base = UnioneToDo.fotografa(locale);
+        locale.setTitolo("Relazione finale");
+        ToDo attuale = attuale();
+        attuale.setDescrizione("Rivista dal collega");
+
+        Set<CampoToDo> conflitti = UnioneToDo.unisci(locale, locale.getCampiModificati(), base, attuale);
+
+        assertTrue(conflitti.isEmpty());
+        assertEquals("Relazione finale", locale.getTitolo());
+        assertEquals("Rivista dal collega", locale.getDescrizione());
+        assertEquals(EnumSet.of(CampoToDo.TITOLO), locale.getCampiModificati());
+        assertEquals(6, locale.getVersione());
+    }
+
+    @Test
+    void stessoValoreDaEntrambeLePartiNonVaRiscritto() {
+        ToDo locale = nuovoToDo();
+        Map<CampoToDo, Object> base = UnioneToDo.fotografa(locale);
+        locale.setStato(StatoToDo.COMPLETATO);
+        ToDo attuale = attuale();
+        attuale.setStato(StatoToDo.COMPLETATO);
+
+        Set<CampoToDo> conflitti = UnioneToDo.unisci(locale, locale.getCampiModificati(), base, attuale);
+
+        assertTrue(conflitti.isEmpty());
+        assertTrue(locale.getCampiModificati().isEmpty());
+    }
+
+    @Test
+    void valoriDiversiDaEntrambeLePartiSonoInConflitto() {
+        ToDo locale = nuovoToDo();
+        Map<CampoToDo, Object> base = UnioneToDo.fotografa(locale);
+        locale.setTitolo("Mio titolo");
+        ToDo attuale = attuale();
+        attuale.setTitolo("Suo titolo");
+
+        Set<CampoToDo> conflitti = UnioneToDo.unisci(locale, locale.getCampiModificati(), base, attuale);
+
+        assertEquals(EnumSet.of(CampoToDo.TITOLO), conflitti);
+        assertEquals("Mio titolo", locale.getTitolo());
+        assertEquals(EnumSet.of(CampoToDo.TITOLO), locale.getCampiModificati());
+    }
+
+    @Test
+    void senzaBaseValeSempreLaModificaLocale() {
+        ToDo locale = nuovoToDo();
+        locale.setTitolo("Mio titolo");
+        ToDo attuale = attuale();
+        attuale.setTitolo("Suo titolo");
+
+        Set<CampoToDo> conflitti = UnioneToDo.unisci(locale, locale.getCampiModificati(), null, attuale);
+
+        assertTrue(conflitti.isEmpty());
+        assertEquals("Mio titolo", locale.getTitolo());
+        assertEquals(EnumSet.of(CampoToDo.TITOLO), locale.getCampiModificati());
+    }
+
+    @Test
+    void bachecaEPosizioneNonSonoMaiInConflitto() {
+        ToDo locale = nuovoToDo();
+        Map<CampoToDo, Object> base = UnioneToDo.fotografa(locale);
+        locale.setIdBacheca(20);
+        locale.setPosizione(512);
+        ToDo attuale = attuale();
+        attuale.setIdBacheca(30);
+        attuale.setPosizione(2048);
+
+        Set<CampoToDo> conflitti = UnioneToDo.unisci(locale, locale.getCampiModificati(), base, attuale);
+
+        assertTrue(conflitti.isEmpty());
+        assertEquals(20, locale.getIdBacheca());
+        assertEquals(512, locale.getPosizione());
+        assertEquals(EnumSet.of(CampoToDo.BACHECA, CampoToDo.POSIZIONE), locale.getCampiModificati());
+    }
+
+    @Test
+    void adottaPrendeIValoriAttualiENonLiRiscrive() {
+        ToDo locale = nuovoToDo();
+        Map<CampoToDo, Object> base = UnioneToDo.fotografa(locale);
+        locale.setTitolo("Mio titolo");
+        locale.setDescrizione("Mia descrizione");
+        ToDo attuale = attuale();
+        attuale.setTitolo("Suo titolo");
+        Set<CampoToDo> conflitti = UnioneToDo.unisci(locale, locale.getCampiModificati(), base, attuale);
+
+        UnioneToDo.adotta(locale, conflitti, attuale);
+
+        assertEquals("Suo titolo", locale.getTitolo());
+        assertEquals("Mia descrizione", locale.getDescrizione());
+        assertEquals(EnumSet.of(CampoToDo.DESCRIZIONE), locale.getCampiModificati());
+    }
+
+    @Test
+    void descriviMostraIValoriVuoti() {
+        ToDo todo = nuovoToDo();
+        todo.setURL(" ");
+
+        assertEquals("(vuoto)", UnioneToDo.descrivi(todo, CampoToDo.URL));
+        assertEquals("(vuoto)", UnioneToDo.descrivi(todo, CampoToDo.IMAGE_PATH));
+        assertEquals("2025-03-01", UnioneToDo.descrivi(todo, CampoToDo.SCADENZA));
+    }
+}
@@ -0,0 +1,209 @@
+package dao;
+
+import dao.memoryimpl.DatabaseInMemoria;
+import dao.memoryimpl.MemoriaAttivitaDAO;
+import dao.memoryimpl.MemoriaBachecaDAO;
+import dao.memoryimpl.MemoriaCondivisioneDAO;
+import dao.memoryimpl.MemoriaToDoDAO;
+import dao.memoryimpl.MemoriaUtenteDAO;
+import dao.postgresimpl.PostgresAttivitaDAO;
+import dao.postgresimpl.PostgresBachecaDAO;
+import dao.postgresimpl.PostgresCondivisioneDAO;
+import dao.postgresimpl.PostgresToDoDAO;
+import dao.postgresimpl.PostgresUtenteDAO;
+import database.ConnectionPool;
+import database.PostgresDiProva;
+import model.Bacheca;
+import model.Condivisione;
+import model.StatoToDo;
+import model.TitoloBacheca;
+import model.ToDo;
+import model.Utente;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Test di parità tra i DAO in memoria e quelli PostgreSQL: le stesse operazioni, applicate ad entrambi
+ * attraverso le interfacce, devono produrre gli stessi ToDo visibili, nello stesso ordine, per ogni utente.
+ * <p>
+ * Gli ID generati possono differire tra i due archivi, per cui i ToDo vengono confrontati per titolo
+ * (unico nello scenario) e le bacheche per titolo e proprietario.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ParitaVisibilitaTest {
+
+    private static final LocalDate OGGI = LocalDate.now();
+    private static final LocalDate DOMANI = OGGI.plusDays(1);
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = PostgresDiProva.nuovoContenitore();
+
+    private static ConnectionPool pool;
+    private static Archivio memoria;
+    private static Archivio postgres;
+
+    /** I quattro DAO di un archivio, più gli ID che vi hanno ricevuto utenti e bacheche dello scenario. */
+    private record Archivio(UtenteDAO utenti, BachecaDAO bacheche, ToDoDAO todos, CondivisioneDAO condivisioni,
+                            Map<String, Utente> utentiPerLogin, Map<String, Integer> idBacheche,
+                            Map<String, Integer> idToDo) {
+
+        Archivio(UtenteDAO utenti, BachecaDAO bacheche, ToDoDAO todos, CondivisioneDAO condivisioni) {
+            this(utenti, bacheche, todos, condivisioni, new HashMap<>(), new HashMap<>(), new HashMap<>());
+        }
+
+        void utente(String login) {
+            Utente utente = new Utente(login, login, login, "segreta");
+            utenti.addUtente(utente);
+            utentiPerLogin.put(login, utente);
+        }
+
+        void bacheca(String login, TitoloBacheca titolo) {
+            Bacheca bacheca = new Bacheca(0, titolo, "", utentiPerLogin.get(login).getId());
+            bacheche.addBacheca(bacheca);
+            idBacheche.put(login + "/" + titolo, bacheca.getId());
+        }
+
+        void todo(String login, TitoloBacheca bacheca, String titolo, String descrizione, LocalDate scadenza,
+                  int posizione, StatoToDo stato) {
+            ToDo todo = new ToDo(0, titolo, descrizione, scadenza, null, null, null, posizione, utentiPerLogin.get(login));
+            todo.setIdBacheca(idBacheche.get(login + "/" + bacheca));
+            todo.setStato(stato);
+            todos.addToDo(todo);
+            idToDo.put(titolo, todo.getId());
+        }
+
+        void condividi(String titolo, String login) {
+            condivisioni.addCondivisione(new Condivisione(utentiPerLogin.get(login).getId(), idToDo.get(titolo)));
+        }
+
+        int id(String login) {
+            return utentiPerLogin.get(login).getId();
+        }
+    }
+
+    @BeforeAll
+    static void popola() throws Exception {
+        pool = PostgresDiProva.preparaSchema(POSTGRES);
+        UtenteDAO utentiPostgres = new PostgresUtenteDAO(pool);
+        CondivisioneDAO condivisioniPostgres = new PostgresCondivisioneDAO(pool);
+        postgres = new Archivio(utentiPostgres, new PostgresBachecaDAO(pool),
+                new PostgresToDoDAO(pool, utentiPostgres, new PostgresAttivitaDAO(pool), condivisioniPostgres),
+                condivisioniPostgres);
+
+        DatabaseInMemoria db = new DatabaseInMemoria();
+        UtenteDAO utentiMemoria = new MemoriaUtenteDAO(db);
+        CondivisioneDAO condivisioniMemoria = new MemoriaCondivisioneDAO(db);
+        memoria = new Archivio(utentiMemoria, new MemoriaBachecaDAO(db),
+                new MemoriaToDoDAO(db, utentiMemoria, new MemoriaAttivitaDAO(db), condivisioniMemoria),
+                condivisioniMemoria);
+
+        for (Archivio archivio : List.of(postgres, memoria)) {
+            popola(archivio);
+        }
+    }
+
+    /**
+     * Lo scenario: ToDo propri e condivisi, in bacheche con lo stesso titolo oppure senza corrispondente
+     * per il destinatario, con scadenze passate, odierne, future e assenti, completati e non.
+     */
+    private static void popola(Archivio a) {
+        for (String login : List.of("anna", "bruno", "carla")) {
+            a.utente(login);
+            a.bacheca(login, TitoloBacheca.LAVORO);
+        }
+        a.bacheca("anna", TitoloBacheca.UNIVERSITA);
+        a.bacheca("bruno", TitoloBacheca.UNIVERSITA);
+
+        a.todo("anna", TitoloBacheca.LAVORO, "Relazione trimestrale", "Bilancio", DOMANI, 1024, StatoToDo.NON_COMPLETATO);
+        a.todo("anna", TitoloBacheca.LAVORO, "Ordinare toner", null, null, 2048, StatoToDo.NON_COMPLETATO);
+        a.todo("anna", TitoloBacheca.UNIVERSITA, "Esame di analisi", "Lavoro di gruppo", OGGI.minusDays(2), 1024,
+                StatoToDo.NON_COMPLETATO);
+        a.todo("anna", TitoloBacheca.UNIVERSITA, "Tesina consegnata", null, OGGI.minusDays(5), 2048, StatoToDo.COMPLETATO);
+        a.todo("bruno", TitoloBacheca.LAVORO, "Riunione di lavoro", "Sala grande", DOMANI, 512, StatoToDo.NON_COMPLETATO);
+        a.todo("bruno", TitoloBacheca.LAVORO, "Preventivo fornitore", null, OGGI, 1536, StatoToDo.NON_COMPLETATO);
+        a.todo("bruno", TitoloBacheca.UNIVERSITA, "Laboratorio", "Lavoro al banco", OGGI, 1024, StatoToDo.NON_COMPLETATO);
+        a.todo("carla", TitoloBacheca.LAVORO, "Inventario", null, OGGI.minusDays(1), 1024, StatoToDo.NON_COMPLETATO);
+
+        a.condividi("Riunione di lavoro", "anna");
+        a.condividi("Riunione di lavoro", "carla");
+        a.condividi("Laboratorio", "carla");
+        a.condividi("Laboratorio", "anna");
+        a.condividi("Inventario", "bruno");
+        a.condividi("Relazione trimestrale", "carla");
+    }
+
+    @AfterAll
+    static void chiudi() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private static List<String> titoli(List<ToDo> todos) {
+        return todos.stream().map(ToDo::getTitolo).toList();
+    }
+
+    /** Tutte le viste di un utente, ciascuna come lista ordinata di titoli. */
+    private static Map<String, List<String>> viste(Archivio a, String login) {
+        int id = a.id(login);
+        Map<String, List<String>> viste = new HashMap<>();
+        try (Stream<ToDo> visibili = a.todos().streamToDosVisibili(id)) {
+            viste.put("visibili", titoli(visibili.toList()));
+        }
+        List<ToDo> conForEach = new ArrayList<>();
+        a.todos().forEachToDoVisibile(id, conForEach::add);
+        viste.put("forEach", titoli(conForEach));
+        viste.put("domani", titoli(a.todos().findToDosByScadenza(DOMANI, id)));
+        viste.put("oggi", titoli(a.todos().findToDosScadenzaOggi(id)));
+        viste.put("scaduti", titoli(a.todos().findToDosScaduti(id)));
+        viste.put("termine", titoli(a.todos().findToDosByTerm("lavoro", id)));
+        for (TitoloBacheca titolo : TitoloBacheca.values()) {
+            Integer idBacheca = a.idBacheche().get(login + "/" + titolo);
+            if (idBacheca != null) {
+                viste.put("bacheca " + titolo, titoli(a.todos().getToDosForBachecaAndUtente(idBacheca, id)));
+                viste.put("pagine " + titolo, titoliAPagine(a.todos(), idBacheca, id));
+            }
+        }
+        return viste;
+    }
+
+    /** Scorre la bacheca una riga per pagina, per confrontare anche la paginazione keyset. */
+    private static List<String> titoliAPagine(ToDoDAO todos, int idBacheca, int idUtente) {
+        List<String> titoli = new ArrayList<>();
+        CursoreToDo cursore = null;
+        do {
+            PaginaToDo pagina = todos.getToDosForBachecaAndUtente(idBacheca, idUtente, cursore, 1);
+            titoli.addAll(titoli(pagina.todos()));
+            cursore = pagina.successivo();
+        } while (cursore != null);
+        return titoli;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"anna", "bruno", "carla"})
+    void memoriaEPostgresMostranoGliStessiToDo(String login) {
+        Map<String, List<String>> attese = viste(postgres, login);
+
+        assertFalse(attese.get("visibili").isEmpty());
+        assertEquals(attese, viste(memoria, login));
+    }
+}
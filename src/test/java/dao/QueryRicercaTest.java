@@ -0,0 +1,56 @@
+package dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test dell'analisi del testo di ricerca di {@link QueryRicerca}.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+class QueryRicercaTest {
+
+    @Test
+    void paroleEPrefissiDiventanoTerminiInAnd() {
+        QueryRicerca query = QueryRicerca.analizza("Bilancio prog*");
+
+        assertEquals(List.of(new QueryRicerca.Termine(List.of("bilancio"), false),
+                new QueryRicerca.Termine(List.of("prog"), true)), query.getTermini());
+        assertEquals("bilancio & prog:*", query.toTsQuery());
+    }
+
+    @Test
+    void leFrasiTraVirgoletteRestanoConsecutive() {
+        QueryRicerca query = QueryRicerca.analizza("\"relazione finale\" esame");
+
+        assertTrue(query.getTermini().get(0).isFrase());
+        assertEquals("(relazione <-> finale) & esame", query.toTsQuery());
+        assertEquals(List.of("%relazione finale%", "%esame%"), query.toPatternLike());
+    }
+
+    @Test
+    void unaFraseConPrefissoEUnaVirgolettaNonChiusa() {
+        assertEquals("(relazione <-> fin:*)", QueryRicerca.analizza("\"relazione fin*").toTsQuery());
+    }
+
+    @Test
+    void iCaratteriSpecialiDiTsqueryVengonoScartati() {
+        QueryRicerca query = QueryRicerca.analizza("a&b | !c:* (d)");
+
+        assertEquals("(a <-> b) & c:* & d", query.toTsQuery());
+    }
+
+    @Test
+    void unTestoSenzaParoleDaUnaQueryVuota() {
+        assertTrue(QueryRicerca.analizza(null).isVuota());
+        assertTrue(QueryRicerca.analizza("  \"\" * !? ").isVuota());
+        assertEquals("", QueryRicerca.analizza("***").toTsQuery());
+        assertFalse(QueryRicerca.analizza("x").isVuota());
+    }
+}
@@ -0,0 +1,153 @@
+package dao.postgresimpl;
+
+import database.ConnectionPool;
+import database.PostgresDiProva;
+import model.StatoToDo;
+import model.TitoloBacheca;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test di regressione del piano d'esecuzione della query di visibilità
+ * ({@link PostgresToDoDAO#TODO_VISIBILI_IN_BACHECA_ORDINATI}): nessuno dei due rami deve leggere
+ * per intero {@code todo} o {@code condivisione}, cioè gli indici della migrazione V2 devono essere usati.
+ * <p>
+ * Il database viene popolato con {@value #UTENTI} utenti, {@value #TODO_PER_BACHECA} ToDo per bacheca e circa
+ * una condivisione ogni {@value #FRAZIONE_CONDIVISIONI} coppie ToDo/utente; il piano viene letto con
+ * {@code EXPLAIN (FORMAT JSON)} sia con {@code enable_seqscan} disattivato (gli indici esistono e sono
+ * utilizzabili dalla query) sia attivo (il planner li sceglie anche potendo farne a meno).
+ * I nodi {@code Seq Scan} vengono cercati nel JSON del piano con {@code jsonb_path_query}.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PianoVisibilitaTest {
+
+    private static final int UTENTI = 100;
+    private static final int TODO_PER_BACHECA = 40;
+    private static final int FRAZIONE_CONDIVISIONI = 50;
+
+    /** Tabelle che la query non deve mai leggere per intero. */
+    private static final Set<String> TABELLE_CONTROLLATE = Set.of("todo", "condivisione");
+
+    private static final String NODI_SEQ_SCAN =
+            "SELECT DISTINCT n->>'Relation Name' FROM jsonb_path_query(?::jsonb, '$.** ? (@.\"Node Type\" == \"Seq Scan\")') n";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = PostgresDiProva.nuovoContenitore();
+
+    private static ConnectionPool pool;
+    private static int utenteId;
+    private static int bachecaId;
+
+    @BeforeAll
+    static void popola() throws Exception {
+        pool = PostgresDiProva.preparaSchema(POSTGRES);
+        try (Connection c = pool.getConnection()) {
+            try (PreparedStatement stmt = c.prepareStatement(
+                    "INSERT INTO utente (nome, login, password) SELECT 'Verifica', 'verifica-' || g, 'verifica' FROM generate_series(1, ?) g")) {
+                stmt.setInt(1, UTENTI);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = c.prepareStatement(
+                    "INSERT INTO bacheca (titolo, descrizione, id_utente) SELECT t, '', u.id FROM utente u CROSS JOIN unnest(?) t")) {
+                stmt.setArray(1, c.createArrayOf("text", Arrays.stream(TitoloBacheca.values()).map(Enum::name).toArray()));
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = c.prepareStatement(
+                    "INSERT INTO todo (titolo, descrizione, scadenza, stato, posizione, id_autore, id_bacheca) " +
+                    "SELECT 'ToDo ' || g, '', current_date + g, ?, g * 1024, b.id_utente, b.id " +
+                    "FROM bacheca b CROSS JOIN generate_series(1, ?) g")) {
+                stmt.setString(1, StatoToDo.NON_COMPLETATO.name());
+                stmt.setInt(2, TODO_PER_BACHECA);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = c.prepareStatement(
+                    "INSERT INTO condivisione (id_utente, id_todo) " +
+                    "SELECT u.id, t.id FROM todo t JOIN utente u ON u.id <> t.id_autore WHERE (t.id + u.id) % ? = 0")) {
+                stmt.setInt(1, FRAZIONE_CONDIVISIONI);
+                stmt.executeUpdate();
+            }
+            try (Statement stmt = c.createStatement()) {
+                stmt.execute("ANALYZE utente");
+                stmt.execute("ANALYZE bacheca");
+                stmt.execute("ANALYZE todo");
+                stmt.execute("ANALYZE condivisione");
+                try (ResultSet rs = stmt.executeQuery(
+                        "SELECT u.id, b.id FROM utente u JOIN bacheca b ON b.id_utente = u.id WHERE u.login = 'verifica-1' ORDER BY b.id LIMIT 1")) {
+                    rs.next();
+                    utenteId = rs.getInt(1);
+                    bachecaId = rs.getInt(2);
+                }
+            }
+        }
+    }
+
+    @AfterAll
+    static void chiudi() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @ParameterizedTest(name = "enable_seqscan={0}")
+    @ValueSource(strings = {"off", "on"})
+    void nonLeggeSequenzialmenteTodoECondivisione(String seqscan) throws SQLException {
+        try (Connection c = pool.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                try (Statement stmt = c.createStatement()) {
+                    stmt.execute("SET LOCAL enable_seqscan = " + seqscan);
+                }
+                String piano = leggiPiano(c);
+                Set<String> letteSequenzialmente = tabelleLetteSequenzialmente(c, piano);
+                letteSequenzialmente.retainAll(TABELLE_CONTROLLATE);
+                assertTrue(letteSequenzialmente.isEmpty(),
+                        () -> "Lettura sequenziale di " + letteSequenzialmente + " nel piano:\n" + piano);
+            } finally {
+                c.rollback();
+            }
+        }
+    }
+
+    private static String leggiPiano(Connection c) throws SQLException {
+        try (PreparedStatement stmt = c.prepareStatement("EXPLAIN (FORMAT JSON) " + PostgresToDoDAO.TODO_VISIBILI_IN_BACHECA_ORDINATI)) {
+            PostgresToDoDAO.impostaVisibiliInBacheca(stmt, bachecaId, utenteId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+
+    private static Set<String> tabelleLetteSequenzialmente(Connection c, String piano) throws SQLException {
+        Set<String> tabelle = new TreeSet<>();
+        try (PreparedStatement stmt = c.prepareStatement(NODI_SEQ_SCAN)) {
+            stmt.setString(1, piano);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tabelle.add(rs.getString(1));
+                }
+            }
+        }
+        return tabelle;
+    }
+}
@@ -0,0 +1,177 @@
+package database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test della cache LRU degli statement di una connessione, {@link CacheStatement},
+ * su una connessione finta che registra gli statement preparati.
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+class CacheStatementTest {
+
+    private static final String SQL_A = "SELECT 1";
+    private static final String SQL_B = "SELECT 2";
+    private static final String SQL_C = "SELECT 3";
+
+    /** Statement fisico finto: ricorda le impostazioni e se è stato chiuso. */
+    private static final class StatementFinto implements InvocationHandler {
+        final String sql;
+        boolean chiuso;
+        int fetchSize;
+        int maxRows;
+        int queryTimeout;
+
+        StatementFinto(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "close" -> chiuso = true;
+                case "isClosed" -> {
+                    return chiuso;
+                }
+                case "setFetchSize" -> fetchSize = (int) args[0];
+                case "getFetchSize" -> {
+                    return fetchSize;
+                }
+                case "setMaxRows" -> maxRows = (int) args[0];
+                case "getMaxRows" -> {
+                    return maxRows;
+                }
+                case "setQueryTimeout" -> queryTimeout = (int) args[0];
+                case "getQueryTimeout" -> {
+                    return queryTimeout;
+                }
+                default -> {
+                    // clearParameters, clearBatch, clearWarnings, setInt, ...: nulla da ricordare.
+                }
+            }
+            return null;
+        }
+    }
+
+    private final List<StatementFinto> preparati = new ArrayList<>();
+    private final AtomicLong richieste = new AtomicLong();
+    private final AtomicLong riusi = new AtomicLong();
+    private CacheStatement cache;
+
+    @BeforeEach
+    void creaCache() {
+        Connection connessione = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("prepareStatement")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    StatementFinto finto = new StatementFinto((String) args[0]);
+                    preparati.add(finto);
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, finto);
+                });
+        cache = new CacheStatement(connessione, 2, richieste, riusi);
+    }
+
+    private void usa(String sql) throws SQLException {
+        try (PreparedStatement _ = cache.prendi(sql)) {
+            // Solo preparazione e restituzione alla cache.
+        }
+    }
+
+    @Test
+    void unoStatementRestituitoVieneRiusato() throws SQLException {
+        usa(SQL_A);
+        usa(SQL_A);
+
+        assertEquals(1, preparati.size());
+        assertFalse(preparati.get(0).chiuso);
+        assertEquals(2, richieste.get());
+        assertEquals(1, riusi.get());
+    }
+
+    @Test
+    void leImpostazioniDelChiamanteNonPassanoAlSuccessivo() throws SQLException {
+        try (PreparedStatement stmt = cache.prendi(SQL_A)) {
+            stmt.setFetchSize(500);
+            stmt.setMaxRows(10);
+            stmt.setQueryTimeout(5);
+        }
+        try (PreparedStatement stmt = cache.prendi(SQL_A)) {
+            assertEquals(0, stmt.getFetchSize());
+            assertEquals(0, stmt.getMaxRows());
+            assertEquals(0, stmt.getQueryTimeout());
+        }
+        assertEquals(1, preparati.size());
+    }
+
+    @Test
+    void oltreLaDimensioneVieneChiusoIlMenoRecente() throws SQLException {
+        usa(SQL_A);
+        usa(SQL_B);
+        usa(SQL_A);
+        usa(SQL_C);
+
+        StatementFinto b = preparati.get(1);
+        assertEquals(SQL_B, b.sql);
+        assertTrue(b.chiuso);
+        assertFalse(preparati.get(0).chiuso);
+
+        // B va ripreparato e fa uscire A, ora il meno recente; C resta in cache.
+        usa(SQL_B);
+        assertEquals(4, preparati.size());
+        assertTrue(preparati.get(0).chiuso);
+        usa(SQL_C);
+        assertEquals(4, preparati.size());
+    }
+
+    @Test
+    void loStessoSqlInUsoDueVolteVienePreparatoDueVolte() throws SQLException {
+        PreparedStatement primo = cache.prendi(SQL_A);
+        PreparedStatement secondo = cache.prendi(SQL_A);
+        primo.close();
+        secondo.close();
+
+        assertEquals(2, preparati.size());
+        assertFalse(preparati.get(0).chiuso);
+        assertTrue(preparati.get(1).chiuso);
+    }
+
+    @Test
+    void unoStatementChiusoNonSiPuoPiuUsare() throws SQLException {
+        PreparedStatement stmt = cache.prendi(SQL_A);
+        stmt.close();
+        stmt.close();
+
+        assertTrue(stmt.isClosed());
+        assertThrows(SQLException.class, () -> stmt.setInt(1, 42));
+    }
+
+    @Test
+    void svuotaChiudeGliStatementInattivi() throws SQLException {
+        usa(SQL_A);
+        PreparedStatement inUso = cache.prendi(SQL_B);
+
+        cache.svuota();
+
+        assertTrue(preparati.get(0).chiuso);
+        assertFalse(preparati.get(1).chiuso);
+        inUso.close();
+    }
+}
@@ -0,0 +1,72 @@
+package database;
+
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Database PostgreSQL usa e getta per i test, avviato con Testcontainers.
+ * <p>
+ * Le classi di test dichiarano il contenitore con {@code @Container} (e {@code @Testcontainers(disabledWithoutDocker = true)},
+ * così da essere saltate dove Docker non c'è), poi chiamano {@link #preparaSchema(PostgreSQLContainer)}:
+ * lo schema di partenza ({@code db/schema_base.sql}) e tutte le migrazioni vengono applicati come all'avvio dell'applicazione.
+ * </p>
+ *
+ * @author marrenza
+ * @version 1.0
+ */
+public final class PostgresDiProva {
+
+    /** Immagine usata dai test: la versione minima richiesta dalle migrazioni è la 13. */
+    private static final String IMMAGINE = "postgres:16-alpine";
+
+    private static final String SCHEMA_BASE = "/db/schema_base.sql";
+
+    private PostgresDiProva() {
+    }
+
+    /**
+     * Crea (senza avviarlo) il contenitore PostgreSQL dei test.
+     *
+     * @return Il contenitore.
+     */
+    public static PostgreSQLContainer<?> nuovoContenitore() {
+        return new PostgreSQLContainer<>(IMMAGINE);
+    }
+
+    /**
+     * Crea lo schema nel database del contenitore e restituisce un pool collegato ad esso.
+     *
+     * @param contenitore Il contenitore già avviato.
+     * @return Il pool di connessioni, da chiudere al termine dei test.
+     * @throws SQLException Se lo schema di partenza non può essere creato.
+     * @throws IOException  Se lo script dello schema di partenza non si trova nel classpath.
+     */
+    public static ConnectionPool preparaSchema(PostgreSQLContainer<?> contenitore) throws SQLException, IOException {
+        ConnectionPool pool = new ConnectionPool(contenitore.getJdbcUrl(), contenitore.getUsername(),
+                contenitore.getPassword(), 4, 5_000, 30_000);
+        try (Connection connection = pool.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute(leggiSchemaBase());
+        }
+        if (!new SchemaMigrator(pool).migra()) {
+            pool.close();
+            throw new IllegalStateException("Migrazioni dello schema non riuscite");
+        }
+        return pool;
+    }
+
+    private static String leggiSchemaBase() throws IOException {
+        try (InputStream in = PostgresDiProva.class.getResourceAsStream(SCHEMA_BASE)) {
+            if (in == null) {
+                throw new IOException("Schema di partenza non trovato: " + SCHEMA_BASE);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
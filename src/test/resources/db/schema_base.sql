@@ -0,0 +1,46 @@
+-- Schema di partenza per i test su PostgreSQL: le tabelle che le migrazioni in db/migration
+-- presuppongono già esistenti, con le colonne lette e scritte dai DAO in dao.postgresimpl.
+-- Le migrazioni vengono applicate dopo questo script da SchemaMigrator.
+
+CREATE TABLE utente (
+    id       serial PRIMARY KEY,
+    nome     text NOT NULL,
+    cognome  text,
+    login    text NOT NULL UNIQUE,
+    password text NOT NULL
+);
+
+CREATE TABLE bacheca (
+    id          serial PRIMARY KEY,
+    titolo      text NOT NULL,
+    descrizione text,
+    id_utente   integer NOT NULL REFERENCES utente (id) ON DELETE CASCADE,
+    UNIQUE (id_utente, titolo)
+);
+
+CREATE TABLE todo (
+    id            serial PRIMARY KEY,
+    titolo        text NOT NULL,
+    descrizione   text,
+    scadenza      date,
+    image_path    text,
+    url           text,
+    colore_sfondo text,
+    stato         text NOT NULL,
+    posizione     integer NOT NULL DEFAULT 0,
+    id_autore     integer NOT NULL REFERENCES utente (id) ON DELETE CASCADE,
+    id_bacheca    integer REFERENCES bacheca (id) ON DELETE CASCADE
+);
+
+CREATE TABLE attivita (
+    id      serial PRIMARY KEY,
+    nome    text NOT NULL,
+    stato   text NOT NULL,
+    id_todo integer NOT NULL REFERENCES todo (id) ON DELETE CASCADE
+);
+
+CREATE TABLE condivisione (
+    id_utente integer NOT NULL REFERENCES utente (id) ON DELETE CASCADE,
+    id_todo   integer NOT NULL REFERENCES todo (id) ON DELETE CASCADE,
+    PRIMARY KEY (id_utente, id_todo)
+);